@@ -16,6 +16,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
 
 import javax.cache.configuration.Factory;
+import javax.cache.configuration.FactoryBuilder;
 import javax.cache.expiry.AccessedExpiryPolicy;
 import javax.cache.expiry.CreatedExpiryPolicy;
 import javax.cache.expiry.Duration;
@@ -23,6 +24,7 @@ import javax.cache.expiry.EternalExpiryPolicy;
 import javax.cache.expiry.ExpiryPolicy;
 import javax.cache.expiry.ModifiedExpiryPolicy;
 import javax.cache.expiry.TouchedExpiryPolicy;
+import java.io.Serializable;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Map;
@@ -43,6 +45,41 @@ public class Constants {
 
   public static final String CONFIG_STORE_BY_VALUE = "storeByValue";
 
+  public static final String CONFIG_MAX_ENTRIES = "maxEntries";
+  public static final String CONFIG_MAX_WEIGHT = "maxWeight";
+  public static final String CONFIG_WEIGHER = "weigher";
+  public static final WeigherFunction CONFIG_WEIGHER_DEFAULT = WeigherFunction.DEEP_SIZE;
+
+  public static final String CONFIG_REFRESH = "refresh";
+
+  public static final String CONFIG_WRITE_BEHIND = "writeBehind";
+  public static final String CONFIG_WRITE_BEHIND_BATCH_SIZE = "writeBehind.batchSize";
+  public static final int CONFIG_WRITE_BEHIND_BATCH_SIZE_DEFAULT = 100;
+
+  public static final String CONFIG_LISTENER_QUEUE_SIZE = "listeners.queueSize";
+  public static final int CONFIG_LISTENER_QUEUE_SIZE_DEFAULT = 1024;
+  public static final String CONFIG_LISTENER_BATCH_SIZE = "listeners.batchSize";
+  public static final int CONFIG_LISTENER_BATCH_SIZE_DEFAULT = 64;
+  public static final String CONFIG_LISTENER_OVERFLOW = "listeners.overflow";
+  public static final ListenerOverflow CONFIG_LISTENER_OVERFLOW_DEFAULT = ListenerOverflow.DROP;
+
+  public static final String CONFIG_PERSISTENT = "persistent";
+  /**
+   * Class name of the {@link EntryCodec} of the entries stored on disk or off-heap.
+   */
+  public static final String CONFIG_PERSISTENT_CODEC = "persistent.codec";
+  /**
+   * Global property: where the persistent caches are stored, in a sub directory for each cache.
+   */
+  public static final String CONFIG_PERSISTENCE_DIRECTORY = "persistence.directory";
+
+  /**
+   * Byte budget of the off-heap tier, with an optional k, m or g suffix.
+   */
+  public static final String CONFIG_OFF_HEAP = "offHeap";
+  public static final String CONFIG_OFF_HEAP_PAGE_SIZE = "offHeap.pageSize";
+  public static final int CONFIG_OFF_HEAP_PAGE_SIZE_DEFAULT = 1024 * 1024;
+
   public enum ExpiryFunction {
     CREATE {
       @Override public Factory<? extends ExpiryPolicy> createFactory( Long seconds ) {
@@ -74,6 +111,49 @@ public class Constants {
     }
   }
 
+  public enum WeigherFunction {
+    /**
+     * Every entry weighs 1, so max weight is the same as max entries
+     */
+    ENTRY {
+      @Override public Factory<EntryWeigher<Object, Object>> createFactory() {
+        return new FactoryBuilder.SingletonFactory<EntryWeigher<Object, Object>>( new SingletonWeigher() );
+      }
+    },
+    /**
+     * Entries weigh their approximate size in bytes
+     */
+    DEEP_SIZE {
+      @Override public Factory<EntryWeigher<Object, Object>> createFactory() {
+        return new FactoryBuilder.SingletonFactory<EntryWeigher<Object, Object>>( new DeepSizeWeigher() );
+      }
+    };
+
+    public abstract Factory<EntryWeigher<Object, Object>> createFactory();
+
+    private static class SingletonWeigher implements EntryWeigher<Object, Object>, Serializable {
+      private static final long serialVersionUID = 1L;
+
+      @Override public int weigh( Object key, Object value ) {
+        return 1;
+      }
+    }
+  }
+
+  /**
+   * What happens to the events of an asynchronous cache entry listener when its queue is full
+   */
+  public enum ListenerOverflow {
+    /**
+     * The event is dropped, so that slow listeners never slow down writers
+     */
+    DROP,
+    /**
+     * The writer waits for the listener to catch up
+     */
+    BLOCK
+  }
+
   public static Map<String, String> convertDictionary( Dictionary<String, ?> dictionary ) {
     Map<String, String> properties = Maps.newHashMapWithExpectedSize( dictionary.size() );
     for ( Enumeration<String> keys = dictionary.keys(); keys.hasMoreElements(); ) {
@@ -0,0 +1,130 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Weighs entries by an approximation of their retained heap size in bytes (assuming a 64-bit JVM with compressed
+ * references), following strings, boxed primitives, arrays, collections and maps.
+ * <p>
+ * Objects of any other type count as a plain object; subclasses can provide better estimates for them by
+ * overriding {@link #sizeOf(Object)}. Shared and cyclic references are counted only once per entry.
+ */
+public class DeepSizeWeigher implements EntryWeigher<Object, Object>, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  protected static final int OBJECT_HEADER = 12;
+  protected static final int ARRAY_HEADER = 16;
+  protected static final int REFERENCE = 4;
+
+  // approximate overhead of each element of a (hash or linked) collection: node object and its references
+  private static final int COLLECTION_NODE = 32;
+
+  @Override public int weigh( Object key, Object value ) {
+    Set<Object> visited = Collections.newSetFromMap( new IdentityHashMap<Object, Boolean>() );
+    Deque<Object> pending = new ArrayDeque<Object>();
+    push( pending, key );
+    push( pending, value );
+
+    long size = 0;
+    while ( !pending.isEmpty() && size < Integer.MAX_VALUE ) {
+      Object object = pending.pop();
+      if ( !visited.add( object ) ) {
+        continue;
+      }
+
+      if ( object instanceof Object[] ) {
+        Object[] array = (Object[]) object;
+        size += align( ARRAY_HEADER + (long) REFERENCE * array.length );
+        pushAll( pending, array );
+      } else if ( object.getClass().isArray() ) {
+        int elementSize = primitiveSize( object.getClass().getComponentType() );
+        size += align( ARRAY_HEADER + (long) elementSize * Array.getLength( object ) );
+      } else if ( object instanceof Collection ) {
+        Collection<?> collection = (Collection<?>) object;
+        size += align( OBJECT_HEADER + 4 * REFERENCE ) + (long) COLLECTION_NODE * collection.size();
+        pushAll( pending, collection.toArray() );
+      } else if ( object instanceof Map ) {
+        Map<?, ?> map = (Map<?, ?>) object;
+        size += align( OBJECT_HEADER + 4 * REFERENCE ) + (long) COLLECTION_NODE * map.size();
+        for ( Map.Entry<?, ?> entry : map.entrySet() ) {
+          push( pending, entry.getKey() );
+          push( pending, entry.getValue() );
+        }
+      } else {
+        size += sizeOf( object );
+      }
+    }
+
+    return (int) Math.min( size, Integer.MAX_VALUE );
+  }
+
+  /**
+   * Estimates the size of an object which is neither an array, a collection nor a map.
+   */
+  protected long sizeOf( Object object ) {
+    if ( object instanceof String || object instanceof StringBuilder || object instanceof StringBuffer ) {
+      // the object and its backing array, with two bytes per character (worst case)
+      return align( OBJECT_HEADER + REFERENCE + 8 ) + align( ARRAY_HEADER + 2L * ( (CharSequence) object ).length() );
+    }
+    if ( object instanceof Long || object instanceof Double ) {
+      return align( OBJECT_HEADER + 8 );
+    }
+    if ( object instanceof Number || object instanceof Boolean || object instanceof Character ) {
+      // Integer, Short, Byte, Float... (BigInteger and BigDecimal are a rough approximation)
+      return align( OBJECT_HEADER + 4 );
+    }
+    if ( object instanceof Enum ) {
+      // enum constants are shared, only the reference counts
+      return 0;
+    }
+    return align( OBJECT_HEADER + 2 * REFERENCE );
+  }
+
+  protected static long align( long size ) {
+    return ( size + 7 ) & ~7L;
+  }
+
+  private static int primitiveSize( Class<?> type ) {
+    if ( type == long.class || type == double.class ) {
+      return 8;
+    } else if ( type == int.class || type == float.class ) {
+      return 4;
+    } else if ( type == char.class || type == short.class ) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
+  private static void pushAll( Deque<Object> pending, Object[] objects ) {
+    for ( Object object : objects ) {
+      push( pending, object );
+    }
+  }
+
+  private static void push( Deque<Object> pending, Object object ) {
+    if ( object != null ) {
+      pending.push( object );
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+import java.io.IOException;
+
+/**
+ * Converts the entries of persistent caches to and from bytes, to store them on disk.
+ * <p>
+ * Encoded keys are compared byte by byte, so equal keys must be encoded to the same bytes.
+ *
+ * @see PentahoCacheConfiguration#setPersistent(boolean)
+ */
+public interface EntryCodec<K, V> {
+  byte[] encodeKey( K key ) throws IOException;
+
+  K decodeKey( byte[] bytes ) throws IOException;
+
+  byte[] encodeValue( V value ) throws IOException;
+
+  V decodeValue( byte[] bytes ) throws IOException;
+}
@@ -0,0 +1,25 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+/**
+ * Computes the weight of cache entries, for caches bounded by a maximum weight.
+ * <p>
+ * Weights are relative to the configured maximum weight, and are computed once, when the entry is stored.
+ */
+public interface EntryWeigher<K, V> {
+  /**
+   * @return the weight of the entry, which must not be negative.
+   */
+  int weigh( K key, V value );
+}
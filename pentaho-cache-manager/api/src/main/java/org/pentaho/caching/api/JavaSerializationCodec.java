@@ -0,0 +1,96 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Default {@link EntryCodec} of persistent caches, for {@link java.io.Serializable} keys and values.
+ * <p>
+ * Classes are resolved with the given class loader first, since the classes of cached entries are usually not
+ * visible to this bundle.
+ */
+public class JavaSerializationCodec<K, V> implements EntryCodec<K, V> {
+  private final ClassLoader classLoader;
+
+  /**
+   * Used when the codec is configured by class name: classes are resolved like {@link ObjectInputStream} does.
+   */
+  public JavaSerializationCodec() {
+    this( null );
+  }
+
+  /**
+   * @param classLoader loads the classes of the entries, or null to resolve them like {@link ObjectInputStream} does
+   */
+  public JavaSerializationCodec( ClassLoader classLoader ) {
+    this.classLoader = classLoader;
+  }
+
+  @Override public byte[] encodeKey( K key ) throws IOException {
+    return encode( key );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  @Override public K decodeKey( byte[] bytes ) throws IOException {
+    return (K) decode( bytes );
+  }
+
+  @Override public byte[] encodeValue( V value ) throws IOException {
+    return encode( value );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  @Override public V decodeValue( byte[] bytes ) throws IOException {
+    return (V) decode( bytes );
+  }
+
+  private byte[] encode( Object object ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try ( ObjectOutputStream output = new ObjectOutputStream( bytes ) ) {
+      output.writeObject( object );
+    }
+    return bytes.toByteArray();
+  }
+
+  private Object decode( byte[] bytes ) throws IOException {
+    try ( ObjectInputStream input = new ClassLoaderObjectInputStream( new ByteArrayInputStream( bytes ) ) ) {
+      return input.readObject();
+    } catch ( ClassNotFoundException e ) {
+      throw new IOException( e );
+    }
+  }
+
+  private class ClassLoaderObjectInputStream extends ObjectInputStream {
+    ClassLoaderObjectInputStream( InputStream input ) throws IOException {
+      super( input );
+    }
+
+    @Override protected Class<?> resolveClass( ObjectStreamClass desc ) throws IOException, ClassNotFoundException {
+      if ( classLoader != null ) {
+        try {
+          return Class.forName( desc.getName(), false, classLoader );
+        } catch ( ClassNotFoundException e ) {
+          // primitive types and classes of the JDK or this bundle
+        }
+      }
+      return super.resolveClass( desc );
+    }
+  }
+}
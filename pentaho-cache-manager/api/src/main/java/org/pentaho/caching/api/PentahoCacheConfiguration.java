@@ -0,0 +1,305 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.Duration;
+
+/**
+ * JCache configuration with the size bounds supported by Pentaho cache templates.
+ * <p>
+ * A cache may be bounded either by a maximum number of entries or by a maximum total weight, computed by a
+ * {@link EntryWeigher}. Providers which can't enforce the bounds treat it as a regular {@link MutableConfiguration}.
+ *
+ * @see Constants#CONFIG_MAX_ENTRIES
+ * @see Constants#CONFIG_MAX_WEIGHT
+ * @see Constants#CONFIG_WEIGHER
+ * @see Constants#CONFIG_REFRESH
+ * @see Constants#CONFIG_WRITE_BEHIND
+ * @see Constants#CONFIG_LISTENER_OVERFLOW
+ * @see Constants#CONFIG_PERSISTENT
+ * @see Constants#CONFIG_OFF_HEAP
+ */
+public class PentahoCacheConfiguration<K, V> extends MutableConfiguration<K, V> {
+  private static final long serialVersionUID = 1L;
+
+  public static final long UNBOUNDED = -1;
+
+  private long maxEntries = UNBOUNDED;
+  private long maxWeight = UNBOUNDED;
+  private Factory<? extends EntryWeigher<? super K, ? super V>> weigherFactory;
+  private Duration refreshAfterWrite;
+  private Duration writeBehindDelay;
+  private int writeBehindBatchSize = Constants.CONFIG_WRITE_BEHIND_BATCH_SIZE_DEFAULT;
+  private int listenerQueueSize = Constants.CONFIG_LISTENER_QUEUE_SIZE_DEFAULT;
+  private int listenerBatchSize = Constants.CONFIG_LISTENER_BATCH_SIZE_DEFAULT;
+  private Constants.ListenerOverflow listenerOverflow = Constants.CONFIG_LISTENER_OVERFLOW_DEFAULT;
+  private boolean persistent;
+  private Factory<? extends EntryCodec<K, V>> entryCodecFactory;
+  private long offHeapBytes;
+  private int offHeapPageSize = Constants.CONFIG_OFF_HEAP_PAGE_SIZE_DEFAULT;
+  private String templateName;
+
+  public PentahoCacheConfiguration() {
+  }
+
+  public PentahoCacheConfiguration( CompleteConfiguration<K, V> configuration ) {
+    super( configuration );
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      PentahoCacheConfiguration<K, V> bounded = (PentahoCacheConfiguration<K, V>) configuration;
+      this.maxEntries = bounded.maxEntries;
+      this.maxWeight = bounded.maxWeight;
+      this.weigherFactory = bounded.weigherFactory;
+      this.refreshAfterWrite = bounded.refreshAfterWrite;
+      this.writeBehindDelay = bounded.writeBehindDelay;
+      this.writeBehindBatchSize = bounded.writeBehindBatchSize;
+      this.listenerQueueSize = bounded.listenerQueueSize;
+      this.listenerBatchSize = bounded.listenerBatchSize;
+      this.listenerOverflow = bounded.listenerOverflow;
+      this.persistent = bounded.persistent;
+      this.entryCodecFactory = bounded.entryCodecFactory;
+      this.offHeapBytes = bounded.offHeapBytes;
+      this.offHeapPageSize = bounded.offHeapPageSize;
+      this.templateName = bounded.templateName;
+    }
+  }
+
+  /**
+   * @return a copy of this configuration, which subclasses override to keep their own settings
+   */
+  public PentahoCacheConfiguration<K, V> copy() {
+    return new PentahoCacheConfiguration<K, V>( this );
+  }
+
+  public long getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @param maxEntries maximum number of entries, or {@link #UNBOUNDED}. Can't be combined with a maximum weight.
+   */
+  public PentahoCacheConfiguration<K, V> setMaxEntries( long maxEntries ) {
+    Preconditions.checkArgument( maxEntries >= 0 || maxEntries == UNBOUNDED, "Invalid max entries: %s", maxEntries );
+    Preconditions.checkArgument( maxEntries == UNBOUNDED || maxWeight == UNBOUNDED,
+      "Cache can't be bounded by both max entries and max weight" );
+    this.maxEntries = maxEntries;
+    return this;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * @param maxWeight maximum total weight of the entries, or {@link #UNBOUNDED}. Can't be combined with a maximum
+   *                  number of entries.
+   */
+  public PentahoCacheConfiguration<K, V> setMaxWeight( long maxWeight ) {
+    Preconditions.checkArgument( maxWeight >= 0 || maxWeight == UNBOUNDED, "Invalid max weight: %s", maxWeight );
+    Preconditions.checkArgument( maxWeight == UNBOUNDED || maxEntries == UNBOUNDED,
+      "Cache can't be bounded by both max entries and max weight" );
+    this.maxWeight = maxWeight;
+    return this;
+  }
+
+  /**
+   * @return the factory of the weigher used when bounded by max weight, or null to use the default one
+   * ({@link Constants#CONFIG_WEIGHER_DEFAULT})
+   */
+  public Factory<? extends EntryWeigher<? super K, ? super V>> getWeigherFactory() {
+    return weigherFactory;
+  }
+
+  /**
+   * @return a new instance of the configured weigher, or of the default one
+   */
+  public EntryWeigher<? super K, ? super V> createWeigher() {
+    return weigherFactory != null ? weigherFactory.create() : Constants.CONFIG_WEIGHER_DEFAULT.createFactory().create();
+  }
+
+  public PentahoCacheConfiguration<K, V> setWeigherFactory(
+    Factory<? extends EntryWeigher<? super K, ? super V>> weigherFactory ) {
+    this.weigherFactory = weigherFactory;
+    return this;
+  }
+
+  /**
+   * @return time after an entry is written when it becomes eligible for an asynchronous reload by the cache loader,
+   * or null if entries are never refreshed
+   */
+  public Duration getRefreshAfterWrite() {
+    return refreshAfterWrite;
+  }
+
+  /**
+   * Only honoured by providers which support refreshing, and only if a cache loader is configured.
+   */
+  public PentahoCacheConfiguration<K, V> setRefreshAfterWrite( Duration refreshAfterWrite ) {
+    this.refreshAfterWrite = refreshAfterWrite;
+    return this;
+  }
+
+  /**
+   * @return maximum time writes to the cache writer are delayed, to batch them, or null to write through
+   * synchronously
+   */
+  public Duration getWriteBehindDelay() {
+    return writeBehindDelay;
+  }
+
+  public int getWriteBehindBatchSize() {
+    return writeBehindBatchSize;
+  }
+
+  /**
+   * Makes writes and deletes through the cache writer asynchronous, and batched.
+   *
+   * @param delay     maximum time an operation is delayed, or null to write through synchronously
+   * @param batchSize number of pending operations which are written without waiting for the delay
+   */
+  public PentahoCacheConfiguration<K, V> setWriteBehind( Duration delay, int batchSize ) {
+    Preconditions.checkArgument( batchSize > 0, "Invalid write-behind batch size: %s", batchSize );
+    this.writeBehindDelay = delay;
+    this.writeBehindBatchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * @return maximum number of events waiting to be delivered to each asynchronous cache entry listener
+   */
+  public int getListenerQueueSize() {
+    return listenerQueueSize;
+  }
+
+  /**
+   * @return maximum number of events delivered to an asynchronous cache entry listener in a single call
+   */
+  public int getListenerBatchSize() {
+    return listenerBatchSize;
+  }
+
+  public Constants.ListenerOverflow getListenerOverflow() {
+    return listenerOverflow;
+  }
+
+  /**
+   * Configures the delivery of events to the asynchronous cache entry listeners.
+   */
+  public PentahoCacheConfiguration<K, V> setListenerDispatch( int queueSize, int batchSize,
+                                                              Constants.ListenerOverflow overflow ) {
+    Preconditions.checkArgument( queueSize > 0, "Invalid listener queue size: %s", queueSize );
+    Preconditions.checkArgument( batchSize > 0, "Invalid listener batch size: %s", batchSize );
+    this.listenerQueueSize = queueSize;
+    this.listenerBatchSize = batchSize;
+    this.listenerOverflow = Preconditions.checkNotNull( overflow );
+    return this;
+  }
+
+  public boolean isPersistent() {
+    return persistent;
+  }
+
+  /**
+   * Persistent caches keep their entries in a disk tier, so that they survive restarts. Entries missing from memory
+   * are read from disk on demand. Only honoured by caches created through a {@link PentahoCacheManager}.
+   */
+  public PentahoCacheConfiguration<K, V> setPersistent( boolean persistent ) {
+    this.persistent = persistent;
+    return this;
+  }
+
+  /**
+   * @return factory of the codec of the entries stored on disk or off-heap, or null to use Java serialization
+   */
+  public Factory<? extends EntryCodec<K, V>> getEntryCodecFactory() {
+    return entryCodecFactory;
+  }
+
+  public PentahoCacheConfiguration<K, V> setEntryCodecFactory( Factory<? extends EntryCodec<K, V>> factory ) {
+    this.entryCodecFactory = factory;
+    return this;
+  }
+
+  /**
+   * @return byte budget of the off-heap tier, or 0 if the cache has none
+   */
+  public long getOffHeapBytes() {
+    return offHeapBytes;
+  }
+
+  public int getOffHeapPageSize() {
+    return offHeapPageSize;
+  }
+
+  /**
+   * Caches with an off-heap tier also keep their entries serialized in direct memory, out of reach of the garbage
+   * collector, and read them back when they are missing from the heap. Bounding the heap with few entries then keeps
+   * only the hot ones there. Only honoured by caches created through a {@link PentahoCacheManager}.
+   *
+   * @param maxBytes byte budget of the off-heap tier, or 0 for none
+   * @param pageSize size of the pages the budget is allocated in, which bounds the size of the stored entries
+   */
+  public PentahoCacheConfiguration<K, V> setOffHeap( long maxBytes, int pageSize ) {
+    Preconditions.checkArgument( pageSize > 0, "Invalid off-heap page size: %s", pageSize );
+    Preconditions.checkArgument( maxBytes == 0 || maxBytes >= pageSize,
+      "Off-heap budget %s is smaller than a page: %s", maxBytes, pageSize );
+    this.offHeapBytes = maxBytes;
+    this.offHeapPageSize = pageSize;
+    return this;
+  }
+
+  /**
+   * @return name of the template this configuration was created from, or null if it was not created from a template
+   */
+  public String getTemplateName() {
+    return templateName;
+  }
+
+  /**
+   * Records the template this configuration was created from, so that caching services can apply later changes of the
+   * template to the cache. Not part of {@link #equals(Object)}, as it doesn't change how the cache behaves.
+   */
+  public PentahoCacheConfiguration<K, V> setTemplateName( String templateName ) {
+    this.templateName = templateName;
+    return this;
+  }
+
+  @Override public boolean equals( Object object ) {
+    if ( this == object ) {
+      return true;
+    }
+    if ( !( object instanceof PentahoCacheConfiguration ) || !super.equals( object ) ) {
+      return false;
+    }
+    PentahoCacheConfiguration<?, ?> that = (PentahoCacheConfiguration<?, ?>) object;
+    return maxEntries == that.maxEntries && maxWeight == that.maxWeight
+      && Objects.equal( weigherFactory, that.weigherFactory )
+      && Objects.equal( refreshAfterWrite, that.refreshAfterWrite )
+      && Objects.equal( writeBehindDelay, that.writeBehindDelay ) && writeBehindBatchSize == that.writeBehindBatchSize
+      && listenerQueueSize == that.listenerQueueSize && listenerBatchSize == that.listenerBatchSize
+      && listenerOverflow == that.listenerOverflow && persistent == that.persistent
+      && Objects.equal( entryCodecFactory, that.entryCodecFactory ) && offHeapBytes == that.offHeapBytes
+      && offHeapPageSize == that.offHeapPageSize;
+  }
+
+  @Override public int hashCode() {
+    return Objects.hashCode( super.hashCode(), maxEntries, maxWeight, weigherFactory, refreshAfterWrite,
+      writeBehindDelay, writeBehindBatchSize, listenerQueueSize, listenerBatchSize, listenerOverflow, persistent,
+      entryCodecFactory, offHeapBytes, offHeapPageSize );
+  }
+}
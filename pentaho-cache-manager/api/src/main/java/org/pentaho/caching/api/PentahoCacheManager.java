@@ -14,6 +14,7 @@ package org.pentaho.caching.api;
 
 import javax.cache.CacheManager;
 import javax.cache.configuration.Configuration;
+import javax.cache.management.CacheStatisticsMXBean;
 import java.util.Map;
 
 /**
@@ -28,4 +29,14 @@ public interface PentahoCacheManager extends CacheManager {
                                                   Map<String, String> properties ) throws IllegalArgumentException;
 
   Map<String, PentahoCacheTemplateConfiguration> getTemplates();
+
+  /**
+   * Statistics of a cache, for monitoring. Statistics are enabled with {@link #enableStatistics} or by the cache
+   * configuration.
+   *
+   * @return the statistics of the cache, or null if they are not enabled (or not supported by the provider)
+   */
+  default CacheStatisticsMXBean getCacheStatistics( String cacheName ) {
+    return null;
+  }
 }
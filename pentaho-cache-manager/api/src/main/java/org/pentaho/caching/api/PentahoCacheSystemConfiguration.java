@@ -17,7 +17,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -25,15 +29,19 @@ import java.util.regex.Pattern;
  * @author nhudak
  */
 public class PentahoCacheSystemConfiguration {
-  private static final Pattern GLOBAL_PATTERN = Pattern.compile( "global[.]([\\w_-]+)" );
+  private static final Logger logger = Logger.getLogger( PentahoCacheSystemConfiguration.class.getName() );
+
+  // property names may contain dots (e.g. ttl.resetOn), template names may not
+  private static final Pattern GLOBAL_PATTERN = Pattern.compile( "global[.]([\\w_.-]+)" );
   private static final int GLOBAL_PROP_GROUP = 1;
-  private static final Pattern TEMPLATE_PATTERN = Pattern.compile( "template[.]([\\w_-]+)([.]([\\w_-]+))?" );
+  private static final Pattern TEMPLATE_PATTERN = Pattern.compile( "template[.]([\\w_-]+)([.]([\\w_.-]+))?" );
   private static final int TEMPLATE_NAME_GROUP = 1;
   private static final int TEMPLATE_PROP_GROUP = 3;
 
   private volatile ImmutableMap<String, String> configuration;
   private volatile ImmutableMap<String, String> global;
   private volatile ImmutableMap<String, Template> templateMap;
+  private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
 
   public PentahoCacheSystemConfiguration() {
     configuration = ImmutableMap.of();
@@ -92,6 +100,14 @@ public class PentahoCacheSystemConfiguration {
     this.configuration = ImmutableMap.copyOf( config );
     this.global = ImmutableMap.copyOf( global );
     this.templateMap = ImmutableMap.copyOf( templateMap );
+
+    for ( Listener listener : listeners ) {
+      try {
+        listener.configurationChanged( this );
+      } catch ( RuntimeException e ) {
+        logger.log( Level.WARNING, "Unable to apply the cache configuration change", e );
+      }
+    }
   }
 
   public Map<String, PentahoCacheTemplateConfiguration> createTemplates( PentahoCacheManager cacheManager ) {
@@ -100,7 +116,8 @@ public class PentahoCacheSystemConfiguration {
       Template template = entry.getValue();
 
       PentahoCacheTemplateConfiguration templateConfiguration =
-          new PentahoCacheTemplateConfiguration( template.description, template.properties, cacheManager );
+          new PentahoCacheTemplateConfiguration( entry.getKey(), template.description, template.properties,
+            cacheManager );
 
       builder.put( entry.getKey(), templateConfiguration );
     }
@@ -115,6 +132,36 @@ public class PentahoCacheSystemConfiguration {
     return global;
   }
 
+  /**
+   * Properties of each template, including the global properties.
+   */
+  public Map<String, Map<String, String>> getTemplateProperties() {
+    ImmutableMap.Builder<String, Map<String, String>> builder = ImmutableMap.builder();
+    for ( Map.Entry<String, Template> entry : templateMap.entrySet() ) {
+      builder.put( entry.getKey(), ImmutableMap.copyOf( entry.getValue().properties ) );
+    }
+    return builder.build();
+  }
+
+  /**
+   * Registers a listener notified each time the configuration data is set, e.g. when the configuration admin
+   * updates it, so that providers can reconfigure their live caches.
+   */
+  public void addListener( Listener listener ) {
+    listeners.add( listener );
+  }
+
+  public void removeListener( Listener listener ) {
+    listeners.remove( listener );
+  }
+
+  /**
+   * Notified after the configuration data is set, once the new global and template properties are in effect.
+   */
+  public interface Listener {
+    void configurationChanged( PentahoCacheSystemConfiguration systemConfiguration );
+  }
+
   /**
    * @author nhudak
    */
@@ -12,29 +12,51 @@
 
 package org.pentaho.caching.api;
 
+import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import javax.cache.Cache;
 import javax.cache.configuration.Configuration;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
 import java.util.Map;
 
 /**
  * @author nhudak
  */
 public class PentahoCacheTemplateConfiguration {
+  private final String name;
   private final String description;
   private final ImmutableMap<String, String> properties;
   private final PentahoCacheManager cacheManager;
 
   public PentahoCacheTemplateConfiguration( String description, Map<String, String> properties,
                                             PentahoCacheManager cacheManager ) {
+    this( null, description, properties, cacheManager );
+  }
+
+  /**
+   * @param name name of the template in the system configuration, recorded on the cache configurations it creates
+   */
+  public PentahoCacheTemplateConfiguration( String name, String description, Map<String, String> properties,
+                                            PentahoCacheManager cacheManager ) {
+    this.name = name;
     this.description = description;
     this.properties = ImmutableMap.copyOf( properties );
     this.cacheManager = cacheManager;
   }
 
+  /**
+   * @return name of the template in the system configuration, or null for templates with overridden properties
+   */
+  public String getName() {
+    return name;
+  }
+
   public String getDescription() {
     return description;
   }
@@ -49,7 +71,50 @@ public class PentahoCacheTemplateConfiguration {
 
   public <K, V> Configuration<K, V> createConfiguration( Class<K> keyType, Class<V> valueType )
     throws IllegalArgumentException {
-    return cacheManager.createConfiguration( keyType, valueType, properties );
+    Configuration<K, V> configuration = cacheManager.createConfiguration( keyType, valueType, properties );
+    if ( name != null && configuration instanceof PentahoCacheConfiguration ) {
+      ( (PentahoCacheConfiguration<K, V>) configuration ).setTemplateName( name );
+    }
+    return configuration;
+  }
+
+  /**
+   * Creates the configuration of a cache bounded by weight, using the given weigher instead of the one named in the
+   * template properties. Fails if the caching service doesn't support size bounds.
+   */
+  public <K, V> Configuration<K, V> createConfiguration( Class<K> keyType, Class<V> valueType,
+                                                         Factory<? extends EntryWeigher<? super K, ? super V>> weigher )
+    throws IllegalArgumentException {
+    Configuration<K, V> configuration = createConfiguration( keyType, valueType );
+    Preconditions.checkArgument( configuration instanceof PentahoCacheConfiguration,
+      "Cache service does not support weighers: %s", cacheManager.getService() );
+
+    ( (PentahoCacheConfiguration<K, V>) configuration ).setWeigherFactory( weigher );
+    return configuration;
+  }
+
+  /**
+   * Creates the configuration of a cache integrated with a backing store: read-through if a cache loader factory is
+   * given and write-through if a cache writer factory is given (either can be null). Whether writes are immediate or
+   * delayed and batched depends on the template properties ({@link Constants#CONFIG_WRITE_BEHIND}).
+   */
+  public <K, V> Configuration<K, V> createConfiguration( Class<K> keyType, Class<V> valueType,
+                                                         Factory<? extends CacheLoader<K, V>> cacheLoaderFactory,
+                                                         Factory<? extends CacheWriter<? super K, ? super V>>
+                                                           cacheWriterFactory )
+    throws IllegalArgumentException {
+    Configuration<K, V> configuration = createConfiguration( keyType, valueType );
+    Preconditions.checkArgument( configuration instanceof MutableConfiguration,
+      "Cache service does not support cache loaders and writers: %s", cacheManager.getService() );
+
+    MutableConfiguration<K, V> mutableConfiguration = (MutableConfiguration<K, V>) configuration;
+    if ( cacheLoaderFactory != null ) {
+      mutableConfiguration.setCacheLoaderFactory( cacheLoaderFactory ).setReadThrough( true );
+    }
+    if ( cacheWriterFactory != null ) {
+      mutableConfiguration.setCacheWriterFactory( cacheWriterFactory ).setWriteThrough( true );
+    }
+    return configuration;
   }
 
   public <K, V> Cache<K, V> createCache( String cacheName, Class<K> keyType, Class<V> valueType )
@@ -57,6 +122,20 @@ public class PentahoCacheTemplateConfiguration {
     return cacheManager.createCache( cacheName, createConfiguration( keyType, valueType ) );
   }
 
+  public <K, V> Cache<K, V> createCache( String cacheName, Class<K> keyType, Class<V> valueType,
+                                         Factory<? extends EntryWeigher<? super K, ? super V>> weigher )
+    throws IllegalArgumentException {
+    return cacheManager.createCache( cacheName, createConfiguration( keyType, valueType, weigher ) );
+  }
+
+  public <K, V> Cache<K, V> createCache( String cacheName, Class<K> keyType, Class<V> valueType,
+                                         Factory<? extends CacheLoader<K, V>> cacheLoaderFactory,
+                                         Factory<? extends CacheWriter<? super K, ? super V>> cacheWriterFactory )
+    throws IllegalArgumentException {
+    return cacheManager.createCache( cacheName,
+      createConfiguration( keyType, valueType, cacheLoaderFactory, cacheWriterFactory ) );
+  }
+
   /**
    * Generates a new PentahoCacheTemplateConfiguration which merges the properties in the current
    * Configuration with those in templateOverrides, replacing existing entries if present.
@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Predicate;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Map of byte arrays in which a {@link StoreTier} keeps the encoded entries of a cache.
+ */
+interface ByteStore extends Closeable {
+  /**
+   * @return the value of the key, or null if missing
+   */
+  byte[] get( byte[] key );
+
+  boolean containsKey( byte[] key );
+
+  int size();
+
+  void put( byte[] key, byte[] value ) throws IOException;
+
+  void remove( byte[] key ) throws IOException;
+
+  /**
+   * Removes the entries whose value matches, e.g. the expired ones.
+   *
+   * @return the number of removed entries
+   */
+  int removeIf( Predicate<byte[]> predicate ) throws IOException;
+
+  /**
+   * Removes all the entries.
+   */
+  void clear() throws IOException;
+
+  /**
+   * Closes the store and releases whatever it holds, whereas closing a store may keep its entries.
+   */
+  void destroy() throws IOException;
+}
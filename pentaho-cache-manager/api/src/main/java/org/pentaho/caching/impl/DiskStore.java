@@ -0,0 +1,528 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent map of byte arrays, stored in a directory as an append-only log of memory-mapped segment files.
+ * <p>
+ * Each change appends a record (a tombstone for removals) to the active segment, and a new segment is started when
+ * it's full. An in-memory index points to the latest record of each key; it's rebuilt from the segments when the store
+ * is opened, without reading the values. Once most of the bytes of the sealed segments are superseded records, their
+ * live records are copied to the active segment and the sealed segments are deleted.
+ * <p>
+ * Records are checksummed, so a record torn by a crash ends the recovery of its segment. Only one store can use a
+ * directory at a time.
+ * <p>
+ * Segments are unmapped before their files are deleted, where the JVM allows it. Files which can't be deleted yet
+ * (e.g. on Windows, while still mapped) are kept, and deleted later, oldest first: newer files are only deleted after
+ * them, and entries cleared meanwhile are also removed with tombstones, so a restart never brings back stale records.
+ */
+final class DiskStore implements ByteStore {
+  static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+  private static final Logger logger = Logger.getLogger( DiskStore.class.getName() );
+
+  // key length, value length (or TOMBSTONE) and checksum, followed by the key and the value
+  private static final int HEADER_SIZE = 12;
+  private static final int TOMBSTONE = -1;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String LOCK_FILE = "store.lock";
+
+  private static final Predicate<File> DELETE_FILE = new Predicate<File>() {
+    @Override public boolean apply( File file ) {
+      return file.delete() || !file.exists();
+    }
+  };
+  // Unsafe.invokeCleaner, bound to the instance, or null if unavailable
+  private static final MethodHandle INVOKE_CLEANER = lookupCleaner();
+
+  private final File directory;
+  private final int segmentSize;
+  private final RandomAccessFile lockFile;
+  private final FileLock lock;
+  private final Predicate<File> deleteFile;
+
+  private final Map<ByteBuffer, Location> index = Maps.newHashMap();
+  // oldest first
+  private final List<Segment> sealed = Lists.newArrayList();
+  private Segment active;
+  // files of released segments which are yet to be deleted, oldest first
+  private final List<File> released = Lists.newArrayList();
+  private int nextSegmentId;
+  private boolean closed;
+
+  DiskStore( File directory, int segmentSize ) throws IOException {
+    this( directory, segmentSize, DELETE_FILE );
+  }
+
+  /**
+   * @param deleteFile deletes a file, returning false if it can't be deleted for now
+   */
+  DiskStore( File directory, int segmentSize, Predicate<File> deleteFile ) throws IOException {
+    Preconditions.checkArgument( segmentSize > HEADER_SIZE, "Invalid segment size: %s", segmentSize );
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.deleteFile = deleteFile;
+    if ( !directory.isDirectory() && !directory.mkdirs() ) {
+      throw new IOException( "Unable to create directory " + directory );
+    }
+
+    lockFile = new RandomAccessFile( new File( directory, LOCK_FILE ), "rw" );
+    FileLock fileLock;
+    try {
+      fileLock = lockFile.getChannel().tryLock();
+    } catch ( OverlappingFileLockException e ) {
+      fileLock = null;
+    }
+    if ( fileLock == null ) {
+      lockFile.close();
+      throw new IOException( "Directory is in use by another store: " + directory );
+    }
+    lock = fileLock;
+
+    try {
+      File[] files = listSegments();
+      for ( int i = 0; i < files.length; i++ ) {
+        File file = files[ i ];
+        int id = segmentId( file );
+        nextSegmentId = id + 1;
+        if ( i == files.length - 1 && file.length() <= segmentSize ) {
+          // appending goes on in the last segment, so that restarts don't leave small segments behind
+          active = new Segment( id, file, map( file, FileChannel.MapMode.READ_WRITE, segmentSize ) );
+          recover( active );
+        } else {
+          Segment segment = new Segment( id, file, map( file, FileChannel.MapMode.READ_ONLY, file.length() ) );
+          recover( segment );
+          sealed.add( segment );
+        }
+      }
+      if ( active == null ) {
+        active = createSegment( segmentSize );
+      }
+      maybeCompact();
+    } catch ( IOException | RuntimeException e ) {
+      lock.release();
+      lockFile.close();
+      throw e;
+    }
+  }
+
+  private File[] listSegments() {
+    File[] files = directory.listFiles( new FileFilter() {
+      @Override public boolean accept( File file ) {
+        return file.isFile() && segmentId( file ) >= 0;
+      }
+    } );
+    files = files != null ? files : new File[ 0 ];
+    Arrays.sort( files, new Comparator<File>() {
+      @Override public int compare( File a, File b ) {
+        return Ints.compare( segmentId( a ), segmentId( b ) );
+      }
+    } );
+    return files;
+  }
+
+  private static int segmentId( File file ) {
+    String name = file.getName();
+    if ( name.startsWith( SEGMENT_PREFIX ) && name.endsWith( SEGMENT_SUFFIX ) ) {
+      Integer id = Ints.tryParse( name.substring( SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length() ) );
+      return id != null ? id : -1;
+    }
+    return -1;
+  }
+
+  private static MappedByteBuffer map( File file, FileChannel.MapMode mode, long size ) throws IOException {
+    try ( RandomAccessFile randomAccessFile = new RandomAccessFile( file,
+      mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw" ) ) {
+      // the mapping remains valid after the file is closed
+      return randomAccessFile.getChannel().map( mode, 0, size );
+    }
+  }
+
+  private static MethodHandle lookupCleaner() {
+    try {
+      Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+      Field field = unsafeClass.getDeclaredField( "theUnsafe" );
+      field.setAccessible( true );
+      return MethodHandles.lookup().findVirtual( unsafeClass, "invokeCleaner",
+        MethodType.methodType( void.class, ByteBuffer.class ) ).bindTo( field.get( null ) );
+    } catch ( ReflectiveOperationException | RuntimeException e ) {
+      logger.log( Level.FINE, "Segments will be unmapped when garbage collected", e );
+      return null;
+    }
+  }
+
+  /**
+   * Unmaps the buffer of a segment which is no longer used, so that its file can be deleted right away.
+   */
+  private static void unmap( MappedByteBuffer buffer ) {
+    if ( INVOKE_CLEANER != null ) {
+      try {
+        INVOKE_CLEANER.invokeExact( (ByteBuffer) buffer );
+      } catch ( Throwable t ) {
+        logger.log( Level.FINE, "Unable to unmap a segment", t );
+      }
+    }
+  }
+
+  private Segment createSegment( int capacity ) throws IOException {
+    int id = nextSegmentId++;
+    File file = new File( directory, String.format( "%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX ) );
+    return new Segment( id, file, map( file, FileChannel.MapMode.READ_WRITE, capacity ) );
+  }
+
+  /**
+   * Indexes the records of a segment, up to the first record which is incomplete or fails its checksum.
+   */
+  private void recover( Segment segment ) {
+    ByteBuffer buffer = segment.buffer;
+    int position = 0;
+    while ( position + HEADER_SIZE <= buffer.capacity() ) {
+      int keyLength = buffer.getInt( position );
+      int valueLength = buffer.getInt( position + 4 );
+      if ( keyLength <= 0 || valueLength < TOMBSTONE ) {
+        // end of the written records
+        break;
+      }
+      long length = (long) HEADER_SIZE + keyLength + Math.max( valueLength, 0 );
+      if ( position + length > buffer.capacity() || checksum( buffer, position, (int) length )
+        != buffer.getInt( position + 8 ) ) {
+        logger.log( Level.WARNING, "Discarding incomplete record of " + segment.file + " at " + position );
+        break;
+      }
+
+      byte[] key = new byte[ keyLength ];
+      ( (ByteBuffer) buffer.duplicate().position( position + HEADER_SIZE ) ).get( key );
+      if ( valueLength == TOMBSTONE ) {
+        unindex( key );
+      } else {
+        index( key, new Location( segment, position, (int) length ) );
+      }
+      position += length;
+    }
+    segment.size = position;
+  }
+
+  /**
+   * Checksum of a record, skipping its checksum field.
+   */
+  private static int checksum( ByteBuffer buffer, int position, int length ) {
+    CRC32 crc = new CRC32();
+    ByteBuffer record = buffer.duplicate();
+    record.limit( position + 8 ).position( position );
+    crc.update( record );
+    record.limit( position + length ).position( position + HEADER_SIZE );
+    crc.update( record );
+    return (int) crc.getValue();
+  }
+
+  private void index( byte[] key, Location location ) {
+    Location previous = index.put( ByteBuffer.wrap( key ), location );
+    if ( previous != null ) {
+      previous.segment.live -= previous.length;
+    }
+    location.segment.live += location.length;
+  }
+
+  private void unindex( byte[] key ) {
+    Location previous = index.remove( ByteBuffer.wrap( key ) );
+    if ( previous != null ) {
+      previous.segment.live -= previous.length;
+    }
+  }
+
+  @Override public synchronized byte[] get( byte[] key ) {
+    checkOpen();
+    Location location = index.get( ByteBuffer.wrap( key ) );
+    if ( location == null ) {
+      return null;
+    }
+    ByteBuffer buffer = location.segment.buffer;
+    byte[] value = new byte[ buffer.getInt( location.offset + 4 ) ];
+    ( (ByteBuffer) buffer.duplicate().position( location.offset + HEADER_SIZE + key.length ) ).get( value );
+    return value;
+  }
+
+  @Override public synchronized boolean containsKey( byte[] key ) {
+    checkOpen();
+    return index.containsKey( ByteBuffer.wrap( key ) );
+  }
+
+  @Override public synchronized int size() {
+    checkOpen();
+    return index.size();
+  }
+
+  @Override public synchronized void put( byte[] key, byte[] value ) throws IOException {
+    checkOpen();
+    index( key, append( record( key, value ) ) );
+    maybeCompact();
+  }
+
+  @Override public synchronized void remove( byte[] key ) throws IOException {
+    checkOpen();
+    if ( index.containsKey( ByteBuffer.wrap( key ) ) ) {
+      append( record( key, null ) );
+      unindex( key );
+      maybeCompact();
+    }
+  }
+
+  @Override public synchronized int removeIf( Predicate<byte[]> predicate ) throws IOException {
+    checkOpen();
+    List<byte[]> removed = Lists.newArrayList();
+    for ( ByteBuffer key : index.keySet() ) {
+      byte[] value = get( key.array() );
+      if ( predicate.apply( value ) ) {
+        removed.add( key.array() );
+      }
+    }
+    for ( byte[] key : removed ) {
+      append( record( key, null ) );
+      unindex( key );
+    }
+    maybeCompact();
+    return removed.size();
+  }
+
+  private static ByteBuffer record( byte[] key, byte[] value ) {
+    Preconditions.checkArgument( key.length > 0, "Empty keys can not be stored" );
+    ByteBuffer record = ByteBuffer.allocate( HEADER_SIZE + key.length + ( value != null ? value.length : 0 ) );
+    record.putInt( key.length ).putInt( value != null ? value.length : TOMBSTONE ).putInt( 0 ).put( key );
+    if ( value != null ) {
+      record.put( value );
+    }
+    record.putInt( 8, checksum( record, 0, record.capacity() ) );
+    record.flip();
+    return record;
+  }
+
+  private Location append( ByteBuffer record ) throws IOException {
+    int length = record.remaining();
+    if ( active.size + length > active.buffer.capacity() ) {
+      roll( length );
+    }
+    int position = active.size;
+    ( (ByteBuffer) active.buffer.duplicate().position( position ) ).put( record );
+    active.size += length;
+    return new Location( active, position, length );
+  }
+
+  private void roll( int recordLength ) throws IOException {
+    active.buffer.force();
+    sealed.add( active );
+    active = createSegment( Math.max( segmentSize, recordLength ) );
+    deleteReleased();
+  }
+
+  private void maybeCompact() throws IOException {
+    if ( sealed.isEmpty() ) {
+      return;
+    }
+    long size = 0;
+    long live = 0;
+    for ( Segment segment : sealed ) {
+      size += segment.size;
+      live += segment.live;
+    }
+    if ( size - live > live ) {
+      compact();
+    }
+  }
+
+  /**
+   * Copies the live records of the sealed segments to the active one, and deletes the sealed segments, oldest first
+   * (so that tombstones are never deleted before the records they supersede).
+   */
+  private void compact() throws IOException {
+    List<Segment> compacted = ImmutableList.copyOf( sealed );
+    Set<Segment> compactedSet = Sets.newHashSet( compacted );
+    for ( Map.Entry<ByteBuffer, Location> entry : index.entrySet() ) {
+      Location location = entry.getValue();
+      if ( compactedSet.contains( location.segment ) ) {
+        ByteBuffer record = location.segment.buffer.duplicate();
+        record.limit( location.offset + location.length ).position( location.offset );
+        Location copy = append( record );
+        location.segment.live -= location.length;
+        copy.segment.live += copy.length;
+        entry.setValue( copy );
+      }
+    }
+    // segments sealed meanwhile were already forced
+    active.buffer.force();
+
+    sealed.removeAll( compacted );
+    release( compacted );
+  }
+
+  /**
+   * Unmaps segments which are no longer referenced, and deletes their files.
+   */
+  private void release( List<Segment> segments ) {
+    for ( Segment segment : segments ) {
+      unmap( segment.buffer );
+      released.add( segment.file );
+    }
+    deleteReleased();
+  }
+
+  /**
+   * Deletes the files of the released segments, oldest first, up to the first one which can't be deleted yet.
+   *
+   * @return true if all of them were deleted
+   */
+  private boolean deleteReleased() {
+    while ( !released.isEmpty() ) {
+      File file = released.get( 0 );
+      if ( !deleteFile.apply( file ) ) {
+        logger.log( Level.FINE, "Unable to delete " + file + " for now" );
+        return false;
+      }
+      released.remove( 0 );
+    }
+    return true;
+  }
+
+  @Override public synchronized void clear() throws IOException {
+    checkOpen();
+    List<ByteBuffer> keys = ImmutableList.copyOf( index.keySet() );
+    releaseSegments();
+    active = createSegment( segmentSize );
+    if ( !released.isEmpty() ) {
+      // the records of the files left behind would be recovered on restart
+      for ( ByteBuffer key : keys ) {
+        append( record( key.array(), null ) );
+      }
+    }
+  }
+
+  private void releaseSegments() {
+    index.clear();
+    sealed.add( active );
+    release( ImmutableList.copyOf( sealed ) );
+    sealed.clear();
+  }
+
+  /**
+   * Flushes the changes to disk, and releases the directory.
+   */
+  @Override public synchronized void close() throws IOException {
+    if ( !closed ) {
+      try {
+        active.buffer.force();
+        deleteReleased();
+      } finally {
+        unlock();
+      }
+      // nothing reads the segments anymore
+      unmap( active.buffer );
+      for ( Segment segment : sealed ) {
+        unmap( segment.buffer );
+      }
+    }
+  }
+
+  private void unlock() throws IOException {
+    closed = true;
+    try {
+      lock.release();
+    } finally {
+      lockFile.close();
+    }
+  }
+
+  /**
+   * Closes the store and deletes its files.
+   */
+  @Override public synchronized void destroy() throws IOException {
+    if ( !closed ) {
+      releaseSegments();
+      unlock();
+    }
+    File[] files = directory.listFiles();
+    for ( File file : files != null ? files : new File[ 0 ] ) {
+      if ( !deleteFile.apply( file ) ) {
+        throw new IOException( "Unable to delete " + file );
+      }
+    }
+    if ( !directory.delete() ) {
+      throw new IOException( "Unable to delete " + directory );
+    }
+  }
+
+  private void checkOpen() {
+    Preconditions.checkState( !closed, "Store is closed" );
+  }
+
+  private static final class Segment {
+    private final int id;
+    private final File file;
+    private final MappedByteBuffer buffer;
+    // bytes written, and bytes of the records which are still indexed
+    private int size;
+    private long live;
+
+    Segment( int id, File file, MappedByteBuffer buffer ) {
+      this.id = id;
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    @Override public String toString() {
+      return "Segment " + id;
+    }
+  }
+
+  private static final class Location {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+
+    Location( Segment segment, int offset, int length ) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
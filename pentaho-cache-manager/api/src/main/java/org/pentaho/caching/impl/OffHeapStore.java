@@ -0,0 +1,248 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Map of byte arrays stored off the Java heap, in direct buffers, so that the garbage collector neither scans nor
+ * copies the entries it holds.
+ * <p>
+ * Memory is allocated in pages of the same size, up to the byte budget of the store. Records are appended to the
+ * active page, and a new page is started when it's full; an index on the heap points to the latest record of each key.
+ * Once the budget is used up, the oldest page is recycled: the records which were read since they were written are
+ * compacted at its start, the others are evicted, and the page becomes the active one. Hot entries survive a round
+ * of recycling this way, like with a clock.
+ * <p>
+ * Entries bigger than a page are not stored.
+ */
+final class OffHeapStore implements ByteStore {
+  private static final Logger logger = Logger.getLogger( OffHeapStore.class.getName() );
+
+  // key length and value length, followed by the key and the value
+  private static final int HEADER_SIZE = 8;
+
+  private final int pageSize;
+  private int maxPages;
+
+  private final Map<ByteBuffer, Location> index = Maps.newHashMap();
+  // oldest first, the last one is active
+  private final Deque<Page> pages = new ArrayDeque<Page>();
+  private long evictions;
+  private boolean closed;
+
+  /**
+   * @param maxBytes byte budget, rounded down to a whole number of pages (at least one)
+   */
+  OffHeapStore( long maxBytes, int pageSize ) {
+    Preconditions.checkArgument( pageSize > HEADER_SIZE, "Invalid page size: %s", pageSize );
+    Preconditions.checkArgument( maxBytes >= pageSize, "Off-heap budget %s is smaller than a page", maxBytes );
+    this.pageSize = pageSize;
+    this.maxPages = Ints.saturatedCast( maxBytes / pageSize );
+  }
+
+  @Override public synchronized byte[] get( byte[] key ) {
+    checkOpen();
+    Location location = index.get( ByteBuffer.wrap( key ) );
+    if ( location == null ) {
+      return null;
+    }
+    location.accessed = true;
+    return value( location, key.length );
+  }
+
+  private static byte[] value( Location location, int keyLength ) {
+    ByteBuffer buffer = location.page.buffer;
+    byte[] value = new byte[ buffer.getInt( location.offset + 4 ) ];
+    ( (ByteBuffer) buffer.duplicate().position( location.offset + HEADER_SIZE + keyLength ) ).get( value );
+    return value;
+  }
+
+  @Override public synchronized boolean containsKey( byte[] key ) {
+    checkOpen();
+    return index.containsKey( ByteBuffer.wrap( key ) );
+  }
+
+  @Override public synchronized int size() {
+    checkOpen();
+    return index.size();
+  }
+
+  /**
+   * @return bytes of the pages allocated so far
+   */
+  synchronized long getAllocatedBytes() {
+    return (long) pages.size() * pageSize;
+  }
+
+  /**
+   * @return number of entries evicted to make room for others
+   */
+  synchronized long getEvictions() {
+    return evictions;
+  }
+
+  @Override public synchronized void put( byte[] key, byte[] value ) {
+    checkOpen();
+    Preconditions.checkArgument( key.length > 0, "Empty keys can not be stored" );
+    // the previous record is left for the page to be recycled
+    index.remove( ByteBuffer.wrap( key ) );
+
+    int length = HEADER_SIZE + key.length + value.length;
+    if ( length > pageSize ) {
+      logger.fine( "Entry of " + length + " bytes is bigger than an off-heap page, not storing it" );
+      return;
+    }
+    Page page = pages.peekLast();
+    while ( page == null || page.size + length > pageSize ) {
+      page = pages.size() < maxPages ? allocate() : recycle();
+    }
+    int offset = page.size;
+    ByteBuffer buffer = (ByteBuffer) page.buffer.duplicate().position( offset );
+    buffer.putInt( key.length ).putInt( value.length ).put( key ).put( value );
+    page.size += length;
+    index.put( ByteBuffer.wrap( key ), new Location( page, offset ) );
+  }
+
+  private Page allocate() {
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.allocateDirect( pageSize );
+    } catch ( OutOfMemoryError e ) {
+      if ( pages.isEmpty() ) {
+        throw e;
+      }
+      // direct memory is limited separately from the heap (-XX:MaxDirectMemorySize)
+      logger.warning( "Out of direct memory, limiting off-heap store to " + pages.size() + " pages" );
+      maxPages = pages.size();
+      return recycle();
+    }
+    Page page = new Page( buffer );
+    pages.addLast( page );
+    return page;
+  }
+
+  private Page recycle() {
+    Page page = pages.removeFirst();
+    ByteBuffer buffer = page.buffer;
+    int read = 0;
+    int write = 0;
+    while ( read < page.size ) {
+      int keyLength = buffer.getInt( read );
+      int length = HEADER_SIZE + keyLength + buffer.getInt( read + 4 );
+      byte[] key = new byte[ keyLength ];
+      ( (ByteBuffer) buffer.duplicate().position( read + HEADER_SIZE ) ).get( key );
+
+      ByteBuffer indexKey = ByteBuffer.wrap( key );
+      Location location = index.get( indexKey );
+      if ( location != null && location.page == page && location.offset == read ) {
+        if ( location.accessed ) {
+          // a second chance, until the next time the page is recycled
+          location.accessed = false;
+          if ( write < read ) {
+            byte[] record = new byte[ length ];
+            ( (ByteBuffer) buffer.duplicate().position( read ) ).get( record );
+            ( (ByteBuffer) buffer.duplicate().position( write ) ).put( record );
+            location.offset = write;
+          }
+          write += length;
+        } else {
+          index.remove( indexKey );
+          evictions++;
+        }
+      }
+      read += length;
+    }
+    page.size = write;
+    pages.addLast( page );
+    return page;
+  }
+
+  @Override public synchronized void remove( byte[] key ) {
+    checkOpen();
+    index.remove( ByteBuffer.wrap( key ) );
+  }
+
+  @Override public synchronized int removeIf( Predicate<byte[]> predicate ) {
+    checkOpen();
+    List<byte[]> removed = Lists.newArrayList();
+    for ( Map.Entry<ByteBuffer, Location> entry : index.entrySet() ) {
+      // not a read, the entry doesn't get a second chance
+      byte[] key = entry.getKey().array();
+      if ( predicate.apply( value( entry.getValue(), key.length ) ) ) {
+        removed.add( key );
+      }
+    }
+    for ( byte[] key : removed ) {
+      index.remove( ByteBuffer.wrap( key ) );
+    }
+    return removed.size();
+  }
+
+  /**
+   * Removes all the entries, and releases the pages.
+   */
+  @Override public synchronized void clear() {
+    checkOpen();
+    index.clear();
+    pages.clear();
+  }
+
+  /**
+   * Releases the pages, which are freed once garbage collected: off-heap entries don't survive the cache.
+   */
+  @Override public synchronized void close() {
+    closed = true;
+    index.clear();
+    pages.clear();
+  }
+
+  @Override public void destroy() {
+    close();
+  }
+
+  private void checkOpen() {
+    Preconditions.checkState( !closed, "Store is closed" );
+  }
+
+  private static final class Page {
+    private final ByteBuffer buffer;
+    private int size;
+
+    private Page( ByteBuffer buffer ) {
+      this.buffer = buffer;
+    }
+  }
+
+  private static final class Location {
+    private final Page page;
+    private int offset;
+    private boolean accessed;
+
+    private Location( Page page, int offset ) {
+      this.page = page;
+      this.offset = offset;
+    }
+  }
+}
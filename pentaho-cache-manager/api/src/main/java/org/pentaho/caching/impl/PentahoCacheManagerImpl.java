@@ -12,26 +12,49 @@
 
 package org.pentaho.caching.impl;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.EntryCodec;
+import org.pentaho.caching.api.JavaSerializationCodec;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
 import org.pentaho.caching.api.PentahoCacheManager;
 import org.pentaho.caching.api.PentahoCacheProvidingService;
 import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
 import org.pentaho.caching.api.PentahoCacheTemplateConfiguration;
+import org.pentaho.caching.spi.AbstractCacheManager;
 
 import javax.cache.Cache;
+import javax.cache.CacheException;
 import javax.cache.CacheManager;
 import javax.cache.configuration.Configuration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import javax.cache.management.CacheStatisticsMXBean;
 import javax.cache.spi.CachingProvider;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author nhudak
  */
 public class PentahoCacheManagerImpl implements PentahoCacheManager {
+  private static final Logger logger = Logger.getLogger( PentahoCacheManagerImpl.class.getName() );
+
   private final PentahoCacheSystemConfiguration systemConfiguration;
   private final PentahoCacheProvidingService service;
   private final CacheManager cacheManager;
+  private final ConcurrentMap<String, TieredCache<?, ?>> tieredCaches = Maps.newConcurrentMap();
 
   public PentahoCacheManagerImpl( PentahoCacheSystemConfiguration systemConfiguration,
                                   PentahoCacheProvidingService service ) {
@@ -60,25 +83,170 @@ public class PentahoCacheManagerImpl implements PentahoCacheManager {
     return delegate().getProperties();
   }
 
+  @SuppressWarnings( "unchecked" )
   @Override public <K, V, C extends Configuration<K, V>> Cache<K, V> createCache( String cacheName, C configuration )
     throws IllegalArgumentException {
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      PentahoCacheConfiguration<K, V> pentahoConfiguration = (PentahoCacheConfiguration<K, V>) configuration;
+      if ( pentahoConfiguration.isPersistent() || pentahoConfiguration.getOffHeapBytes() > 0 ) {
+        return createTieredCache( cacheName, pentahoConfiguration );
+      }
+    }
     return delegate().createCache( cacheName, configuration );
   }
 
+  /**
+   * Creates a cache of the provider whose loader and writer are a {@link StoreTier}, which in turn calls the configured
+   * loader and writer: the off-heap tier if any, backed by the disk tier of persistent caches.
+   */
+  @SuppressWarnings( "unchecked" )
+  private <K, V> Cache<K, V> createTieredCache( String cacheName, PentahoCacheConfiguration<K, V> configuration ) {
+    if ( tieredCaches.containsKey( cacheName ) ) {
+      throw new CacheException( "Cache " + cacheName + " already exists" );
+    }
+
+    EntryCodec<K, V> codec;
+    if ( configuration.getEntryCodecFactory() != null ) {
+      codec = configuration.getEntryCodecFactory().create();
+    } else {
+      ClassLoader classLoader = configuration.getValueType().getClassLoader();
+      codec = new JavaSerializationCodec<K, V>( classLoader != null ? classLoader : getClassLoader() );
+    }
+    CacheLoader<K, V> cacheLoader = null;
+    if ( configuration.isReadThrough() && configuration.getCacheLoaderFactory() != null ) {
+      cacheLoader = configuration.getCacheLoaderFactory().create();
+    }
+    CacheWriter<K, V> cacheWriter = null;
+    if ( configuration.isWriteThrough() && configuration.getCacheWriterFactory() != null ) {
+      // the writer accepts supertypes of K and V
+      cacheWriter = (CacheWriter<K, V>) configuration.getCacheWriterFactory().create();
+    }
+    ExpiryPolicy expiryPolicy = configuration.getExpiryPolicyFactory().create();
+
+    StoreTier<K, V> tier = null;
+    if ( configuration.isPersistent() ) {
+      DiskStore store;
+      try {
+        store = new DiskStore( getPersistenceDirectory( cacheName ), DiskStore.DEFAULT_SEGMENT_SIZE );
+        tier = openTier( cacheName, store, codec, expiryPolicy, cacheLoader, cacheWriter );
+      } catch ( IOException e ) {
+        throw new CacheException( "Unable to open the disk tier of cache " + cacheName, e );
+      }
+    }
+    if ( configuration.getOffHeapBytes() > 0 ) {
+      StoreTier<K, V> diskTier = tier;
+      try {
+        OffHeapStore store = new OffHeapStore( configuration.getOffHeapBytes(), configuration.getOffHeapPageSize() );
+        tier = openTier( cacheName, store, codec, expiryPolicy, diskTier != null ? diskTier : cacheLoader,
+          diskTier != null ? diskTier : cacheWriter );
+      } catch ( IOException | RuntimeException e ) {
+        if ( diskTier != null ) {
+          closeQuietly( cacheName, diskTier );
+        }
+        throw new CacheException( "Unable to open the off-heap tier of cache " + cacheName, e );
+      }
+    }
+
+    PentahoCacheConfiguration<K, V> tierConfiguration = configuration.copy();
+    tierConfiguration.setPersistent( false );
+    tierConfiguration.setOffHeap( 0, tierConfiguration.getOffHeapPageSize() );
+    tierConfiguration.setCacheLoaderFactory( new FactoryBuilder.SingletonFactory<CacheLoader<K, V>>( tier ) );
+    tierConfiguration.setCacheWriterFactory( new FactoryBuilder.SingletonFactory<CacheWriter<K, V>>( tier ) );
+    tierConfiguration.setReadThrough( true );
+    tierConfiguration.setWriteThrough( true );
+
+    Cache<K, V> cache;
+    try {
+      cache = delegate().createCache( cacheName, tierConfiguration );
+    } catch ( RuntimeException e ) {
+      closeQuietly( cacheName, tier );
+      throw e;
+    }
+
+    TieredCache<K, V> tieredCache = new TieredCache<K, V>( this, cache, configuration, tier );
+    tieredCaches.put( cacheName, tieredCache );
+    return tieredCache;
+  }
+
+  private static <K, V> StoreTier<K, V> openTier( String cacheName, ByteStore store, EntryCodec<K, V> codec,
+                                                  ExpiryPolicy expiryPolicy, CacheLoader<K, V> cacheLoader,
+                                                  CacheWriter<K, V> cacheWriter ) throws IOException {
+    try {
+      return new StoreTier<K, V>( store, codec, expiryPolicy, cacheLoader, cacheWriter );
+    } catch ( IOException | RuntimeException e ) {
+      closeQuietly( cacheName, store );
+      throw e;
+    }
+  }
+
+  /**
+   * Directory of the disk tier of a cache, in the configured persistence directory, or else in the karaf data
+   * directory.
+   */
+  private File getPersistenceDirectory( String cacheName ) {
+    Map<String, String> globalProperties = systemConfiguration.getGlobalProperties();
+    String path = globalProperties != null ? globalProperties.get( Constants.CONFIG_PERSISTENCE_DIRECTORY ) : null;
+    File directory;
+    if ( !Strings.isNullOrEmpty( path ) ) {
+      directory = new File( path );
+    } else if ( !Strings.isNullOrEmpty( System.getProperty( "karaf.data" ) ) ) {
+      directory = new File( System.getProperty( "karaf.data" ), "cache" );
+    } else {
+      directory = new File( System.getProperty( "java.io.tmpdir" ), "pentaho-cache" );
+    }
+    // cache names are free form, the hash tells apart names which are sanitized alike
+    String name = cacheName.replaceAll( "[^A-Za-z0-9._-]", "_" ) + "-" + Integer.toHexString( cacheName.hashCode() );
+    return new File( directory, name );
+  }
+
+  private static void closeQuietly( String cacheName, Closeable closeable ) {
+    try {
+      closeable.close();
+    } catch ( IOException e ) {
+      logger.log( Level.WARNING, "Unable to close a storage tier of cache " + cacheName, e );
+    }
+  }
+
+  /**
+   * Called when a tiered cache is closed.
+   */
+  void release( String cacheName, TieredCache<?, ?> cache ) {
+    tieredCaches.remove( cacheName, cache );
+  }
+
   @Override public <K, V> Cache<K, V> getCache( String cacheName, Class<K> keyType, Class<V> valueType ) {
-    return delegate().getCache( cacheName, keyType, valueType );
+    Cache<K, V> cache = delegate().getCache( cacheName, keyType, valueType );
+    return cache != null ? this.<K, V>tiered( cacheName, cache ) : null;
   }
 
   @Override public <K, V> Cache<K, V> getCache( String cacheName ) {
-    return delegate().getCache( cacheName );
+    Cache<K, V> cache = delegate().getCache( cacheName );
+    return cache != null ? this.<K, V>tiered( cacheName, cache ) : null;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private <K, V> Cache<K, V> tiered( String cacheName, Cache<K, V> cache ) {
+    TieredCache<?, ?> tieredCache = tieredCaches.get( cacheName );
+    return tieredCache != null ? (Cache<K, V>) tieredCache : cache;
   }
 
   @Override public Iterable<String> getCacheNames() {
     return delegate().getCacheNames();
   }
 
+  /**
+   * Destroying a tiered cache also deletes the entries of its tiers, including the files of its disk tier.
+   */
   @Override public void destroyCache( String cacheName ) {
+    TieredCache<?, ?> tieredCache = tieredCaches.remove( cacheName );
     delegate().destroyCache( cacheName );
+    if ( tieredCache != null ) {
+      try {
+        tieredCache.getTier().destroy();
+      } catch ( IOException e ) {
+        throw new CacheException( "Unable to delete the storage tiers of cache " + cacheName, e );
+      }
+    }
   }
 
   @Override public void enableManagement( String cacheName, boolean enabled ) {
@@ -90,6 +258,10 @@ public class PentahoCacheManagerImpl implements PentahoCacheManager {
   }
 
   @Override public void close() {
+    // tiered caches flush and release their tiers when closed
+    for ( TieredCache<?, ?> tieredCache : ImmutableList.copyOf( tieredCaches.values() ) ) {
+      tieredCache.close();
+    }
     delegate().close();
   }
 
@@ -121,4 +293,11 @@ public class PentahoCacheManagerImpl implements PentahoCacheManager {
   @Override public Map<String, PentahoCacheTemplateConfiguration> getTemplates() {
     return systemConfiguration.createTemplates( this );
   }
+
+  @Override public CacheStatisticsMXBean getCacheStatistics( String cacheName ) {
+    if ( delegate() instanceof AbstractCacheManager ) {
+      return ( (AbstractCacheManager) delegate() ).getCacheStatistics( cacheName );
+    }
+    return null;
+  }
 }
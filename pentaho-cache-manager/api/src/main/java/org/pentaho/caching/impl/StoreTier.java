@@ -0,0 +1,307 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.pentaho.caching.api.EntryCodec;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage tier of a cache, plugged into the cache as its loader and writer: entries are kept in a {@link ByteStore},
+ * on disk or off-heap, as they are written to the cache, and entries missing from memory are read back from the store
+ * when they are first requested.
+ * <p>
+ * The loader and writer of the cache configuration are called as well: the loader for entries missing from the store
+ * (and the loaded entries are stored), and the writer before the store is changed. They may be another tier, e.g. the
+ * off-heap tier of a persistent cache is in front of its disk tier.
+ * <p>
+ * Entries are stored with the time they expire, according to the creation expiry of the cache's policy, so that
+ * expired entries aren't read back once they expired in memory, nor after a restart. Expired entries are removed from
+ * the store when the tier is opened, or else when they are read.
+ */
+class StoreTier<K, V> implements CacheLoader<K, V>, CacheWriter<K, V>, Closeable {
+  private static final Logger logger = Logger.getLogger( StoreTier.class.getName() );
+
+  // the value is prefixed by the time it expires at
+  private static final int DEADLINE_SIZE = 8;
+
+  private final ByteStore store;
+  private final EntryCodec<K, V> codec;
+  private final ExpiryPolicy expiryPolicy;
+  private final Clock clock;
+  private final CacheLoader<K, V> cacheLoader;
+  private final CacheWriter<K, V> cacheWriter;
+  private boolean closed;
+
+  /**
+   * @param cacheLoader loader of the entries missing from the store, or null
+   * @param cacheWriter writer of the changes to the cache, or null
+   */
+  StoreTier( ByteStore store, EntryCodec<K, V> codec, ExpiryPolicy expiryPolicy, CacheLoader<K, V> cacheLoader,
+             CacheWriter<K, V> cacheWriter ) throws IOException {
+    this( store, codec, expiryPolicy, cacheLoader, cacheWriter, Clock.systemUTC() );
+  }
+
+  StoreTier( ByteStore store, EntryCodec<K, V> codec, ExpiryPolicy expiryPolicy, CacheLoader<K, V> cacheLoader,
+             CacheWriter<K, V> cacheWriter, Clock clock ) throws IOException {
+    this.store = store;
+    this.codec = codec;
+    this.expiryPolicy = expiryPolicy;
+    this.cacheLoader = cacheLoader;
+    this.cacheWriter = cacheWriter;
+    this.clock = clock;
+
+    final long now = clock.millis();
+    int expired = store.removeIf( new Predicate<byte[]>() {
+      @Override public boolean apply( byte[] value ) {
+        return isExpired( value, now );
+      }
+    } );
+    if ( expired > 0 ) {
+      logger.fine( "Removed " + expired + " expired entries from the store" );
+    }
+  }
+
+  private static boolean isExpired( byte[] value, long now ) {
+    return value.length < DEADLINE_SIZE || ByteBuffer.wrap( value ).getLong() <= now;
+  }
+
+  private long deadline() {
+    try {
+      Duration duration = expiryPolicy != null ? expiryPolicy.getExpiryForCreation() : null;
+      return duration != null ? duration.getAdjustedTime( clock.millis() ) : Long.MAX_VALUE;
+    } catch ( RuntimeException e ) {
+      // the cache keeps the entry then
+      return Long.MAX_VALUE;
+    }
+  }
+
+  private V read( K key ) {
+    byte[] encodedKey;
+    try {
+      encodedKey = codec.encodeKey( key );
+    } catch ( IOException e ) {
+      throw new CacheLoaderException( e );
+    }
+    byte[] value = store.get( encodedKey );
+    if ( value == null ) {
+      return null;
+    }
+    try {
+      if ( !isExpired( value, clock.millis() ) ) {
+        return codec.decodeValue( Arrays.copyOfRange( value, DEADLINE_SIZE, value.length ) );
+      }
+    } catch ( IOException | RuntimeException e ) {
+      // e.g. stored by an incompatible version of its class
+      logger.log( Level.WARNING, "Discarding stored entry which can not be decoded: " + key, e );
+    }
+    try {
+      store.remove( encodedKey );
+    } catch ( IOException e ) {
+      throw new CacheLoaderException( e );
+    }
+    return null;
+  }
+
+  private void store( K key, V value ) {
+    long deadline = deadline();
+    try {
+      if ( deadline > clock.millis() ) {
+        byte[] encodedValue = codec.encodeValue( value );
+        store.put( codec.encodeKey( key ), ByteBuffer.allocate( DEADLINE_SIZE + encodedValue.length )
+          .putLong( deadline ).put( encodedValue ).array() );
+      } else {
+        store.remove( codec.encodeKey( key ) );
+      }
+    } catch ( IOException e ) {
+      throw new CacheWriterException( e );
+    }
+  }
+
+  private void remove( Object key ) {
+    try {
+      // only keys of the cache are deleted
+      @SuppressWarnings( "unchecked" ) K cacheKey = (K) key;
+      store.remove( codec.encodeKey( cacheKey ) );
+    } catch ( IOException e ) {
+      throw new CacheWriterException( e );
+    }
+  }
+
+  /**
+   * @return the tier behind this one, if any
+   */
+  private StoreTier<K, V> inner() {
+    return cacheLoader instanceof StoreTier ? (StoreTier<K, V>) cacheLoader : null;
+  }
+
+  boolean containsKey( K key ) {
+    byte[] value;
+    try {
+      value = store.get( codec.encodeKey( key ) );
+    } catch ( IOException e ) {
+      throw new CacheException( e );
+    }
+    if ( value != null && !isExpired( value, clock.millis() ) ) {
+      return true;
+    }
+    StoreTier<K, V> inner = inner();
+    return inner != null && inner.containsKey( key );
+  }
+
+  @Override public V load( K key ) throws CacheLoaderException {
+    V value = read( key );
+    if ( value == null && cacheLoader != null ) {
+      value = cacheLoader.load( key );
+      if ( value != null ) {
+        store( key, value );
+      }
+    }
+    return value;
+  }
+
+  @Override public Map<K, V> loadAll( Iterable<? extends K> keys ) throws CacheLoaderException {
+    Map<K, V> values = Maps.newHashMap();
+    List<K> missing = Lists.newArrayList();
+    for ( K key : keys ) {
+      V value = read( key );
+      if ( value != null ) {
+        values.put( key, value );
+      } else {
+        missing.add( key );
+      }
+    }
+    if ( !missing.isEmpty() && cacheLoader != null ) {
+      Map<K, V> loaded = cacheLoader.loadAll( missing );
+      for ( Map.Entry<K, V> entry : loaded != null ? loaded.entrySet() : Maps.<K, V>newHashMap().entrySet() ) {
+        if ( entry.getValue() != null ) {
+          store( entry.getKey(), entry.getValue() );
+          values.put( entry.getKey(), entry.getValue() );
+        }
+      }
+    }
+    return values;
+  }
+
+  @Override public void write( Cache.Entry<? extends K, ? extends V> entry ) throws CacheWriterException {
+    if ( cacheWriter != null ) {
+      cacheWriter.write( entry );
+    }
+    store( entry.getKey(), entry.getValue() );
+  }
+
+  /**
+   * Entries are only stored if the cache writer writes all of them.
+   */
+  @Override public void writeAll( Collection<Cache.Entry<? extends K, ? extends V>> entries )
+    throws CacheWriterException {
+    List<Cache.Entry<? extends K, ? extends V>> written = ImmutableList.copyOf( entries );
+    if ( cacheWriter != null ) {
+      cacheWriter.writeAll( entries );
+    }
+    for ( Cache.Entry<? extends K, ? extends V> entry : written ) {
+      store( entry.getKey(), entry.getValue() );
+    }
+    entries.clear();
+  }
+
+  @Override public void delete( Object key ) throws CacheWriterException {
+    if ( cacheWriter != null ) {
+      cacheWriter.delete( key );
+    }
+    remove( key );
+  }
+
+  @Override public void deleteAll( Collection<?> keys ) throws CacheWriterException {
+    List<?> deleted = ImmutableList.copyOf( keys );
+    if ( cacheWriter != null ) {
+      cacheWriter.deleteAll( keys );
+    }
+    for ( Object key : deleted ) {
+      remove( key );
+    }
+    keys.clear();
+  }
+
+  /**
+   * Removes all the entries from the store, and from the tiers behind it, without calling the cache writer.
+   */
+  void clear() {
+    try {
+      store.clear();
+    } catch ( IOException e ) {
+      throw new CacheException( e );
+    }
+    StoreTier<K, V> inner = inner();
+    if ( inner != null ) {
+      inner.clear();
+    }
+  }
+
+  /**
+   * Closes the store, and the cache writer if it's {@link Closeable}, e.g. the tier behind this one. The cache closes
+   * its writer, and so the tier, but tiered caches close it as well, in case the provider doesn't.
+   */
+  @Override public synchronized void close() throws IOException {
+    if ( closed ) {
+      return;
+    }
+    closed = true;
+    try {
+      store.close();
+    } finally {
+      if ( cacheWriter instanceof Closeable ) {
+        ( (Closeable) cacheWriter ).close();
+      }
+    }
+  }
+
+  /**
+   * Closes the tier, and deletes the entries of its store and of the tiers behind it.
+   */
+  void destroy() throws IOException {
+    try {
+      close();
+    } finally {
+      try {
+        store.destroy();
+      } finally {
+        StoreTier<K, V> inner = inner();
+        if ( inner != null ) {
+          inner.destroy();
+        }
+      }
+    }
+  }
+}
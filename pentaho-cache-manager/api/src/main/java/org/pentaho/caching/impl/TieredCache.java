@@ -0,0 +1,198 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache backed by {@link StoreTier}s, off-heap and/or on disk, the first of which is the loader and writer of the
+ * provider's cache.
+ * <p>
+ * Entries are stored in the tiers as they are written, and read back when they are requested while missing from the
+ * heap, e.g. once evicted from it, or after a restart for persistent caches. Clearing the cache also clears the tiers.
+ * Iterating the cache only returns the entries on the heap.
+ */
+class TieredCache<K, V> implements Cache<K, V> {
+  private static final Logger logger = Logger.getLogger( TieredCache.class.getName() );
+
+  private final PentahoCacheManagerImpl cacheManager;
+  private final Cache<K, V> delegate;
+  private final Configuration<K, V> configuration;
+  private final StoreTier<K, V> tier;
+
+  TieredCache( PentahoCacheManagerImpl cacheManager, Cache<K, V> delegate, Configuration<K, V> configuration,
+                   StoreTier<K, V> tier ) {
+    this.cacheManager = cacheManager;
+    this.delegate = delegate;
+    this.configuration = configuration;
+    this.tier = tier;
+  }
+
+  StoreTier<K, V> getTier() {
+    return tier;
+  }
+
+  @Override public V get( K key ) {
+    return delegate.get( key );
+  }
+
+  @Override public Map<K, V> getAll( Set<? extends K> keys ) {
+    return delegate.getAll( keys );
+  }
+
+  @Override public boolean containsKey( K key ) {
+    return delegate.containsKey( key ) || tier.containsKey( key );
+  }
+
+  @Override public void loadAll( Set<? extends K> keys, boolean replaceExistingValues,
+                                 CompletionListener completionListener ) {
+    delegate.loadAll( keys, replaceExistingValues, completionListener );
+  }
+
+  @Override public void put( K key, V value ) {
+    delegate.put( key, value );
+  }
+
+  @Override public V getAndPut( K key, V value ) {
+    return delegate.getAndPut( key, value );
+  }
+
+  @Override public void putAll( Map<? extends K, ? extends V> map ) {
+    delegate.putAll( map );
+  }
+
+  @Override public boolean putIfAbsent( K key, V value ) {
+    return delegate.putIfAbsent( key, value );
+  }
+
+  @Override public boolean remove( K key ) {
+    return delegate.remove( key );
+  }
+
+  @Override public boolean remove( K key, V oldValue ) {
+    return delegate.remove( key, oldValue );
+  }
+
+  @Override public V getAndRemove( K key ) {
+    return delegate.getAndRemove( key );
+  }
+
+  @Override public boolean replace( K key, V oldValue, V newValue ) {
+    return delegate.replace( key, oldValue, newValue );
+  }
+
+  @Override public boolean replace( K key, V value ) {
+    return delegate.replace( key, value );
+  }
+
+  @Override public V getAndReplace( K key, V value ) {
+    return delegate.getAndReplace( key, value );
+  }
+
+  @Override public void removeAll( Set<? extends K> keys ) {
+    delegate.removeAll( keys );
+  }
+
+  /**
+   * Removes the entries on the heap through the cache writer, and then the ones only left in the tiers.
+   */
+  @Override public void removeAll() {
+    delegate.removeAll();
+    tier.clear();
+  }
+
+  @Override public void clear() {
+    delegate.clear();
+    tier.clear();
+  }
+
+  @Override public <C extends Configuration<K, V>> C getConfiguration( Class<C> clazz ) {
+    if ( clazz.isInstance( configuration ) ) {
+      return clazz.cast( configuration );
+    }
+    return delegate.getConfiguration( clazz );
+  }
+
+  @Override public <T> T invoke( K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments )
+    throws EntryProcessorException {
+    return delegate.invoke( key, entryProcessor, arguments );
+  }
+
+  @Override public <T> Map<K, EntryProcessorResult<T>> invokeAll( Set<? extends K> keys,
+                                                                  EntryProcessor<K, V, T> entryProcessor,
+                                                                  Object... arguments ) {
+    return delegate.invokeAll( keys, entryProcessor, arguments );
+  }
+
+  @Override public String getName() {
+    return delegate.getName();
+  }
+
+  @Override public CacheManager getCacheManager() {
+    return cacheManager;
+  }
+
+  /**
+   * Closes the cache, and its tiers. The disk tier keeps its entries for the next time the cache is created.
+   */
+  @Override public void close() {
+    try {
+      delegate.close();
+    } finally {
+      cacheManager.release( getName(), this );
+      try {
+        tier.close();
+      } catch ( IOException e ) {
+        logger.log( Level.WARNING, "Unable to close the storage tiers of cache " + getName(), e );
+      }
+    }
+  }
+
+  @Override public boolean isClosed() {
+    return delegate.isClosed();
+  }
+
+  @Override public <T> T unwrap( Class<T> clazz ) {
+    if ( clazz.isInstance( this ) ) {
+      return clazz.cast( this );
+    }
+    return delegate.unwrap( clazz );
+  }
+
+  @Override public void registerCacheEntryListener(
+    CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
+    delegate.registerCacheEntryListener( cacheEntryListenerConfiguration );
+  }
+
+  @Override public void deregisterCacheEntryListener(
+    CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
+    delegate.deregisterCacheEntryListener( cacheEntryListenerConfiguration );
+  }
+
+  @Override public Iterator<Entry<K, V>> iterator() {
+    return delegate.iterator();
+  }
+}
@@ -15,24 +15,45 @@ package org.pentaho.caching.spi;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.pentaho.caching.api.Constants;
 
 import javax.cache.Cache;
 import javax.cache.CacheException;
 import javax.cache.CacheManager;
+import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.Configuration;
+import javax.cache.management.CacheStatisticsMXBean;
 import javax.cache.spi.CachingProvider;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.text.MessageFormat;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * @author nhudak
  */
 @SuppressWarnings( "unchecked" )
 public abstract class AbstractCacheManager implements CacheManager {
+  private static final Logger logger = Logger.getLogger( AbstractCacheManager.class.getName() );
+
+  private static final String MBEAN_CONFIGURATION = "CacheConfiguration";
+  private static final String MBEAN_STATISTICS = "CacheStatistics";
+
   private final ConcurrentMap<String, Cache> managedCacheMap;
+  // MBeans registered by this manager, as others with the same URI may register the same names
+  private final Set<ObjectName> registeredMBeans = Sets.newConcurrentHashSet();
   private final AtomicBoolean closed = new AtomicBoolean( false );
 
   public AbstractCacheManager() {
@@ -48,9 +69,7 @@ public abstract class AbstractCacheManager implements CacheManager {
     Cache<K, V> cache = null;
     try {
       cache = newCache( cacheName, configuration );
-      if ( managedCacheMap.putIfAbsent( cacheName, cache ) == null ) {
-        return cache;
-      } else {
+      if ( managedCacheMap.putIfAbsent( cacheName, cache ) != null ) {
         throw new CacheException( "Cache already exists: " + cacheName );
       }
     } catch ( Throwable t ) {
@@ -59,6 +78,17 @@ public abstract class AbstractCacheManager implements CacheManager {
       }
       throw Throwables.propagate( t );
     }
+
+    if ( configuration instanceof CompleteConfiguration ) {
+      CompleteConfiguration<K, V> completeConfiguration = (CompleteConfiguration<K, V>) configuration;
+      if ( completeConfiguration.isStatisticsEnabled() ) {
+        enableStatistics( cacheName, true );
+      }
+      if ( completeConfiguration.isManagementEnabled() ) {
+        enableManagement( cacheName, true );
+      }
+    }
+    return cache;
   }
 
   protected abstract <K, V, C extends Configuration<K, V>> Cache<K, V> newCache( String cacheName, C configuration );
@@ -104,14 +134,119 @@ public abstract class AbstractCacheManager implements CacheManager {
   @Override public void destroyCache( String cacheName ) {
     Cache<?, ?> cache = managedCacheMap.remove( cacheName );
     if ( cache != null ) {
+      unregisterMBean( objectName( MBEAN_CONFIGURATION, cacheName ) );
+      unregisterMBean( objectName( MBEAN_STATISTICS, cacheName ) );
       cache.close();
     }
   }
 
+  /**
+   * Registers (or unregisters) the {@link javax.cache.management.CacheMXBean} of the cache in the platform MBean
+   * server.
+   */
   @Override public void enableManagement( String cacheName, boolean enabled ) {
+    Preconditions.checkState( !closed.get(), "Cache manager is closed" );
+    Preconditions.checkNotNull( cacheName, "Cache Name can not be null" );
+    Cache<?, ?> cache = managedCacheMap.get( cacheName );
+    if ( cache == null ) {
+      return;
+    }
+
+    ObjectName objectName = objectName( MBEAN_CONFIGURATION, cacheName );
+    if ( enabled ) {
+      registerMBean( new CacheManagementBean( cache, getStatistics( cache ) ), objectName );
+    } else {
+      unregisterMBean( objectName );
+    }
   }
 
+  /**
+   * Starts (or stops) recording the statistics of the cache, and registers (or unregisters) them in the platform
+   * MBean server. Statistics are kept when disabled, and resume from there if enabled again.
+   */
   @Override public void enableStatistics( String cacheName, boolean enabled ) {
+    Preconditions.checkState( !closed.get(), "Cache manager is closed" );
+    Preconditions.checkNotNull( cacheName, "Cache Name can not be null" );
+    Cache<?, ?> cache = managedCacheMap.get( cacheName );
+    CacheStatistics statistics = cache != null ? getStatistics( cache ) : null;
+    if ( statistics == null ) {
+      return;
+    }
+
+    statistics.setEnabled( enabled );
+    ObjectName objectName = objectName( MBEAN_STATISTICS, cacheName );
+    if ( enabled ) {
+      registerMBean( statistics, objectName );
+    } else {
+      unregisterMBean( objectName );
+    }
+  }
+
+  /**
+   * @return the statistics of the cache, or null if statistics are not enabled for it (or not supported)
+   */
+  public CacheStatisticsMXBean getCacheStatistics( String cacheName ) {
+    Cache<?, ?> cache = managedCacheMap.get( cacheName );
+    CacheStatistics statistics = cache != null ? getStatistics( cache ) : null;
+    return statistics != null && statistics.isEnabled() ? statistics : null;
+  }
+
+  /**
+   * @return the statistics recorded by the cache, or null if it doesn't record them
+   */
+  protected CacheStatistics getStatistics( Cache<?, ?> cache ) {
+    try {
+      return cache.unwrap( CacheStatistics.class );
+    } catch ( IllegalArgumentException e ) {
+      return null;
+    }
+  }
+
+  protected MBeanServer getMBeanServer() {
+    return ManagementFactory.getPlatformMBeanServer();
+  }
+
+  private ObjectName objectName( String type, String cacheName ) {
+    try {
+      return new ObjectName( MessageFormat.format( "javax.cache:type={0},CacheManager={1},Cache={2}",
+        type, sanitize( getURI().toString() ), sanitize( cacheName ) ) );
+    } catch ( MalformedObjectNameException e ) {
+      throw new CacheException( e );
+    }
+  }
+
+  private static String sanitize( String value ) {
+    return value == null ? "" : value.replaceAll( "[,:=*?\"\\n]", "." );
+  }
+
+  private void registerMBean( Object mBean, ObjectName objectName ) {
+    MBeanServer mBeanServer = getMBeanServer();
+    try {
+      if ( !registeredMBeans.contains( objectName ) ) {
+        mBeanServer.registerMBean( mBean, objectName );
+        registeredMBeans.add( objectName );
+      }
+    } catch ( InstanceAlreadyExistsException e ) {
+      // another cache manager with the same URI and cache
+      logger.log( Level.WARNING, "MBean already registered: " + objectName );
+    } catch ( JMException e ) {
+      throw new CacheException( "Unable to register MBean " + objectName, e );
+    }
+  }
+
+  private void unregisterMBean( ObjectName objectName ) {
+    if ( !registeredMBeans.remove( objectName ) ) {
+      // registered by another cache manager, if at all
+      return;
+    }
+    MBeanServer mBeanServer = getMBeanServer();
+    try {
+      mBeanServer.unregisterMBean( objectName );
+    } catch ( InstanceNotFoundException e ) {
+      // already unregistered
+    } catch ( JMException e ) {
+      throw new CacheException( "Unable to unregister MBean " + objectName, e );
+    }
   }
 
   @Override public void close() {
@@ -16,18 +16,41 @@ import com.google.common.base.Enums;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.primitives.Ints;
 import com.google.common.primitives.Longs;
 import org.pentaho.caching.api.Constants.ExpiryFunction;
+import org.pentaho.caching.api.Constants.ListenerOverflow;
+import org.pentaho.caching.api.Constants.WeigherFunction;
+import org.pentaho.caching.api.EntryCodec;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
 import org.pentaho.caching.api.PentahoCacheProvidingService;
 
 import javax.cache.configuration.CompleteConfiguration;
-import javax.cache.configuration.MutableConfiguration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.expiry.Duration;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import static org.pentaho.caching.api.Constants.CONFIG_LISTENER_BATCH_SIZE;
+import static org.pentaho.caching.api.Constants.CONFIG_LISTENER_OVERFLOW;
+import static org.pentaho.caching.api.Constants.CONFIG_LISTENER_QUEUE_SIZE;
+import static org.pentaho.caching.api.Constants.CONFIG_MAX_ENTRIES;
+import static org.pentaho.caching.api.Constants.CONFIG_MAX_WEIGHT;
+import static org.pentaho.caching.api.Constants.CONFIG_OFF_HEAP;
+import static org.pentaho.caching.api.Constants.CONFIG_OFF_HEAP_PAGE_SIZE;
+import static org.pentaho.caching.api.Constants.CONFIG_OFF_HEAP_PAGE_SIZE_DEFAULT;
+import static org.pentaho.caching.api.Constants.CONFIG_PERSISTENT;
+import static org.pentaho.caching.api.Constants.CONFIG_PERSISTENT_CODEC;
+import static org.pentaho.caching.api.Constants.CONFIG_REFRESH;
 import static org.pentaho.caching.api.Constants.CONFIG_STORE_BY_VALUE;
 import static org.pentaho.caching.api.Constants.CONFIG_TTL;
 import static org.pentaho.caching.api.Constants.CONFIG_TTL_RESET;
 import static org.pentaho.caching.api.Constants.CONFIG_TTL_RESET_DEFAULT;
+import static org.pentaho.caching.api.Constants.CONFIG_WEIGHER;
+import static org.pentaho.caching.api.Constants.CONFIG_WRITE_BEHIND;
+import static org.pentaho.caching.api.Constants.CONFIG_WRITE_BEHIND_BATCH_SIZE;
+import static org.pentaho.caching.api.Constants.CONFIG_WRITE_BEHIND_BATCH_SIZE_DEFAULT;
 
 /**
  * @author nhudak
@@ -35,7 +58,7 @@ import static org.pentaho.caching.api.Constants.CONFIG_TTL_RESET_DEFAULT;
 public abstract class AbstractCacheProvidingService implements PentahoCacheProvidingService {
   @Override public <K, V> CompleteConfiguration<K, V> createConfiguration( Class<K> keyType, Class<V> valueType,
                                                                            Map<String, String> properties ) {
-    MutableConfiguration<K, V> configuration = new MutableConfiguration<K, V>();
+    PentahoCacheConfiguration<K, V> configuration = new PentahoCacheConfiguration<K, V>();
     configuration.setTypes( keyType, valueType );
 
     if ( properties.containsKey( CONFIG_TTL ) ) {
@@ -55,6 +78,97 @@ public abstract class AbstractCacheProvidingService implements PentahoCacheProvi
     if ( properties.containsKey( CONFIG_STORE_BY_VALUE ) ) {
       configuration.setStoreByValue( Boolean.valueOf( properties.get( CONFIG_STORE_BY_VALUE ) ) );
     }
+
+    Preconditions.checkArgument( !( properties.containsKey( CONFIG_MAX_ENTRIES )
+        && properties.containsKey( CONFIG_MAX_WEIGHT ) ), "Template config error: can not bound by both %s and %s",
+      CONFIG_MAX_ENTRIES, CONFIG_MAX_WEIGHT );
+    if ( properties.containsKey( CONFIG_MAX_ENTRIES ) ) {
+      configuration.setMaxEntries( parseBound( properties, CONFIG_MAX_ENTRIES ) );
+    }
+    if ( properties.containsKey( CONFIG_MAX_WEIGHT ) ) {
+      configuration.setMaxWeight( parseBound( properties, CONFIG_MAX_WEIGHT ) );
+    }
+    if ( properties.containsKey( CONFIG_WEIGHER ) ) {
+      Optional<WeigherFunction> weigherFunction =
+        Enums.getIfPresent( WeigherFunction.class, properties.get( CONFIG_WEIGHER ) );
+      Preconditions.checkArgument( weigherFunction.isPresent(), "Template config error", CONFIG_WEIGHER );
+
+      configuration.setWeigherFactory( weigherFunction.get().createFactory() );
+    }
+    if ( properties.containsKey( CONFIG_REFRESH ) ) {
+      configuration.setRefreshAfterWrite( new Duration( TimeUnit.SECONDS, parseBound( properties, CONFIG_REFRESH ) ) );
+    }
+    if ( properties.containsKey( CONFIG_WRITE_BEHIND ) ) {
+      Duration delay = new Duration( TimeUnit.SECONDS, parseBound( properties, CONFIG_WRITE_BEHIND ) );
+      int batchSize = CONFIG_WRITE_BEHIND_BATCH_SIZE_DEFAULT;
+      if ( properties.containsKey( CONFIG_WRITE_BEHIND_BATCH_SIZE ) ) {
+        batchSize = Ints.saturatedCast( parseBound( properties, CONFIG_WRITE_BEHIND_BATCH_SIZE ) );
+      }
+      configuration.setWriteBehind( delay, batchSize );
+    }
+    if ( properties.containsKey( CONFIG_LISTENER_QUEUE_SIZE ) || properties.containsKey( CONFIG_LISTENER_BATCH_SIZE )
+      || properties.containsKey( CONFIG_LISTENER_OVERFLOW ) ) {
+      int queueSize = configuration.getListenerQueueSize();
+      if ( properties.containsKey( CONFIG_LISTENER_QUEUE_SIZE ) ) {
+        queueSize = Ints.saturatedCast( parseBound( properties, CONFIG_LISTENER_QUEUE_SIZE ) );
+      }
+      int batchSize = configuration.getListenerBatchSize();
+      if ( properties.containsKey( CONFIG_LISTENER_BATCH_SIZE ) ) {
+        batchSize = Ints.saturatedCast( parseBound( properties, CONFIG_LISTENER_BATCH_SIZE ) );
+      }
+      Optional<ListenerOverflow> overflow = Optional.of( configuration.getListenerOverflow() );
+      if ( properties.containsKey( CONFIG_LISTENER_OVERFLOW ) ) {
+        overflow = Enums.getIfPresent( ListenerOverflow.class, properties.get( CONFIG_LISTENER_OVERFLOW ) );
+      }
+      Preconditions.checkArgument( overflow.isPresent(), "Template config error", CONFIG_LISTENER_OVERFLOW );
+
+      configuration.setListenerDispatch( queueSize, batchSize, overflow.get() );
+    }
+    if ( properties.containsKey( CONFIG_PERSISTENT ) ) {
+      configuration.setPersistent( Boolean.valueOf( properties.get( CONFIG_PERSISTENT ) ) );
+    }
+    if ( properties.containsKey( CONFIG_PERSISTENT_CODEC ) ) {
+      String codecClassName = Strings.nullToEmpty( properties.get( CONFIG_PERSISTENT_CODEC ) ).trim();
+      Preconditions.checkArgument( !codecClassName.isEmpty(), "Template config error", CONFIG_PERSISTENT_CODEC );
+      configuration.setEntryCodecFactory( FactoryBuilder.<EntryCodec<K, V>>factoryOf( codecClassName ) );
+    }
+    if ( properties.containsKey( CONFIG_OFF_HEAP ) ) {
+      long maxBytes = parseSize( properties, CONFIG_OFF_HEAP );
+      int pageSize = CONFIG_OFF_HEAP_PAGE_SIZE_DEFAULT;
+      if ( properties.containsKey( CONFIG_OFF_HEAP_PAGE_SIZE ) ) {
+        pageSize = Ints.saturatedCast( parseSize( properties, CONFIG_OFF_HEAP_PAGE_SIZE ) );
+      }
+      Preconditions.checkArgument( pageSize > 0, "Template config error", CONFIG_OFF_HEAP_PAGE_SIZE );
+      if ( maxBytes > 0 ) {
+        // small budgets are a single page
+        configuration.setOffHeap( maxBytes, (int) Math.min( pageSize, maxBytes ) );
+      }
+    }
     return configuration;
   }
+
+  /**
+   * Parses a number of bytes, with an optional k, m or g suffix.
+   */
+  private static long parseSize( Map<String, String> properties, String key ) {
+    String size = Strings.nullToEmpty( properties.get( key ) ).trim().toLowerCase( Locale.ROOT );
+    int shift = 0;
+    if ( size.endsWith( "k" ) ) {
+      shift = 10;
+    } else if ( size.endsWith( "m" ) ) {
+      shift = 20;
+    } else if ( size.endsWith( "g" ) ) {
+      shift = 30;
+    }
+    Long bytes = Longs.tryParse( shift > 0 ? size.substring( 0, size.length() - 1 ) : size );
+    Preconditions.checkArgument( bytes != null && bytes >= 0 && bytes <= Long.MAX_VALUE >> shift,
+      "Template config error", key );
+    return bytes << shift;
+  }
+
+  private static long parseBound( Map<String, String> properties, String key ) {
+    Long bound = Longs.tryParse( Strings.nullToEmpty( properties.get( key ) ) );
+    Preconditions.checkArgument( bound != null && bound >= 0, "Template config error", key );
+    return bound;
+  }
 }
@@ -0,0 +1,423 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.pentaho.caching.api.Constants.ListenerOverflow;
+
+import javax.cache.Cache;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Factory;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryEventFilter;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListener;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.event.EventType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Delivers the events of a cache to its registered {@link CacheEntryListener}s.
+ * <p>
+ * Synchronous listeners are called by the thread changing the cache, and their failures are reported to it.
+ * Each asynchronous listener has a bounded queue, drained by the event executor in batches of consecutive events,
+ * so the events of a listener are delivered in order, one batch at a time. When a queue is full, the event is either
+ * dropped or the writer waits, according to the {@link ListenerOverflow} policy.
+ * <p>
+ * Dispatch latency, from the change to the delivery of its event, is measured for every delivered event.
+ */
+public class CacheEventDispatcher<K, V> {
+  private static final Logger logger = Logger.getLogger( CacheEventDispatcher.class.getName() );
+
+  private final Executor executor;
+  private final int queueSize;
+  private final int batchSize;
+  private final ListenerOverflow overflow;
+  private final Ticker ticker;
+
+  private final List<Registration> registrations = new CopyOnWriteArrayList<Registration>();
+  private volatile Cache<K, V> source;
+
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder latency = new LongAdder();
+  private final AtomicLong maxLatency = new AtomicLong();
+
+  /**
+   * @param executor  delivers the events to the asynchronous listeners
+   * @param queueSize maximum number of events waiting for each asynchronous listener
+   * @param batchSize maximum number of events given to an asynchronous listener at once
+   * @param overflow  what to do with the events of an asynchronous listener when its queue is full
+   */
+  public CacheEventDispatcher( Executor executor, int queueSize, int batchSize, ListenerOverflow overflow ) {
+    this( executor, queueSize, batchSize, overflow, Ticker.systemTicker() );
+  }
+
+  public CacheEventDispatcher( Executor executor, int queueSize, int batchSize, ListenerOverflow overflow,
+                               Ticker ticker ) {
+    Preconditions.checkArgument( queueSize > 0, "Invalid queue size: %s", queueSize );
+    Preconditions.checkArgument( batchSize > 0, "Invalid batch size: %s", batchSize );
+    this.executor = executor;
+    this.queueSize = queueSize;
+    this.batchSize = batchSize;
+    this.overflow = overflow;
+    this.ticker = ticker;
+  }
+
+  /**
+   * @param source the cache of the events, which must be set before any event is dispatched to a listener
+   */
+  public void setSource( Cache<K, V> source ) {
+    this.source = Preconditions.checkNotNull( source, "Source cache can not be null" );
+  }
+
+  /**
+   * @throws IllegalArgumentException if the configuration is already registered
+   */
+  public void register( CacheEntryListenerConfiguration<K, V> configuration ) {
+    Preconditions.checkNotNull( configuration, "Listener configuration can not be null" );
+    synchronized ( registrations ) {
+      Preconditions.checkArgument( find( configuration ) == null, "Listener is already registered: %s",
+        configuration );
+      registrations.add( new Registration( configuration ) );
+    }
+  }
+
+  public void deregister( CacheEntryListenerConfiguration<K, V> configuration ) {
+    Preconditions.checkNotNull( configuration, "Listener configuration can not be null" );
+    Registration registration;
+    synchronized ( registrations ) {
+      registration = find( configuration );
+      if ( registration != null ) {
+        registrations.remove( registration );
+      }
+    }
+    if ( registration != null ) {
+      registration.close();
+    }
+  }
+
+  private Registration find( CacheEntryListenerConfiguration<K, V> configuration ) {
+    for ( Registration registration : registrations ) {
+      if ( registration.configuration.equals( configuration ) ) {
+        return registration;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return if any listener is registered. Callers can skip the work needed to create the events otherwise.
+   */
+  public boolean hasListeners() {
+    return !registrations.isEmpty();
+  }
+
+  public void created( K key, V value ) {
+    dispatch( EventType.CREATED, key, value, null );
+  }
+
+  public void updated( K key, V value, V oldValue ) {
+    dispatch( EventType.UPDATED, key, value, oldValue );
+  }
+
+  public void removed( K key, V oldValue ) {
+    dispatch( EventType.REMOVED, key, oldValue, oldValue );
+  }
+
+  public void expired( K key, V oldValue ) {
+    dispatch( EventType.EXPIRED, key, oldValue, oldValue );
+  }
+
+  private void dispatch( EventType eventType, K key, V value, V oldValue ) {
+    if ( registrations.isEmpty() ) {
+      return;
+    }
+    Preconditions.checkState( source != null, "No source cache set for the events" );
+    long time = ticker.read();
+    for ( Registration registration : registrations ) {
+      registration.dispatch( eventType, key, value, oldValue, time );
+    }
+  }
+
+  /**
+   * Deregisters all the listeners. Events already queued are still delivered.
+   */
+  public void close() {
+    List<Registration> closed;
+    synchronized ( registrations ) {
+      closed = ImmutableList.copyOf( registrations );
+      registrations.clear();
+    }
+    for ( Registration registration : closed ) {
+      registration.close();
+    }
+  }
+
+  /**
+   * @return number of events delivered to the listeners
+   */
+  public long getDeliveredEvents() {
+    return delivered.sum();
+  }
+
+  /**
+   * @return number of events of asynchronous listeners dropped because their queue was full
+   */
+  public long getDroppedEvents() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return average time from a change to the delivery of its event, in microseconds
+   */
+  public float getAverageDispatchLatency() {
+    long count = delivered.sum();
+    return count == 0 ? 0 : (float) latency.sum() / count / TimeUnit.MICROSECONDS.toNanos( 1 );
+  }
+
+  /**
+   * @return maximum time from a change to the delivery of its event, in microseconds
+   */
+  public float getMaxDispatchLatency() {
+    return (float) maxLatency.get() / TimeUnit.MICROSECONDS.toNanos( 1 );
+  }
+
+  private void recordDelivery( List<Event> events ) {
+    long now = ticker.read();
+    for ( Event event : events ) {
+      long eventLatency = now - event.time;
+      latency.add( eventLatency );
+      long max = maxLatency.get();
+      while ( eventLatency > max && !maxLatency.compareAndSet( max, eventLatency ) ) {
+        max = maxLatency.get();
+      }
+    }
+    delivered.add( events.size() );
+  }
+
+  private class Registration implements Runnable {
+    private final CacheEntryListenerConfiguration<K, V> configuration;
+    private final CacheEntryListener<? super K, ? super V> listener;
+    private final CacheEntryEventFilter<? super K, ? super V> filter;
+    // null for synchronous listeners
+    private final BlockingQueue<Event> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    Registration( CacheEntryListenerConfiguration<K, V> configuration ) {
+      this.configuration = configuration;
+      this.listener = configuration.getCacheEntryListenerFactory().create();
+      Factory<CacheEntryEventFilter<? super K, ? super V>> filterFactory =
+        configuration.getCacheEntryEventFilterFactory();
+      this.filter = filterFactory != null ? filterFactory.create() : null;
+      this.queue = configuration.isSynchronous() ? null : new ArrayBlockingQueue<Event>( queueSize );
+    }
+
+    private boolean accepts( EventType eventType ) {
+      switch ( eventType ) {
+        case CREATED:
+          return listener instanceof CacheEntryCreatedListener;
+        case UPDATED:
+          return listener instanceof CacheEntryUpdatedListener;
+        case REMOVED:
+          return listener instanceof CacheEntryRemovedListener;
+        case EXPIRED:
+          return listener instanceof CacheEntryExpiredListener;
+        default:
+          return false;
+      }
+    }
+
+    void dispatch( EventType eventType, K key, V value, V oldValue, long time ) {
+      if ( !accepts( eventType ) ) {
+        return;
+      }
+      Event event = new Event( source, eventType, key, value, configuration.isOldValueRequired() ? oldValue : null,
+        time );
+      if ( filter != null && !evaluate( event ) ) {
+        return;
+      }
+
+      if ( queue == null ) {
+        deliver( ImmutableList.of( event ) );
+      } else if ( enqueue( event ) ) {
+        scheduleDrain();
+      }
+    }
+
+    private boolean evaluate( Event event ) {
+      try {
+        return filter.evaluate( event );
+      } catch ( CacheEntryListenerException e ) {
+        throw e;
+      } catch ( RuntimeException e ) {
+        throw new CacheEntryListenerException( e );
+      }
+    }
+
+    private boolean enqueue( Event event ) {
+      if ( overflow == ListenerOverflow.BLOCK ) {
+        try {
+          queue.put( event );
+          return true;
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        }
+      } else if ( queue.offer( event ) ) {
+        return true;
+      }
+      dropped.increment();
+      return false;
+    }
+
+    private void scheduleDrain() {
+      if ( draining.compareAndSet( false, true ) ) {
+        try {
+          executor.execute( this );
+        } catch ( RejectedExecutionException e ) {
+          // executor was shutdown
+          draining.set( false );
+          dropped.add( queue.size() );
+          queue.clear();
+        }
+      }
+    }
+
+    /**
+     * Delivers a batch of events. Runs in the event executor, with one batch of each listener at a time.
+     */
+    @Override public void run() {
+      List<Event> batch = Lists.newArrayListWithCapacity( Math.min( batchSize, queue.size() ) );
+      queue.drainTo( batch, batchSize );
+      try {
+        deliver( batch );
+      } catch ( RuntimeException e ) {
+        logger.log( Level.WARNING, "Cache entry listener failed: " + listener, e );
+      } finally {
+        draining.set( false );
+      }
+      if ( !queue.isEmpty() ) {
+        // resubmitted instead of looping, so that listeners take turns in the executor
+        scheduleDrain();
+      }
+    }
+
+    /**
+     * Delivers the events, calling the listener once for each run of events of the same type.
+     */
+    private void deliver( List<Event> events ) {
+      int start = 0;
+      for ( int i = 1; i <= events.size(); i++ ) {
+        if ( i == events.size() || events.get( i ).getEventType() != events.get( start ).getEventType() ) {
+          List<Event> run = events.subList( start, i );
+          try {
+            deliver( events.get( start ).getEventType(), run );
+          } catch ( CacheEntryListenerException e ) {
+            throw e;
+          } catch ( RuntimeException e ) {
+            throw new CacheEntryListenerException( e );
+          } finally {
+            recordDelivery( run );
+          }
+          start = i;
+        }
+      }
+    }
+
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    private void deliver( EventType eventType, Iterable events ) {
+      switch ( eventType ) {
+        case CREATED:
+          ( (CacheEntryCreatedListener) listener ).onCreated( events );
+          break;
+        case UPDATED:
+          ( (CacheEntryUpdatedListener) listener ).onUpdated( events );
+          break;
+        case REMOVED:
+          ( (CacheEntryRemovedListener) listener ).onRemoved( events );
+          break;
+        case EXPIRED:
+          ( (CacheEntryExpiredListener) listener ).onExpired( events );
+          break;
+        default:
+          break;
+      }
+    }
+
+    void close() {
+      if ( listener instanceof Closeable ) {
+        try {
+          ( (Closeable) listener ).close();
+        } catch ( IOException e ) {
+          logger.log( Level.WARNING, "Failed to close cache entry listener: " + listener, e );
+        }
+      }
+    }
+  }
+
+  private class Event extends CacheEntryEvent<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final K key;
+    private final V value;
+    private final V oldValue;
+    private final transient long time;
+
+    Event( Cache<K, V> source, EventType eventType, K key, V value, V oldValue, long time ) {
+      super( source, eventType );
+      this.key = key;
+      this.value = value;
+      this.oldValue = oldValue;
+      this.time = time;
+    }
+
+    @Override public K getKey() {
+      return key;
+    }
+
+    @Override public V getValue() {
+      return value;
+    }
+
+    @Override public V getOldValue() {
+      return oldValue;
+    }
+
+    @Override public boolean isOldValueAvailable() {
+      return oldValue != null;
+    }
+
+    @Override public <T> T unwrap( Class<T> clazz ) {
+      return org.pentaho.caching.api.Constants.unwrap( this, clazz );
+    }
+  }
+}
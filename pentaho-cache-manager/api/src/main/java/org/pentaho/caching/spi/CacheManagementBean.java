@@ -0,0 +1,75 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import javax.cache.Cache;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.management.CacheMXBean;
+
+/**
+ * Management view of the configuration of a cache, registered while management is enabled.
+ */
+class CacheManagementBean implements CacheMXBean {
+  private final Cache<?, ?> cache;
+  private final CacheStatistics statistics;
+
+  /**
+   * @param statistics statistics of the cache, or null if the cache doesn't record them
+   */
+  CacheManagementBean( Cache<?, ?> cache, CacheStatistics statistics ) {
+    this.cache = cache;
+    this.statistics = statistics;
+  }
+
+  // Configuration.class is raw, but any configuration of the cache is a Configuration
+  @SuppressWarnings( "unchecked" )
+  private Configuration<?, ?> configuration() {
+    return cache.getConfiguration( Configuration.class );
+  }
+
+  private CompleteConfiguration<?, ?> completeConfiguration() {
+    Configuration<?, ?> configuration = configuration();
+    return configuration instanceof CompleteConfiguration ? (CompleteConfiguration<?, ?>) configuration : null;
+  }
+
+  @Override public String getKeyType() {
+    return configuration().getKeyType().getName();
+  }
+
+  @Override public String getValueType() {
+    return configuration().getValueType().getName();
+  }
+
+  @Override public boolean isReadThrough() {
+    CompleteConfiguration<?, ?> configuration = completeConfiguration();
+    return configuration != null && configuration.isReadThrough();
+  }
+
+  @Override public boolean isWriteThrough() {
+    CompleteConfiguration<?, ?> configuration = completeConfiguration();
+    return configuration != null && configuration.isWriteThrough();
+  }
+
+  @Override public boolean isStoreByValue() {
+    return configuration().isStoreByValue();
+  }
+
+  @Override public boolean isStatisticsEnabled() {
+    return statistics != null && statistics.isEnabled();
+  }
+
+  @Override public boolean isManagementEnabled() {
+    return true;
+  }
+}
@@ -0,0 +1,184 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Ticker;
+
+import javax.cache.management.CacheStatisticsMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics of a cache, recorded by the cache implementation while they are enabled.
+ * <p>
+ * Counters are striped ({@link LongAdder}), so that concurrent operations don't contend on them. When disabled,
+ * recording only costs a volatile read, and operations are not timed.
+ */
+public class CacheStatistics implements CacheStatisticsMXBean {
+  /**
+   * Start time of operations that are not timed, because statistics are disabled
+   */
+  public static final long NOT_TIMED = Long.MIN_VALUE;
+
+  private final Ticker ticker;
+  private volatile boolean enabled;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder removals = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  // nanoseconds spent, and number of timed operations
+  private final LongAdder getTime = new LongAdder();
+  private final LongAdder gets = new LongAdder();
+  private final LongAdder putTime = new LongAdder();
+  private final LongAdder timedPuts = new LongAdder();
+  private final LongAdder removeTime = new LongAdder();
+  private final LongAdder timedRemovals = new LongAdder();
+
+  public CacheStatistics() {
+    this( Ticker.systemTicker() );
+  }
+
+  public CacheStatistics( Ticker ticker ) {
+    this.ticker = ticker;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled( boolean enabled ) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @return the start time of an operation, to be given to one of the {@code record*Time} methods
+   */
+  public long startTime() {
+    return enabled ? ticker.read() : NOT_TIMED;
+  }
+
+  public void recordHits( int count ) {
+    if ( enabled ) {
+      hits.add( count );
+    }
+  }
+
+  public void recordMisses( int count ) {
+    if ( enabled ) {
+      misses.add( count );
+    }
+  }
+
+  public void recordPuts( int count ) {
+    if ( enabled ) {
+      puts.add( count );
+    }
+  }
+
+  public void recordRemovals( int count ) {
+    if ( enabled ) {
+      removals.add( count );
+    }
+  }
+
+  public void recordEvictions( int count ) {
+    if ( enabled ) {
+      evictions.add( count );
+    }
+  }
+
+  public void recordGetTime( long startTime ) {
+    recordTime( startTime, getTime, gets );
+  }
+
+  public void recordPutTime( long startTime ) {
+    recordTime( startTime, putTime, timedPuts );
+  }
+
+  public void recordRemoveTime( long startTime ) {
+    recordTime( startTime, removeTime, timedRemovals );
+  }
+
+  private void recordTime( long startTime, LongAdder time, LongAdder count ) {
+    if ( enabled && startTime != NOT_TIMED ) {
+      time.add( ticker.read() - startTime );
+      count.increment();
+    }
+  }
+
+  @Override public void clear() {
+    for ( LongAdder counter : new LongAdder[] { hits, misses, puts, removals, evictions,
+      getTime, gets, putTime, timedPuts, removeTime, timedRemovals } ) {
+      counter.reset();
+    }
+  }
+
+  @Override public long getCacheHits() {
+    return hits.sum();
+  }
+
+  @Override public float getCacheHitPercentage() {
+    long hitCount = getCacheHits();
+    long getCount = hitCount + getCacheMisses();
+    return getCount == 0 ? 0 : 100f * hitCount / getCount;
+  }
+
+  @Override public long getCacheMisses() {
+    return misses.sum();
+  }
+
+  @Override public float getCacheMissPercentage() {
+    long missCount = getCacheMisses();
+    long getCount = missCount + getCacheHits();
+    return getCount == 0 ? 0 : 100f * missCount / getCount;
+  }
+
+  @Override public long getCacheGets() {
+    return getCacheHits() + getCacheMisses();
+  }
+
+  @Override public long getCachePuts() {
+    return puts.sum();
+  }
+
+  @Override public long getCacheRemovals() {
+    return removals.sum();
+  }
+
+  @Override public long getCacheEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return average time of the gets, in microseconds (as are the other averages)
+   */
+  @Override public float getAverageGetTime() {
+    return averageMicros( getTime, gets );
+  }
+
+  @Override public float getAveragePutTime() {
+    return averageMicros( putTime, timedPuts );
+  }
+
+  @Override public float getAverageRemoveTime() {
+    return averageMicros( removeTime, timedRemovals );
+  }
+
+  private static float averageMicros( LongAdder time, LongAdder count ) {
+    long operations = count.sum();
+    return operations == 0 ? 0 : (float) time.sum() / operations / TimeUnit.MICROSECONDS.toNanos( 1 );
+  }
+}
@@ -0,0 +1,59 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Objects;
+import org.pentaho.caching.api.Constants;
+
+import javax.cache.Cache;
+
+/**
+ * Immutable {@link Cache.Entry}, e.g. to hand entries to a {@link javax.cache.integration.CacheWriter}.
+ */
+public class ImmutableCacheEntry<K, V> implements Cache.Entry<K, V> {
+  private final K key;
+  private final V value;
+
+  public ImmutableCacheEntry( K key, V value ) {
+    this.key = key;
+    this.value = value;
+  }
+
+  @Override public K getKey() {
+    return key;
+  }
+
+  @Override public V getValue() {
+    return value;
+  }
+
+  @Override public <T> T unwrap( Class<T> clazz ) {
+    return Constants.unwrap( this, clazz );
+  }
+
+  @Override public boolean equals( Object object ) {
+    if ( !( object instanceof ImmutableCacheEntry ) ) {
+      return false;
+    }
+    ImmutableCacheEntry<?, ?> that = (ImmutableCacheEntry<?, ?>) object;
+    return Objects.equal( key, that.key ) && Objects.equal( value, that.value );
+  }
+
+  @Override public int hashCode() {
+    return Objects.hashCode( key, value );
+  }
+
+  @Override public String toString() {
+    return key + "=" + value;
+  }
+}
@@ -0,0 +1,218 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.cache.Cache;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind decorator of a {@link CacheWriter}.
+ * <p>
+ * Writes and deletes are queued and return immediately. Only the last operation queued for each key is kept, and the
+ * queue is handed to the delegate, with {@link CacheWriter#writeAll} and {@link CacheWriter#deleteAll}, when it
+ * reaches the batch size or when the oldest operation has waited for the configured delay, whichever comes first.
+ * At most one flush is waiting to run at any time. If the delegate falls behind and the queue reaches its limit, the
+ * callers flush it themselves, so they are blocked until it's written.
+ * <p>
+ * Failures of the delegate can't be reported to the cache callers anymore, so they are logged and the failed
+ * operations are dropped. {@link #close()} flushes the queue synchronously.
+ */
+public class WriteBehindCacheWriter<K, V> implements CacheWriter<K, V>, Closeable {
+  private static final Logger logger = Logger.getLogger( WriteBehindCacheWriter.class.getName() );
+
+  // default limit of the queue, in batches
+  private static final int DEFAULT_MAX_BATCHES = 10;
+
+  private final CacheWriter<K, V> cacheWriter;
+  private final long delayMillis;
+  private final int batchSize;
+  private final int maxPending;
+  private final ScheduledExecutorService scheduler;
+
+  private final Object lock = new Object();
+  private final Object flushLock = new Object();
+
+  // last operation per key, in order of arrival: a value to write, or absent to delete
+  private LinkedHashMap<K, Optional<V>> pending = Maps.newLinkedHashMap();
+  private ScheduledFuture<?> scheduledFlush;
+  // a flush was handed to the scheduler because the queue reached the batch size, and hasn't started yet
+  private boolean flushSubmitted;
+  private boolean closed;
+
+  /**
+   * @param cacheWriter the writer to the backing store
+   * @param delayMillis maximum time an operation waits in the queue
+   * @param batchSize   number of queued keys that triggers a flush, without waiting for the delay
+   * @param scheduler   executor of the flushes
+   */
+  public WriteBehindCacheWriter( CacheWriter<K, V> cacheWriter, long delayMillis, int batchSize,
+                                 ScheduledExecutorService scheduler ) {
+    this( cacheWriter, delayMillis, batchSize, batchSize * DEFAULT_MAX_BATCHES, scheduler );
+  }
+
+  /**
+   * @param cacheWriter the writer to the backing store
+   * @param delayMillis maximum time an operation waits in the queue
+   * @param batchSize   number of queued keys that triggers a flush, without waiting for the delay
+   * @param maxPending  number of queued keys at which callers flush the queue themselves
+   * @param scheduler   executor of the flushes
+   */
+  public WriteBehindCacheWriter( CacheWriter<K, V> cacheWriter, long delayMillis, int batchSize, int maxPending,
+                                 ScheduledExecutorService scheduler ) {
+    Preconditions.checkArgument( maxPending >= batchSize, "maxPending can not be lower than batchSize" );
+    this.cacheWriter = cacheWriter;
+    this.delayMillis = delayMillis;
+    this.batchSize = batchSize;
+    this.maxPending = maxPending;
+    this.scheduler = scheduler;
+  }
+
+  @Override public void write( Cache.Entry<? extends K, ? extends V> entry ) throws CacheWriterException {
+    enqueue( entry.getKey(), Optional.<V>of( entry.getValue() ) );
+  }
+
+  @Override public void writeAll( Collection<Cache.Entry<? extends K, ? extends V>> entries )
+    throws CacheWriterException {
+    for ( Iterator<Cache.Entry<? extends K, ? extends V>> iterator = entries.iterator(); iterator.hasNext(); ) {
+      write( iterator.next() );
+      // as written
+      iterator.remove();
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  @Override public void delete( Object key ) throws CacheWriterException {
+    enqueue( (K) key, Optional.<V>absent() );
+  }
+
+  @Override public void deleteAll( Collection<?> keys ) throws CacheWriterException {
+    for ( Iterator<?> iterator = keys.iterator(); iterator.hasNext(); ) {
+      delete( iterator.next() );
+      iterator.remove();
+    }
+  }
+
+  private void enqueue( K key, Optional<V> operation ) {
+    boolean submitFlush = false;
+    boolean flushNow = false;
+    synchronized ( lock ) {
+      if ( closed ) {
+        throw new CacheWriterException( "Write-behind writer is closed" );
+      }
+      // re-inserted so that the order of arrival is kept
+      pending.remove( key );
+      pending.put( key, operation );
+
+      if ( pending.size() >= maxPending ) {
+        flushNow = true;
+      } else if ( pending.size() >= batchSize ) {
+        submitFlush = !flushSubmitted;
+        flushSubmitted = true;
+      } else if ( scheduledFlush == null ) {
+        scheduledFlush = scheduler.schedule( new Runnable() {
+          @Override public void run() {
+            flush();
+          }
+        }, delayMillis, TimeUnit.MILLISECONDS );
+      }
+    }
+
+    if ( flushNow ) {
+      // the delegate can't keep up, so the caller waits for the queue to be written
+      flush();
+    } else if ( submitFlush ) {
+      scheduler.execute( new Runnable() {
+        @Override public void run() {
+          synchronized ( lock ) {
+            flushSubmitted = false;
+          }
+          flush();
+        }
+      } );
+    }
+  }
+
+  /**
+   * Hands all the queued operations to the delegate writer.
+   */
+  public void flush() {
+    // batches are written one at a time, so that operations on the same key can't be reordered
+    synchronized ( flushLock ) {
+      Map<K, Optional<V>> operations;
+      synchronized ( lock ) {
+        if ( pending.isEmpty() ) {
+          return;
+        }
+        operations = pending;
+        pending = Maps.newLinkedHashMap();
+
+        if ( scheduledFlush != null ) {
+          scheduledFlush.cancel( false );
+          scheduledFlush = null;
+        }
+      }
+
+      List<Cache.Entry<? extends K, ? extends V>> writes = Lists.newArrayList();
+      List<K> deletes = Lists.newArrayList();
+      for ( Map.Entry<K, Optional<V>> operation : operations.entrySet() ) {
+        if ( operation.getValue().isPresent() ) {
+          writes.add( new ImmutableCacheEntry<K, V>( operation.getKey(), operation.getValue().get() ) );
+        } else {
+          deletes.add( operation.getKey() );
+        }
+      }
+
+      try {
+        if ( !writes.isEmpty() ) {
+          cacheWriter.writeAll( writes );
+        }
+      } catch ( Exception e ) {
+        logger.log( Level.WARNING, "Write-behind failed to write " + writes.size() + " entries", e );
+      }
+      try {
+        if ( !deletes.isEmpty() ) {
+          cacheWriter.deleteAll( deletes );
+        }
+      } catch ( Exception e ) {
+        logger.log( Level.WARNING, "Write-behind failed to delete " + deletes.size() + " entries", e );
+      }
+    }
+  }
+
+  /**
+   * Flushes the queued operations. Any later operation fails.
+   */
+  @Override public void close() {
+    synchronized ( lock ) {
+      closed = true;
+    }
+    flush();
+  }
+}
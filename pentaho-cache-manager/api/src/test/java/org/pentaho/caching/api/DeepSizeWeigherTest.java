@@ -0,0 +1,89 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.api;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+
+public class DeepSizeWeigherTest {
+  private final DeepSizeWeigher weigher = new DeepSizeWeigher();
+
+  @Test
+  public void testStrings() throws Exception {
+    int small = weigher.weigh( "key", "value" );
+    int big = weigher.weigh( "key", "a much longer value, which weighs more than the short one" );
+
+    assertThat( small, greaterThan( 0 ) );
+    assertThat( big, greaterThan( small ) );
+  }
+
+  @Test
+  public void testArrays() throws Exception {
+    assertThat( weigher.weigh( "key", new long[ 100 ] ), greaterThan( weigher.weigh( "key", new int[ 100 ] ) ) );
+    assertThat( weigher.weigh( "key", new byte[ 1000 ] ), greaterThan( 1000 ) );
+    assertThat( weigher.weigh( "key", new String[] { "a", "b" } ),
+      greaterThan( weigher.weigh( "key", new String[] { null, null } ) ) );
+  }
+
+  @Test
+  public void testCollections() throws Exception {
+    List<String> values = Lists.newArrayList();
+    for ( int i = 0; i < 100; i++ ) {
+      values.add( "value " + i );
+    }
+    Map<String, List<String>> map = ImmutableMap.of( "values", values );
+
+    assertThat( weigher.weigh( "key", values ), greaterThan( weigher.weigh( "key", values.subList( 0, 10 ) ) ) );
+    assertThat( weigher.weigh( "key", map ), greaterThan( weigher.weigh( "key", values ) ) );
+  }
+
+  @Test
+  public void testSharedReferencesCountedOnce() throws Exception {
+    String value = "some value which is shared";
+    int single = weigher.weigh( "key", ImmutableList.of( value ) );
+    int shared = weigher.weigh( "key", ImmutableList.of( value, value ) );
+    int distinct = weigher.weigh( "key", ImmutableList.of( value, new String( value ) ) );
+
+    assertThat( shared, greaterThan( single ) );
+    assertThat( distinct, greaterThan( shared ) );
+  }
+
+  @Test
+  public void testCycles() throws Exception {
+    List<Object> list = Lists.newArrayList();
+    list.add( "element" );
+    list.add( list );
+
+    assertThat( weigher.weigh( "key", list ), greaterThan( 0 ) );
+  }
+
+  @Test
+  public void testOtherObjects() throws Exception {
+    DeepSizeWeigher custom = new DeepSizeWeigher() {
+      @Override protected long sizeOf( Object object ) {
+        return object instanceof Thread ? 1000 : super.sizeOf( object );
+      }
+    };
+
+    assertThat( custom.weigh( 1L, Thread.currentThread() ), equalTo( 1024 ) );
+  }
+}
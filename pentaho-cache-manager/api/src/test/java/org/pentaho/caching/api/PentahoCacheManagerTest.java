@@ -14,19 +14,33 @@ package org.pentaho.caching.api;
 
 import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.caching.impl.PentahoCacheManagerImpl;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
 
+import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.configuration.Configuration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -39,6 +53,8 @@ public class PentahoCacheManagerTest {
   @Mock private PentahoCacheSystemConfiguration configuration;
   @Mock private PentahoCacheProvidingService service;
   @Mock private CacheManager delegate;
+  @Mock private Cache<String, String> providerCache;
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
   private PentahoCacheManager cacheManager;
 
   @Before
@@ -104,4 +120,84 @@ public class PentahoCacheManagerTest {
     assertThat( cacheManager.getSystemConfiguration(), is( configuration ) );
     assertThat( cacheManager.getService(), is( service ) );
   }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testPersistentCache() throws Exception {
+    when( configuration.getGlobalProperties() ).thenReturn(
+      ImmutableMap.of( Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath() ) );
+    when( delegate.createCache( eq( NAME ), any( Configuration.class ) ) ).thenReturn( providerCache );
+    doReturn( providerCache ).when( delegate ).getCache( NAME );
+    when( providerCache.getName() ).thenReturn( NAME );
+
+    PentahoCacheConfiguration<String, String> cacheConfiguration = new PentahoCacheConfiguration<String, String>();
+    cacheConfiguration.setTypes( String.class, String.class );
+    cacheConfiguration.setPersistent( true );
+    Cache<String, String> cache = cacheManager.createCache( NAME, cacheConfiguration );
+    assertThat( cacheManager.getCache( NAME ), sameInstance( (Object) cache ) );
+    assertThat( cache.getConfiguration( PentahoCacheConfiguration.class ),
+      sameInstance( (Object) cacheConfiguration ) );
+
+    // the provider's cache reads and writes through the disk tier
+    ArgumentCaptor<PentahoCacheConfiguration> tierConfiguration =
+      ArgumentCaptor.forClass( PentahoCacheConfiguration.class );
+    verify( delegate ).createCache( eq( NAME ), tierConfiguration.capture() );
+    assertThat( tierConfiguration.getValue().isReadThrough(), is( true ) );
+    assertThat( tierConfiguration.getValue().isWriteThrough(), is( true ) );
+    assertThat( tierConfiguration.getValue().isPersistent(), is( false ) );
+    CacheWriter<String, String> cacheWriter =
+      (CacheWriter<String, String>) tierConfiguration.getValue().getCacheWriterFactory().create();
+    cacheWriter.write( new ImmutableCacheEntry<String, String>( "key", "value" ) );
+
+    cache.close();
+    verify( providerCache ).close();
+
+    // entries are loaded from disk when the cache is created again
+    cacheManager.createCache( NAME, cacheConfiguration );
+    verify( delegate, times( 2 ) ).createCache( eq( NAME ), tierConfiguration.capture() );
+    CacheLoader<String, String> cacheLoader =
+      (CacheLoader<String, String>) tierConfiguration.getValue().getCacheLoaderFactory().create();
+    assertThat( cacheLoader.load( "key" ), equalTo( "value" ) );
+
+    cacheManager.destroyCache( NAME );
+    verify( delegate ).destroyCache( NAME );
+    assertThat( temporaryFolder.getRoot().listFiles(), emptyArray() );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testOffHeapCache() throws Exception {
+    when( delegate.createCache( eq( NAME ), any( Configuration.class ) ) ).thenReturn( providerCache );
+
+    PentahoCacheConfiguration<String, String> cacheConfiguration = new PentahoCacheConfiguration<String, String>();
+    cacheConfiguration.setTypes( String.class, String.class );
+    cacheConfiguration.setMaxEntries( 10 );
+    cacheConfiguration.setOffHeap( 1024 * 1024, 64 * 1024 );
+    Cache<String, String> cache = cacheManager.createCache( NAME, cacheConfiguration );
+
+    // the provider's cache keeps the hot entries, and reads and writes through the off-heap tier
+    ArgumentCaptor<PentahoCacheConfiguration> tierConfiguration =
+      ArgumentCaptor.forClass( PentahoCacheConfiguration.class );
+    verify( delegate ).createCache( eq( NAME ), tierConfiguration.capture() );
+    assertThat( tierConfiguration.getValue().getMaxEntries(), equalTo( 10L ) );
+    assertThat( tierConfiguration.getValue().getOffHeapBytes(), equalTo( 0L ) );
+    assertThat( tierConfiguration.getValue().isReadThrough(), is( true ) );
+    CacheWriter<String, String> cacheWriter =
+      (CacheWriter<String, String>) tierConfiguration.getValue().getCacheWriterFactory().create();
+    cacheWriter.write( new ImmutableCacheEntry<String, String>( "key", "value" ) );
+
+    assertThat( cache.containsKey( "key" ), is( true ) );
+    CacheLoader<String, String> cacheLoader =
+      (CacheLoader<String, String>) tierConfiguration.getValue().getCacheLoaderFactory().create();
+    assertThat( cacheLoader.load( "key" ), equalTo( "value" ) );
+
+    cache.clear();
+    verify( providerCache ).clear();
+    assertThat( cacheLoader.load( "key" ), equalTo( null ) );
+
+    cacheManager.destroyCache( NAME );
+    verify( delegate ).destroyCache( NAME );
+    // nothing is stored on disk
+    assertThat( temporaryFolder.getRoot().listFiles(), emptyArray() );
+  }
 }
@@ -29,6 +29,9 @@ import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @RunWith( MockitoJUnitRunner.class )
@@ -38,6 +41,8 @@ public class PentahoCacheSystemConfigurationTest {
   @Mock private PentahoCacheManager cacheManager;
   @Mock private Configuration<java.lang.String, java.lang.Object> cacheConfiguration;
   @Mock private Cache<java.lang.String, java.lang.Object> cache;
+  @Mock private PentahoCacheSystemConfiguration.Listener listener;
+  @Mock private PentahoCacheSystemConfiguration.Listener failingListener;
 
   @Test
   public void testSetConfig() throws Exception {
@@ -48,10 +53,12 @@ public class PentahoCacheSystemConfigurationTest {
       .put( "private", "private-value" )
       .put( "global.common", "common-value" )
       .put( "global.override", "global-override-value" )
+      .put( "global.persistence.directory", "/var/cache" )
       .put( "template.default.override", "default-override-value" )
       .put( "template.first", "First Template Description" )
       .put( "template.first.template-prop", "template private value" )
       .put( "template.first.override", "template-override-value" )
+      .put( "template.first.ttl.resetOn", "ACCESS" )
       .put( "template.second.template-prop", "second template private value" );
 
     assertThat( systemConfiguration.getGlobalProperties(), isEmptyMap );
@@ -63,7 +70,8 @@ public class PentahoCacheSystemConfigurationTest {
 
     assertThat( systemConfiguration.getGlobalProperties(), Matchers.<Map<String, String>>equalTo( ImmutableMap.of(
       "common", "common-value",
-      "override", "global-override-value"
+      "override", "global-override-value",
+      "persistence.directory", "/var/cache"
     ) ) );
 
     Map<String, PentahoCacheTemplateConfiguration> templates = systemConfiguration.createTemplates( cacheManager );
@@ -73,7 +81,8 @@ public class PentahoCacheSystemConfigurationTest {
     assertThat( defaultTemplate.getDescription(), equalTo( Constants.DEFAULT_TEMPLATE_DESCRIPTION ) );
     assertThat( defaultTemplate.getProperties(), Matchers.<Map<String, String>>equalTo( ImmutableMap.of(
       "common", "common-value",
-      "override", "default-override-value"
+      "override", "default-override-value",
+      "persistence.directory", "/var/cache"
     ) ) );
 
     PentahoCacheTemplateConfiguration firstTemplate = templates.get( "first" );
@@ -83,7 +92,9 @@ public class PentahoCacheSystemConfigurationTest {
     assertThat( firstTemplate.getProperties(), Matchers.<Map<String, String>>equalTo( ImmutableMap.of(
       "common", "common-value",
       "override", "template-override-value",
-      "template-prop", "template private value"
+      "template-prop", "template private value",
+      "ttl.resetOn", "ACCESS",
+      "persistence.directory", "/var/cache"
     ) ) );
 
     when( cacheManager.createConfiguration( String.class, Object.class, firstTemplate.getProperties() ) )
@@ -92,4 +103,30 @@ public class PentahoCacheSystemConfigurationTest {
 
     assertThat( firstTemplate.createCache( "cacheName", String.class, Object.class ), equalTo( cache ) );
   }
+
+  @Test
+  public void testListeners() throws Exception {
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.addListener( failingListener );
+    systemConfiguration.addListener( listener );
+    doThrow( new IllegalStateException() ).when( failingListener ).configurationChanged( systemConfiguration );
+
+    systemConfiguration.setData( ImmutableMap.of(
+      "global.maxEntries", "100",
+      "template.first", "First Template Description",
+      "template.first.maxEntries", "10"
+    ) );
+
+    verify( failingListener ).configurationChanged( systemConfiguration );
+    verify( listener ).configurationChanged( systemConfiguration );
+    assertThat( systemConfiguration.getTemplateProperties(), Matchers.<Map<String, Map<String, String>>>equalTo(
+      ImmutableMap.<String, Map<String, String>>of(
+        Constants.DEFAULT_TEMPLATE, ImmutableMap.of( "maxEntries", "100" ),
+        "first", ImmutableMap.of( "maxEntries", "10" )
+      ) ) );
+
+    systemConfiguration.removeListener( listener );
+    systemConfiguration.setData( ImmutableMap.<String, String>of() );
+    verifyNoMoreInteractions( listener );
+  }
 }
@@ -15,8 +15,18 @@ package org.pentaho.caching.api;
 import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class PentahoCacheTemplateConfigurationTest {
 
@@ -37,4 +47,67 @@ public class PentahoCacheTemplateConfigurationTest {
     assertEquals( "bop", overriddenConfig.getProperties().get( "baz" ) );
   }
 
+  @Test public void testCreateConfigurationWithWeigher() throws Exception {
+    PentahoCacheManager cacheManager = mock( PentahoCacheManager.class );
+    Map<String, String> properties = ImmutableMap.of( Constants.CONFIG_MAX_WEIGHT, "1024" );
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setMaxWeight( 1024 );
+    when( cacheManager.createConfiguration( String.class, String.class, properties ) ).thenReturn( configuration );
+
+    Factory<EntryWeigher<Object, Object>> weigher = Constants.WeigherFunction.ENTRY.createFactory();
+    PentahoCacheTemplateConfiguration templateConfiguration =
+        new PentahoCacheTemplateConfiguration( "description", properties, cacheManager );
+
+    assertSame( configuration, templateConfiguration.createConfiguration( String.class, String.class, weigher ) );
+    assertSame( weigher, configuration.getWeigherFactory() );
+  }
+
+  @Test public void testCreateConfigurationWithLoaderAndWriter() throws Exception {
+    PentahoCacheManager cacheManager = mock( PentahoCacheManager.class );
+    Map<String, String> properties = ImmutableMap.of();
+    MutableConfiguration<String, String> configuration = new MutableConfiguration<String, String>();
+    when( cacheManager.createConfiguration( String.class, String.class, properties ) ).thenReturn( configuration );
+
+    Factory<CacheLoader<String, String>> loader = mock( Factory.class );
+    Factory<CacheWriter<Object, Object>> writer = mock( Factory.class );
+    new PentahoCacheTemplateConfiguration( "description", properties, cacheManager )
+        .createConfiguration( String.class, String.class, loader, writer );
+
+    assertSame( loader, configuration.getCacheLoaderFactory() );
+    assertTrue( configuration.isReadThrough() );
+    assertSame( writer, configuration.getCacheWriterFactory() );
+    assertTrue( configuration.isWriteThrough() );
+  }
+
+  @Test public void testCreateConfigurationRecordsTemplateName() throws Exception {
+    PentahoCacheManager cacheManager = mock( PentahoCacheManager.class );
+    Map<String, String> properties = ImmutableMap.of();
+    when( cacheManager.createConfiguration( String.class, String.class, properties ) )
+        .thenReturn( new PentahoCacheConfiguration<String, String>() );
+    PentahoCacheTemplateConfiguration templateConfiguration =
+        new PentahoCacheTemplateConfiguration( "small", "description", properties, cacheManager );
+
+    PentahoCacheConfiguration<String, String> configuration =
+        (PentahoCacheConfiguration<String, String>) templateConfiguration.createConfiguration( String.class,
+            String.class );
+    assertEquals( "small", configuration.getTemplateName() );
+    assertEquals( "small", configuration.copy().getTemplateName() );
+
+    // overridden templates don't follow changes of the named template
+    PentahoCacheTemplateConfiguration overriddenConfig =
+        templateConfiguration.overrideProperties( ImmutableMap.<String, String>of() );
+    assertNull( overriddenConfig.getName() );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateConfigurationWithWeigherNotSupported() throws Exception {
+    PentahoCacheManager cacheManager = mock( PentahoCacheManager.class );
+    Map<String, String> properties = ImmutableMap.of();
+    when( cacheManager.createConfiguration( String.class, String.class, properties ) )
+        .thenReturn( new MutableConfiguration<String, String>() );
+
+    new PentahoCacheTemplateConfiguration( "description", properties, cacheManager )
+        .createConfiguration( String.class, String.class, Constants.WeigherFunction.ENTRY.createFactory() );
+  }
+
 }
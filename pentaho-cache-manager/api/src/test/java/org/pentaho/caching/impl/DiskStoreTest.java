@@ -0,0 +1,243 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DiskStoreTest {
+  private static final int SEGMENT_SIZE = 256;
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private File directory;
+  private DiskStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = new File( temporaryFolder.getRoot(), "store" );
+    store = new DiskStore( directory, SEGMENT_SIZE );
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    store.close();
+  }
+
+  private static byte[] bytes( String string ) {
+    return string.getBytes( Charsets.UTF_8 );
+  }
+
+  private static String string( byte[] bytes ) {
+    return bytes != null ? new String( bytes, Charsets.UTF_8 ) : null;
+  }
+
+  private void reopen() throws IOException {
+    store.close();
+    store = new DiskStore( directory, SEGMENT_SIZE );
+  }
+
+  private File[] segments() {
+    return directory.listFiles( new FilenameFilter() {
+      @Override public boolean accept( File dir, String name ) {
+        return name.startsWith( "segment-" );
+      }
+    } );
+  }
+
+  @Test
+  public void testPutGetRemove() throws Exception {
+    assertThat( store.get( bytes( "key" ) ), nullValue() );
+
+    store.put( bytes( "key" ), bytes( "value" ) );
+    assertThat( string( store.get( bytes( "key" ) ) ), equalTo( "value" ) );
+    assertThat( store.containsKey( bytes( "key" ) ), is( true ) );
+
+    store.put( bytes( "key" ), bytes( "other" ) );
+    assertThat( string( store.get( bytes( "key" ) ) ), equalTo( "other" ) );
+    assertThat( store.size(), equalTo( 1 ) );
+
+    store.remove( bytes( "key" ) );
+    assertThat( store.containsKey( bytes( "key" ) ), is( false ) );
+
+    store.put( bytes( "key" ), new byte[ 0 ] );
+    assertThat( store.get( bytes( "key" ) ).length, equalTo( 0 ) );
+    store.remove( bytes( "key" ) );
+    assertThat( store.get( bytes( "key" ) ), nullValue() );
+    assertThat( store.size(), equalTo( 0 ) );
+  }
+
+  @Test
+  public void testRecovery() throws Exception {
+    for ( int i = 0; i < 50; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    store.remove( bytes( "key0" ) );
+    store.put( bytes( "key1" ), bytes( "updated" ) );
+    reopen();
+
+    assertThat( store.size(), equalTo( 49 ) );
+    assertThat( store.get( bytes( "key0" ) ), nullValue() );
+    assertThat( string( store.get( bytes( "key1" ) ) ), equalTo( "updated" ) );
+    assertThat( string( store.get( bytes( "key49" ) ) ), equalTo( "value49" ) );
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    for ( int i = 0; i < 1000; i++ ) {
+      store.put( bytes( "key" + i % 10 ), bytes( "value" + i ) );
+    }
+    // superseded records are dropped as segments fill up
+    assertThat( segments().length, lessThanOrEqualTo( 4 ) );
+    for ( int i = 0; i < 10; i++ ) {
+      assertThat( string( store.get( bytes( "key" + i ) ) ), equalTo( "value" + ( 990 + i ) ) );
+    }
+
+    reopen();
+    assertThat( store.size(), equalTo( 10 ) );
+    assertThat( string( store.get( bytes( "key9" ) ) ), equalTo( "value999" ) );
+  }
+
+  @Test
+  public void testTornRecord() throws Exception {
+    store.put( bytes( "key1" ), bytes( "value1" ) );
+    store.put( bytes( "key2" ), bytes( "value2" ) );
+    store.close();
+
+    // corrupt the value of the last record (the first one takes 22 bytes)
+    File segment = segments()[ 0 ];
+    try ( RandomAccessFile file = new RandomAccessFile( segment, "rw" ) ) {
+      file.seek( 22 + 12 + 4 + 1 );
+      file.write( 'X' );
+    }
+
+    store = new DiskStore( directory, SEGMENT_SIZE );
+    assertThat( string( store.get( bytes( "key1" ) ) ), equalTo( "value1" ) );
+    assertThat( store.get( bytes( "key2" ) ), nullValue() );
+  }
+
+  @Test
+  public void testLargeRecord() throws Exception {
+    byte[] value = new byte[ SEGMENT_SIZE * 2 ];
+    value[ value.length - 1 ] = 1;
+    store.put( bytes( "key" ), value );
+    reopen();
+    assertThat( store.get( bytes( "key" ) ), equalTo( value ) );
+  }
+
+  @Test
+  public void testRemoveIf() throws Exception {
+    for ( int i = 0; i < 10; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i % 2 ) );
+    }
+    int removed = store.removeIf( new Predicate<byte[]>() {
+      @Override public boolean apply( byte[] value ) {
+        return string( value ).equals( "value1" );
+      }
+    } );
+    assertThat( removed, equalTo( 5 ) );
+    reopen();
+    assertThat( store.size(), equalTo( 5 ) );
+    assertThat( store.containsKey( bytes( "key1" ) ), is( false ) );
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    for ( int i = 0; i < 50; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    store.clear();
+    assertThat( store.size(), equalTo( 0 ) );
+    assertThat( segments().length, equalTo( 1 ) );
+
+    reopen();
+    assertThat( store.size(), equalTo( 0 ) );
+  }
+
+  @Test
+  public void testUndeletableSegments() throws Exception {
+    // as when mapped files can't be deleted
+    final AtomicBoolean deletable = new AtomicBoolean( false );
+    Predicate<File> deleteFile = new Predicate<File>() {
+      @Override public boolean apply( File file ) {
+        return deletable.get() && file.delete();
+      }
+    };
+    store.close();
+    store = new DiskStore( directory, SEGMENT_SIZE, deleteFile );
+
+    for ( int i = 0; i < 1000; i++ ) {
+      store.put( bytes( "key" + i % 10 ), bytes( "value" + i ) );
+    }
+    store.remove( bytes( "key0" ) );
+    store.clear();
+    store.put( bytes( "key1" ), bytes( "cleared" ) );
+    assertThat( segments().length > 4, is( true ) );
+
+    // nothing comes back from the files left behind
+    store.close();
+    store = new DiskStore( directory, SEGMENT_SIZE, deleteFile );
+    assertThat( store.size(), equalTo( 1 ) );
+    assertThat( string( store.get( bytes( "key1" ) ) ), equalTo( "cleared" ) );
+
+    // and they are deleted once possible
+    deletable.set( true );
+    for ( int i = 0; i < 100; i++ ) {
+      store.put( bytes( "key1" ), bytes( "value" + i ) );
+    }
+    assertThat( segments().length, lessThanOrEqualTo( 4 ) );
+    reopen();
+    assertThat( store.size(), equalTo( 1 ) );
+  }
+
+  @Test
+  public void testLocked() throws Exception {
+    try {
+      new DiskStore( directory, SEGMENT_SIZE );
+      fail();
+    } catch ( IOException e ) {
+      // expected
+    }
+    reopen();
+  }
+
+  @Test
+  public void testDestroy() throws Exception {
+    store.put( bytes( "key" ), bytes( "value" ) );
+    store.destroy();
+    assertThat( directory.exists(), is( false ) );
+  }
+
+  @Test( expected = IllegalStateException.class )
+  public void testClosed() throws Exception {
+    store.close();
+    store.get( bytes( "key" ) );
+  }
+}
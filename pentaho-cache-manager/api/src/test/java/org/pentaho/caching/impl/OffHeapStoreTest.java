@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Predicate;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OffHeapStoreTest {
+  private static final int PAGE_SIZE = 128;
+
+  private OffHeapStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    store = new OffHeapStore( 4 * PAGE_SIZE, PAGE_SIZE );
+  }
+
+  private static byte[] bytes( String string ) {
+    return string.getBytes( Charsets.UTF_8 );
+  }
+
+  private static String string( byte[] bytes ) {
+    return bytes != null ? new String( bytes, Charsets.UTF_8 ) : null;
+  }
+
+  @Test
+  public void testPutGetRemove() throws Exception {
+    assertThat( store.get( bytes( "key" ) ), nullValue() );
+
+    store.put( bytes( "key" ), bytes( "value" ) );
+    assertThat( string( store.get( bytes( "key" ) ) ), equalTo( "value" ) );
+    assertThat( store.containsKey( bytes( "key" ) ), is( true ) );
+
+    store.put( bytes( "key" ), bytes( "other" ) );
+    assertThat( string( store.get( bytes( "key" ) ) ), equalTo( "other" ) );
+    assertThat( store.size(), equalTo( 1 ) );
+
+    store.remove( bytes( "key" ) );
+    assertThat( store.containsKey( bytes( "key" ) ), is( false ) );
+
+    store.put( bytes( "key" ), new byte[ 0 ] );
+    assertThat( store.get( bytes( "key" ) ).length, equalTo( 0 ) );
+    assertThat( store.getAllocatedBytes(), equalTo( (long) PAGE_SIZE ) );
+  }
+
+  @Test
+  public void testBudget() throws Exception {
+    for ( int i = 0; i < 1000; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    // the oldest entries are evicted to stay within budget
+    assertThat( store.getAllocatedBytes(), equalTo( 4L * PAGE_SIZE ) );
+    assertThat( store.getEvictions(), greaterThan( 0L ) );
+    assertThat( store.size(), equalTo( (int) ( 1000 - store.getEvictions() ) ) );
+    assertThat( store.get( bytes( "key0" ) ), nullValue() );
+    assertThat( string( store.get( bytes( "key999" ) ) ), equalTo( "value999" ) );
+  }
+
+  @Test
+  public void testHotEntriesSurviveRecycling() throws Exception {
+    store.put( bytes( "hot" ), bytes( "value" ) );
+    for ( int i = 0; i < 1000; i++ ) {
+      assertThat( string( store.get( bytes( "hot" ) ) ), equalTo( "value" ) );
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    assertThat( string( store.get( bytes( "hot" ) ) ), equalTo( "value" ) );
+
+    // unless they cool down
+    for ( int i = 0; i < 1000; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    assertThat( store.get( bytes( "hot" ) ), nullValue() );
+  }
+
+  @Test
+  public void testEntryBiggerThanPage() throws Exception {
+    store.put( bytes( "key" ), bytes( "value" ) );
+    store.put( bytes( "key" ), new byte[ PAGE_SIZE ] );
+    // not stored, and the previous value is gone
+    assertThat( store.containsKey( bytes( "key" ) ), is( false ) );
+  }
+
+  @Test
+  public void testRemoveIf() throws Exception {
+    for ( int i = 0; i < 10; i++ ) {
+      store.put( bytes( "key" + i ), bytes( "value" + i ) );
+    }
+    int removed = store.removeIf( new Predicate<byte[]>() {
+      @Override public boolean apply( byte[] value ) {
+        return string( value ).compareTo( "value5" ) < 0;
+      }
+    } );
+    assertThat( removed, equalTo( 5 ) );
+    assertThat( store.size(), equalTo( 5 ) );
+    assertThat( store.containsKey( bytes( "key4" ) ), is( false ) );
+    assertThat( store.containsKey( bytes( "key5" ) ), is( true ) );
+  }
+
+  @Test
+  public void testClearAndClose() throws Exception {
+    store.put( bytes( "key" ), bytes( "value" ) );
+    store.clear();
+    assertThat( store.size(), equalTo( 0 ) );
+    assertThat( store.getAllocatedBytes(), equalTo( 0L ) );
+
+    store.put( bytes( "key" ), bytes( "value" ) );
+    store.close();
+    assertThat( store.getAllocatedBytes(), equalTo( 0L ) );
+    try {
+      store.get( bytes( "key" ) );
+      fail();
+    } catch ( IllegalStateException e ) {
+      // closed
+    }
+  }
+}
@@ -0,0 +1,247 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.caching.api.EntryCodec;
+import org.pentaho.caching.api.JavaSerializationCodec;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
+
+import javax.cache.Cache;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith( MockitoJUnitRunner.class )
+public class StoreTierTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  @Mock private CacheLoader<String, String> cacheLoader;
+  @Mock private CacheWriter<String, String> cacheWriter;
+  private File directory;
+  private EntryCodec<String, String> codec;
+  private StoreTier<String, String> tier;
+  private long time = 1000;
+  private final Clock clock = new Clock() {
+    @Override public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override public Clock withZone( ZoneId zone ) {
+      return this;
+    }
+
+    @Override public Instant instant() {
+      return Instant.ofEpochMilli( time );
+    }
+  };
+
+  @Before
+  public void setUp() throws Exception {
+    directory = temporaryFolder.getRoot();
+    codec = new JavaSerializationCodec<String, String>( getClass().getClassLoader() );
+    tier = open();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    tier.close();
+  }
+
+  private StoreTier<String, String> open() throws IOException {
+    return new StoreTier<String, String>( new DiskStore( directory, DiskStore.DEFAULT_SEGMENT_SIZE ), codec,
+      new CreatedExpiryPolicy( new Duration( TimeUnit.MILLISECONDS, 100 ) ), cacheLoader, cacheWriter, clock );
+  }
+
+  private void reopen() throws IOException {
+    tier.close();
+    tier = open();
+  }
+
+  @Test
+  public void testWriteThenLoad() throws Exception {
+    Cache.Entry<String, String> entry = new ImmutableCacheEntry<String, String>( "key", "value" );
+    tier.write( entry );
+    verify( cacheWriter ).write( entry );
+
+    reopen();
+    assertThat( tier.load( "key" ), equalTo( "value" ) );
+    assertThat( tier.containsKey( "key" ), is( true ) );
+    verifyNoInteractions( cacheLoader );
+
+    tier.delete( "key" );
+    verify( cacheWriter ).delete( "key" );
+    assertThat( tier.containsKey( "key" ), is( false ) );
+  }
+
+  @Test
+  public void testLoadThrough() throws Exception {
+    when( cacheLoader.load( "key" ) ).thenReturn( "value" );
+    assertThat( tier.load( "key" ), equalTo( "value" ) );
+    assertThat( tier.load( "key" ), equalTo( "value" ) );
+    // loaded once, and then read from disk
+    verify( cacheLoader ).load( "key" );
+
+    assertThat( tier.load( "missing" ), nullValue() );
+    assertThat( tier.containsKey( "missing" ), is( false ) );
+  }
+
+  @Test
+  public void testLoadAll() throws Exception {
+    tier.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    when( cacheLoader.loadAll( ImmutableList.of( "key2", "key3" ) ) ).thenReturn( ImmutableMap.of( "key2", "value2" ) );
+
+    assertThat( tier.loadAll( ImmutableList.of( "key1", "key2", "key3" ) ),
+      equalTo( (Object) ImmutableMap.of( "key1", "value1", "key2", "value2" ) ) );
+    assertThat( tier.containsKey( "key2" ), is( true ) );
+  }
+
+  @Test
+  public void testWriteAll() throws Exception {
+    List<Cache.Entry<? extends String, ? extends String>> entries = Lists.newArrayList();
+    entries.add( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    entries.add( new ImmutableCacheEntry<String, String>( "key2", "value2" ) );
+    tier.writeAll( entries );
+    assertThat( entries, empty() );
+    assertThat( tier.load( "key2" ), equalTo( "value2" ) );
+
+    Collection<Object> keys = Lists.<Object>newArrayList( "key1", "key2" );
+    tier.deleteAll( keys );
+    assertThat( keys, empty() );
+    assertThat( tier.containsKey( "key1" ), is( false ) );
+  }
+
+  @Test
+  public void testWriterFailure() throws Exception {
+    Cache.Entry<String, String> entry = new ImmutableCacheEntry<String, String>( "key", "value" );
+    doThrow( new CacheWriterException() ).when( cacheWriter ).write( entry );
+    try {
+      tier.write( entry );
+      fail();
+    } catch ( CacheWriterException e ) {
+      // the entry isn't stored either
+      assertThat( tier.containsKey( "key" ), is( false ) );
+    }
+  }
+
+  @Test
+  public void testUndecodableEntry() throws Exception {
+    tier.write( new ImmutableCacheEntry<String, String>( "key", "value" ) );
+    tier.close();
+
+    @SuppressWarnings( "unchecked" ) EntryCodec<String, String> failingCodec = mock( EntryCodec.class );
+    when( failingCodec.encodeKey( "key" ) ).thenReturn( codec.encodeKey( "key" ) );
+    when( failingCodec.decodeValue( any( byte[].class ) ) ).thenThrow( new IOException( "incompatible class" ) );
+    codec = failingCodec;
+    tier = open();
+
+    // treated as a miss, and discarded
+    when( cacheLoader.load( "key" ) ).thenReturn( null );
+    assertThat( tier.load( "key" ), nullValue() );
+    assertThat( tier.containsKey( "key" ), is( false ) );
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    tier.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    time += 50;
+    tier.write( new ImmutableCacheEntry<String, String>( "key2", "value2" ) );
+
+    time += 60;
+    assertThat( tier.containsKey( "key1" ), is( false ) );
+    assertThat( tier.load( "key1" ), nullValue() );
+    assertThat( tier.load( "key2" ), equalTo( "value2" ) );
+
+    // expired entries are removed when the tier is opened
+    time += 50;
+    reopen();
+    assertThat( tier.containsKey( "key2" ), is( false ) );
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    tier.write( new ImmutableCacheEntry<String, String>( "key", "value" ) );
+    tier.clear();
+    reopen();
+    assertThat( tier.containsKey( "key" ), is( false ) );
+  }
+
+  @Test
+  public void testDestroy() throws Exception {
+    File cacheDirectory = new File( directory, "cache" );
+    StoreTier<String, String> cacheTier = new StoreTier<String, String>(
+      new DiskStore( cacheDirectory, DiskStore.DEFAULT_SEGMENT_SIZE ), codec, null, null, null );
+    cacheTier.write( new ImmutableCacheEntry<String, String>( "key", "value" ) );
+    cacheTier.destroy();
+    assertThat( cacheDirectory.exists(), is( false ) );
+  }
+
+  @Test
+  public void testOffHeapInFrontOfDisk() throws Exception {
+    OffHeapStore offHeapStore = new OffHeapStore( 1024, 1024 );
+    StoreTier<String, String> offHeapTier = new StoreTier<String, String>( offHeapStore, codec,
+      new CreatedExpiryPolicy( new Duration( TimeUnit.MILLISECONDS, 100 ) ), tier, tier, clock );
+
+    Cache.Entry<String, String> entry = new ImmutableCacheEntry<String, String>( "key", "value" );
+    offHeapTier.write( entry );
+    verify( cacheWriter ).write( entry );
+    assertThat( tier.containsKey( "key" ), is( true ) );
+
+    // entries evicted from the off-heap tier are read from disk, and stored off-heap again
+    offHeapStore.clear();
+    assertThat( offHeapTier.containsKey( "key" ), is( true ) );
+    assertThat( offHeapTier.load( "key" ), equalTo( "value" ) );
+    assertThat( offHeapStore.size(), equalTo( 1 ) );
+    verifyNoInteractions( cacheLoader );
+
+    offHeapTier.clear();
+    assertThat( tier.containsKey( "key" ), is( false ) );
+
+    // closing the off-heap tier closes the disk tier behind it
+    offHeapTier.close();
+    tier = open();
+  }
+}
@@ -22,6 +22,9 @@ import javax.cache.Cache;
 import javax.cache.CacheException;
 import javax.cache.configuration.Configuration;
 import javax.cache.configuration.MutableConfiguration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.List;
 import java.util.Map;
 
@@ -57,7 +60,11 @@ public class AbstractCacheManagerTest {
   @Before
   public void setUp() throws Exception {
     mockCaches = Lists.newArrayList();
-    cacheManager = new AbstractCacheManager() {
+    cacheManager = newCacheManager();
+  }
+
+  private AbstractCacheManager newCacheManager() {
+    return new AbstractCacheManager() {
       @Override
       public <K, V, C extends Configuration<K, V>> Cache<K, V> newCache( String cacheName, C configuration ) {
         Cache cache = mock( Cache.class );
@@ -139,4 +146,73 @@ public class AbstractCacheManagerTest {
     }
     assertThat( cacheManager.getCacheNames(), emptyIterable() );
   }
+
+  @Test
+  public void testEnableStatistics() throws Exception {
+    MutableConfiguration<String, Map> configuration = new MutableConfiguration<String, Map>();
+    configuration.setTypes( String.class, Map.class );
+    configuration.setStatisticsEnabled( true );
+    Cache<String, Map> cache = cacheManager.createCache( CACHE_NAME, configuration );
+    // mock caches don't record statistics
+    assertThat( cacheManager.getCacheStatistics( CACHE_NAME ), nullValue() );
+
+    CacheStatistics statistics = new CacheStatistics();
+    when( cache.unwrap( CacheStatistics.class ) ).thenReturn( statistics );
+    cacheManager.enableStatistics( CACHE_NAME, true );
+
+    assertThat( statistics.isEnabled(), is( true ) );
+    assertThat( cacheManager.getCacheStatistics( CACHE_NAME ), sameInstance( (Object) statistics ) );
+    ObjectName objectName = mBeanName( "CacheStatistics" );
+    assertThat( mBeanServer().isRegistered( objectName ), is( true ) );
+    assertThat( mBeanServer().getAttribute( objectName, "CacheHits" ), is( (Object) 0L ) );
+
+    cacheManager.enableStatistics( CACHE_NAME, false );
+    assertThat( statistics.isEnabled(), is( false ) );
+    assertThat( cacheManager.getCacheStatistics( CACHE_NAME ), nullValue() );
+    assertThat( mBeanServer().isRegistered( objectName ), is( false ) );
+  }
+
+  @Test
+  public void testEnableManagement() throws Exception {
+    MutableConfiguration<String, Map> configuration = new MutableConfiguration<String, Map>();
+    configuration.setTypes( String.class, Map.class );
+    configuration.setManagementEnabled( true );
+    cacheManager.createCache( CACHE_NAME, configuration );
+
+    ObjectName objectName = mBeanName( "CacheConfiguration" );
+    assertThat( mBeanServer().isRegistered( objectName ), is( true ) );
+    assertThat( mBeanServer().getAttribute( objectName, "KeyType" ), is( (Object) String.class.getName() ) );
+    assertThat( mBeanServer().getAttribute( objectName, "StatisticsEnabled" ), is( (Object) false ) );
+
+    cacheManager.destroyCache( CACHE_NAME );
+    assertThat( mBeanServer().isRegistered( objectName ), is( false ) );
+  }
+
+  @Test
+  public void testMBeansOfOtherManagersAreKept() throws Exception {
+    MutableConfiguration<String, Map> configuration = new MutableConfiguration<String, Map>();
+    configuration.setTypes( String.class, Map.class );
+    configuration.setManagementEnabled( true );
+    cacheManager.createCache( CACHE_NAME, configuration );
+
+    // same URI, so the name of its MBean is taken
+    AbstractCacheManager otherCacheManager = newCacheManager();
+    assertThat( otherCacheManager.getURI(), is( cacheManager.getURI() ) );
+    otherCacheManager.createCache( CACHE_NAME, configuration );
+    otherCacheManager.close();
+
+    ObjectName objectName = mBeanName( "CacheConfiguration" );
+    assertThat( mBeanServer().isRegistered( objectName ), is( true ) );
+    cacheManager.destroyCache( CACHE_NAME );
+    assertThat( mBeanServer().isRegistered( objectName ), is( false ) );
+  }
+
+  private MBeanServer mBeanServer() {
+    return ManagementFactory.getPlatformMBeanServer();
+  }
+
+  private ObjectName mBeanName( String type ) throws Exception {
+    return new ObjectName( "javax.cache:type=" + type + ",CacheManager=" + cacheManager.getURI()
+      + ",Cache=" + CACHE_NAME );
+  }
 }
@@ -12,6 +12,7 @@
 
 package org.pentaho.caching.spi;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.hamcrest.Matchers;
 import org.junit.Test;
@@ -20,6 +21,8 @@ import org.mockito.Answers;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.JavaSerializationCodec;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
 
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.expiry.AccessedExpiryPolicy;
@@ -59,5 +62,137 @@ public class AbstractCacheProvidingServiceTest {
     assertThat( expiryPolicy, instanceOf( AccessedExpiryPolicy.class ) );
     assertThat( expiryPolicy.getExpiryForAccess(), equalTo( new Duration( TimeUnit.MINUTES, 2 ) ) );
     assertThat( expiryPolicy.getExpiryForUpdate(), nullValue() );
+
+    PentahoCacheConfiguration<String, List> bounded = (PentahoCacheConfiguration<String, List>) configuration;
+    assertThat( bounded.getMaxEntries(), equalTo( PentahoCacheConfiguration.UNBOUNDED ) );
+    assertThat( bounded.getMaxWeight(), equalTo( PentahoCacheConfiguration.UNBOUNDED ) );
+    assertThat( bounded.getWeigherFactory(), nullValue() );
+  }
+
+  @Test
+  public void testCreateBoundedConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of(
+        Constants.CONFIG_MAX_WEIGHT, "1024",
+        Constants.CONFIG_WEIGHER, Constants.WeigherFunction.ENTRY.name()
+      ) );
+
+    assertThat( configuration.getMaxWeight(), equalTo( 1024L ) );
+    assertThat( configuration.getMaxEntries(), equalTo( PentahoCacheConfiguration.UNBOUNDED ) );
+    assertThat( configuration.getWeigherFactory().create().weigh( "key", ImmutableList.of() ), equalTo( 1 ) );
+
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of( Constants.CONFIG_MAX_ENTRIES, "100" ) );
+    assertThat( configuration.getMaxEntries(), equalTo( 100L ) );
+    assertThat( configuration.getWeigherFactory(), nullValue() );
+    assertThat( configuration.getRefreshAfterWrite(), nullValue() );
+  }
+
+  @Test
+  public void testCreateRefreshingConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of( Constants.CONFIG_REFRESH, "300" ) );
+
+    assertThat( configuration.getRefreshAfterWrite(), equalTo( new Duration( TimeUnit.MINUTES, 5 ) ) );
+  }
+
+  @Test
+  public void testCreateWriteBehindConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of(
+        Constants.CONFIG_WRITE_BEHIND, "5",
+        Constants.CONFIG_WRITE_BEHIND_BATCH_SIZE, "10"
+      ) );
+
+    assertThat( configuration.getWriteBehindDelay(), equalTo( new Duration( TimeUnit.SECONDS, 5 ) ) );
+    assertThat( configuration.getWriteBehindBatchSize(), equalTo( 10 ) );
+
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.<String, String>of() );
+    assertThat( configuration.getWriteBehindDelay(), nullValue() );
+  }
+
+  @Test
+  public void testCreateListenerConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of(
+        Constants.CONFIG_LISTENER_QUEUE_SIZE, "10",
+        Constants.CONFIG_LISTENER_OVERFLOW, "BLOCK"
+      ) );
+
+    assertThat( configuration.getListenerQueueSize(), equalTo( 10 ) );
+    assertThat( configuration.getListenerBatchSize(), equalTo( Constants.CONFIG_LISTENER_BATCH_SIZE_DEFAULT ) );
+    assertThat( configuration.getListenerOverflow(), equalTo( Constants.ListenerOverflow.BLOCK ) );
+  }
+
+  @Test
+  public void testCreatePersistentConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of(
+        Constants.CONFIG_PERSISTENT, "true",
+        Constants.CONFIG_PERSISTENT_CODEC, JavaSerializationCodec.class.getName()
+      ) );
+
+    assertThat( configuration.isPersistent(), equalTo( true ) );
+    assertThat( configuration.getEntryCodecFactory().create(), instanceOf( JavaSerializationCodec.class ) );
+
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.<String, String>of() );
+    assertFalse( configuration.isPersistent() );
+    assertThat( configuration.getEntryCodecFactory(), nullValue() );
+  }
+
+  @Test
+  public void testCreateOffHeapConfiguration() throws Exception {
+    PentahoCacheConfiguration<String, List> configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of( Constants.CONFIG_OFF_HEAP, "64m" ) );
+    assertThat( configuration.getOffHeapBytes(), equalTo( 64L * 1024 * 1024 ) );
+    assertThat( configuration.getOffHeapPageSize(), equalTo( Constants.CONFIG_OFF_HEAP_PAGE_SIZE_DEFAULT ) );
+
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of(
+        Constants.CONFIG_OFF_HEAP, "512k",
+        Constants.CONFIG_OFF_HEAP_PAGE_SIZE, "4096"
+      ) );
+    assertThat( configuration.getOffHeapBytes(), equalTo( 512L * 1024 ) );
+    assertThat( configuration.getOffHeapPageSize(), equalTo( 4096 ) );
+
+    // small budgets are a single page
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.of( Constants.CONFIG_OFF_HEAP, "1000" ) );
+    assertThat( configuration.getOffHeapBytes(), equalTo( 1000L ) );
+    assertThat( configuration.getOffHeapPageSize(), equalTo( 1000 ) );
+
+    configuration = (PentahoCacheConfiguration<String, List>)
+      service.createConfiguration( String.class, List.class, ImmutableMap.<String, String>of() );
+    assertThat( configuration.getOffHeapBytes(), equalTo( 0L ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateConfigurationInvalidOffHeap() throws Exception {
+    service.createConfiguration( String.class, List.class, ImmutableMap.of( Constants.CONFIG_OFF_HEAP, "64x" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateConfigurationInvalidListenerOverflow() throws Exception {
+    service.createConfiguration( String.class, List.class, ImmutableMap.of(
+      Constants.CONFIG_LISTENER_OVERFLOW, "WAIT"
+    ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateConfigurationBothBounds() throws Exception {
+    service.createConfiguration( String.class, List.class, ImmutableMap.of(
+      Constants.CONFIG_MAX_ENTRIES, "100",
+      Constants.CONFIG_MAX_WEIGHT, "1024"
+    ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testCreateConfigurationInvalidWeigher() throws Exception {
+    service.createConfiguration( String.class, List.class, ImmutableMap.of(
+      Constants.CONFIG_MAX_WEIGHT, "1024",
+      Constants.CONFIG_WEIGHER, "UNKNOWN"
+    ) );
   }
 }
@@ -0,0 +1,335 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.pentaho.caching.api.Constants.ListenerOverflow;
+
+import javax.cache.Cache;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryEventFilter;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListenerException;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.event.EventType;
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CacheEventDispatcherTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private long time;
+  private final List<Runnable> tasks = Collections.synchronizedList( Lists.<Runnable>newArrayList() );
+  private final Executor executor = new Executor() {
+    @Override public void execute( Runnable command ) {
+      tasks.add( command );
+    }
+  };
+  @SuppressWarnings( "unchecked" )
+  private final Cache<String, String> source = mock( Cache.class );
+  private RecordingListener listener;
+  private CacheEventDispatcher<String, String> dispatcher;
+
+  @Before
+  public void setUp() throws Exception {
+    listener = new RecordingListener();
+    dispatcher = createDispatcher( ListenerOverflow.DROP );
+  }
+
+  private CacheEventDispatcher<String, String> createDispatcher( ListenerOverflow overflow ) {
+    CacheEventDispatcher<String, String> eventDispatcher =
+      new CacheEventDispatcher<String, String>( executor, 4, 3, overflow, new Ticker() {
+        @Override public long read() {
+          return time;
+        }
+      } );
+    eventDispatcher.setSource( source );
+    return eventDispatcher;
+  }
+
+  private CacheEntryListenerConfiguration<String, String> listenerConfiguration( boolean synchronous ) {
+    return new MutableCacheEntryListenerConfiguration<String, String>(
+      FactoryBuilder.factoryOf( listener ), null, true, synchronous );
+  }
+
+  private void runTasks() {
+    while ( !tasks.isEmpty() ) {
+      tasks.remove( 0 ).run();
+    }
+  }
+
+  @Test
+  public void testSynchronous() throws Exception {
+    assertThat( dispatcher.hasListeners(), is( false ) );
+    dispatcher.created( "key", "value" );
+
+    CacheEntryListenerConfiguration<String, String> configuration = listenerConfiguration( true );
+    dispatcher.register( configuration );
+    assertThat( dispatcher.hasListeners(), is( true ) );
+
+    dispatcher.created( "key", "value" );
+    dispatcher.updated( "key", "value2", "value" );
+    dispatcher.removed( "key", "value2" );
+    dispatcher.expired( "other", "value3" );
+
+    assertThat( tasks, empty() );
+    assertThat( listener.batches, contains( "CREATED key=value", "UPDATED key=value2 (value)",
+      "REMOVED key=value2 (value2)", "EXPIRED other=value3 (value3)" ) );
+    assertThat( listener.source, sameInstance( source ) );
+    assertThat( dispatcher.getDeliveredEvents(), equalTo( 4L ) );
+
+    dispatcher.deregister( configuration );
+    assertThat( dispatcher.hasListeners(), is( false ) );
+    dispatcher.created( "key", "value" );
+    assertThat( listener.batches, hasSize( 4 ) );
+  }
+
+  @Test
+  public void testSynchronousFailure() throws Exception {
+    listener.failure = new IllegalStateException( "listener failed" );
+    dispatcher.register( listenerConfiguration( true ) );
+
+    thrown.expect( CacheEntryListenerException.class );
+    dispatcher.created( "key", "value" );
+  }
+
+  @Test
+  public void testDuplicateRegistration() throws Exception {
+    CacheEntryListenerConfiguration<String, String> configuration = listenerConfiguration( true );
+    dispatcher.register( configuration );
+
+    thrown.expect( IllegalArgumentException.class );
+    dispatcher.register( configuration );
+  }
+
+  @Test
+  public void testFilterAndOldValue() throws Exception {
+    dispatcher.register( new MutableCacheEntryListenerConfiguration<String, String>(
+      FactoryBuilder.factoryOf( listener ), FactoryBuilder.factoryOf( new KeyFilter( "key" ) ), false, true ) );
+
+    dispatcher.updated( "key", "value2", "value" );
+    dispatcher.updated( "other", "value2", "value" );
+
+    assertThat( listener.batches, contains( "UPDATED key=value2" ) );
+  }
+
+  @Test
+  public void testAsynchronousBatches() throws Exception {
+    dispatcher.register( listenerConfiguration( false ) );
+
+    dispatcher.created( "a", "1" );
+    dispatcher.created( "b", "2" );
+    dispatcher.updated( "a", "3", "1" );
+    time += 5000;
+    dispatcher.removed( "b", "2" );
+
+    // a single drain is scheduled until the queue is drained
+    assertThat( tasks, hasSize( 1 ) );
+    assertThat( listener.batches, empty() );
+
+    time += 1000;
+    runTasks();
+
+    // batches of 3 events, consecutive events of the same type are delivered together
+    assertThat( listener.batches, contains( "CREATED a=1, b=2", "UPDATED a=3 (1)", "REMOVED b=2 (2)" ) );
+    assertThat( dispatcher.getDeliveredEvents(), equalTo( 4L ) );
+    assertThat( dispatcher.getDroppedEvents(), equalTo( 0L ) );
+    // microseconds
+    assertThat( dispatcher.getMaxDispatchLatency(), equalTo( 6f ) );
+    assertThat( dispatcher.getAverageDispatchLatency(), equalTo( 4.75f ) );
+  }
+
+  @Test
+  public void testAsynchronousFailure() throws Exception {
+    listener.failure = new IllegalStateException( "listener failed" );
+    dispatcher.register( listenerConfiguration( false ) );
+
+    // failures are logged, and don't stop the delivery of the next events
+    dispatcher.created( "a", "1" );
+    runTasks();
+    dispatcher.created( "b", "2" );
+    runTasks();
+
+    assertThat( listener.batches, contains( "CREATED a=1", "CREATED b=2" ) );
+  }
+
+  @Test
+  public void testDropOverflow() throws Exception {
+    dispatcher.register( listenerConfiguration( false ) );
+
+    for ( int i = 0; i < 6; i++ ) {
+      dispatcher.created( "key" + i, "value" );
+    }
+    runTasks();
+
+    assertThat( listener.batches, contains( "CREATED key0=value, key1=value, key2=value", "CREATED key3=value" ) );
+    assertThat( dispatcher.getDroppedEvents(), equalTo( 2L ) );
+  }
+
+  @Test
+  public void testBlockOverflow() throws Exception {
+    final CacheEventDispatcher<String, String> blocking = createDispatcher( ListenerOverflow.BLOCK );
+    blocking.register( listenerConfiguration( false ) );
+    for ( int i = 0; i < 4; i++ ) {
+      blocking.created( "key" + i, "value" );
+    }
+
+    Thread writer = new Thread() {
+      @Override public void run() {
+        blocking.created( "key4", "value" );
+      }
+    };
+    writer.start();
+    writer.join( 100 );
+    assertThat( writer.isAlive(), is( true ) );
+
+    // draining the queue releases the writer
+    tasks.remove( 0 ).run();
+    writer.join( 10000 );
+    assertThat( writer.isAlive(), is( false ) );
+
+    runTasks();
+    assertThat( listener.batches, contains( "CREATED key0=value, key1=value, key2=value",
+      "CREATED key3=value, key4=value" ) );
+    assertThat( blocking.getDroppedEvents(), equalTo( 0L ) );
+  }
+
+  @Test
+  public void testRejectedDrain() throws Exception {
+    CacheEventDispatcher<String, String> rejecting = new CacheEventDispatcher<String, String>( new Executor() {
+      @Override public void execute( Runnable command ) {
+        throw new RejectedExecutionException();
+      }
+    }, 4, 3, ListenerOverflow.DROP );
+    rejecting.setSource( source );
+    rejecting.register( listenerConfiguration( false ) );
+
+    rejecting.created( "key", "value" );
+
+    assertThat( listener.batches, empty() );
+    assertThat( rejecting.getDroppedEvents(), equalTo( 1L ) );
+  }
+
+  @Test( expected = IllegalStateException.class )
+  public void testDispatchWithoutSource() throws Exception {
+    CacheEventDispatcher<String, String> withoutSource =
+      new CacheEventDispatcher<String, String>( executor, 4, 3, ListenerOverflow.DROP );
+    withoutSource.register( listenerConfiguration( true ) );
+
+    withoutSource.created( "key", "value" );
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    dispatcher.register( listenerConfiguration( false ) );
+    dispatcher.created( "key", "value" );
+
+    dispatcher.close();
+    assertThat( dispatcher.hasListeners(), is( false ) );
+    assertThat( listener.closed, is( true ) );
+
+    // queued events are still delivered
+    runTasks();
+    assertThat( listener.batches, contains( "CREATED key=value" ) );
+  }
+
+  public static class RecordingListener implements CacheEntryCreatedListener<String, String>,
+    CacheEntryUpdatedListener<String, String>, CacheEntryRemovedListener<String, String>,
+    CacheEntryExpiredListener<String, String>, Closeable, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final List<String> batches = Lists.newArrayList();
+    transient RuntimeException failure;
+    transient Object source;
+    boolean closed;
+
+    private void record( Iterable<CacheEntryEvent<? extends String, ? extends String>> events ) {
+      StringBuilder batch = new StringBuilder();
+      EventType eventType = null;
+      for ( CacheEntryEvent<? extends String, ? extends String> event : events ) {
+        assertThat( eventType == null || eventType == event.getEventType(), is( true ) );
+        eventType = event.getEventType();
+        source = event.getSource();
+        batch.append( batch.length() == 0 ? eventType + " " : ", " )
+          .append( event.getKey() ).append( '=' ).append( event.getValue() );
+        if ( event.isOldValueAvailable() ) {
+          batch.append( " (" ).append( event.getOldValue() ).append( ')' );
+        } else {
+          assertThat( event.getOldValue(), nullValue() );
+        }
+      }
+      batches.add( batch.toString() );
+      if ( failure != null ) {
+        throw failure;
+      }
+    }
+
+    @Override public void onCreated( Iterable<CacheEntryEvent<? extends String, ? extends String>> events ) {
+      record( events );
+    }
+
+    @Override public void onUpdated( Iterable<CacheEntryEvent<? extends String, ? extends String>> events ) {
+      record( events );
+    }
+
+    @Override public void onRemoved( Iterable<CacheEntryEvent<? extends String, ? extends String>> events ) {
+      record( events );
+    }
+
+    @Override public void onExpired( Iterable<CacheEntryEvent<? extends String, ? extends String>> events ) {
+      record( events );
+    }
+
+    @Override public void close() {
+      closed = true;
+    }
+  }
+
+  public static class KeyFilter implements CacheEntryEventFilter<String, String>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String key;
+
+    KeyFilter( String key ) {
+      this.key = key;
+    }
+
+    @Override public boolean evaluate( CacheEntryEvent<? extends String, ? extends String> event ) {
+      return key.equals( event.getKey() );
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CacheStatisticsTest {
+  private long time;
+  private CacheStatistics statistics;
+
+  @Before
+  public void setUp() throws Exception {
+    statistics = new CacheStatistics( new Ticker() {
+      @Override public long read() {
+        return time;
+      }
+    } );
+    statistics.setEnabled( true );
+  }
+
+  @Test
+  public void testCounters() throws Exception {
+    statistics.recordHits( 3 );
+    statistics.recordMisses( 1 );
+    statistics.recordPuts( 2 );
+    statistics.recordRemovals( 1 );
+    statistics.recordEvictions( 5 );
+
+    assertThat( statistics.getCacheHits(), equalTo( 3L ) );
+    assertThat( statistics.getCacheMisses(), equalTo( 1L ) );
+    assertThat( statistics.getCacheGets(), equalTo( 4L ) );
+    assertThat( statistics.getCacheHitPercentage(), equalTo( 75f ) );
+    assertThat( statistics.getCacheMissPercentage(), equalTo( 25f ) );
+    assertThat( statistics.getCachePuts(), equalTo( 2L ) );
+    assertThat( statistics.getCacheRemovals(), equalTo( 1L ) );
+    assertThat( statistics.getCacheEvictions(), equalTo( 5L ) );
+
+    statistics.clear();
+    assertThat( statistics.getCacheGets(), equalTo( 0L ) );
+    assertThat( statistics.getCacheHitPercentage(), equalTo( 0f ) );
+    assertThat( statistics.getCacheEvictions(), equalTo( 0L ) );
+  }
+
+  @Test
+  public void testAverageTimes() throws Exception {
+    assertThat( statistics.getAverageGetTime(), equalTo( 0f ) );
+
+    long start = statistics.startTime();
+    time += 3000;
+    statistics.recordGetTime( start );
+    start = statistics.startTime();
+    time += 1000;
+    statistics.recordGetTime( start );
+    statistics.recordPutTime( start );
+
+    // microseconds
+    assertThat( statistics.getAverageGetTime(), equalTo( 2f ) );
+    assertThat( statistics.getAveragePutTime(), equalTo( 1f ) );
+    assertThat( statistics.getAverageRemoveTime(), equalTo( 0f ) );
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    statistics.setEnabled( false );
+
+    long start = statistics.startTime();
+    assertThat( start, is( CacheStatistics.NOT_TIMED ) );
+    time += 1000;
+    statistics.recordHits( 1 );
+    statistics.recordGetTime( start );
+
+    statistics.setEnabled( true );
+    // started while disabled
+    statistics.recordPutTime( start );
+
+    assertThat( statistics.getCacheHits(), equalTo( 0L ) );
+    assertThat( statistics.getAverageGetTime(), equalTo( 0f ) );
+    assertThat( statistics.getAveragePutTime(), equalTo( 0f ) );
+  }
+}
@@ -0,0 +1,150 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.spi;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import javax.cache.Cache;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+@RunWith( MockitoJUnitRunner.class )
+public class WriteBehindCacheWriterTest {
+  @Mock private CacheWriter<String, String> cacheWriter;
+  @Mock private ScheduledExecutorService scheduler;
+  @Mock private ScheduledFuture<?> scheduledFlush;
+  private WriteBehindCacheWriter<String, String> writeBehind;
+
+  @Before
+  public void setUp() throws Exception {
+    doReturn( scheduledFlush ).when( scheduler ).schedule( any( Runnable.class ), anyLong(), any( TimeUnit.class ) );
+    writeBehind = new WriteBehindCacheWriter<String, String>( cacheWriter, 1000, 3, scheduler );
+  }
+
+  @Test
+  public void testDelayedFlush() throws Exception {
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key2", "value2" ) );
+
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass( Runnable.class );
+    // a single flush is scheduled, by the oldest operation
+    verify( scheduler ).schedule( flush.capture(), eq( 1000L ), eq( TimeUnit.MILLISECONDS ) );
+    verifyNoInteractions( cacheWriter );
+
+    flush.getValue().run();
+    verify( cacheWriter ).writeAll( ImmutableList.<Cache.Entry<? extends String, ? extends String>>of(
+      new ImmutableCacheEntry<String, String>( "key1", "value1" ),
+      new ImmutableCacheEntry<String, String>( "key2", "value2" ) ) );
+    verifyNoMoreInteractions( cacheWriter );
+  }
+
+  @Test
+  public void testCoalesce() throws Exception {
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key1", "value2" ) );
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key2", "value2" ) );
+    writeBehind.delete( "key2" );
+
+    writeBehind.flush();
+    verify( cacheWriter ).writeAll( ImmutableList.<Cache.Entry<? extends String, ? extends String>>of(
+      new ImmutableCacheEntry<String, String>( "key1", "value2" ) ) );
+    verify( cacheWriter ).deleteAll( ImmutableList.of( "key2" ) );
+    verifyNoMoreInteractions( cacheWriter );
+  }
+
+  @Test
+  public void testBatchSize() throws Exception {
+    for ( int i = 0; i < 3; i++ ) {
+      writeBehind.write( new ImmutableCacheEntry<String, String>( "key" + i, "value" ) );
+    }
+
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass( Runnable.class );
+    verify( scheduler ).execute( flush.capture() );
+    flush.getValue().run();
+    verify( cacheWriter ).writeAll( anyCollection() );
+  }
+
+  @Test
+  public void testSingleSubmittedFlush() throws Exception {
+    for ( int i = 0; i < 6; i++ ) {
+      writeBehind.write( new ImmutableCacheEntry<String, String>( "key" + i, "value" ) );
+    }
+
+    // the flush submitted at the batch size takes all the operations queued until it runs
+    ArgumentCaptor<Runnable> flush = ArgumentCaptor.forClass( Runnable.class );
+    verify( scheduler ).execute( flush.capture() );
+    flush.getValue().run();
+    verify( cacheWriter ).writeAll( anyCollection() );
+
+    for ( int i = 0; i < 3; i++ ) {
+      writeBehind.write( new ImmutableCacheEntry<String, String>( "key" + i, "value" ) );
+    }
+    verify( scheduler, times( 2 ) ).execute( any( Runnable.class ) );
+  }
+
+  @Test
+  public void testQueueLimit() throws Exception {
+    writeBehind = new WriteBehindCacheWriter<String, String>( cacheWriter, 1000, 3, 5, scheduler );
+    for ( int i = 0; i < 4; i++ ) {
+      writeBehind.write( new ImmutableCacheEntry<String, String>( "key" + i, "value" ) );
+    }
+    verifyNoInteractions( cacheWriter );
+
+    // the submitted flush hasn't run, so the writer that fills the queue writes it
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key4", "value" ) );
+    verify( cacheWriter ).writeAll( anyCollection() );
+    verify( scheduler ).execute( any( Runnable.class ) );
+  }
+
+  @Test
+  public void testFailuresAreDropped() throws Exception {
+    doThrow( new CacheWriterException( "unavailable" ) ).when( cacheWriter ).writeAll( anyCollection() );
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    writeBehind.delete( "key2" );
+
+    writeBehind.flush();
+    verify( cacheWriter ).deleteAll( ImmutableList.of( "key2" ) );
+
+    writeBehind.flush();
+    verify( cacheWriter ).writeAll( anyCollection() );
+  }
+
+  @Test( expected = CacheWriterException.class )
+  public void testClose() throws Exception {
+    writeBehind.write( new ImmutableCacheEntry<String, String>( "key1", "value1" ) );
+    writeBehind.close();
+    verify( cacheWriter ).writeAll( anyCollection() );
+
+    writeBehind.delete( "key1" );
+  }
+}
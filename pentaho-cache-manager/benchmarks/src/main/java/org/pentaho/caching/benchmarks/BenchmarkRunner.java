@@ -0,0 +1,56 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once for each number of threads, from 1 to 64, unless a number of threads is given with
+ * {@code -t}. Allocation profiling (gc profiler) is always enabled, and any other JMH command line option is accepted,
+ * e.g. {@code java -jar target/benchmarks.jar EntryProcessorBenchmark -p keyCount=1}, or
+ * {@code java -jar target/benchmarks.jar HitRatioBenchmark -p provider=caffeine -t 1}.
+ * <p>
+ * Unless providers are given with {@code -p provider=...}, the benchmarks run against every cache provider on the
+ * class path (see {@link CacheProviders}). {@link MemoryFootprintBenchmark} only runs single threaded.
+ */
+public final class BenchmarkRunner {
+  private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main( String[] args ) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions( args );
+
+    int[] threadCounts = commandLineOptions.getThreads().hasValue()
+      ? new int[] { commandLineOptions.getThreads().get() } : THREAD_COUNTS;
+    for ( int threads : threadCounts ) {
+      ChainedOptionsBuilder options = new OptionsBuilder()
+        .parent( commandLineOptions )
+        .threads( threads )
+        .addProfiler( GCProfiler.class );
+      if ( !commandLineOptions.getParameter( "provider" ).hasValue() ) {
+        options.param( "provider", CacheProviders.names().toArray( new String[ 0 ] ) );
+      }
+      if ( threads > 1 ) {
+        // heap usage is only meaningful single threaded
+        options.exclude( MemoryFootprintBenchmark.class.getSimpleName() );
+      }
+      new Runner( options.build() ).run();
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSortedSet;
+import org.pentaho.caching.api.PentahoCacheManager;
+import org.pentaho.caching.api.PentahoCacheProvidingService;
+import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+import org.pentaho.caching.impl.PentahoCacheManagerImpl;
+
+import javax.cache.Cache;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache providers the benchmarks run against, selected by their {@code provider} parameter. Providers are discovered
+ * with a {@link ServiceLoader}, from the {@code META-INF/services} entries of the provider modules on the class path,
+ * and named after their class: heap (the Guava RI), caffeine, ehcache. The class name of any other
+ * {@link PentahoCacheProvidingService} is accepted too, e.g. {@code -p provider=heap,com.example.MyProvidingService}.
+ * <p>
+ * Caches are created through a {@link PentahoCacheManager}, as in the platform, from template properties given as
+ * semicolon separated key=value pairs, e.g. {@code maxEntries=1000;offHeap=64m} (JMH splits parameters on commas).
+ */
+final class CacheProviders {
+  // one service per provider, as registered in the platform: EhcacheProvidingService shuts down the Ehcache manager
+  // shared by all of its instances when any of them is finalized, so services are only created once they are used
+  private static final ConcurrentMap<String, PentahoCacheProvidingService> SERVICES = new ConcurrentHashMap<>();
+
+  private CacheProviders() {
+  }
+
+  /**
+   * @return the names of the providers on the class path
+   */
+  static SortedSet<String> names() {
+    return ServiceLoader.load( PentahoCacheProvidingService.class ).stream()
+      .map( service -> nameOf( service.type() ) )
+      .collect( ImmutableSortedSet.toImmutableSortedSet( Comparator.naturalOrder() ) );
+  }
+
+  static PentahoCacheManager createCacheManager( String provider ) {
+    return new PentahoCacheManagerImpl( new PentahoCacheSystemConfiguration(),
+      SERVICES.computeIfAbsent( provider, CacheProviders::createService ) );
+  }
+
+  private static PentahoCacheProvidingService createService( String provider ) {
+    Optional<ServiceLoader.Provider<PentahoCacheProvidingService>> service =
+      ServiceLoader.load( PentahoCacheProvidingService.class ).stream()
+        .filter( candidate -> nameOf( candidate.type() ).equals( provider )
+          || candidate.type().getName().equals( provider ) )
+        .findFirst();
+    if ( service.isPresent() ) {
+      return service.get().get();
+    }
+    try {
+      return Class.forName( provider ).asSubclass( PentahoCacheProvidingService.class )
+        .getDeclaredConstructor().newInstance();
+    } catch ( ReflectiveOperationException | ClassCastException e ) {
+      throw new IllegalArgumentException( "Unknown cache provider: " + provider, e );
+    }
+  }
+
+  /**
+   * e.g. heap for HeapCacheProvidingService, ehcache for EhcacheProvidingService
+   */
+  private static String nameOf( Class<?> serviceClass ) {
+    return serviceClass.getSimpleName().replaceFirst( "(Cache)?ProvidingService$", "" ).toLowerCase( Locale.ROOT );
+  }
+
+  /**
+   * @param properties template properties, as semicolon separated key=value pairs
+   */
+  static <K, V> Cache<K, V> createCache( PentahoCacheManager cacheManager, String cacheName, Class<K> keyType,
+                                         Class<V> valueType, String properties ) {
+    Map<String, String> templateProperties = Splitter.on( ';' ).trimResults().omitEmptyStrings()
+      .withKeyValueSeparator( '=' ).split( Strings.nullToEmpty( properties ) );
+    return cacheManager.createCache( cacheName,
+      cacheManager.createConfiguration( keyType, valueType, templateProperties ) );
+  }
+}
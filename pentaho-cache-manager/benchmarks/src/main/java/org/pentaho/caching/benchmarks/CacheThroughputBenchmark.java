@@ -0,0 +1,119 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.caching.api.PentahoCacheManager;
+
+import javax.cache.Cache;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the basic operations of each provider, on a cache holding every key so that reads always hit. Keys
+ * are read and written following a zipfian trace, so hot keys are contended. Run with {@link BenchmarkRunner} to
+ * compare how the providers scale from 1 to 64 threads.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class CacheThroughputBenchmark {
+  private static final int TRACE_LENGTH = 1 << 20;
+
+  private static final EntryProcessor<Integer, Long, Long> INCREMENT = new EntryProcessor<Integer, Long, Long>() {
+    @Override public Long process( MutableEntry<Integer, Long> entry, Object... arguments ) {
+      long value = entry.exists() ? entry.getValue() + 1 : 1;
+      entry.setValue( value );
+      return value;
+    }
+  };
+
+  @Param( { "heap", "caffeine", "ehcache" } )
+  public String provider;
+
+  @Param( { "65536" } )
+  public int keyCount;
+
+  /**
+   * Template properties of the cache, e.g. {@code maxEntries=1000;offHeap=64m}.
+   */
+  @Param( { "" } )
+  public String properties;
+
+  private PentahoCacheManager cacheManager;
+  private Cache<Integer, Long> cache;
+  private Integer[] trace;
+
+  @Setup( Level.Trial )
+  public void setUp() {
+    cacheManager = CacheProviders.createCacheManager( provider );
+    cache = CacheProviders.createCache( cacheManager, "throughput", Integer.class, Long.class, properties );
+    for ( int key = 0; key < keyCount; key++ ) {
+      cache.put( key, 0L );
+    }
+    trace = Workload.ZIPFIAN.trace( keyCount, TRACE_LENGTH, new Random( 0 ) );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    cacheManager.destroyCache( "throughput" );
+    cacheManager.close();
+  }
+
+  /**
+   * Position of a thread in the trace, starting at a random offset so that threads don't access the same keys in
+   * lockstep.
+   */
+  @State( Scope.Thread )
+  public static class Cursor {
+    private int index = ThreadLocalRandom.current().nextInt( TRACE_LENGTH );
+
+    int next() {
+      index = ( index + 1 ) & ( TRACE_LENGTH - 1 );
+      return index;
+    }
+  }
+
+  @Benchmark
+  public Long get( Cursor cursor ) {
+    return cache.get( trace[ cursor.next() ] );
+  }
+
+  @Benchmark
+  public void put( Cursor cursor ) {
+    cache.put( trace[ cursor.next() ], 1L );
+  }
+
+  @Benchmark
+  public Long invoke( Cursor cursor ) {
+    return cache.invoke( trace[ cursor.next() ], INCREMENT );
+  }
+}
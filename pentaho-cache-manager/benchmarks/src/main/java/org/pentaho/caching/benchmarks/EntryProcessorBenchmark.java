@@ -0,0 +1,131 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.caching.ri.impl.GuavaCacheManager;
+
+import javax.cache.Cache;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter updates under contention: atomic entry processors ({@code invoke}, and {@code invokeAll} over a few keys)
+ * against the non atomic get and put sequence they replace, which loses updates. Run with {@link BenchmarkRunner} to
+ * compare them from 1 to 64 threads; fewer keys mean more contention.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class EntryProcessorBenchmark {
+  private static final int BULK_SIZE = 8;
+
+  private static final EntryProcessor<Integer, Long, Long> INCREMENT = new EntryProcessor<Integer, Long, Long>() {
+    @Override public Long process( MutableEntry<Integer, Long> entry, Object... arguments ) {
+      long value = entry.exists() ? entry.getValue() + 1 : 1;
+      entry.setValue( value );
+      return value;
+    }
+  };
+
+  @Param( { "1", "64", "4096" } )
+  public int keyCount;
+
+  private GuavaCacheManager cacheManager;
+  private Cache<Integer, Long> cache;
+
+  @Setup( Level.Trial )
+  public void setUp() {
+    cacheManager = new GuavaCacheManager();
+    cache = cacheManager.createCache( "counters",
+      new MutableConfiguration<Integer, Long>().setTypes( Integer.class, Long.class ) );
+    for ( int key = 0; key < keyCount; key++ ) {
+      cache.put( key, 0L );
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    cacheManager.close();
+  }
+
+  private int randomKey() {
+    return ThreadLocalRandom.current().nextInt( keyCount );
+  }
+
+  /**
+   * Non atomic baseline: concurrent updates of the same key are lost.
+   */
+  @Benchmark
+  public Long getAndPut() {
+    Integer key = randomKey();
+    Long value = cache.get( key );
+    long updated = value != null ? value + 1 : 1;
+    cache.put( key, updated );
+    return updated;
+  }
+
+  @Benchmark
+  public Long invoke() {
+    return cache.invoke( randomKey(), INCREMENT );
+  }
+
+  private Set<Integer> randomKeys() {
+    ImmutableSet.Builder<Integer> keys = ImmutableSet.builder();
+    for ( int i = 0; i < BULK_SIZE; i++ ) {
+      keys.add( randomKey() );
+    }
+    return keys.build();
+  }
+
+  /**
+   * Bulk update, acquiring each lock stripe once.
+   */
+  @Benchmark
+  public Map<Integer, EntryProcessorResult<Long>> invokeAll() {
+    return cache.invokeAll( randomKeys(), INCREMENT );
+  }
+
+  /**
+   * Same update as {@link #invokeAll()}, acquiring a lock for each key.
+   */
+  @Benchmark
+  public void invokeEach( Blackhole blackhole ) {
+    for ( Integer key : randomKeys() ) {
+      blackhole.consume( cache.invoke( key, INCREMENT ) );
+    }
+  }
+}
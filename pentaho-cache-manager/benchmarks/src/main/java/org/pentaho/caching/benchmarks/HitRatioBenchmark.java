@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.caching.api.PentahoCacheManager;
+
+import javax.cache.Cache;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit ratio of each provider's eviction policy: a cache bounded to a tenth of the key space is read following a
+ * workload trace, and missing keys are put as a read-through cache would. The hits and misses are reported as
+ * secondary results, the hit ratio being hits / (hits + misses).
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class HitRatioBenchmark {
+  private static final int TRACE_LENGTH = 1 << 22;
+
+  @Param( { "heap", "caffeine", "ehcache" } )
+  public String provider;
+
+  @Param( { "ZIPFIAN", "SCAN" } )
+  public Workload workload;
+
+  @Param( { "10000" } )
+  public int maxEntries;
+
+  private PentahoCacheManager cacheManager;
+  private Cache<Integer, Integer> cache;
+  private Integer[] trace;
+
+  @Setup( Level.Trial )
+  public void setUp() {
+    cacheManager = CacheProviders.createCacheManager( provider );
+    cache = CacheProviders.createCache( cacheManager, "hitRatio", Integer.class, Integer.class,
+      "maxEntries=" + maxEntries );
+    trace = workload.trace( maxEntries * 10, TRACE_LENGTH, new Random( 0 ) );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    cacheManager.destroyCache( "hitRatio" );
+    cacheManager.close();
+  }
+
+  @State( Scope.Thread )
+  @AuxCounters( AuxCounters.Type.EVENTS )
+  public static class Counters {
+    public long hits;
+    public long misses;
+    private int index = ThreadLocalRandom.current().nextInt( TRACE_LENGTH );
+
+    @Setup( Level.Iteration )
+    public void reset() {
+      hits = 0;
+      misses = 0;
+    }
+
+    int next() {
+      index = ( index + 1 ) & ( TRACE_LENGTH - 1 );
+      return index;
+    }
+  }
+
+  @Benchmark
+  public Integer access( Counters counters ) {
+    Integer key = trace[ counters.next() ];
+    Integer value = cache.get( key );
+    if ( value != null ) {
+      counters.hits++;
+    } else {
+      counters.misses++;
+      value = key;
+      cache.put( key, value );
+    }
+    return value;
+  }
+}
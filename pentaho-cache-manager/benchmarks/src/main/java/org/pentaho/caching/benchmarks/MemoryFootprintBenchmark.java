@@ -0,0 +1,103 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.caching.api.PentahoCacheManager;
+
+import javax.cache.Cache;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap used by each provider per cache entry: a cache is filled with integer keys and byte array values, and the heap
+ * used after a full garbage collection is compared with the heap used before. The bytes per entry, values included,
+ * are reported as a secondary result. {@link BenchmarkRunner} only runs it single threaded.
+ * <p>
+ * Template properties show what the heap gains from an off-heap tier, e.g.
+ * {@code -p properties=maxEntries=1000;offHeap=256m}, when most entries only live off-heap.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class MemoryFootprintBenchmark {
+  private static final int GC_PASSES = 3;
+
+  @Param( { "heap", "caffeine", "ehcache" } )
+  public String provider;
+
+  @Param( { "100000" } )
+  public int entries;
+
+  @Param( { "16", "1024" } )
+  public int valueSize;
+
+  /**
+   * Template properties of the cache.
+   */
+  @Param( { "" } )
+  public String properties;
+
+  private PentahoCacheManager cacheManager;
+
+  @State( Scope.Thread )
+  @AuxCounters( AuxCounters.Type.EVENTS )
+  public static class Footprint {
+    public long bytesPerEntry;
+  }
+
+  private static long usedHeap() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for ( int i = 0; i < GC_PASSES; i++ ) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+
+  @Benchmark
+  public void fill( Footprint footprint ) {
+    long before = usedHeap();
+    cacheManager = CacheProviders.createCacheManager( provider );
+    Cache<Integer, byte[]> cache =
+      CacheProviders.createCache( cacheManager, "footprint", Integer.class, byte[].class, properties );
+    for ( int key = 0; key < entries; key++ ) {
+      cache.put( key, new byte[ valueSize ] );
+    }
+    footprint.bytesPerEntry = ( usedHeap() - before ) / entries;
+  }
+
+  @TearDown( Level.Iteration )
+  public void tearDown() {
+    if ( cacheManager != null ) {
+      cacheManager.destroyCache( "footprint" );
+      cacheManager.close();
+      cacheManager = null;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Access patterns of the benchmarks, as traces of keys. Keys are boxed up front, so that accessing the cache is all
+ * the benchmarks allocate.
+ */
+public enum Workload {
+  /**
+   * Skewed accesses to the key space, where a few keys are hot: the usual cache workload.
+   */
+  ZIPFIAN {
+    @Override Integer[] trace( int keySpace, int length, Random random ) {
+      return zipfian( keySpace, length, random );
+    }
+  },
+  /**
+   * Zipfian accesses interleaved with a sequential scan of keys which are never read again, e.g. a report reading a
+   * whole table. The scan evicts the hot keys from caches which aren't scan resistant.
+   */
+  SCAN {
+    @Override Integer[] trace( int keySpace, int length, Random random ) {
+      Integer[] trace = zipfian( keySpace, length, random );
+      for ( int i = 1; i < length; i += 2 ) {
+        trace[ i ] = keySpace + i / 2;
+      }
+      return trace;
+    }
+  },
+  /**
+   * Every key is equally likely.
+   */
+  UNIFORM {
+    @Override Integer[] trace( int keySpace, int length, Random random ) {
+      Integer[] keys = keys( keySpace );
+      Integer[] trace = new Integer[ length ];
+      for ( int i = 0; i < length; i++ ) {
+        trace[ i ] = keys[ random.nextInt( keySpace ) ];
+      }
+      return trace;
+    }
+  };
+
+  // skew of the zipfian distribution, as in YCSB
+  private static final double ZIPFIAN_EXPONENT = 0.99;
+
+  abstract Integer[] trace( int keySpace, int length, Random random );
+
+  private static Integer[] keys( int keySpace ) {
+    Integer[] keys = new Integer[ keySpace ];
+    for ( int key = 0; key < keySpace; key++ ) {
+      keys[ key ] = key;
+    }
+    return keys;
+  }
+
+  private static Integer[] zipfian( int keySpace, int length, Random random ) {
+    double[] cumulative = new double[ keySpace ];
+    double sum = 0;
+    for ( int rank = 0; rank < keySpace; rank++ ) {
+      sum += 1 / Math.pow( rank + 1, ZIPFIAN_EXPONENT );
+      cumulative[ rank ] = sum;
+    }
+    Integer[] keys = keys( keySpace );
+    Integer[] trace = new Integer[ length ];
+    for ( int i = 0; i < length; i++ ) {
+      int rank = Arrays.binarySearch( cumulative, random.nextDouble() * sum );
+      trace[ i ] = keys[ Math.min( rank >= 0 ? rank : -rank - 1, keySpace - 1 ) ];
+    }
+    return trace;
+  }
+}
@@ -13,30 +13,89 @@
 package org.pentaho.caching.ri.impl;
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.pentaho.caching.api.EntryWeigher;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
 import org.pentaho.caching.spi.AbstractCacheManager;
+import org.pentaho.caching.spi.CacheEventDispatcher;
+import org.pentaho.caching.spi.CacheStatistics;
+import org.pentaho.caching.spi.WriteBehindCacheWriter;
 import org.pentaho.caching.api.Constants;
 
 import javax.cache.Cache;
 import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
 import javax.cache.configuration.CompleteConfiguration;
 import javax.cache.configuration.Configuration;
 import javax.cache.expiry.Duration;
 import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * @author nhudak
  */
 public class GuavaCacheManager extends AbstractCacheManager {
+  private static final int LOADER_PARALLELISM = Math.max( 2, Runtime.getRuntime().availableProcessors() );
 
+  // shared by all caches: bulk loads, and delayed writes of the write-behind caches
+  private final ListeningExecutorService loaderExecutor = MoreExecutors.listeningDecorator(
+    Executors.newFixedThreadPool( LOADER_PARALLELISM, daemonThreads( "pentaho-cache-loader-%d" ) ) );
+  private final ScheduledExecutorService writeBehindScheduler =
+    Executors.newSingleThreadScheduledExecutor( daemonThreads( "pentaho-cache-write-behind-%d" ) );
+  // delivers the events of the asynchronous cache entry listeners
+  private final ExecutorService eventExecutor =
+    Executors.newFixedThreadPool( LOADER_PARALLELISM, daemonThreads( "pentaho-cache-events-%d" ) );
+
+  private static ThreadFactory daemonThreads( String nameFormat ) {
+    return new ThreadFactoryBuilder().setDaemon( true ).setNameFormat( nameFormat ).build();
+  }
+
+  @SuppressWarnings( "unchecked" )
   @Override
   public <K, V, C extends Configuration<K, V>> Cache<K, V> newCache( final String cacheName, final C configuration ) {
-    CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+    final CacheStatistics statistics = new CacheStatistics();
+    final CacheEventDispatcher<K, V> events = createEventDispatcher( configuration );
+    CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().recordStats()
+      .removalListener( new RemovalListener<Object, Object>() {
+        @Override public void onRemoval( RemovalNotification<Object, Object> notification ) {
+          if ( notification.wasEvicted() ) {
+            statistics.recordEvictions( 1 );
+          }
+          if ( notification.getCause() == RemovalCause.EXPIRED ) {
+            events.expired( (K) notification.getKey(), (V) notification.getValue() );
+          }
+        }
+      } );
+    CacheLoader<K, V> cacheLoader = null;
+    boolean readThrough = false;
+    CacheWriter<K, V> cacheWriter = null;
 
     if ( configuration instanceof CompleteConfiguration ) {
-      configureCacheBuilder( (CompleteConfiguration) configuration, cacheBuilder );
+      CompleteConfiguration<K, V> completeConfiguration = (CompleteConfiguration<K, V>) configuration;
+      configureCacheBuilder( completeConfiguration, cacheBuilder );
+
+      if ( completeConfiguration.getCacheLoaderFactory() != null ) {
+        cacheLoader = completeConfiguration.getCacheLoaderFactory().create();
+        readThrough = completeConfiguration.isReadThrough();
+      }
+      if ( completeConfiguration.isWriteThrough() && completeConfiguration.getCacheWriterFactory() != null ) {
+        cacheWriter = createCacheWriter( completeConfiguration );
+      }
     }
 
-    return new WrappedCache<K, V>( cacheBuilder.<K, V>build() ) {
+    WrappedCache<K, V> cache = new WrappedCache<K, V>( cacheBuilder.<K, V>build(), cacheLoader, readThrough,
+      cacheWriter, loaderExecutor, LOADER_PARALLELISM, statistics, events ) {
       @Override public String getName() {
         return cacheName;
       }
@@ -56,6 +115,48 @@ public class GuavaCacheManager extends AbstractCacheManager {
         return Constants.unwrap( configuration, clazz );
       }
     };
+
+    if ( configuration instanceof CompleteConfiguration ) {
+      for ( CacheEntryListenerConfiguration<K, V> listenerConfiguration
+        : ( (CompleteConfiguration<K, V>) configuration ).getCacheEntryListenerConfigurations() ) {
+        cache.registerCacheEntryListener( listenerConfiguration );
+      }
+    }
+    return cache;
+  }
+
+  <K, V> CacheEventDispatcher<K, V> createEventDispatcher( Configuration<K, V> configuration ) {
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      PentahoCacheConfiguration<K, V> pentahoConfiguration = (PentahoCacheConfiguration<K, V>) configuration;
+      return new CacheEventDispatcher<K, V>( eventExecutor, pentahoConfiguration.getListenerQueueSize(),
+        pentahoConfiguration.getListenerBatchSize(), pentahoConfiguration.getListenerOverflow() );
+    }
+    return new CacheEventDispatcher<K, V>( eventExecutor, Constants.CONFIG_LISTENER_QUEUE_SIZE_DEFAULT,
+      Constants.CONFIG_LISTENER_BATCH_SIZE_DEFAULT, Constants.CONFIG_LISTENER_OVERFLOW_DEFAULT );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  <K, V> CacheWriter<K, V> createCacheWriter( CompleteConfiguration<K, V> configuration ) {
+    // the writer accepts supertypes of K and V
+    CacheWriter<K, V> cacheWriter = (CacheWriter<K, V>) configuration.getCacheWriterFactory().create();
+
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      PentahoCacheConfiguration<K, V> pentahoConfiguration = (PentahoCacheConfiguration<K, V>) configuration;
+      Duration delay = pentahoConfiguration.getWriteBehindDelay();
+      if ( delay != null ) {
+        return new WriteBehindCacheWriter<K, V>( cacheWriter, delay.getTimeUnit().toMillis( delay.getDurationAmount() ),
+          pentahoConfiguration.getWriteBehindBatchSize(), writeBehindScheduler );
+      }
+    }
+    return cacheWriter;
+  }
+
+  @Override public void close() {
+    // caches are closed first, flushing their pending writes
+    super.close();
+    loaderExecutor.shutdown();
+    writeBehindScheduler.shutdown();
+    eventExecutor.shutdown();
   }
 
   <K, V> void configureCacheBuilder( CompleteConfiguration<K, V> completeConfiguration,
@@ -70,5 +171,36 @@ public class GuavaCacheManager extends AbstractCacheManager {
     if ( expiryForUpdate != null && !expiryForUpdate.isEternal() ) {
       cacheBuilder.expireAfterWrite( expiryForUpdate.getDurationAmount(), expiryForUpdate.getTimeUnit() );
     }
+
+    if ( completeConfiguration instanceof PentahoCacheConfiguration ) {
+      configureBounds( (PentahoCacheConfiguration<K, V>) completeConfiguration, cacheBuilder );
+    }
+  }
+
+  <K, V> void configureBounds( PentahoCacheConfiguration<K, V> configuration,
+                               CacheBuilder<Object, Object> cacheBuilder ) {
+    if ( configuration.getMaxEntries() != PentahoCacheConfiguration.UNBOUNDED ) {
+      cacheBuilder.maximumSize( configuration.getMaxEntries() );
+    }
+    if ( configuration.getMaxWeight() != PentahoCacheConfiguration.UNBOUNDED ) {
+      cacheBuilder.maximumWeight( configuration.getMaxWeight() )
+        .weigher( new GuavaWeigher<K, V>( configuration.createWeigher() ) );
+    }
+  }
+
+  /**
+   * Adapts an {@link EntryWeigher} to the untyped builder (the cache only holds entries of the configured types).
+   */
+  private static class GuavaWeigher<K, V> implements Weigher<Object, Object> {
+    private final EntryWeigher<? super K, ? super V> weigher;
+
+    GuavaWeigher( EntryWeigher<? super K, ? super V> weigher ) {
+      this.weigher = weigher;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override public int weigh( Object key, Object value ) {
+      return weigher.weigh( (K) key, (V) value );
+    }
   }
 }
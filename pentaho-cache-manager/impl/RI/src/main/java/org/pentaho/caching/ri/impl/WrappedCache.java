@@ -15,33 +15,103 @@ package org.pentaho.caching.ri.impl;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import com.google.common.math.IntMath;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.spi.CacheEventDispatcher;
+import org.pentaho.caching.spi.CacheStatistics;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
 
 import javax.cache.Cache;
 import javax.cache.CacheException;
 import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
 import javax.cache.integration.CompletionListener;
 import javax.cache.processor.EntryProcessor;
 import javax.cache.processor.EntryProcessorException;
 import javax.cache.processor.EntryProcessorResult;
 import javax.cache.processor.MutableEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
 
 /**
  * @author nhudak
  */
 abstract class WrappedCache<K, V> implements Cache<K, V> {
+  private static final int LOCK_STRIPES = 64;
+
   private final com.google.common.cache.Cache<K, V> cache;
+  private final CacheLoader<K, V> cacheLoader;
+  private final boolean readThrough;
+  private final CacheWriter<K, V> cacheWriter;
+  private final ListeningExecutorService loaderExecutor;
+  private final int loaderParallelism;
+  private final CacheStatistics statistics;
+  private final CacheEventDispatcher<K, V> events;
+  // serializes the entry processors and the changes of each key
+  private final Striped<Lock> locks = Striped.lock( LOCK_STRIPES );
   private volatile boolean closed = false;
 
   public WrappedCache( com.google.common.cache.Cache<K, V> guavaCache ) {
-    cache = guavaCache;
+    this( guavaCache, null, false, null, MoreExecutors.newDirectExecutorService(), 1, new CacheStatistics(),
+      new CacheEventDispatcher<K, V>( MoreExecutors.directExecutor(), Constants.CONFIG_LISTENER_QUEUE_SIZE_DEFAULT,
+        Constants.CONFIG_LISTENER_BATCH_SIZE_DEFAULT, Constants.CONFIG_LISTENER_OVERFLOW_DEFAULT ) );
+  }
+
+  /**
+   * @param cacheLoader       loader of the entries, or null
+   * @param readThrough       if cache misses are loaded (with the cache loader)
+   * @param cacheWriter       writer of the changes to the cache, or null
+   * @param loaderExecutor    runs the loads of {@link #loadAll}
+   * @param loaderParallelism maximum number of concurrent loads of each {@link #loadAll}
+   * @param statistics        where the operations are recorded (evictions are recorded by the owner of the cache)
+   * @param events            dispatches the events of the cache (expiry events are fired by the owner of the cache)
+   */
+  public WrappedCache( com.google.common.cache.Cache<K, V> guavaCache, CacheLoader<K, V> cacheLoader,
+                       boolean readThrough, CacheWriter<K, V> cacheWriter, ListeningExecutorService loaderExecutor,
+                       int loaderParallelism, CacheStatistics statistics, CacheEventDispatcher<K, V> events ) {
+    this.cache = guavaCache;
+    this.cacheLoader = cacheLoader;
+    this.readThrough = readThrough && cacheLoader != null;
+    this.cacheWriter = cacheWriter;
+    this.loaderExecutor = loaderExecutor;
+    this.loaderParallelism = loaderParallelism;
+    this.statistics = statistics;
+    this.events = events;
+    events.setSource( this );
   }
 
   protected Optional<V> tryGet( K key ) {
@@ -53,14 +123,82 @@ abstract class WrappedCache<K, V> implements Cache<K, V> {
     Preconditions.checkState( !isClosed(), "Cache is closed" );
   }
 
+  /**
+   * Loads a missing entry. Concurrent loads of the same key wait for the first one instead of calling the loader.
+   */
+  private V load( final K key ) {
+    final AtomicBoolean loaded = new AtomicBoolean( false );
+    try {
+      V value = cache.get( key, new Callable<V>() {
+        @Override public V call() throws Exception {
+          loaded.set( true );
+          return cacheLoader.load( key );
+        }
+      } );
+      if ( loaded.get() ) {
+        events.created( key, value );
+      }
+      return value;
+    } catch ( InvalidCacheLoadException e ) {
+      // loader returned null
+      return null;
+    } catch ( ExecutionException | UncheckedExecutionException | ExecutionError e ) {
+      Throwables.propagateIfInstanceOf( e.getCause(), CacheLoaderException.class );
+      throw new CacheLoaderException( e.getCause() );
+    }
+  }
+
   @Override public V get( K key ) {
     assertNotClosed();
-    return tryGet( key ).orNull();
+    long start = statistics.startTime();
+    Optional<V> value = tryGet( key );
+    recordGet( value.isPresent() );
+    V result = value.isPresent() || !readThrough ? value.orNull() : load( key );
+    statistics.recordGetTime( start );
+    return result;
+  }
+
+  private void recordGet( boolean hit ) {
+    if ( hit ) {
+      statistics.recordHits( 1 );
+    } else {
+      statistics.recordMisses( 1 );
+    }
   }
 
   @Override public Map<K, V> getAll( Set<? extends K> keys ) {
     assertNotClosed();
-    return cache.getAllPresent( keys );
+    long start = statistics.startTime();
+    Map<K, V> present = cache.getAllPresent( keys );
+    statistics.recordHits( present.size() );
+    statistics.recordMisses( keys.size() - present.size() );
+    statistics.recordGetTime( start );
+    if ( !readThrough || present.size() == keys.size() ) {
+      return present;
+    }
+
+    Map<K, V> values = Maps.newHashMap( present );
+    Map<K, V> loaded = loadAllFromLoader( Sets.difference( keys, present.keySet() ).immutableCopy() );
+    for ( Map.Entry<K, V> entry : loaded.entrySet() ) {
+      V existing = cache.asMap().putIfAbsent( entry.getKey(), entry.getValue() );
+      if ( existing == null ) {
+        events.created( entry.getKey(), entry.getValue() );
+      }
+      values.put( entry.getKey(), existing != null ? existing : entry.getValue() );
+    }
+    return values;
+  }
+
+  private Map<K, V> loadAllFromLoader( Iterable<? extends K> keys ) {
+    Map<K, V> loaded;
+    try {
+      loaded = cacheLoader.loadAll( keys );
+    } catch ( CacheLoaderException e ) {
+      throw e;
+    } catch ( Exception e ) {
+      throw new CacheLoaderException( e );
+    }
+    return loaded != null ? Maps.filterValues( loaded, Predicates.notNull() ) : ImmutableMap.<K, V>of();
   }
 
   @Override public boolean containsKey( K key ) {
@@ -68,70 +206,353 @@ abstract class WrappedCache<K, V> implements Cache<K, V> {
     return tryGet( key ).isPresent();
   }
 
+  /**
+   * Loads the entries in the background, splitting the keys among up to {@code loaderParallelism} concurrent calls
+   * to the loader. Loaded entries are not written to the cache writer.
+   */
   @Override
-  public void loadAll( Set<? extends K> keys, boolean replaceExistingValues, CompletionListener completionListener ) {
+  public void loadAll( Set<? extends K> keys, final boolean replaceExistingValues,
+                       final CompletionListener completionListener ) {
     assertNotClosed();
-    // Not supported
+    List<K> keysToLoad = Lists.newArrayList();
+    if ( cacheLoader != null ) {
+      for ( K key : keys ) {
+        if ( replaceExistingValues || !tryGet( key ).isPresent() ) {
+          keysToLoad.add( key );
+        }
+      }
+    }
+
+    List<ListenableFuture<?>> loads = Lists.newArrayList();
+    int partitionSize = IntMath.divide( Math.max( keysToLoad.size(), 1 ), loaderParallelism, RoundingMode.CEILING );
+    for ( final List<K> partition : Lists.partition( keysToLoad, partitionSize ) ) {
+      loads.add( loaderExecutor.submit( new Runnable() {
+        @Override public void run() {
+          for ( Map.Entry<K, V> entry : loadAllFromLoader( partition ).entrySet() ) {
+            if ( replaceExistingValues ) {
+              firePut( entry.getKey(), entry.getValue(), cache.asMap().put( entry.getKey(), entry.getValue() ) );
+            } else if ( cache.asMap().putIfAbsent( entry.getKey(), entry.getValue() ) == null ) {
+              events.created( entry.getKey(), entry.getValue() );
+            }
+          }
+        }
+      } ) );
+    }
+
+    if ( completionListener != null ) {
+      Futures.addCallback( Futures.allAsList( loads ), new FutureCallback<List<Object>>() {
+        @Override public void onSuccess( List<Object> result ) {
+          completionListener.onCompletion();
+        }
+
+        @Override public void onFailure( Throwable t ) {
+          completionListener.onException( t instanceof Exception ? (Exception) t : new CacheLoaderException( t ) );
+        }
+      }, MoreExecutors.directExecutor() );
+    }
+  }
+
+  private Lock lock( K key ) {
+    Lock lock = locks.get( key );
+    lock.lock();
+    return lock;
+  }
+
+  /**
+   * Locks the stripes of all the keys, in a consistent order.
+   */
+  private Iterable<Lock> lockAll( Iterable<?> keys ) {
+    List<Lock> stripes = ImmutableList.copyOf( Sets.newLinkedHashSet( locks.bulkGet( keys ) ) );
+    List<Lock> locked = Lists.newArrayListWithCapacity( stripes.size() );
+    try {
+      for ( Lock lock : stripes ) {
+        lock.lock();
+        locked.add( lock );
+      }
+    } catch ( RuntimeException e ) {
+      unlockAll( locked );
+      throw e;
+    }
+    return locked;
+  }
+
+  private void unlockAll( Iterable<Lock> stripes ) {
+    for ( Lock lock : Lists.reverse( ImmutableList.copyOf( stripes ) ) ) {
+      lock.unlock();
+    }
+  }
+
+  private void write( K key, V value ) {
+    if ( cacheWriter != null ) {
+      try {
+        cacheWriter.write( new ImmutableCacheEntry<K, V>( key, value ) );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
+  }
+
+  private void delete( K key ) {
+    if ( cacheWriter != null ) {
+      try {
+        cacheWriter.delete( key );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
   }
 
   @Override public void put( K key, V value ) {
     assertNotClosed();
-    cache.put( key, value );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      write( key, value );
+      firePut( key, value, cache.asMap().put( key, value ) );
+      statistics.recordPuts( 1 );
+      statistics.recordPutTime( start );
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void firePut( K key, V value, V previous ) {
+    if ( previous == null ) {
+      events.created( key, value );
+    } else {
+      events.updated( key, value, previous );
+    }
   }
 
   @Override public V getAndPut( K key, V value ) {
     assertNotClosed();
-    return cache.asMap().replace( key, value );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      write( key, value );
+      V previous = cache.asMap().put( key, value );
+      firePut( key, value, previous );
+      recordGet( previous != null );
+      statistics.recordPuts( 1 );
+      statistics.recordPutTime( start );
+      return previous;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public void putAll( Map<? extends K, ? extends V> map ) {
     assertNotClosed();
-    cache.putAll( map );
+    Iterable<Lock> stripes = lockAll( map.keySet() );
+    try {
+      long start = statistics.startTime();
+      if ( cacheWriter != null ) {
+        List<Cache.Entry<? extends K, ? extends V>> entries = Lists.newArrayList();
+        for ( Map.Entry<? extends K, ? extends V> entry : map.entrySet() ) {
+          entries.add( new ImmutableCacheEntry<K, V>( entry.getKey(), entry.getValue() ) );
+        }
+        try {
+          cacheWriter.writeAll( entries );
+        } catch ( CacheWriterException e ) {
+          throw e;
+        } catch ( Exception e ) {
+          throw new CacheWriterException( e );
+        }
+      }
+      if ( events.hasListeners() ) {
+        for ( Map.Entry<? extends K, ? extends V> entry : map.entrySet() ) {
+          firePut( entry.getKey(), entry.getValue(), cache.asMap().put( entry.getKey(), entry.getValue() ) );
+        }
+      } else {
+        cache.putAll( map );
+      }
+      statistics.recordPuts( map.size() );
+      statistics.recordPutTime( start );
+    } finally {
+      unlockAll( stripes );
+    }
   }
 
+  // The conditional operations are applied to the cache first, and reverted if the cache writer fails
+
   @Override public boolean putIfAbsent( K key, V value ) {
     assertNotClosed();
-    return cache.asMap().putIfAbsent( key, value ) == null;
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      if ( cache.asMap().putIfAbsent( key, value ) != null ) {
+        statistics.recordHits( 1 );
+        return false;
+      }
+      try {
+        write( key, value );
+      } catch ( RuntimeException e ) {
+        cache.asMap().remove( key, value );
+        throw e;
+      }
+      events.created( key, value );
+      statistics.recordMisses( 1 );
+      statistics.recordPuts( 1 );
+      statistics.recordPutTime( start );
+      return true;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public boolean remove( K key ) {
     assertNotClosed();
-    return cache.asMap().remove( key ) != null;
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      delete( key );
+      V previous = cache.asMap().remove( key );
+      if ( previous != null ) {
+        events.removed( key, previous );
+      }
+      recordRemove( previous != null, start );
+      return previous != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void recordRemove( boolean removed, long start ) {
+    if ( removed ) {
+      statistics.recordRemovals( 1 );
+    }
+    statistics.recordRemoveTime( start );
   }
 
   @Override public boolean remove( K key, V oldValue ) {
     assertNotClosed();
-    return cache.asMap().remove( key, oldValue );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      if ( !cache.asMap().remove( key, oldValue ) ) {
+        statistics.recordRemoveTime( start );
+        return false;
+      }
+      try {
+        delete( key );
+      } catch ( RuntimeException e ) {
+        cache.asMap().putIfAbsent( key, oldValue );
+        throw e;
+      }
+      events.removed( key, oldValue );
+      recordRemove( true, start );
+      return true;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public V getAndRemove( K key ) {
     assertNotClosed();
-    return cache.asMap().remove( key );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      delete( key );
+      V previous = cache.asMap().remove( key );
+      if ( previous != null ) {
+        events.removed( key, previous );
+      }
+      recordGet( previous != null );
+      recordRemove( previous != null, start );
+      return previous;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public boolean replace( K key, V oldValue, V newValue ) {
     assertNotClosed();
-    return cache.asMap().replace( key, oldValue, newValue );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      if ( !cache.asMap().replace( key, oldValue, newValue ) ) {
+        return false;
+      }
+      try {
+        write( key, newValue );
+      } catch ( RuntimeException e ) {
+        cache.asMap().replace( key, newValue, oldValue );
+        throw e;
+      }
+      events.updated( key, newValue, oldValue );
+      statistics.recordPuts( 1 );
+      statistics.recordPutTime( start );
+      return true;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public boolean replace( K key, V value ) {
     assertNotClosed();
-    return cache.asMap().replace( key, value ) != null;
+    return getAndReplace( key, value ) != null;
   }
 
   @Override public V getAndReplace( K key, V value ) {
     assertNotClosed();
-    return cache.asMap().replace( key, value );
+    Lock lock = lock( key );
+    try {
+      long start = statistics.startTime();
+      V previous = cache.asMap().replace( key, value );
+      if ( previous != null ) {
+        try {
+          write( key, value );
+        } catch ( RuntimeException e ) {
+          cache.asMap().replace( key, value, previous );
+          throw e;
+        }
+        events.updated( key, value, previous );
+        statistics.recordPuts( 1 );
+        statistics.recordPutTime( start );
+      }
+      recordGet( previous != null );
+      return previous;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override public void removeAll( Set<? extends K> keys ) {
     assertNotClosed();
-    cache.invalidateAll( keys );
+    Iterable<Lock> stripes = lockAll( keys );
+    try {
+      long start = statistics.startTime();
+      if ( cacheWriter != null ) {
+        try {
+          cacheWriter.deleteAll( Lists.newArrayList( keys ) );
+        } catch ( CacheWriterException e ) {
+          throw e;
+        } catch ( Exception e ) {
+          throw new CacheWriterException( e );
+        }
+      }
+      int removed = 0;
+      for ( K key : keys ) {
+        V previous = cache.asMap().remove( key );
+        if ( previous != null ) {
+          events.removed( key, previous );
+          removed++;
+        }
+      }
+      statistics.recordRemovals( removed );
+      statistics.recordRemoveTime( start );
+    } finally {
+      unlockAll( stripes );
+    }
   }
 
   @Override public void removeAll() {
     assertNotClosed();
-    cache.asMap().clear();
+    removeAll( ImmutableSet.copyOf( cache.asMap().keySet() ) );
   }
 
   @Override public void clear() {
@@ -142,62 +563,74 @@ abstract class WrappedCache<K, V> implements Cache<K, V> {
   @Override public <T> T invoke( K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments )
     throws EntryProcessorException {
     assertNotClosed();
-    return invokeAll( ImmutableSet.of( key ), entryProcessor, arguments ).get( key ).get();
+    Preconditions.checkNotNull( key, "key can not be null" );
+    Preconditions.checkNotNull( entryProcessor, "entryProcessor can not be null" );
+    Lock lock = locks.get( key );
+    lock.lock();
+    try {
+      return process( key, entryProcessor, arguments ).get();
+    } finally {
+      lock.unlock();
+    }
   }
 
+  /**
+   * Keys sharing a lock stripe are processed under a single acquisition of its lock, one stripe at a time.
+   */
   @Override
-  public <T> Map<K, EntryProcessorResult<T>> invokeAll( final Set<? extends K> keys,
-                                                        final EntryProcessor<K, V, T> entryProcessor,
-                                                        final Object... arguments ) {
+  public <T> Map<K, EntryProcessorResult<T>> invokeAll( Set<? extends K> keys,
+                                                        EntryProcessor<K, V, T> entryProcessor,
+                                                        Object... arguments ) {
     assertNotClosed();
-    ImmutableMap.Builder<K, EntryProcessorResult<T>> resultMap = ImmutableMap.builder();
-    for ( final K key : keys ) {
-      final AtomicBoolean removed = new AtomicBoolean( false ), updated = new AtomicBoolean( false );
-
-      final MutableEntry<K, V> entry = new MutableEntry<K, V>() {
-        Optional<V> value = tryGet( key );
-
-        @Override public K getKey() {
-          return key;
-        }
-
-        @Override public V getValue() {
-          return value.orNull();
-        }
-
-        @Override public <U> U unwrap( Class<U> clazz ) {
-          return Constants.unwrap( this, clazz );
-        }
-
-        @Override public boolean exists() {
-          return value.isPresent();
-        }
-
-        @Override public void remove() {
-          removed.set( true );
+    Preconditions.checkNotNull( entryProcessor, "entryProcessor can not be null" );
+    ImmutableListMultimap<Lock, K> keysByLock =
+      Multimaps.index( ImmutableSet.<K>copyOf( keys ), new Function<K, Lock>() {
+        @Override public Lock apply( K key ) {
+          return locks.get( key );
         }
+      } );
 
-        @Override public void setValue( V value ) {
-          this.value = Optional.of( value );
-          updated.set( true );
+    Map<K, EntryProcessorResult<T>> resultMap = Maps.newHashMap();
+    for ( Map.Entry<Lock, Collection<K>> stripe : keysByLock.asMap().entrySet() ) {
+      Lock lock = stripe.getKey();
+      lock.lock();
+      try {
+        for ( K key : stripe.getValue() ) {
+          ProcessorEntry<T> entry = process( key, entryProcessor, arguments );
+          if ( entry.exception != null || entry.result != null ) {
+            resultMap.put( key, entry );
+          }
         }
-      };
-
-      final T result = entryProcessor.process( entry, arguments );
-
-      if ( removed.get() ) {
-        remove( key );
-      } else if ( updated.get() ) {
-        put( key, entry.getValue() );
+      } finally {
+        lock.unlock();
       }
+    }
+    return resultMap;
+  }
 
-      resultMap.put( key, new EntryProcessorResult<T>() {
-        @Override public T get() throws EntryProcessorException {
-          return result;
+  /**
+   * Runs the entry processor and applies its changes, as long as the entry was not changed meanwhile. Otherwise it's
+   * run again with the new value. Callers hold the lock of the key, as do all the other changes of single entries, so
+   * only loads, evictions and expiry cause retries. Hits and misses are only recorded by the first run.
+   */
+  private <T> ProcessorEntry<T> process( K key, EntryProcessor<K, V, T> entryProcessor, Object[] arguments ) {
+    boolean retry = false;
+    while ( true ) {
+      ProcessorEntry<T> entry = new ProcessorEntry<T>( key, cache.getIfPresent( key ), retry );
+      retry = true;
+      try {
+        entry.result = entryProcessor.process( entry, arguments );
+        if ( entry.apply() ) {
+          return entry;
         }
-      } );
+      } catch ( EntryProcessorException e ) {
+        entry.exception = e;
+        return entry;
+      } catch ( Exception e ) {
+        entry.exception = new EntryProcessorException( e );
+        return entry;
+      }
     }
-    return resultMap.build();
   }
 
   @Override public Iterator<Entry<K, V>> iterator() {
@@ -221,28 +654,179 @@ abstract class WrappedCache<K, V> implements Cache<K, V> {
     } ).iterator();
   }
 
+  /**
+   * Listeners are not notified of {@link #clear()}, and are notified of entries expired by the cache only if the owner
+   * of the cache reports them to the event dispatcher.
+   */
   @Override
   public void registerCacheEntryListener( CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
     assertNotClosed();
-    throw new CacheException( "CacheEntryListeners are not yet supported" );
+    events.register( cacheEntryListenerConfiguration );
   }
 
   @Override
   public void deregisterCacheEntryListener( CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
     assertNotClosed();
-    throw new CacheException( "CacheEntryListeners are not yet supported" );
+    events.deregister( cacheEntryListenerConfiguration );
   }
 
   @Override public void close() {
     closed = true;
+    events.close();
+    if ( cacheWriter instanceof Closeable ) {
+      try {
+        ( (Closeable) cacheWriter ).close();
+      } catch ( IOException e ) {
+        throw new CacheWriterException( e );
+      }
+    }
   }
 
   @Override public boolean isClosed() {
     return closed;
   }
 
+  /**
+   * Besides the cache itself, unwraps the underlying Guava cache and a snapshot of its {@link CacheStats}, which
+   * include the number of entries evicted because of the size bounds or expiry, its JCache
+   * {@link CacheStatistics} and its {@link CacheEventDispatcher}.
+   */
   @Override public <T> T unwrap( Class<T> clazz ) {
+    if ( !clazz.isInstance( this ) ) {
+      if ( clazz.isInstance( cache ) ) {
+        return clazz.cast( cache );
+      }
+      if ( clazz.isInstance( statistics ) ) {
+        return clazz.cast( statistics );
+      }
+      if ( clazz.isInstance( events ) ) {
+        return clazz.cast( events );
+      }
+      if ( clazz == CacheStats.class ) {
+        return clazz.cast( cache.stats() );
+      }
+    }
     return Constants.unwrap( this, clazz );
   }
 
+  private class ProcessorEntry<T> implements MutableEntry<K, V>, EntryProcessorResult<T> {
+    private final K key;
+    private final V original;
+    private V value;
+    private final boolean retry;
+    private boolean accessed;
+    private boolean loaded;
+    private boolean changed;
+
+    private T result;
+    private EntryProcessorException exception;
+
+    ProcessorEntry( K key, V original, boolean retry ) {
+      this.key = key;
+      this.original = original;
+      this.value = original;
+      this.retry = retry;
+    }
+
+    /**
+     * @return false if the entry was changed while the processor ran, leaving the cache unchanged
+     */
+    boolean apply() {
+      if ( !changed ) {
+        if ( loaded && cache.asMap().putIfAbsent( key, value ) == null ) {
+          events.created( key, value );
+        }
+        return true;
+      }
+
+      if ( value == null ) {
+        if ( original == null ) {
+          return !cache.asMap().containsKey( key );
+        }
+        if ( !cache.asMap().remove( key, original ) ) {
+          return false;
+        }
+        try {
+          delete( key );
+        } catch ( RuntimeException e ) {
+          cache.asMap().putIfAbsent( key, original );
+          throw e;
+        }
+        events.removed( key, original );
+        statistics.recordRemovals( 1 );
+        return true;
+      }
+
+      if ( original == null ? cache.asMap().putIfAbsent( key, value ) != null
+        : !cache.asMap().replace( key, original, value ) ) {
+        return false;
+      }
+      try {
+        write( key, value );
+      } catch ( RuntimeException e ) {
+        if ( original == null ) {
+          cache.asMap().remove( key, value );
+        } else {
+          cache.asMap().replace( key, value, original );
+        }
+        throw e;
+      }
+      firePut( key, value, original );
+      statistics.recordPuts( 1 );
+      return true;
+    }
+
+    private void access() {
+      if ( !accessed ) {
+        accessed = true;
+        if ( !retry ) {
+          recordGet( original != null );
+        }
+        if ( original == null && readThrough ) {
+          value = cacheLoader.load( key );
+          loaded = value != null;
+        }
+      }
+    }
+
+    @Override public K getKey() {
+      return key;
+    }
+
+    @Override public V getValue() {
+      if ( !changed ) {
+        access();
+      }
+      return value;
+    }
+
+    @Override public boolean exists() {
+      if ( !changed ) {
+        access();
+      }
+      return value != null;
+    }
+
+    @Override public void remove() {
+      changed = true;
+      value = null;
+    }
+
+    @Override public void setValue( V value ) {
+      Preconditions.checkNotNull( value, "value can not be null" );
+      changed = true;
+      this.value = value;
+    }
+
+    @Override public <U> U unwrap( Class<U> clazz ) {
+      return Constants.unwrap( this, clazz );
+    }
+
+    @Override public T get() throws EntryProcessorException {
+      if ( exception != null ) {
+        throw exception;
+      }
+      return result;
+    }
+  }
 }
@@ -13,16 +13,25 @@
 
 package org.pentaho.caching.ri;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.api.PentahoCacheManager;
 import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+import org.pentaho.caching.impl.PentahoCacheManagerImpl;
 import org.pentaho.caching.ri.impl.GuavaCacheManager;
 
+import javax.cache.Cache;
 import javax.cache.CacheManager;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertThat;
 
@@ -32,6 +41,7 @@ import static org.junit.Assert.assertThat;
 @RunWith( MockitoJUnitRunner.class )
 public class HeapCacheProvidingServiceTest {
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
   @Mock private PentahoCacheSystemConfiguration config;
   private HeapCacheProvidingService service;
 
@@ -45,4 +55,28 @@ public class HeapCacheProvidingServiceTest {
     CacheManager cacheManager = service.createCacheManager( config );
     assertThat( cacheManager, instanceOf( GuavaCacheManager.class ) );
   }
+
+  @Test
+  public void testPersistentCache() throws Exception {
+    // the disk tier is only written through the provider's cache
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.setData( ImmutableMap.of(
+      "global." + Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath() ) );
+    PentahoCacheManager cacheManager = new PentahoCacheManagerImpl( systemConfiguration, service );
+    String cacheName = "persistent-" + System.nanoTime();
+    try {
+      PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+      configuration.setTypes( String.class, String.class );
+      configuration.setPersistent( true );
+      Cache<String, String> cache = cacheManager.createCache( cacheName, configuration );
+      cache.put( "key", "value" );
+      cache.close();
+
+      cache = cacheManager.createCache( cacheName, configuration );
+      assertThat( cache.get( "key" ), equalTo( "value" ) );
+    } finally {
+      cacheManager.destroyCache( cacheName );
+      cacheManager.close();
+    }
+  }
 }
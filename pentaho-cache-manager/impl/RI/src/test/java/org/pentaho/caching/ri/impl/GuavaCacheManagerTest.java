@@ -13,18 +13,32 @@
 
 package org.pentaho.caching.ri.impl;
 
+import com.google.common.base.Strings;
 import com.google.common.base.Ticker;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.pentaho.caching.api.EntryWeigher;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
 
 import javax.cache.Cache;
 import javax.cache.configuration.Configuration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
 import javax.cache.configuration.MutableConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
 import javax.cache.expiry.Duration;
 import javax.cache.expiry.TouchedExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import javax.cache.management.CacheStatisticsMXBean;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -33,10 +47,19 @@ import java.util.concurrent.atomic.AtomicInteger;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * @author nhudak
@@ -54,6 +77,11 @@ public class GuavaCacheManagerTest {
     cacheManager = new GuavaCacheManager();
   }
 
+  @After
+  public void tearDown() throws Exception {
+    cacheManager.close();
+  }
+
   @Test
   public void testExpiry() throws Exception {
     CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
@@ -85,6 +113,141 @@ public class GuavaCacheManagerTest {
     assertThat( cache.get( "key" ), nullValue() );
   }
 
+  @Test
+  public void testMaxEntries() throws Exception {
+    PentahoCacheConfiguration<Integer, String> configuration = new PentahoCacheConfiguration<Integer, String>();
+    configuration.setTypes( Integer.class, String.class );
+    configuration.setMaxEntries( 10 );
+    Cache<Integer, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    for ( int i = 0; i < 100; i++ ) {
+      cache.put( i, "value " + i );
+    }
+
+    assertThat( Iterables.size( cache ), lessThanOrEqualTo( 10 ) );
+    assertThat( cache.unwrap( CacheStats.class ).evictionCount(), greaterThanOrEqualTo( 90L ) );
+  }
+
+  @Test
+  public void testMaxWeight() throws Exception {
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setMaxWeight( 100 );
+    configuration.setWeigherFactory( new FactoryBuilder.SingletonFactory<EntryWeigher<String, String>>(
+      new EntryWeigher<String, String>() {
+        @Override public int weigh( String key, String value ) {
+          return value.length();
+        }
+      } ) );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    cache.put( "small", "value" );
+    assertThat( cache.get( "small" ), equalTo( "value" ) );
+    assertThat( cache.unwrap( CacheStats.class ).evictionCount(), equalTo( 0L ) );
+
+    // heavier than the whole cache
+    cache.put( "big", Strings.repeat( "x", 101 ) );
+    assertThat( cache.get( "big" ), nullValue() );
+    assertThat( cache.unwrap( CacheStats.class ).evictionCount(), equalTo( 1L ) );
+  }
+
+  @Test
+  public void testDefaultWeigher() throws Exception {
+    CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder();
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setMaxWeight( 1024 );
+
+    cacheManager.configureCacheBuilder( configuration, cacheBuilder );
+    ConcurrentMap<String, String> cache = cacheBuilder.<String, String>build().asMap();
+
+    cache.put( "small", "value" );
+    cache.put( "big", Strings.repeat( "x", 1024 ) );
+    assertThat( cache.get( "small" ), equalTo( "value" ) );
+    assertThat( cache.get( "big" ), nullValue() );
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    PentahoCacheConfiguration<Integer, String> configuration = new PentahoCacheConfiguration<Integer, String>();
+    configuration.setTypes( Integer.class, String.class );
+    configuration.setMaxEntries( 10 );
+    configuration.setStatisticsEnabled( true );
+    Cache<Integer, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    for ( int i = 0; i < 100; i++ ) {
+      cache.put( i, "value " + i );
+    }
+    cache.get( 99 );
+    cache.get( -1 );
+    cache.remove( 99 );
+
+    CacheStatisticsMXBean statistics = cacheManager.getCacheStatistics( CACHE_NAME );
+    assertThat( statistics.getCachePuts(), equalTo( 100L ) );
+    assertThat( statistics.getCacheHits(), equalTo( 1L ) );
+    assertThat( statistics.getCacheMisses(), equalTo( 1L ) );
+    assertThat( statistics.getCacheRemovals(), equalTo( 1L ) );
+    assertThat( statistics.getCacheEvictions(), greaterThanOrEqualTo( 90L ) );
+
+    cacheManager.enableStatistics( CACHE_NAME, false );
+    assertThat( cacheManager.getCacheStatistics( CACHE_NAME ), nullValue() );
+  }
+
+  @Test
+  public void testReadThrough() throws Exception {
+    CacheLoader<String, String> cacheLoader = mock( CacheLoader.class );
+    when( cacheLoader.load( "key" ) ).thenReturn( "loaded value" );
+
+    MutableConfiguration<String, String> configuration = new MutableConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setCacheLoaderFactory(
+      new FactoryBuilder.SingletonFactory<CacheLoader<String, String>>( cacheLoader ) );
+    configuration.setReadThrough( true );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    assertThat( cache.get( "key" ), equalTo( "loaded value" ) );
+    assertThat( cache.get( "key" ), equalTo( "loaded value" ) );
+    verify( cacheLoader, times( 1 ) ).load( "key" );
+  }
+
+  @Test
+  public void testWriteBehind() throws Exception {
+    CacheWriter<String, String> cacheWriter = mock( CacheWriter.class );
+
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setCacheWriterFactory(
+      new FactoryBuilder.SingletonFactory<CacheWriter<String, String>>( cacheWriter ) );
+    configuration.setWriteThrough( true );
+    configuration.setWriteBehind( new Duration( TimeUnit.HOURS, 1 ), 100 );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    cache.put( "key", "value" );
+    verifyNoInteractions( cacheWriter );
+
+    // pending writes are flushed when the cache manager shuts down
+    cacheManager.close();
+    verify( cacheWriter ).writeAll( ImmutableList.<Cache.Entry<? extends String, ? extends String>>of(
+      new ImmutableCacheEntry<String, String>( "key", "value" ) ) );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testCacheEntryListener() throws Exception {
+    CacheEntryCreatedListener<String, String> listener = mock( CacheEntryCreatedListener.class );
+
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.addCacheEntryListenerConfiguration( new MutableCacheEntryListenerConfiguration<String, String>(
+      new FactoryBuilder.SingletonFactory<CacheEntryCreatedListener<String, String>>( listener ), null, false,
+      false ) );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    cache.put( "key", "value" );
+
+    // delivered by the event executor
+    verify( listener, timeout( 10000 ) ).onCreated( any( Iterable.class ) );
+  }
+
   @Test
   public void testNewCache() throws Exception {
     MutableConfiguration<String, Map> configuration = new MutableConfiguration<String, Map>();
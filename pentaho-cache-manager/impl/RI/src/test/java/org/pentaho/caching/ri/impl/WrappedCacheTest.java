@@ -14,9 +14,14 @@
 package org.pentaho.caching.ri.impl;
 
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -25,24 +30,61 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.Constants.ListenerOverflow;
+import org.pentaho.caching.spi.CacheEventDispatcher;
+import org.pentaho.caching.spi.CacheStatistics;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
+import org.pentaho.caching.spi.WriteBehindCacheWriter;
 
 import javax.cache.Cache;
-import javax.cache.CacheException;
 import javax.cache.CacheManager;
-import javax.cache.configuration.CacheEntryListenerConfiguration;
 import javax.cache.configuration.Configuration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import javax.cache.integration.CompletionListenerFuture;
 import javax.cache.processor.EntryProcessor;
 import javax.cache.processor.EntryProcessorException;
 import javax.cache.processor.EntryProcessorResult;
 import javax.cache.processor.MutableEntry;
+import java.io.Serializable;
+import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.emptyIterable;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * @author nhudak
@@ -58,7 +100,8 @@ public class WrappedCacheTest {
 
   @Mock private Configuration<Object, Object> configuration;
   @Mock private CacheManager cacheManager;
-  @Mock private CacheEntryListenerConfiguration<Object, Object> mockEntryListener;
+  @Mock private CacheLoader<Object, Object> cacheLoader;
+  @Mock private CacheWriter<Object, Object> cacheWriter;
 
   @Before
   public void setUp() throws Exception {
@@ -79,6 +122,26 @@ public class WrappedCacheTest {
     };
   }
 
+  private WrappedCache<Object, Object> createIntegratedCache( CacheLoader<Object, Object> loader,
+                                                              CacheWriter<Object, Object> writer ) {
+    return new WrappedCache<Object, Object>( guavaCache, loader, true, writer,
+      MoreExecutors.newDirectExecutorService(), 2, new CacheStatistics(),
+      new CacheEventDispatcher<Object, Object>( MoreExecutors.directExecutor(), 16, 16, ListenerOverflow.DROP ) ) {
+
+      @Override public String getName() {
+        return CACHE_NAME;
+      }
+
+      @Override public CacheManager getCacheManager() {
+        return cacheManager;
+      }
+
+      @Override public <C extends Configuration<Object, Object>> C getConfiguration( Class<C> clazz ) {
+        return Constants.unwrap( configuration, clazz );
+      }
+    };
+  }
+
   @Test
   public void testGet() throws Exception {
     assertThat( cache.get( "some key" ), nullValue() );
@@ -101,6 +164,9 @@ public class WrappedCacheTest {
 
     assertThat( cache.getAndPut( "some key", "other value" ), equalTo( (Object) "some value" ) );
     assertThat( cache.get( "some key" ), equalTo( (Object) "other value" ) );
+
+    assertThat( cache.getAndPut( "new key", "new value" ), nullValue() );
+    assertThat( cache.get( "new key" ), equalTo( (Object) "new value" ) );
   }
 
   @Test
@@ -217,18 +283,192 @@ public class WrappedCacheTest {
     assertThat( onlyElement.getValue(), is( (Object) "other value" ) );
   }
 
+  @Test
+  public void testInvokeAllResults() throws Exception {
+    cache.put( "key1", "value1" );
+
+    Map<Object, EntryProcessorResult<Object>> resultMap = cache.invokeAll( ImmutableSet.<Object>of( "key1", "key2",
+      "key3" ), new EntryProcessor<Object, Object, Object>() {
+        @Override public Object process( MutableEntry<Object, Object> entry, Object... arguments ) {
+          if ( entry.getKey().equals( "key2" ) ) {
+            entry.setValue( "value2" );
+            throw new IllegalStateException( "processor failed" );
+          }
+          return entry.exists() ? entry.getValue() : null;
+        }
+      } );
+
+    // null results are left out, failures are reported for their own key only
+    assertThat( resultMap.keySet(), equalTo( (Set<Object>) ImmutableSet.<Object>of( "key1", "key2" ) ) );
+    assertThat( resultMap.get( "key1" ).get(), equalTo( (Object) "value1" ) );
+    try {
+      resultMap.get( "key2" ).get();
+      fail( "Processor failure was not reported" );
+    } catch ( EntryProcessorException e ) {
+      assertThat( e.getCause().getMessage(), equalTo( "processor failed" ) );
+    }
+    assertThat( cache.containsKey( "key2" ), is( false ) );
+  }
+
+  @Test
+  public void testInvokeRetriesConcurrentChange() throws Exception {
+    cache.put( "counter", 1 );
+    CacheStatistics statistics = cache.unwrap( CacheStatistics.class );
+    statistics.setEnabled( true );
+
+    final AtomicInteger runs = new AtomicInteger();
+    Object result = cache.invoke( "counter", new EntryProcessor<Object, Object, Object>() {
+      @Override public Object process( MutableEntry<Object, Object> entry, Object... arguments ) {
+        int value = (Integer) entry.getValue();
+        if ( runs.incrementAndGet() == 1 ) {
+          // changed outside of the cache (as by a load) while the processor runs
+          guavaCache.put( "counter", 10 );
+        }
+        entry.setValue( value + 1 );
+        return value + 1;
+      }
+    } );
+
+    assertThat( runs.get(), is( 2 ) );
+    assertThat( result, equalTo( (Object) 11 ) );
+    // the retry is not recorded
+    assertThat( statistics.getCacheHits(), is( 1L ) );
+    assertThat( statistics.getCachePuts(), is( 1L ) );
+    assertThat( cache.get( "counter" ), equalTo( (Object) 11 ) );
+  }
+
+  @Test
+  public void testPutWaitsForEntryProcessor() throws Exception {
+    cache.put( "counter", 1 );
+
+    final CountDownLatch processing = new CountDownLatch( 1 );
+    final CountDownLatch put = new CountDownLatch( 1 );
+    final AtomicInteger runs = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool( 2 );
+    try {
+      Future<Object> result = executor.submit( new Callable<Object>() {
+        @Override public Object call() throws Exception {
+          return cache.invoke( "counter", new EntryProcessor<Object, Object, Object>() {
+            @Override public Object process( MutableEntry<Object, Object> entry, Object... arguments ) {
+              runs.incrementAndGet();
+              int value = (Integer) entry.getValue();
+              processing.countDown();
+              try {
+                // the put can't complete while the processor runs
+                assertThat( put.await( 200, TimeUnit.MILLISECONDS ), is( false ) );
+              } catch ( InterruptedException e ) {
+                throw new IllegalStateException( e );
+              }
+              entry.setValue( value + 1 );
+              return value + 1;
+            }
+          } );
+        }
+      } );
+
+      processing.await( 10, TimeUnit.SECONDS );
+      Future<?> putting = executor.submit( new Runnable() {
+        @Override public void run() {
+          cache.put( "counter", 10 );
+          put.countDown();
+        }
+      } );
+
+      assertThat( result.get( 10, TimeUnit.SECONDS ), equalTo( (Object) 2 ) );
+      putting.get( 10, TimeUnit.SECONDS );
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat( runs.get(), is( 1 ) );
+    assertThat( cache.get( "counter" ), equalTo( (Object) 10 ) );
+  }
+
+  @Test
+  public void testInvokeConcurrentUpdates() throws Exception {
+    final EntryProcessor<Object, Object, Object> increment = new EntryProcessor<Object, Object, Object>() {
+      @Override public Object process( MutableEntry<Object, Object> entry, Object... arguments ) {
+        entry.setValue( entry.exists() ? (Integer) entry.getValue() + 1 : 1 );
+        return null;
+      }
+    };
+    final Set<Object> keys = ImmutableSet.<Object>of( "a", "b", "c", "d" );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 8 );
+    try {
+      List<Future<?>> updates = Lists.newArrayList();
+      for ( int i = 0; i < 8; i++ ) {
+        updates.add( executor.submit( new Runnable() {
+          @Override public void run() {
+            for ( int j = 0; j < 500; j++ ) {
+              cache.invoke( "counter", increment );
+              cache.invokeAll( keys, increment );
+            }
+          }
+        } ) );
+      }
+      for ( Future<?> update : updates ) {
+        update.get( 60, TimeUnit.SECONDS );
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // no update is lost
+    assertThat( cache.get( "counter" ), equalTo( (Object) 4000 ) );
+    assertThat( cache.getAll( keys ).values(), everyItem( equalTo( (Object) 4000 ) ) );
+  }
+
+  @Test
+  public void testInvokeReadThrough() throws Exception {
+    when( cacheLoader.load( "key" ) ).thenReturn( "loaded value" );
+    cache = createIntegratedCache( cacheLoader, null );
+
+    Object result = cache.invoke( "key", new EntryProcessor<Object, Object, Object>() {
+      @Override public Object process( MutableEntry<Object, Object> entry, Object... arguments ) {
+        return entry.getValue();
+      }
+    } );
+
+    assertThat( result, equalTo( (Object) "loaded value" ) );
+    assertThat( guavaCache.getIfPresent( "key" ), equalTo( (Object) "loaded value" ) );
+  }
+
   @Test
   public void testRegisterCacheEntryListener() throws Exception {
-    thrown.expect( CacheException.class );
-    thrown.expectMessage( "CacheEntryListeners are not yet supported" );
-    cache.registerCacheEntryListener( mockEntryListener );
+    when( cacheLoader.load( "loaded" ) ).thenReturn( "value" );
+    cache = createIntegratedCache( cacheLoader, null );
+    EventRecorder recorder = new EventRecorder();
+    cache.registerCacheEntryListener( new MutableCacheEntryListenerConfiguration<Object, Object>(
+      FactoryBuilder.factoryOf( recorder ), null, true, true ) );
+
+    cache.put( "key", "value" );
+    cache.put( "key", "value2" );
+    cache.putIfAbsent( "key", "ignored" );
+    cache.replace( "key", "value2", "value3" );
+    cache.get( "loaded" );
+    cache.remove( "key" );
+    cache.putAll( ImmutableMap.of( "key1", "value1", "key2", "value2" ) );
+    cache.removeAll( ImmutableSet.of( "key1", "missing" ) );
+    cache.clear();
+
+    assertThat( recorder.events, contains( "CREATED key=value", "UPDATED key=value2 (value)",
+      "UPDATED key=value3 (value2)", "CREATED loaded=value", "REMOVED key=value3 (value3)",
+      "CREATED key1=value1", "CREATED key2=value2", "REMOVED key1=value1 (value1)" ) );
   }
 
   @Test
   public void testDeregisterCacheEntryListener() throws Exception {
-    thrown.expect( CacheException.class );
-    thrown.expectMessage( "CacheEntryListeners are not yet supported" );
-    cache.deregisterCacheEntryListener( mockEntryListener );
+    EventRecorder recorder = new EventRecorder();
+    MutableCacheEntryListenerConfiguration<Object, Object> listenerConfiguration =
+      new MutableCacheEntryListenerConfiguration<Object, Object>( FactoryBuilder.factoryOf( recorder ), null,
+        false, true );
+    cache.registerCacheEntryListener( listenerConfiguration );
+    cache.put( "key", "value" );
+    cache.deregisterCacheEntryListener( listenerConfiguration );
+    cache.put( "key", "value2" );
+
+    assertThat( recorder.events, contains( "CREATED key=value" ) );
   }
 
   @Test
@@ -248,4 +488,199 @@ public class WrappedCacheTest {
     cache.loadAll( ImmutableSet.of( "key1", "key2" ), true, null );
     assertThat( cache, emptyIterable() );
   }
+
+  @Test
+  public void testReadThrough() throws Exception {
+    cache = createIntegratedCache( cacheLoader, null );
+    when( cacheLoader.load( "key" ) ).thenReturn( "loaded value" );
+
+    assertThat( cache.get( "key" ), equalTo( (Object) "loaded value" ) );
+    assertThat( cache.get( "key" ), equalTo( (Object) "loaded value" ) );
+    assertThat( cache.get( "missing" ), nullValue() );
+    assertThat( cache.containsKey( "missing" ), is( false ) );
+
+    verify( cacheLoader, times( 1 ) ).load( "key" );
+  }
+
+  @Test
+  public void testReadThroughSingleFlight() throws Exception {
+    final CountDownLatch loading = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicInteger loads = new AtomicInteger();
+    cache = createIntegratedCache( new CacheLoader<Object, Object>() {
+      @Override public Object load( Object key ) throws CacheLoaderException {
+        loads.incrementAndGet();
+        loading.countDown();
+        Uninterruptibles.awaitUninterruptibly( release );
+        return "loaded value";
+      }
+
+      @Override public Map<Object, Object> loadAll( Iterable<?> keys ) throws CacheLoaderException {
+        throw new UnsupportedOperationException();
+      }
+    }, null );
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+    try {
+      List<Future<Object>> gets = Lists.newArrayList();
+      for ( int i = 0; i < 4; i++ ) {
+        gets.add( executor.submit( new Callable<Object>() {
+          @Override public Object call() throws Exception {
+            return cache.get( "key" );
+          }
+        } ) );
+      }
+      loading.await();
+      release.countDown();
+
+      for ( Future<Object> get : gets ) {
+        assertThat( get.get( 10, TimeUnit.SECONDS ), equalTo( (Object) "loaded value" ) );
+      }
+      assertThat( loads.get(), is( 1 ) );
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReadThroughFailure() throws Exception {
+    cache = createIntegratedCache( cacheLoader, null );
+    when( cacheLoader.load( "key" ) ).thenThrow( new IllegalStateException( "unavailable" ) );
+
+    thrown.expect( CacheLoaderException.class );
+    cache.get( "key" );
+  }
+
+  @Test
+  public void testGetAllReadThrough() throws Exception {
+    cache = createIntegratedCache( cacheLoader, null );
+    cache.put( "key1", "value1" );
+    when( cacheLoader.loadAll( ImmutableSet.of( "key2" ) ) )
+      .thenReturn( ImmutableMap.<Object, Object>of( "key2", "value2" ) );
+
+    assertThat( cache.getAll( ImmutableSet.of( "key1", "key2" ) ),
+      equalTo( (Map<Object, Object>) ImmutableMap.<Object, Object>of( "key1", "value1", "key2", "value2" ) ) );
+    assertThat( guavaCache.getIfPresent( "key2" ), equalTo( (Object) "value2" ) );
+  }
+
+  @Test
+  public void testLoadAllWithLoader() throws Exception {
+    cache = createIntegratedCache( new CacheLoader<Object, Object>() {
+      @Override public Object load( Object key ) throws CacheLoaderException {
+        return "loaded " + key;
+      }
+
+      @Override public Map<Object, Object> loadAll( Iterable<?> keys ) throws CacheLoaderException {
+        Map<Object, Object> values = Maps.newHashMap();
+        for ( Object key : keys ) {
+          values.put( key, load( key ) );
+        }
+        return values;
+      }
+    }, null );
+    cache.put( "key1", "value1" );
+
+    CompletionListenerFuture future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key1", "key2", "key3" ), false, future );
+    future.get( 10, TimeUnit.SECONDS );
+    assertThat( guavaCache.asMap(), equalTo( (Map<Object, Object>) ImmutableMap.<Object, Object>of(
+      "key1", "value1", "key2", "loaded key2", "key3", "loaded key3" ) ) );
+
+    future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key1" ), true, future );
+    future.get( 10, TimeUnit.SECONDS );
+    assertThat( guavaCache.getIfPresent( "key1" ), equalTo( (Object) "loaded key1" ) );
+  }
+
+  @Test
+  public void testLoadAllFailure() throws Exception {
+    cache = createIntegratedCache( cacheLoader, null );
+    when( cacheLoader.loadAll( ImmutableList.of( "key" ) ) ).thenThrow( new CacheLoaderException( "unavailable" ) );
+
+    CompletionListenerFuture future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key" ), false, future );
+
+    thrown.expect( ExecutionException.class );
+    future.get( 10, TimeUnit.SECONDS );
+  }
+
+  @Test
+  public void testWriteThrough() throws Exception {
+    cache = createIntegratedCache( null, cacheWriter );
+
+    cache.put( "key1", "value1" );
+    verify( cacheWriter ).write( new ImmutableCacheEntry<Object, Object>( "key1", "value1" ) );
+    assertThat( cache.replace( "key1", "value1", "value2" ), is( true ) );
+    verify( cacheWriter ).write( new ImmutableCacheEntry<Object, Object>( "key1", "value2" ) );
+    assertThat( cache.putIfAbsent( "key1", "value3" ), is( false ) );
+    assertThat( cache.remove( "key1" ), is( true ) );
+    verify( cacheWriter ).delete( "key1" );
+
+    cache.putAll( ImmutableMap.<Object, Object>of( "key2", "value2" ) );
+    verify( cacheWriter ).writeAll( ImmutableList.<Cache.Entry<?, ?>>of(
+      new ImmutableCacheEntry<Object, Object>( "key2", "value2" ) ) );
+    cache.removeAll();
+    verify( cacheWriter ).deleteAll( ImmutableList.of( "key2" ) );
+    verifyNoMoreInteractions( cacheWriter );
+  }
+
+  @Test
+  public void testWriteThroughFailure() throws Exception {
+    cache = createIntegratedCache( null, cacheWriter );
+    doThrow( new IllegalStateException( "unavailable" ) ).when( cacheWriter ).write( any( Cache.Entry.class ) );
+
+    try {
+      cache.put( "key", "value" );
+      fail( "Writer failure was not reported" );
+    } catch ( CacheWriterException e ) {
+      assertThat( guavaCache.size(), is( 0L ) );
+    }
+    try {
+      cache.putIfAbsent( "key", "value" );
+      fail( "Writer failure was not reported" );
+    } catch ( CacheWriterException e ) {
+      // reverted
+      assertThat( guavaCache.size(), is( 0L ) );
+    }
+  }
+
+  @Test
+  public void testCloseClosesWriter() throws Exception {
+    WriteBehindCacheWriter<Object, Object> writeBehind = new WriteBehindCacheWriter<Object, Object>(
+      cacheWriter, TimeUnit.HOURS.toMillis( 1 ), 100, mock( ScheduledExecutorService.class ) );
+    cache = createIntegratedCache( null, writeBehind );
+
+    cache.put( "key", "value" );
+    verifyNoInteractions( cacheWriter );
+
+    cache.close();
+    verify( cacheWriter ).writeAll( ImmutableList.<Cache.Entry<?, ?>>of(
+      new ImmutableCacheEntry<Object, Object>( "key", "value" ) ) );
+  }
+
+  private static class EventRecorder implements CacheEntryCreatedListener<Object, Object>,
+    CacheEntryUpdatedListener<Object, Object>, CacheEntryRemovedListener<Object, Object>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final List<String> events = Lists.newArrayList();
+
+    private void record( Iterable<CacheEntryEvent<?, ?>> cacheEntryEvents ) {
+      for ( CacheEntryEvent<?, ?> event : cacheEntryEvents ) {
+        events.add( event.getEventType() + " " + event.getKey() + "=" + event.getValue()
+          + ( event.isOldValueAvailable() ? " (" + event.getOldValue() + ")" : "" ) );
+      }
+    }
+
+    @Override public void onCreated( Iterable<CacheEntryEvent<?, ?>> cacheEntryEvents ) {
+      record( cacheEntryEvents );
+    }
+
+    @Override public void onUpdated( Iterable<CacheEntryEvent<?, ?>> cacheEntryEvents ) {
+      record( cacheEntryEvents );
+    }
+
+    @Override public void onRemoved( Iterable<CacheEntryEvent<?, ?>> cacheEntryEvents ) {
+      record( cacheEntryEvents );
+    }
+  }
 }
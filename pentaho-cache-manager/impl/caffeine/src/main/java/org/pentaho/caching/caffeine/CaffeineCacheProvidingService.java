@@ -0,0 +1,28 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine;
+
+import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+import org.pentaho.caching.caffeine.impl.CaffeineCacheManager;
+import org.pentaho.caching.spi.AbstractCacheProvidingService;
+
+import javax.cache.CacheManager;
+
+/**
+ * Heap cache provider backed by Caffeine (W-TinyLFU eviction, variable expiry, asynchronous refresh).
+ */
+public class CaffeineCacheProvidingService extends AbstractCacheProvidingService {
+  @Override public CacheManager createCacheManager( PentahoCacheSystemConfiguration systemConfiguration ) {
+    return new CaffeineCacheManager();
+  }
+}
@@ -0,0 +1,567 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine.impl;
+
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.spi.CacheStatistics;
+import org.pentaho.caching.spi.ImmutableCacheEntry;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import javax.cache.integration.CacheWriterException;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+/**
+ * JCache view of a Caffeine cache.
+ * <p>
+ * Single entry operations map to the atomic operations of the cache's {@link ConcurrentMap} view, and entry
+ * processors run inside {@link ConcurrentMap#compute}, so they are atomic too (and must not use the cache). When
+ * a cache loader is configured, misses are loaded through it if the cache is read-through, and {@link #loadAll}
+ * loads in the background. Changes are written to the cache writer of write-through caches; conditional changes are
+ * applied to the cache first, and reverted if the writer fails.
+ */
+class CaffeineCache<K, V> implements Cache<K, V> {
+  private final String name;
+  private final CaffeineCacheManager cacheManager;
+  private final Configuration<K, V> configuration;
+  private final com.github.benmanes.caffeine.cache.Cache<K, V> cache;
+  private final CacheLoader<K, V> cacheLoader;
+  private final boolean readThrough;
+  private final CacheWriter<K, V> cacheWriter;
+  private final Executor executor;
+  private final CacheStatistics statistics;
+  private volatile boolean closed = false;
+
+  CaffeineCache( String name, CaffeineCacheManager cacheManager, Configuration<K, V> configuration,
+                 com.github.benmanes.caffeine.cache.Cache<K, V> cache, CacheLoader<K, V> cacheLoader,
+                 CacheWriter<K, V> cacheWriter, Executor executor, CacheStatistics statistics ) {
+    this.name = name;
+    this.cacheManager = cacheManager;
+    this.configuration = configuration;
+    this.cache = cache;
+    this.cacheLoader = cacheLoader;
+    this.readThrough = cacheLoader != null && configuration instanceof CompleteConfiguration
+      && ( (CompleteConfiguration) configuration ).isReadThrough();
+    this.cacheWriter = cacheWriter;
+    this.executor = executor;
+    this.statistics = statistics;
+  }
+
+  private ConcurrentMap<K, V> map() {
+    return cache.asMap();
+  }
+
+  protected void assertNotClosed() throws CacheException {
+    Preconditions.checkState( !isClosed(), "Cache is closed" );
+  }
+
+  @Override public V get( K key ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    V value = cache.getIfPresent( key );
+    recordGet( value != null );
+    if ( value == null && readThrough ) {
+      value = ( (LoadingCache<K, V>) cache ).get( key );
+    }
+    statistics.recordGetTime( start );
+    return value;
+  }
+
+  private void recordGet( boolean hit ) {
+    if ( hit ) {
+      statistics.recordHits( 1 );
+    } else {
+      statistics.recordMisses( 1 );
+    }
+  }
+
+  @Override public Map<K, V> getAll( Set<? extends K> keys ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    Map<K, V> present = cache.getAllPresent( keys );
+    statistics.recordHits( present.size() );
+    statistics.recordMisses( keys.size() - present.size() );
+    Map<K, V> values = readThrough && present.size() < keys.size()
+      ? ( (LoadingCache<K, V>) cache ).getAll( keys ) : present;
+    statistics.recordGetTime( start );
+    return values;
+  }
+
+  @Override public boolean containsKey( K key ) {
+    assertNotClosed();
+    return map().containsKey( key );
+  }
+
+  @Override public void loadAll( final Set<? extends K> keys, final boolean replaceExistingValues,
+                                 final CompletionListener completionListener ) {
+    assertNotClosed();
+    if ( cacheLoader == null ) {
+      if ( completionListener != null ) {
+        completionListener.onCompletion();
+      }
+      return;
+    }
+
+    executor.execute( new Runnable() {
+      @Override public void run() {
+        try {
+          if ( replaceExistingValues ) {
+            Map<K, V> loaded = cacheLoader.loadAll( keys );
+            for ( Map.Entry<K, V> entry : loaded.entrySet() ) {
+              if ( entry.getValue() != null ) {
+                cache.put( entry.getKey(), entry.getValue() );
+              }
+            }
+          } else {
+            // only loads the missing keys
+            ( (LoadingCache<K, V>) cache ).getAll( keys );
+          }
+          if ( completionListener != null ) {
+            completionListener.onCompletion();
+          }
+        } catch ( Exception e ) {
+          if ( completionListener != null ) {
+            completionListener.onException( e );
+          }
+        }
+      }
+    } );
+  }
+
+  private void write( K key, V value ) {
+    if ( cacheWriter != null ) {
+      try {
+        cacheWriter.write( new ImmutableCacheEntry<K, V>( key, value ) );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
+  }
+
+  private void delete( K key ) {
+    if ( cacheWriter != null ) {
+      try {
+        cacheWriter.delete( key );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
+  }
+
+  @Override public void put( K key, V value ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    write( key, value );
+    cache.put( key, value );
+    recordPut( start );
+  }
+
+  private void recordPut( long start ) {
+    statistics.recordPuts( 1 );
+    statistics.recordPutTime( start );
+  }
+
+  @Override public V getAndPut( K key, V value ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    write( key, value );
+    V previous = map().put( key, value );
+    recordGet( previous != null );
+    recordPut( start );
+    return previous;
+  }
+
+  @Override public void putAll( Map<? extends K, ? extends V> map ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    if ( cacheWriter != null ) {
+      List<Entry<? extends K, ? extends V>> entries = Lists.newArrayList();
+      for ( Map.Entry<? extends K, ? extends V> entry : map.entrySet() ) {
+        entries.add( new ImmutableCacheEntry<K, V>( entry.getKey(), entry.getValue() ) );
+      }
+      try {
+        cacheWriter.writeAll( entries );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
+    cache.putAll( map );
+    statistics.recordPuts( map.size() );
+    statistics.recordPutTime( start );
+  }
+
+  @Override public boolean putIfAbsent( K key, V value ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    boolean absent = map().putIfAbsent( key, value ) == null;
+    if ( absent ) {
+      try {
+        write( key, value );
+      } catch ( RuntimeException e ) {
+        map().remove( key, value );
+        throw e;
+      }
+    }
+    recordGet( !absent );
+    if ( absent ) {
+      recordPut( start );
+    }
+    return absent;
+  }
+
+  @Override public boolean remove( K key ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    delete( key );
+    return recordRemove( map().remove( key ) != null, start );
+  }
+
+  private boolean recordRemove( boolean removed, long start ) {
+    if ( removed ) {
+      statistics.recordRemovals( 1 );
+    }
+    statistics.recordRemoveTime( start );
+    return removed;
+  }
+
+  @Override public boolean remove( K key, V oldValue ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    boolean removed = map().remove( key, oldValue );
+    if ( removed ) {
+      try {
+        delete( key );
+      } catch ( RuntimeException e ) {
+        map().putIfAbsent( key, oldValue );
+        throw e;
+      }
+    }
+    return recordRemove( removed, start );
+  }
+
+  @Override public V getAndRemove( K key ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    delete( key );
+    V previous = map().remove( key );
+    recordGet( previous != null );
+    recordRemove( previous != null, start );
+    return previous;
+  }
+
+  @Override public boolean replace( K key, V oldValue, V newValue ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    boolean replaced = map().replace( key, oldValue, newValue );
+    if ( replaced ) {
+      try {
+        write( key, newValue );
+      } catch ( RuntimeException e ) {
+        map().replace( key, newValue, oldValue );
+        throw e;
+      }
+      recordPut( start );
+    }
+    return replaced;
+  }
+
+  @Override public boolean replace( K key, V value ) {
+    assertNotClosed();
+    return getAndReplace( key, value ) != null;
+  }
+
+  @Override public V getAndReplace( K key, V value ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    V previous = map().replace( key, value );
+    if ( previous != null ) {
+      try {
+        write( key, value );
+      } catch ( RuntimeException e ) {
+        map().replace( key, value, previous );
+        throw e;
+      }
+    }
+    recordGet( previous != null );
+    if ( previous != null ) {
+      recordPut( start );
+    }
+    return previous;
+  }
+
+  @Override public void removeAll( Set<? extends K> keys ) {
+    assertNotClosed();
+    long start = statistics.startTime();
+    if ( cacheWriter != null ) {
+      try {
+        cacheWriter.deleteAll( Lists.newArrayList( keys ) );
+      } catch ( CacheWriterException e ) {
+        throw e;
+      } catch ( Exception e ) {
+        throw new CacheWriterException( e );
+      }
+    }
+    int removed = 0;
+    for ( K key : keys ) {
+      if ( map().remove( key ) != null ) {
+        removed++;
+      }
+    }
+    statistics.recordRemovals( removed );
+    statistics.recordRemoveTime( start );
+  }
+
+  @Override public void removeAll() {
+    assertNotClosed();
+    removeAll( ImmutableSet.copyOf( map().keySet() ) );
+  }
+
+  @Override public void clear() {
+    assertNotClosed();
+    cache.invalidateAll();
+  }
+
+  @Override public <C extends Configuration<K, V>> C getConfiguration( Class<C> clazz ) {
+    return Constants.unwrap( configuration, clazz );
+  }
+
+  @Override public <T> T invoke( K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments )
+    throws EntryProcessorException {
+    assertNotClosed();
+    EntryProcessorResult<T> result = invokeAll( ImmutableSet.of( key ), entryProcessor, arguments ).get( key );
+    return result != null ? result.get() : null;
+  }
+
+  @Override
+  public <T> Map<K, EntryProcessorResult<T>> invokeAll( Set<? extends K> keys, EntryProcessor<K, V, T> entryProcessor,
+                                                        Object... arguments ) {
+    assertNotClosed();
+    ImmutableMap.Builder<K, EntryProcessorResult<T>> resultMap = ImmutableMap.builder();
+    for ( K key : keys ) {
+      ProcessorEntry<T> entry = new ProcessorEntry<T>( entryProcessor, arguments );
+      map().compute( key, entry );
+
+      if ( entry.exception != null || entry.result != null ) {
+        resultMap.put( key, entry );
+      }
+    }
+    return resultMap.build();
+  }
+
+  @Override public String getName() {
+    return name;
+  }
+
+  @Override public CacheManager getCacheManager() {
+    return cacheManager;
+  }
+
+  @Override public Iterator<Entry<K, V>> iterator() {
+    assertNotClosed();
+    return FluentIterable.from( map().entrySet() ).transform( new Function<Map.Entry<K, V>, Entry<K, V>>() {
+      @Override public Entry<K, V> apply( final Map.Entry<K, V> mapEntry ) {
+        return new Entry<K, V>() {
+          @Override public K getKey() {
+            return mapEntry.getKey();
+          }
+
+          @Override public V getValue() {
+            return mapEntry.getValue();
+          }
+
+          @Override public <T> T unwrap( Class<T> clazz ) {
+            return Constants.unwrap( this, clazz );
+          }
+        };
+      }
+    } ).iterator();
+  }
+
+  @Override
+  public void registerCacheEntryListener( CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
+    assertNotClosed();
+    throw new CacheException( "CacheEntryListeners are not yet supported" );
+  }
+
+  @Override
+  public void deregisterCacheEntryListener( CacheEntryListenerConfiguration<K, V> cacheEntryListenerConfiguration ) {
+    assertNotClosed();
+    throw new CacheException( "CacheEntryListeners are not yet supported" );
+  }
+
+  @Override public void close() {
+    if ( !closed ) {
+      closed = true;
+      cache.invalidateAll();
+      cacheManager.destroyCache( name );
+    }
+  }
+
+  @Override public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Besides the cache itself, unwraps the underlying Caffeine cache, a snapshot of its {@link CacheStats} and its
+   * JCache {@link CacheStatistics}.
+   */
+  @Override public <T> T unwrap( Class<T> clazz ) {
+    if ( !clazz.isInstance( this ) ) {
+      if ( clazz.isInstance( cache ) ) {
+        return clazz.cast( cache );
+      }
+      if ( clazz.isInstance( statistics ) ) {
+        return clazz.cast( statistics );
+      }
+      if ( clazz == CacheStats.class ) {
+        return clazz.cast( cache.stats() );
+      }
+    }
+    return Constants.unwrap( this, clazz );
+  }
+
+  /**
+   * Runs an entry processor as the remapping function of an entry, keeping its outcome. Like the entries of
+   * {@link #get}, the first read of an absent entry counts as a miss and is loaded when the cache is read-through.
+   * Its changes are written before they are applied, and failures of the writer leave the entry unchanged.
+   */
+  private class ProcessorEntry<T> implements MutableEntry<K, V>, BiFunction<K, V, V>, EntryProcessorResult<T> {
+    private final EntryProcessor<K, V, T> entryProcessor;
+    private final Object[] arguments;
+
+    private K key;
+    private V original;
+    private V value;
+    private boolean accessed;
+    private boolean changed;
+
+    private T result;
+    private EntryProcessorException exception;
+
+    ProcessorEntry( EntryProcessor<K, V, T> entryProcessor, Object[] arguments ) {
+      this.entryProcessor = entryProcessor;
+      this.arguments = arguments;
+    }
+
+    @Override public V apply( K key, V currentValue ) {
+      this.key = key;
+      this.original = currentValue;
+      this.value = currentValue;
+      try {
+        result = entryProcessor.process( this, arguments );
+        if ( changed && value != null ) {
+          write( key, value );
+        } else if ( changed && currentValue != null ) {
+          delete( key );
+        }
+      } catch ( EntryProcessorException e ) {
+        exception = e;
+      } catch ( Exception e ) {
+        exception = new EntryProcessorException( e );
+      }
+      if ( exception != null ) {
+        // entry is left unchanged
+        return currentValue;
+      }
+      if ( changed ) {
+        if ( value != null ) {
+          statistics.recordPuts( 1 );
+        } else if ( currentValue != null ) {
+          statistics.recordRemovals( 1 );
+        }
+      }
+      return value;
+    }
+
+    private void access() {
+      if ( !accessed ) {
+        accessed = true;
+        recordGet( original != null );
+        if ( original == null && readThrough ) {
+          value = cacheLoader.load( key );
+        }
+      }
+    }
+
+    @Override public K getKey() {
+      return key;
+    }
+
+    @Override public V getValue() {
+      if ( !changed ) {
+        access();
+      }
+      return value;
+    }
+
+    @Override public boolean exists() {
+      if ( !changed ) {
+        access();
+      }
+      return value != null;
+    }
+
+    @Override public void remove() {
+      changed = true;
+      value = null;
+    }
+
+    @Override public void setValue( V value ) {
+      Preconditions.checkNotNull( value, "value can not be null" );
+      changed = true;
+      this.value = value;
+    }
+
+    @Override public <U> U unwrap( Class<U> clazz ) {
+      return Constants.unwrap( this, clazz );
+    }
+
+    @Override public T get() throws EntryProcessorException {
+      if ( exception != null ) {
+        throw exception;
+      }
+      return result;
+    }
+  }
+}
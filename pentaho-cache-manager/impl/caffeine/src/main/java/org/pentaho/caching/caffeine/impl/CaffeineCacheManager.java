@@ -0,0 +1,169 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine.impl;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.RemovalListener;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Maps;
+import org.pentaho.caching.api.EntryWeigher;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.spi.AbstractCacheManager;
+import org.pentaho.caching.spi.CacheStatistics;
+
+import javax.cache.Cache;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.EternalExpiryPolicy;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheWriter;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * JCache CacheManager creating Caffeine caches.
+ */
+public class CaffeineCacheManager extends AbstractCacheManager {
+  private final Ticker ticker;
+  private final Executor executor;
+
+  public CaffeineCacheManager() {
+    this( Ticker.systemTicker(), ForkJoinPool.commonPool() );
+  }
+
+  /**
+   * @param ticker   time source for expiry and refresh
+   * @param executor runs maintenance (eviction), asynchronous refreshes and {@link Cache#loadAll}
+   */
+  CaffeineCacheManager( Ticker ticker, Executor executor ) {
+    this.ticker = ticker;
+    this.executor = executor;
+  }
+
+  @Override
+  @SuppressWarnings( "unchecked" )
+  protected <K, V, C extends Configuration<K, V>> Cache<K, V> newCache( String cacheName, C configuration ) {
+    CompleteConfiguration<K, V> completeConfiguration;
+    if ( configuration instanceof CompleteConfiguration ) {
+      completeConfiguration = (CompleteConfiguration<K, V>) configuration;
+    } else {
+      completeConfiguration = new MutableConfiguration<K, V>()
+        .setTypes( configuration.getKeyType(), configuration.getValueType() )
+        .setStoreByValue( configuration.isStoreByValue() );
+    }
+
+    CacheLoader<K, V> cacheLoader = null;
+    if ( completeConfiguration.getCacheLoaderFactory() != null ) {
+      cacheLoader = completeConfiguration.getCacheLoaderFactory().create();
+    }
+    CacheWriter<K, V> cacheWriter = null;
+    if ( completeConfiguration.isWriteThrough() && completeConfiguration.getCacheWriterFactory() != null ) {
+      // the writer accepts supertypes of K and V
+      cacheWriter = (CacheWriter<K, V>) completeConfiguration.getCacheWriterFactory().create();
+    }
+
+    final CacheStatistics statistics = new CacheStatistics( new com.google.common.base.Ticker() {
+      @Override public long read() {
+        return ticker.read();
+      }
+    } );
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().ticker( ticker ).executor( executor ).recordStats()
+      .removalListener( new RemovalListener<Object, Object>() {
+        @Override public void onRemoval( Object key, Object value, RemovalCause cause ) {
+          if ( cause.wasEvicted() ) {
+            statistics.recordEvictions( 1 );
+          }
+        }
+      } );
+    configureBuilder( cacheName, completeConfiguration, cacheLoader, builder );
+
+    if ( cacheLoader == null ) {
+      return new CaffeineCache<K, V>( cacheName, this, configuration, builder.<K, V>build(), null, cacheWriter,
+        executor, statistics );
+    } else {
+      return new CaffeineCache<K, V>( cacheName, this, configuration,
+        builder.build( new CaffeineLoader<K, V>( cacheLoader ) ), cacheLoader, cacheWriter, executor, statistics );
+    }
+  }
+
+  <K, V> void configureBuilder( String cacheName, CompleteConfiguration<K, V> configuration,
+                                CacheLoader<K, V> cacheLoader, Caffeine<Object, Object> builder ) {
+    ExpiryPolicy expiryPolicy = configuration.getExpiryPolicyFactory().create();
+    if ( !( expiryPolicy instanceof EternalExpiryPolicy ) ) {
+      builder.expireAfter( new JCacheExpiry( expiryPolicy ) );
+    }
+
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      PentahoCacheConfiguration<K, V> bounded = (PentahoCacheConfiguration<K, V>) configuration;
+
+      if ( bounded.getMaxEntries() != PentahoCacheConfiguration.UNBOUNDED ) {
+        builder.maximumSize( bounded.getMaxEntries() );
+      }
+      if ( bounded.getMaxWeight() != PentahoCacheConfiguration.UNBOUNDED ) {
+        builder.maximumWeight( bounded.getMaxWeight() )
+          .weigher( new CaffeineWeigher<K, V>( bounded.createWeigher() ) );
+      }
+
+      Duration refreshAfterWrite = bounded.getRefreshAfterWrite();
+      if ( refreshAfterWrite != null && !refreshAfterWrite.isEternal() ) {
+        Preconditions.checkArgument( cacheLoader != null, "Cache refresh requires a cache loader: %s", cacheName );
+        builder.refreshAfterWrite( refreshAfterWrite.getDurationAmount(), refreshAfterWrite.getTimeUnit() );
+      }
+    }
+  }
+
+  /**
+   * Adapts an {@link EntryWeigher} to the untyped builder (the cache only holds entries of the configured types).
+   */
+  private static class CaffeineWeigher<K, V> implements Weigher<Object, Object> {
+    private final EntryWeigher<? super K, ? super V> weigher;
+
+    CaffeineWeigher( EntryWeigher<? super K, ? super V> weigher ) {
+      this.weigher = weigher;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    @Override public int weigh( Object key, Object value ) {
+      return weigher.weigh( (K) key, (V) value );
+    }
+  }
+
+  /**
+   * Loads entries, both on read-through misses and on refresh, with the JCache {@link CacheLoader}.
+   */
+  static class CaffeineLoader<K, V> implements com.github.benmanes.caffeine.cache.CacheLoader<K, V> {
+    private final CacheLoader<K, V> cacheLoader;
+
+    CaffeineLoader( CacheLoader<K, V> cacheLoader ) {
+      this.cacheLoader = cacheLoader;
+    }
+
+    @Override public V load( K key ) {
+      return cacheLoader.load( key );
+    }
+
+    @Override public Map<K, V> loadAll( Iterable<? extends K> keys ) {
+      Map<K, V> loaded = cacheLoader.loadAll( keys );
+      return loaded != null ? Maps.filterValues( loaded, Predicates.notNull() ) : Collections.<K, V>emptyMap();
+    }
+  }
+}
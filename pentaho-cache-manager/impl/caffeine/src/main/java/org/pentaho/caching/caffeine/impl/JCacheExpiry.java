@@ -0,0 +1,53 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine.impl;
+
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.ExpiryPolicy;
+
+/**
+ * Applies a JCache {@link ExpiryPolicy} to each entry, as Caffeine variable expiry.
+ * <p>
+ * A null duration for an update or access leaves the current expiration unchanged, as defined by JCache.
+ */
+class JCacheExpiry implements Expiry<Object, Object> {
+  private final ExpiryPolicy expiryPolicy;
+
+  JCacheExpiry( ExpiryPolicy expiryPolicy ) {
+    this.expiryPolicy = expiryPolicy;
+  }
+
+  @Override public long expireAfterCreate( Object key, Object value, long currentTime ) {
+    return toNanos( expiryPolicy.getExpiryForCreation(), Long.MAX_VALUE );
+  }
+
+  @Override public long expireAfterUpdate( Object key, Object value, long currentTime, long currentDuration ) {
+    return toNanos( expiryPolicy.getExpiryForUpdate(), currentDuration );
+  }
+
+  @Override public long expireAfterRead( Object key, Object value, long currentTime, long currentDuration ) {
+    return toNanos( expiryPolicy.getExpiryForAccess(), currentDuration );
+  }
+
+  static long toNanos( Duration duration, long unchanged ) {
+    if ( duration == null ) {
+      return unchanged;
+    }
+    if ( duration.isEternal() ) {
+      return Long.MAX_VALUE;
+    }
+    return duration.getTimeUnit().toNanos( duration.getDurationAmount() );
+  }
+}
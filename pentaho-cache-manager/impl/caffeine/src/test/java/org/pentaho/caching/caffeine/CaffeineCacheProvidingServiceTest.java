@@ -0,0 +1,73 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.api.PentahoCacheManager;
+import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+import org.pentaho.caching.caffeine.impl.CaffeineCacheManager;
+import org.pentaho.caching.impl.PentahoCacheManagerImpl;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class CaffeineCacheProvidingServiceTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+  private CaffeineCacheProvidingService service;
+
+  @Before
+  public void setUp() throws Exception {
+    service = new CaffeineCacheProvidingService();
+  }
+
+  @Test
+  public void testCreateCacheManager() throws Exception {
+    CacheManager cacheManager = service.createCacheManager( mock( PentahoCacheSystemConfiguration.class ) );
+    assertThat( cacheManager, instanceOf( CaffeineCacheManager.class ) );
+  }
+
+  @Test
+  public void testPersistentCache() throws Exception {
+    // the disk tier is only written through the provider's cache
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.setData( ImmutableMap.of(
+      "global." + Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath() ) );
+    PentahoCacheManager cacheManager = new PentahoCacheManagerImpl( systemConfiguration, service );
+    String cacheName = "persistent-" + System.nanoTime();
+    try {
+      PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+      configuration.setTypes( String.class, String.class );
+      configuration.setPersistent( true );
+      Cache<String, String> cache = cacheManager.createCache( cacheName, configuration );
+      cache.put( "key", "value" );
+      cache.close();
+
+      cache = cacheManager.createCache( cacheName, configuration );
+      assertThat( cache.get( "key" ), equalTo( "value" ) );
+    } finally {
+      cacheManager.destroyCache( cacheName );
+      cacheManager.close();
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine.impl;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+
+import javax.cache.Cache;
+import javax.cache.configuration.Configuration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.expiry.CreatedExpiryPolicy;
+import javax.cache.expiry.Duration;
+import javax.cache.expiry.TouchedExpiryPolicy;
+import javax.cache.integration.CacheLoader;
+import javax.cache.integration.CacheLoaderException;
+import javax.cache.management.CacheStatisticsMXBean;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.emptyIterable;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class CaffeineCacheManagerTest {
+  public static final String CACHE_NAME = "TYPED_CACHE";
+
+  private final AtomicInteger elapsedSeconds = new AtomicInteger( 0 );
+  private CaffeineCacheManager cacheManager;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheManager = new CaffeineCacheManager( new Ticker() {
+      @Override public long read() {
+        return TimeUnit.SECONDS.toNanos( elapsedSeconds.get() );
+      }
+    }, MoreExecutors.directExecutor() );
+  }
+
+  @Test
+  public void testTouchedExpiry() throws Exception {
+    MutableConfiguration<String, String> configuration = new MutableConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setExpiryPolicyFactory( TouchedExpiryPolicy.factoryOf( new Duration( TimeUnit.MINUTES, 1 ) ) );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    cache.put( "key", "value" );
+
+    elapsedSeconds.addAndGet( 45 );
+    assertThat( cache.replace( "key", "value", "new value" ), is( true ) );
+
+    elapsedSeconds.addAndGet( 45 );
+    assertThat( cache.get( "key" ), equalTo( "new value" ) );
+
+    elapsedSeconds.addAndGet( 45 );
+    assertThat( cache.get( "key" ), equalTo( "new value" ) );
+
+    elapsedSeconds.addAndGet( 61 );
+    assertThat( cache.get( "key" ), nullValue() );
+  }
+
+  @Test
+  public void testCreatedExpiry() throws Exception {
+    MutableConfiguration<String, String> configuration = new MutableConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setExpiryPolicyFactory( CreatedExpiryPolicy.factoryOf( new Duration( TimeUnit.MINUTES, 1 ) ) );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    cache.put( "key", "value" );
+
+    elapsedSeconds.addAndGet( 45 );
+    cache.put( "key", "new value" );
+    assertThat( cache.get( "key" ), equalTo( "new value" ) );
+
+    // neither the update nor the access extended the expiration
+    elapsedSeconds.addAndGet( 16 );
+    assertThat( cache.get( "key" ), nullValue() );
+  }
+
+  @Test
+  public void testMaxEntries() throws Exception {
+    PentahoCacheConfiguration<Integer, String> configuration = new PentahoCacheConfiguration<Integer, String>();
+    configuration.setTypes( Integer.class, String.class );
+    configuration.setMaxEntries( 10 );
+    Cache<Integer, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    for ( int i = 0; i < 100; i++ ) {
+      cache.put( i, "value " + i );
+    }
+    com.github.benmanes.caffeine.cache.Cache<?, ?> caffeineCache =
+      cache.unwrap( com.github.benmanes.caffeine.cache.Cache.class );
+    caffeineCache.cleanUp();
+
+    assertThat( caffeineCache.estimatedSize(), lessThanOrEqualTo( 10L ) );
+    assertThat( cache.unwrap( CacheStats.class ).evictionCount(), greaterThanOrEqualTo( 90L ) );
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    PentahoCacheConfiguration<Integer, String> configuration = new PentahoCacheConfiguration<Integer, String>();
+    configuration.setTypes( Integer.class, String.class );
+    configuration.setMaxEntries( 10 );
+    configuration.setStatisticsEnabled( true );
+    Cache<Integer, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    for ( int i = 0; i < 100; i++ ) {
+      cache.put( i, "value " + i );
+    }
+    cache.unwrap( com.github.benmanes.caffeine.cache.Cache.class ).cleanUp();
+    cache.get( -1 );
+    cache.remove( -1 );
+
+    CacheStatisticsMXBean statistics = cacheManager.getCacheStatistics( CACHE_NAME );
+    assertThat( statistics.getCachePuts(), equalTo( 100L ) );
+    assertThat( statistics.getCacheMisses(), equalTo( 1L ) );
+    assertThat( statistics.getCacheRemovals(), equalTo( 0L ) );
+    assertThat( statistics.getCacheEvictions(), greaterThanOrEqualTo( 90L ) );
+
+    cacheManager.close();
+  }
+
+  @Test
+  public void testRefresh() throws Exception {
+    final AtomicInteger loads = new AtomicInteger( 0 );
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+    configuration.setRefreshAfterWrite( new Duration( TimeUnit.MINUTES, 1 ) );
+    configuration.setReadThrough( true );
+    configuration.setCacheLoaderFactory( FactoryBuilder.factoryOf( new CountingLoader( loads ) ) );
+    Cache<String, String> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+
+    // stale value is served while it is reloaded (synchronously, on the direct executor)
+    elapsedSeconds.addAndGet( 61 );
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+    assertThat( cache.get( "key" ), equalTo( "key 2" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testRefreshWithoutLoader() throws Exception {
+    PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+    configuration.setRefreshAfterWrite( new Duration( TimeUnit.MINUTES, 1 ) );
+
+    cacheManager.createCache( CACHE_NAME, configuration );
+  }
+
+  @Test
+  public void testNewCache() throws Exception {
+    MutableConfiguration<String, Map> configuration = new MutableConfiguration<String, Map>();
+    configuration.setTypes( String.class, Map.class );
+    Cache<String, Map> cache = cacheManager.createCache( CACHE_NAME, configuration );
+
+    assertThat( cache.getConfiguration( Configuration.class ), sameInstance( (Configuration) configuration ) );
+    assertThat( cache.getName(), is( CACHE_NAME ) );
+    assertThat( cacheManager.getCacheNames(), contains( CACHE_NAME ) );
+
+    cache.close();
+
+    assertThat( cache.isClosed(), is( true ) );
+    assertThat( cacheManager.getCacheNames(), emptyIterable() );
+  }
+
+  static class CountingLoader implements CacheLoader<String, String>, java.io.Serializable {
+    private final AtomicInteger loads;
+
+    CountingLoader( AtomicInteger loads ) {
+      this.loads = loads;
+    }
+
+    @Override public String load( String key ) throws CacheLoaderException {
+      return key + " " + loads.incrementAndGet();
+    }
+
+    @Override public Map<String, String> loadAll( Iterable<? extends String> keys ) throws CacheLoaderException {
+      Map<String, String> values = Maps.newHashMap();
+      for ( String key : keys ) {
+        values.put( key, load( key ) );
+      }
+      return values;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.caffeine.impl;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.pentaho.caching.spi.CacheStatistics;
+
+import javax.cache.Cache;
+import javax.cache.CacheException;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.integration.CompletionListenerFuture;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+import javax.cache.processor.MutableEntry;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CaffeineCacheTest {
+  public static final String CACHE_NAME = "CACHE_NAME";
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  private CaffeineCacheManager cacheManager;
+  private MutableConfiguration<String, String> configuration;
+  private AtomicInteger loads;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheManager = new CaffeineCacheManager( Ticker.systemTicker(), MoreExecutors.directExecutor() );
+    configuration = new MutableConfiguration<String, String>();
+    configuration.setTypes( String.class, String.class );
+
+    loads = new AtomicInteger( 0 );
+  }
+
+  private Cache<String, String> createCache() {
+    return cacheManager.createCache( CACHE_NAME, configuration );
+  }
+
+  private void setLoader() {
+    CaffeineCacheManagerTest.CountingLoader cacheLoader = new CaffeineCacheManagerTest.CountingLoader( loads );
+    configuration.setCacheLoaderFactory( FactoryBuilder.factoryOf( cacheLoader ) );
+  }
+
+  @Test
+  public void testGetAndPut() throws Exception {
+    Cache<String, String> cache = createCache();
+
+    assertThat( cache.getAndPut( "key", "value" ), nullValue() );
+    assertThat( cache.getAndPut( "key", "other value" ), equalTo( "value" ) );
+    assertThat( cache.get( "key" ), equalTo( "other value" ) );
+  }
+
+  @Test
+  public void testConditionalOperations() throws Exception {
+    Cache<String, String> cache = createCache();
+
+    assertThat( cache.putIfAbsent( "key", "value" ), is( true ) );
+    assertThat( cache.putIfAbsent( "key", "other value" ), is( false ) );
+    assertThat( cache.replace( "key", "other value", "new value" ), is( false ) );
+    assertThat( cache.replace( "key", "value", "new value" ), is( true ) );
+    assertThat( cache.getAndReplace( "key", "value" ), equalTo( "new value" ) );
+    assertThat( cache.remove( "key", "other value" ), is( false ) );
+    assertThat( cache.getAndRemove( "key" ), equalTo( "value" ) );
+    assertThat( cache.replace( "key", "value" ), is( false ) );
+    assertThat( cache.containsKey( "key" ), is( false ) );
+  }
+
+  @Test
+  public void testRemoveAll() throws Exception {
+    Cache<String, String> cache = createCache();
+    cache.putAll( ImmutableMap.of( "key1", "value1", "key2", "value2" ) );
+
+    cache.removeAll( ImmutableSet.of( "key1" ) );
+    assertThat( cache.getAll( ImmutableSet.of( "key1", "key2" ) ),
+      equalTo( (Map<String, String>) ImmutableMap.of( "key2", "value2" ) ) );
+    cache.removeAll();
+    assertThat( cache.getAll( ImmutableSet.of( "key1", "key2" ) ).entrySet(), empty() );
+  }
+
+  @Test
+  public void testInvoke() throws Exception {
+    Cache<String, String> cache = createCache();
+    cache.putAll( ImmutableMap.of( "key1", "value1", "key2", "value2" ) );
+
+    Map<String, EntryProcessorResult<String>> resultMap =
+      cache.invokeAll( ImmutableSet.of( "key1", "key2", "key3" ), new EntryProcessor<String, String, String>() {
+        @Override public String process( MutableEntry<String, String> entry, Object... arguments )
+          throws EntryProcessorException {
+          if ( entry.getKey().equals( "key1" ) ) {
+            entry.setValue( entry.getValue() + arguments[ 0 ] );
+            return "result1";
+          } else if ( entry.getKey().equals( "key2" ) ) {
+            entry.remove();
+            return "result2";
+          } else {
+            assertThat( entry.exists(), is( false ) );
+            return null;
+          }
+        }
+      }, " updated" );
+
+    assertThat( resultMap.get( "key1" ).get(), equalTo( "result1" ) );
+    assertThat( resultMap.get( "key2" ).get(), equalTo( "result2" ) );
+    assertThat( resultMap.containsKey( "key3" ), is( false ) );
+
+    Cache.Entry<String, String> onlyElement = Iterables.getOnlyElement( cache );
+    assertThat( onlyElement.getKey(), is( "key1" ) );
+    assertThat( onlyElement.getValue(), is( "value1 updated" ) );
+  }
+
+  @Test
+  public void testInvokeException() throws Exception {
+    Cache<String, String> cache = createCache();
+    cache.put( "key", "value" );
+
+    thrown.expect( EntryProcessorException.class );
+    try {
+      cache.invoke( "key", new EntryProcessor<String, String, Object>() {
+        @Override public Object process( MutableEntry<String, String> entry, Object... arguments ) {
+          entry.setValue( "other value" );
+          throw new IllegalStateException();
+        }
+      } );
+    } finally {
+      assertThat( cache.get( "key" ), equalTo( "value" ) );
+    }
+  }
+
+  @Test
+  public void testReadThrough() throws Exception {
+    setLoader();
+    configuration.setReadThrough( true );
+    Cache<String, String> cache = createCache();
+
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+    assertThat( cache.containsKey( "key" ), is( true ) );
+    assertThat( loads.get(), is( 1 ) );
+  }
+
+  @Test
+  public void testInvokeReadThrough() throws Exception {
+    setLoader();
+    configuration.setReadThrough( true );
+    configuration.setStatisticsEnabled( true );
+    Cache<String, String> cache = createCache();
+    cache.put( "key1", "value1" );
+
+    Map<String, EntryProcessorResult<Boolean>> resultMap =
+      cache.invokeAll( ImmutableSet.of( "key1", "key2", "key3" ), new EntryProcessor<String, String, Boolean>() {
+        @Override public Boolean process( MutableEntry<String, String> entry, Object... arguments )
+          throws EntryProcessorException {
+          if ( entry.getKey().equals( "key3" ) ) {
+            entry.setValue( "value3" );
+            return null;
+          }
+          // loads missing entries, like getValue
+          return entry.exists();
+        }
+      } );
+
+    assertThat( resultMap.get( "key1" ).get(), is( true ) );
+    assertThat( resultMap.get( "key2" ).get(), is( true ) );
+    assertThat( loads.get(), is( 1 ) );
+    assertThat( cache.get( "key2" ), equalTo( "key2 1" ) );
+    assertThat( cache.get( "key3" ), equalTo( "value3" ) );
+
+    CacheStatistics statistics = cache.unwrap( CacheStatistics.class );
+    assertThat( statistics.getCacheHits(), equalTo( 3L ) );
+    assertThat( statistics.getCacheMisses(), equalTo( 1L ) );
+    assertThat( statistics.getCachePuts(), equalTo( 2L ) );
+  }
+
+  @Test
+  public void testLoaderWithoutReadThrough() throws Exception {
+    setLoader();
+    Cache<String, String> cache = createCache();
+
+    assertThat( cache.get( "key" ), nullValue() );
+
+    CompletionListenerFuture future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key" ), false, future );
+    future.get();
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+
+    // existing values are kept unless replaced
+    future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key" ), false, future );
+    future.get();
+    assertThat( cache.get( "key" ), equalTo( "key 1" ) );
+  }
+
+  @Test
+  public void testLoadAllWithoutLoader() throws Exception {
+    Cache<String, String> cache = createCache();
+
+    CompletionListenerFuture future = new CompletionListenerFuture();
+    cache.loadAll( ImmutableSet.of( "key1", "key2" ), true, future );
+    assertThat( future.isDone(), is( true ) );
+    assertThat( cache.get( "key1" ), nullValue() );
+  }
+
+  @Test
+  public void testRegisterCacheEntryListener() throws Exception {
+    thrown.expect( CacheException.class );
+    thrown.expectMessage( "CacheEntryListeners are not yet supported" );
+    createCache().registerCacheEntryListener( null );
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    Cache<String, String> cache = createCache();
+    cache.put( "key", "value" );
+    cache.close();
+    assertThat( cache.isClosed(), is( true ) );
+
+    thrown.expect( IllegalStateException.class );
+    thrown.expectMessage( "Cache is closed" );
+    cache.get( "key" );
+  }
+}
@@ -0,0 +1,71 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.ehcache;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+
+import javax.cache.configuration.CompleteConfiguration;
+import java.util.Map;
+
+/**
+ * Cache configuration carrying the template properties it was created from, which are translated to the
+ * configuration of the Ehcache cache. Besides the properties common to all providers, templates may set:
+ * <ul>
+ * <li>{@value #CONFIG_MAX_ENTRIES_LOCAL_HEAP}: entries kept on heap (defaults to maxEntries, 0 for unbounded)</li>
+ * <li>{@value #CONFIG_MAX_BYTES_LOCAL_HEAP}: size of the entries kept on heap, e.g. 64m, instead of their number</li>
+ * <li>{@value #CONFIG_MAX_BYTES_LOCAL_OFF_HEAP}: size of the off-heap store the heap overflows to, which requires
+ * the enterprise edition of Ehcache and is ignored otherwise; the off-heap tier of the cache manager
+ * ({@link org.pentaho.caching.api.Constants#CONFIG_OFF_HEAP}) doesn't</li>
+ * <li>{@value #CONFIG_OVERFLOW_TO_DISK}: whether entries overflow to the disk store</li>
+ * <li>{@value #CONFIG_MAX_ENTRIES_LOCAL_DISK}: entries kept on disk (0 for unbounded)</li>
+ * <li>{@value #CONFIG_MEMORY_STORE_EVICTION_POLICY}: LRU, LFU, FIFO or CLOCK</li>
+ * </ul>
+ * The heap and disk bounds of live caches are updated when their template changes, the other properties only apply
+ * to caches created afterwards.
+ */
+public class EhcacheCacheConfiguration<K, V> extends PentahoCacheConfiguration<K, V> {
+  private static final long serialVersionUID = 1L;
+
+  public static final String CONFIG_MAX_ENTRIES_LOCAL_HEAP = "maxEntriesLocalHeap";
+  public static final String CONFIG_MAX_BYTES_LOCAL_HEAP = "maxBytesLocalHeap";
+  public static final String CONFIG_MAX_BYTES_LOCAL_OFF_HEAP = "maxBytesLocalOffHeap";
+  public static final String CONFIG_OVERFLOW_TO_DISK = "overflowToDisk";
+  public static final String CONFIG_MAX_ENTRIES_LOCAL_DISK = "maxEntriesLocalDisk";
+  public static final String CONFIG_MEMORY_STORE_EVICTION_POLICY = "memoryStoreEvictionPolicy";
+
+  private final ImmutableMap<String, String> properties;
+
+  public EhcacheCacheConfiguration( CompleteConfiguration<K, V> configuration, Map<String, String> properties ) {
+    super( configuration );
+    this.properties = ImmutableMap.copyOf( properties );
+  }
+
+  public Map<String, String> getProperties() {
+    return properties;
+  }
+
+  @Override public EhcacheCacheConfiguration<K, V> copy() {
+    return new EhcacheCacheConfiguration<K, V>( this, properties );
+  }
+
+  @Override public boolean equals( Object object ) {
+    return object instanceof EhcacheCacheConfiguration && super.equals( object )
+      && properties.equals( ( (EhcacheCacheConfiguration<?, ?>) object ).properties );
+  }
+
+  @Override public int hashCode() {
+    return Objects.hashCode( super.hashCode(), properties );
+  }
+}
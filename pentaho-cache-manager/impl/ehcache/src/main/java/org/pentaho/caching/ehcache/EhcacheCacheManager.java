@@ -0,0 +1,174 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.ehcache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import org.ehcache.jcache.JCacheCachingProvider;
+import org.ehcache.jcache.JCacheManager;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+
+import javax.cache.Cache;
+import javax.cache.configuration.Configuration;
+import java.net.URI;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.pentaho.caching.api.Constants.CONFIG_MAX_ENTRIES;
+
+/**
+ * JCache manager creating its Ehcache caches from the template properties of their configuration, and
+ * reconfiguring them when their template changes.
+ * <p>
+ * A cache follows the template named by its configuration ({@link PentahoCacheConfiguration#getTemplateName()}).
+ * Caches created with overridden template properties keep their configuration.
+ */
+class EhcacheCacheManager extends JCacheManager implements PentahoCacheSystemConfiguration.Listener {
+  private static final Logger logger = Logger.getLogger( EhcacheCacheManager.class.getName() );
+
+  private final CacheManager cacheManager;
+  private final PentahoCacheSystemConfiguration systemConfiguration;
+  private final ExecutorService executorService;
+  private final Map<String, Map<String, String>> cacheProperties = Maps.newHashMap();
+  // name of the template each cache follows, if any
+  private final Map<String, String> cacheTemplates = Maps.newHashMap();
+  private Map<String, Map<String, String>> templateProperties;
+  private volatile boolean closed;
+
+  EhcacheCacheManager( JCacheCachingProvider provider, CacheManager cacheManager, URI uri,
+                       PentahoCacheSystemConfiguration systemConfiguration, ExecutorService executorService ) {
+    super( provider, cacheManager, uri, new Properties() );
+    this.cacheManager = cacheManager;
+    this.systemConfiguration = systemConfiguration;
+    this.executorService = executorService;
+    this.templateProperties = systemConfiguration.getTemplateProperties();
+    systemConfiguration.addListener( this );
+  }
+
+  @Override public ExecutorService getExecutorService() {
+    return executorService;
+  }
+
+  @Override public <K, V, C extends Configuration<K, V>> Cache<K, V> createCache( String cacheName, C configuration ) {
+    if ( closed ) {
+      throw new IllegalStateException( "Cache manager is closed" );
+    }
+    Map<String, String> properties = getProperties( configuration );
+    // validate the properties before the cache is created
+    Ehcache ehcache = new net.sf.ehcache.Cache( EhcacheTemplates.createCacheConfiguration( cacheName, properties ) );
+
+    synchronized ( this ) {
+      boolean registered = cacheManager.addCacheIfAbsent( ehcache ) == ehcache;
+      Cache<K, V> cache;
+      try {
+        cache = super.createCache( cacheName, configuration );
+      } catch ( RuntimeException e ) {
+        if ( registered && cacheManager.getEhcache( cacheName ) == ehcache ) {
+          cacheManager.removeCache( cacheName );
+        }
+        throw e;
+      }
+      cacheProperties.put( cacheName, properties );
+      String template = configuration instanceof PentahoCacheConfiguration
+        ? ( (PentahoCacheConfiguration<?, ?>) configuration ).getTemplateName() : null;
+      if ( template != null ) {
+        cacheTemplates.put( cacheName, template );
+      }
+
+      Ehcache created = cacheManager.getEhcache( cacheName );
+      if ( created != null && created != ehcache ) {
+        // the cache was set up by the wrapper instead, at least apply the bounds
+        EhcacheTemplates.reconfigure( created.getCacheConfiguration(), properties );
+      }
+      return cache;
+    }
+  }
+
+  private static Map<String, String> getProperties( Configuration<?, ?> configuration ) {
+    if ( configuration instanceof EhcacheCacheConfiguration ) {
+      return ( (EhcacheCacheConfiguration<?, ?>) configuration ).getProperties();
+    }
+    if ( configuration instanceof PentahoCacheConfiguration ) {
+      // e.g. configurations not created by this provider
+      long maxEntries = ( (PentahoCacheConfiguration<?, ?>) configuration ).getMaxEntries();
+      if ( maxEntries != PentahoCacheConfiguration.UNBOUNDED ) {
+        return ImmutableMap.of( CONFIG_MAX_ENTRIES, String.valueOf( maxEntries ) );
+      }
+    }
+    return ImmutableMap.of();
+  }
+
+  @Override public synchronized void destroyCache( String cacheName ) {
+    cacheProperties.remove( cacheName );
+    cacheTemplates.remove( cacheName );
+    super.destroyCache( cacheName );
+  }
+
+  /**
+   * Reconfigures the live caches of the templates whose properties changed.
+   */
+  @Override public synchronized void configurationChanged( PentahoCacheSystemConfiguration systemConfiguration ) {
+    templateProperties = systemConfiguration.getTemplateProperties();
+
+    for ( Map.Entry<String, Map<String, String>> entry : cacheProperties.entrySet() ) {
+      String cacheName = entry.getKey();
+      String template = cacheTemplates.get( cacheName );
+      Map<String, String> properties = template != null ? templateProperties.get( template ) : null;
+      Ehcache ehcache = cacheManager.getEhcache( cacheName );
+      if ( properties == null || properties.equals( entry.getValue() ) || ehcache == null ) {
+        continue;
+      }
+      try {
+        EhcacheTemplates.reconfigure( ehcache.getCacheConfiguration(), properties );
+        entry.setValue( properties );
+      } catch ( RuntimeException e ) {
+        logger.log( Level.WARNING, "Unable to reconfigure cache " + cacheName, e );
+      }
+    }
+  }
+
+  /**
+   * Destroys the caches of this manager. Unlike {@link JCacheManager#close()}, this doesn't go through the caching
+   * provider, which doesn't know this manager, and leaves the shared Ehcache manager running for the other managers.
+   * It is shut down with the providing service instead.
+   */
+  @Override public void close() {
+    systemConfiguration.removeListener( this );
+    synchronized ( this ) {
+      if ( closed ) {
+        return;
+      }
+      closed = true;
+      for ( String cacheName : ImmutableList.copyOf( cacheProperties.keySet() ) ) {
+        try {
+          destroyCache( cacheName );
+        } catch ( RuntimeException e ) {
+          logger.log( Level.WARNING, "Unable to close cache " + cacheName, e );
+        }
+      }
+      cacheProperties.clear();
+      cacheTemplates.clear();
+    }
+  }
+
+  @Override public boolean isClosed() {
+    return closed || super.isClosed();
+  }
+}
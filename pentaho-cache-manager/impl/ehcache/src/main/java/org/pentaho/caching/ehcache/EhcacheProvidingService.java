@@ -14,13 +14,15 @@ package org.pentaho.caching.ehcache;
 
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.config.DiskStoreConfiguration;
 import org.ehcache.jcache.JCacheCachingProvider;
-import org.ehcache.jcache.JCacheManager;
 import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
 import org.pentaho.caching.spi.AbstractCacheProvidingService;
 
+import javax.cache.configuration.CompleteConfiguration;
+import java.io.File;
 import java.net.URI;
-import java.util.Properties;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
@@ -48,22 +50,33 @@ public class EhcacheProvidingService extends AbstractCacheProvidingService {
 
   public static CacheManager getCacheManager() {
     if ( cacheManager == null ) {
-      cacheManager = CacheManager.newInstance( new Configuration() );
+      cacheManager = CacheManager.newInstance( new Configuration()
+        .diskStore( new DiskStoreConfiguration().path( getDiskStorePath() ) ) );
     }
     return cacheManager;
   }
 
-  @Override public javax.cache.CacheManager createCacheManager( PentahoCacheSystemConfiguration systemConfiguration ) {
+  /**
+   * Caches overflowing to disk are stored in the karaf data directory, or else in the temporary directory.
+   */
+  private static String getDiskStorePath() {
+    String karafData = System.getProperty( "karaf.data" );
+    File parent = new File( karafData != null ? karafData : System.getProperty( "java.io.tmpdir" ) );
+    return new File( parent, "ehcache" ).getAbsolutePath();
+  }
 
-    return new JCacheManager(
-        providerInstance,
-        getCacheManager(),
-        URI.create( getClass().getName() ),
-      new Properties() ) {
-      @Override public ExecutorService getExecutorService() {
-        return executorService;
-      }
-    };
+  /**
+   * Keeps the template properties in the configuration, to be translated to the configuration of the Ehcache cache.
+   */
+  @Override public <K, V> CompleteConfiguration<K, V> createConfiguration( Class<K> keyType, Class<V> valueType,
+                                                                           Map<String, String> properties ) {
+    return new EhcacheCacheConfiguration<K, V>( super.createConfiguration( keyType, valueType, properties ),
+      properties );
+  }
+
+  @Override public javax.cache.CacheManager createCacheManager( PentahoCacheSystemConfiguration systemConfiguration ) {
+    return new EhcacheCacheManager( providerInstance, getCacheManager(), URI.create( getClass().getName() ),
+      systemConfiguration, executorService );
   }
 
   public void shutdown() {
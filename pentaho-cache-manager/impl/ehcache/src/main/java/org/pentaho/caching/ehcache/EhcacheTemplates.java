@@ -0,0 +1,170 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.ehcache;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Longs;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.MemoryUnit;
+import net.sf.ehcache.config.PersistenceConfiguration;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static org.pentaho.caching.api.Constants.CONFIG_MAX_ENTRIES;
+import static org.pentaho.caching.api.Constants.CONFIG_OFF_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_BYTES_LOCAL_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_BYTES_LOCAL_OFF_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_ENTRIES_LOCAL_DISK;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_ENTRIES_LOCAL_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MEMORY_STORE_EVICTION_POLICY;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_OVERFLOW_TO_DISK;
+
+/**
+ * Translates template properties to Ehcache cache configurations.
+ *
+ * @see EhcacheCacheConfiguration
+ */
+final class EhcacheTemplates {
+  private static final Logger logger = Logger.getLogger( EhcacheTemplates.class.getName() );
+
+  private static final Pattern SIZE_PATTERN = Pattern.compile( "\\d+[kKmMgGtT]?" );
+  private static final Set<String> EVICTION_POLICIES = ImmutableSet.of( "LRU", "LFU", "FIFO", "CLOCK" );
+  // only present in the enterprise edition of Ehcache
+  private static final String OFF_HEAP_STORE_CLASS = "net.sf.ehcache.store.offheap.OffHeapStore";
+
+  private static volatile Boolean offHeapAvailable;
+
+  private EhcacheTemplates() {
+  }
+
+  static boolean isOffHeapAvailable() {
+    if ( offHeapAvailable == null ) {
+      boolean available;
+      try {
+        Class.forName( OFF_HEAP_STORE_CLASS, false, CacheConfiguration.class.getClassLoader() );
+        available = true;
+      } catch ( ClassNotFoundException | LinkageError e ) {
+        available = false;
+      }
+      offHeapAvailable = available;
+    }
+    return offHeapAvailable;
+  }
+
+  /**
+   * Creates the configuration of an Ehcache cache from template properties.
+   *
+   * @throws IllegalArgumentException if a property is invalid
+   */
+  static CacheConfiguration createCacheConfiguration( String cacheName, Map<String, String> properties ) {
+    CacheConfiguration configuration = new CacheConfiguration().name( cacheName );
+
+    Long maxEntries = null;
+    if ( properties.containsKey( CONFIG_MAX_ENTRIES_LOCAL_HEAP ) ) {
+      maxEntries = parseBound( properties, CONFIG_MAX_ENTRIES_LOCAL_HEAP );
+    } else if ( properties.containsKey( CONFIG_MAX_ENTRIES ) ) {
+      maxEntries = parseBound( properties, CONFIG_MAX_ENTRIES );
+    }
+    if ( properties.containsKey( CONFIG_MAX_BYTES_LOCAL_HEAP ) ) {
+      Preconditions.checkArgument( maxEntries == null, "Template config error: can not bound by both %s and %s",
+        CONFIG_MAX_ENTRIES_LOCAL_HEAP, CONFIG_MAX_BYTES_LOCAL_HEAP );
+      configuration.setMaxBytesLocalHeap( parseSize( properties, CONFIG_MAX_BYTES_LOCAL_HEAP ) );
+    } else {
+      configuration.setMaxEntriesLocalHeap( maxEntries != null ? maxEntries : 0 );
+    }
+
+    if ( properties.containsKey( CONFIG_MAX_BYTES_LOCAL_OFF_HEAP ) ) {
+      String size = parseSize( properties, CONFIG_MAX_BYTES_LOCAL_OFF_HEAP );
+      if ( isOffHeapAvailable() ) {
+        configuration.setOverflowToOffHeap( true );
+        configuration.setMaxBytesLocalOffHeap( size );
+      } else {
+        logger.warning( "Off-heap store requires the enterprise edition of Ehcache, ignoring "
+          + CONFIG_MAX_BYTES_LOCAL_OFF_HEAP + " of cache " + cacheName + " (see " + CONFIG_OFF_HEAP + ")" );
+      }
+    }
+
+    if ( Boolean.valueOf( properties.get( CONFIG_OVERFLOW_TO_DISK ) ) ) {
+      configuration.addPersistence(
+        new PersistenceConfiguration().strategy( PersistenceConfiguration.Strategy.LOCALTEMPSWAP ) );
+    }
+    if ( properties.containsKey( CONFIG_MAX_ENTRIES_LOCAL_DISK ) ) {
+      configuration.setMaxEntriesLocalDisk( parseBound( properties, CONFIG_MAX_ENTRIES_LOCAL_DISK ) );
+    }
+
+    if ( properties.containsKey( CONFIG_MEMORY_STORE_EVICTION_POLICY ) ) {
+      String policy = Strings.nullToEmpty( properties.get( CONFIG_MEMORY_STORE_EVICTION_POLICY ) ).trim()
+        .toUpperCase( Locale.ROOT );
+      Preconditions.checkArgument( EVICTION_POLICIES.contains( policy ), "Template config error",
+        CONFIG_MEMORY_STORE_EVICTION_POLICY );
+      configuration.setMemoryStoreEvictionPolicy( policy );
+    }
+    return configuration;
+  }
+
+  /**
+   * Applies the bounds of a new template configuration to the configuration of a live cache. The other settings of
+   * a live cache can't change, and a warning is logged if they differ.
+   *
+   * @throws IllegalArgumentException if a property is invalid, in which case the cache is left unchanged
+   */
+  static void reconfigure( CacheConfiguration live, Map<String, String> properties ) {
+    CacheConfiguration target = createCacheConfiguration( live.getName(), properties );
+
+    boolean sizedInBytes = live.getMaxBytesLocalHeap() > 0;
+    if ( sizedInBytes != target.getMaxBytesLocalHeap() > 0 ) {
+      logger.warning( "Cache " + live.getName() + " can not switch between " + CONFIG_MAX_ENTRIES_LOCAL_HEAP
+        + " and " + CONFIG_MAX_BYTES_LOCAL_HEAP + " while live, the change applies once it is recreated" );
+    } else if ( sizedInBytes && live.getMaxBytesLocalHeap() != target.getMaxBytesLocalHeap() ) {
+      live.setMaxBytesLocalHeap( target.getMaxBytesLocalHeap() );
+    } else if ( !sizedInBytes && live.getMaxEntriesLocalHeap() != target.getMaxEntriesLocalHeap() ) {
+      live.setMaxEntriesLocalHeap( target.getMaxEntriesLocalHeap() );
+    }
+    if ( live.getMaxEntriesLocalDisk() != target.getMaxEntriesLocalDisk() ) {
+      live.setMaxEntriesLocalDisk( target.getMaxEntriesLocalDisk() );
+    }
+
+    if ( live.getMaxBytesLocalOffHeap() != target.getMaxBytesLocalOffHeap()
+      || !Objects.equal( persistenceStrategy( live ), persistenceStrategy( target ) )
+      || !Objects.equal( String.valueOf( live.getMemoryStoreEvictionPolicy() ),
+      String.valueOf( target.getMemoryStoreEvictionPolicy() ) ) ) {
+      logger.warning( "Only the heap and disk bounds of live cache " + live.getName()
+        + " are reconfigured, the other changes apply once it is recreated" );
+    }
+  }
+
+  private static PersistenceConfiguration.Strategy persistenceStrategy( CacheConfiguration configuration ) {
+    PersistenceConfiguration persistence = configuration.getPersistenceConfiguration();
+    return persistence != null ? persistence.getStrategy() : PersistenceConfiguration.Strategy.NONE;
+  }
+
+  private static long parseBound( Map<String, String> properties, String key ) {
+    Long bound = Longs.tryParse( Strings.nullToEmpty( properties.get( key ) ).trim() );
+    Preconditions.checkArgument( bound != null && bound >= 0, "Template config error", key );
+    return bound;
+  }
+
+  private static String parseSize( Map<String, String> properties, String key ) {
+    String size = Strings.nullToEmpty( properties.get( key ) ).trim();
+    Preconditions.checkArgument( SIZE_PATTERN.matcher( size ).matches() && MemoryUnit.parseSizeInBytes( size ) > 0,
+      "Template config error", key );
+    return size;
+  }
+}
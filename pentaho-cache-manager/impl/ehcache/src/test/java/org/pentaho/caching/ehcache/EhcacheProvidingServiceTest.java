@@ -12,16 +12,31 @@
 
 package org.pentaho.caching.ehcache;
 
+import com.google.common.collect.ImmutableMap;
+import net.sf.ehcache.config.CacheConfiguration;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.caching.api.Constants;
+import org.pentaho.caching.api.PentahoCacheConfiguration;
+import org.pentaho.caching.api.PentahoCacheManager;
 import org.pentaho.caching.api.PentahoCacheSystemConfiguration;
+import org.pentaho.caching.impl.PentahoCacheManagerImpl;
 
+import javax.cache.Cache;
 import javax.cache.CacheManager;
+import javax.cache.configuration.Configuration;
+import java.util.Map;
 
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_ENTRIES_LOCAL_HEAP;
 
 public class EhcacheProvidingServiceTest {
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
   private EhcacheProvidingService service = new EhcacheProvidingService();
 
   @Test public void testCreateCacheManager() throws Exception {
@@ -33,4 +48,132 @@ public class EhcacheProvidingServiceTest {
       fail( "Expected CacheManager to be backed by ehcache CacheManager." );
     }
   }
+
+  @Test public void testCreateConfiguration() throws Exception {
+    Map<String, String> properties = ImmutableMap.of( CONFIG_MAX_ENTRIES_LOCAL_HEAP, "10" );
+    Configuration<String, String> configuration =
+      service.createConfiguration( String.class, String.class, properties );
+
+    assertThat( configuration, instanceOf( EhcacheCacheConfiguration.class ) );
+    assertThat( ( (EhcacheCacheConfiguration<String, String>) configuration ).getProperties(),
+      equalTo( properties ) );
+  }
+
+  @Test public void testCloseKeepsOtherManagers() throws Exception {
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    CacheManager closed = service.createCacheManager( systemConfiguration );
+    CacheManager other = service.createCacheManager( systemConfiguration );
+    String closedName = "closed-" + System.nanoTime();
+    String otherName = "other-" + System.nanoTime();
+    try {
+      closed.createCache( closedName, service.createConfiguration( String.class, String.class,
+        ImmutableMap.<String, String>of() ) );
+      Cache<String, String> cache = other.createCache( otherName, service.createConfiguration( String.class,
+        String.class, ImmutableMap.<String, String>of() ) );
+
+      closed.close();
+      assertTrue( closed.isClosed() );
+      assertNull( EhcacheProvidingService.getCacheManager().getEhcache( closedName ) );
+
+      // the shared Ehcache manager keeps running
+      cache.put( "key", "value" );
+      assertThat( cache.get( "key" ), equalTo( "value" ) );
+      assertFalse( other.isClosed() );
+    } finally {
+      other.destroyCache( otherName );
+      other.close();
+    }
+  }
+
+  @Test public void testReconfigureTemplate() throws Exception {
+    // both templates have the same properties, the cache follows the one it was created from
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.setData( ImmutableMap.of(
+      "template.small", "Small",
+      "template.small.maxEntriesLocalHeap", "10",
+      "template.other", "Other",
+      "template.other.maxEntriesLocalHeap", "10"
+    ) );
+    PentahoCacheManager cacheManager = new PentahoCacheManagerImpl( systemConfiguration, service );
+    String cacheName = "reconfigured-" + System.nanoTime();
+    try {
+      cacheManager.getTemplates().get( "other" ).createCache( cacheName, String.class, String.class );
+      CacheConfiguration ehcacheConfiguration =
+        EhcacheProvidingService.getCacheManager().getEhcache( cacheName ).getCacheConfiguration();
+      assertThat( ehcacheConfiguration.getMaxEntriesLocalHeap(), equalTo( 10L ) );
+
+      systemConfiguration.setData( ImmutableMap.of(
+        "template.small", "Small",
+        "template.small.maxEntriesLocalHeap", "10",
+        "template.other", "Other",
+        "template.other.maxEntriesLocalHeap", "20"
+      ) );
+      assertThat( ehcacheConfiguration.getMaxEntriesLocalHeap(), equalTo( 20L ) );
+
+      systemConfiguration.setData( ImmutableMap.of(
+        "template.small", "Small",
+        "template.small.maxEntriesLocalHeap", "30",
+        "template.other", "Other",
+        "template.other.maxEntriesLocalHeap", "20"
+      ) );
+      assertThat( ehcacheConfiguration.getMaxEntriesLocalHeap(), equalTo( 20L ) );
+    } finally {
+      cacheManager.destroyCache( cacheName );
+      cacheManager.close();
+    }
+  }
+
+  @Test public void testPersistentCacheTemplate() throws Exception {
+    // the cache of the disk tier keeps the template properties
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.setData( ImmutableMap.of(
+      "global." + Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath(),
+      "template.small", "Small",
+      "template.small.maxEntriesLocalHeap", "10"
+    ) );
+    PentahoCacheManager cacheManager = new PentahoCacheManagerImpl( systemConfiguration, service );
+    String cacheName = "persistent-" + System.nanoTime();
+    try {
+      PentahoCacheConfiguration<String, String> configuration = (PentahoCacheConfiguration<String, String>)
+        cacheManager.getTemplates().get( "small" ).createConfiguration( String.class, String.class );
+      configuration.setPersistent( true );
+      cacheManager.createCache( cacheName, configuration );
+      CacheConfiguration ehcacheConfiguration =
+        EhcacheProvidingService.getCacheManager().getEhcache( cacheName ).getCacheConfiguration();
+      assertThat( ehcacheConfiguration.getMaxEntriesLocalHeap(), equalTo( 10L ) );
+
+      systemConfiguration.setData( ImmutableMap.of(
+        "global." + Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath(),
+        "template.small", "Small",
+        "template.small.maxEntriesLocalHeap", "20"
+      ) );
+      assertThat( ehcacheConfiguration.getMaxEntriesLocalHeap(), equalTo( 20L ) );
+    } finally {
+      cacheManager.destroyCache( cacheName );
+      cacheManager.close();
+    }
+  }
+
+  @Test public void testPersistentCache() throws Exception {
+    // the disk tier is only written through the provider's cache
+    PentahoCacheSystemConfiguration systemConfiguration = new PentahoCacheSystemConfiguration();
+    systemConfiguration.setData( ImmutableMap.of(
+      "global." + Constants.CONFIG_PERSISTENCE_DIRECTORY, temporaryFolder.getRoot().getPath() ) );
+    PentahoCacheManager cacheManager = new PentahoCacheManagerImpl( systemConfiguration, service );
+    String cacheName = "persistent-" + System.nanoTime();
+    try {
+      PentahoCacheConfiguration<String, String> configuration = new PentahoCacheConfiguration<String, String>();
+      configuration.setTypes( String.class, String.class );
+      configuration.setPersistent( true );
+      Cache<String, String> cache = cacheManager.createCache( cacheName, configuration );
+      cache.put( "key", "value" );
+      cache.close();
+
+      cache = cacheManager.createCache( cacheName, configuration );
+      assertThat( cache.get( "key" ), equalTo( "value" ) );
+    } finally {
+      cacheManager.destroyCache( cacheName );
+      cacheManager.close();
+    }
+  }
 }
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.caching.ehcache;
+
+import com.google.common.collect.ImmutableMap;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.PersistenceConfiguration;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_BYTES_LOCAL_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_BYTES_LOCAL_OFF_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_ENTRIES_LOCAL_DISK;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MAX_ENTRIES_LOCAL_HEAP;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_MEMORY_STORE_EVICTION_POLICY;
+import static org.pentaho.caching.ehcache.EhcacheCacheConfiguration.CONFIG_OVERFLOW_TO_DISK;
+
+public class EhcacheTemplatesTest {
+
+  @Test public void testCreateCacheConfiguration() throws Exception {
+    CacheConfiguration configuration = EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of(
+      CONFIG_MAX_ENTRIES_LOCAL_HEAP, "100",
+      CONFIG_OVERFLOW_TO_DISK, "true",
+      CONFIG_MAX_ENTRIES_LOCAL_DISK, "1000",
+      CONFIG_MEMORY_STORE_EVICTION_POLICY, "lfu"
+    ) );
+
+    assertThat( configuration.getName(), equalTo( "cache" ) );
+    assertThat( configuration.getMaxEntriesLocalHeap(), equalTo( 100L ) );
+    assertThat( configuration.getMaxEntriesLocalDisk(), equalTo( 1000L ) );
+    assertThat( configuration.getPersistenceConfiguration().getStrategy(),
+      equalTo( PersistenceConfiguration.Strategy.LOCALTEMPSWAP ) );
+    assertThat( configuration.getMemoryStoreEvictionPolicy().toString(), equalTo( "LFU" ) );
+  }
+
+  @Test public void testDefaults() throws Exception {
+    CacheConfiguration configuration =
+      EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.<String, String>of() );
+
+    assertThat( configuration.getMaxEntriesLocalHeap(), equalTo( 0L ) );
+    assertThat( configuration.getPersistenceConfiguration(), nullValue() );
+
+    configuration = EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of( "maxEntries", "50" ) );
+    assertThat( configuration.getMaxEntriesLocalHeap(), equalTo( 50L ) );
+  }
+
+  @Test public void testSizeBounds() throws Exception {
+    CacheConfiguration configuration = EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of(
+      CONFIG_MAX_BYTES_LOCAL_HEAP, "2m",
+      CONFIG_MAX_BYTES_LOCAL_OFF_HEAP, "1g"
+    ) );
+
+    assertThat( configuration.getMaxBytesLocalHeap(), equalTo( 2L * 1024 * 1024 ) );
+    assertThat( configuration.getMaxBytesLocalOffHeap(),
+      equalTo( EhcacheTemplates.isOffHeapAvailable() ? 1024L * 1024 * 1024 : 0L ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testEntriesAndBytes() throws Exception {
+    EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of(
+      CONFIG_MAX_ENTRIES_LOCAL_HEAP, "100",
+      CONFIG_MAX_BYTES_LOCAL_HEAP, "2m"
+    ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidSize() throws Exception {
+    EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of( CONFIG_MAX_BYTES_LOCAL_HEAP, "10%" ) );
+  }
+
+  @Test( expected = IllegalArgumentException.class )
+  public void testInvalidEvictionPolicy() throws Exception {
+    EhcacheTemplates.createCacheConfiguration( "cache",
+      ImmutableMap.of( CONFIG_MEMORY_STORE_EVICTION_POLICY, "RANDOM" ) );
+  }
+
+  @Test public void testReconfigure() throws Exception {
+    CacheConfiguration live = EhcacheTemplates.createCacheConfiguration( "cache", ImmutableMap.of(
+      CONFIG_MAX_ENTRIES_LOCAL_HEAP, "100",
+      CONFIG_MAX_ENTRIES_LOCAL_DISK, "1000"
+    ) );
+
+    EhcacheTemplates.reconfigure( live, ImmutableMap.of(
+      CONFIG_MAX_ENTRIES_LOCAL_HEAP, "200",
+      CONFIG_MAX_ENTRIES_LOCAL_DISK, "500",
+      CONFIG_MEMORY_STORE_EVICTION_POLICY, "FIFO"
+    ) );
+
+    assertThat( live.getMaxEntriesLocalHeap(), equalTo( 200L ) );
+    assertThat( live.getMaxEntriesLocalDisk(), equalTo( 500L ) );
+    // not reconfigurable
+    assertThat( live.getMemoryStoreEvictionPolicy().toString(), equalTo( "LRU" ) );
+
+    EhcacheTemplates.reconfigure( live, ImmutableMap.of( CONFIG_MAX_BYTES_LOCAL_HEAP, "2m" ) );
+    assertThat( live.getMaxEntriesLocalHeap(), equalTo( 200L ) );
+    assertThat( live.getMaxBytesLocalHeap(), equalTo( 0L ) );
+  }
+}
@@ -0,0 +1,153 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.benchmarks;
+
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+import org.pentaho.requirejs.impl.RequireJsPackageConfigurationImpl;
+import org.pentaho.requirejs.impl.types.MetaInfPackageJson;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthesizes a deterministic graph of packages resembling what is deployed in a server: several versions of the
+ * most used libraries, dependencies declared with exact versions and ranges, shims, local maps and pentaho/modules
+ * configurations (processed by the configuration plugins).
+ */
+public final class PackageGraphGenerator {
+  private static final String[] RANGE_OPERATORS = { "", "^", "~", ">=" };
+
+  private final Random random;
+
+  public PackageGraphGenerator( long seed ) {
+    this.random = new Random( seed );
+  }
+
+  /**
+   * Generates the package.json objects of {@code packageCount} packages.
+   * <p>
+   * Packages only depend on packages generated before them (so the graph is acyclic), favouring the first ones,
+   * which play the role of the popular libraries and are the ones with more versions.
+   */
+  public List<Map<String, Object>> generatePackageJsons( int packageCount ) {
+    List<Map<String, Object>> packageJsons = new ArrayList<>( packageCount );
+    List<String[]> published = new ArrayList<>( packageCount );
+
+    int libraries = 0;
+    while ( packageJsons.size() < packageCount ) {
+      String name = "lib" + libraries++;
+
+      // popular libraries have more versions installed side by side
+      int versions = libraries <= packageCount / 20 ? 1 + this.random.nextInt( 3 ) : 1;
+      for ( int v = 0; v < versions && packageJsons.size() < packageCount; v++ ) {
+        String version = ( 1 + this.random.nextInt( 3 ) ) + "." + this.random.nextInt( 10 ) + "." + v;
+
+        packageJsons.add( this.generatePackageJson( name, version, published ) );
+        published.add( new String[] { name, version } );
+      }
+    }
+
+    return packageJsons;
+  }
+
+  /**
+   * Generates the package configurations, already processed, just like the package service tracker does.
+   */
+  public List<IRequireJsPackageConfiguration> generatePackages( int packageCount ) {
+    List<IRequireJsPackageConfiguration> packages = new ArrayList<>( packageCount );
+    for ( Map<String, Object> packageJson : this.generatePackageJsons( packageCount ) ) {
+      packages.add( new RequireJsPackageConfigurationImpl( new MetaInfPackageJson( packageJson ) ) );
+    }
+
+    return packages;
+  }
+
+  private Map<String, Object> generatePackageJson( String name, String version, List<String[]> published ) {
+    Map<String, Object> packageJson = new HashMap<>();
+    packageJson.put( "name", name );
+    packageJson.put( "version", version );
+    packageJson.put( "main", "./" + name + ".js" );
+
+    Map<String, Object> paths = new HashMap<>();
+    int pathCount = 1 + this.random.nextInt( 4 );
+    for ( int i = 0; i < pathCount; i++ ) {
+      paths.put( name + "/module" + i, "/lib/module" + i );
+    }
+    packageJson.put( "paths", paths );
+
+    List<Object> packages = new ArrayList<>();
+    packages.add( "util" );
+    if ( this.random.nextBoolean() ) {
+      Map<String, String> packageDefinition = new HashMap<>();
+      packageDefinition.put( "name", "components" );
+      packageDefinition.put( "location", name + "@" + version + "/components" );
+      packageDefinition.put( "main", "index" );
+      packages.add( packageDefinition );
+    }
+    packageJson.put( "packages", packages );
+
+    Map<String, Object> dependencies = new HashMap<>();
+    if ( !published.isEmpty() ) {
+      int dependencyCount = this.random.nextInt( Math.min( 6, published.size() ) + 1 );
+      for ( int i = 0; i < dependencyCount; i++ ) {
+        // skewed towards the first (most popular) packages
+        int index = (int) ( published.size() * Math.pow( this.random.nextDouble(), 3 ) );
+        String[] dependency = published.get( index );
+
+        String operator = RANGE_OPERATORS[ this.random.nextInt( RANGE_OPERATORS.length ) ];
+        dependencies.put( dependency[ 0 ], operator + dependency[ 1 ] );
+      }
+    }
+    packageJson.put( "dependencies", dependencies );
+
+    if ( this.random.nextInt( 4 ) == 0 ) {
+      Map<String, Object> shim = new HashMap<>();
+      Map<String, Object> moduleShim = new HashMap<>();
+      List<String> deps = new ArrayList<>();
+      deps.add( name + "/module0" );
+      moduleShim.put( "deps", deps );
+      moduleShim.put( "exports", name.toUpperCase() );
+      shim.put( name, moduleShim );
+      packageJson.put( "shim", shim );
+    }
+
+    if ( !dependencies.isEmpty() && this.random.nextBoolean() ) {
+      Map<String, Object> map = new HashMap<>();
+      String dependencyName = dependencies.keySet().iterator().next();
+      map.put( "legacy-" + dependencyName, dependencyName );
+      packageJson.put( "map", map );
+    }
+
+    Map<String, Object> modulesConfig = new HashMap<>();
+    for ( int i = 0; i < pathCount; i++ ) {
+      Map<String, Object> moduleInfo = new HashMap<>();
+      moduleInfo.put( "base", i == 0 && !dependencies.isEmpty() ? dependencies.keySet().iterator().next() + "/module0" : null );
+      moduleInfo.put( "type", name + "/module" + i );
+
+      Map<String, Object> annotations = new HashMap<>();
+      annotations.put( "pentaho/theme/LoadThemeAnnotation", new HashMap<>() );
+      moduleInfo.put( "annotations", annotations );
+
+      modulesConfig.put( name + "/module" + i, moduleInfo );
+    }
+
+    Map<String, Object> config = new HashMap<>();
+    config.put( "pentaho/modules", modulesConfig );
+    packageJson.put( "config", config );
+
+    return packageJson;
+  }
+}
@@ -0,0 +1,151 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.benchmarks;
+
+import org.json.simple.JSONValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+import org.pentaho.requirejs.IRequireJsPackageConfigurationPlugin;
+import org.pentaho.requirejs.impl.plugins.AmdPluginConfig;
+import org.pentaho.requirejs.impl.plugins.ModulesInfoPluginConfig;
+import org.pentaho.requirejs.impl.plugins.NomAmdPackageShim;
+import org.pentaho.requirejs.impl.servlet.RebuildCacheCallable;
+import org.pentaho.requirejs.impl.utils.JsonMerger;
+import org.pentaho.requirejs.impl.utils.RequireJsConfigFragmentCache;
+import org.pentaho.requirejs.impl.utils.RequireJsDependencyResolver;
+import org.pentaho.requirejs.impl.utils.VersionRangeCache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of the RequireJS configuration build (dependency resolution, per package configuration,
+ * merge and serialization), as well as whole rebuilds, from scratch and after a single package changed.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class RequireJsConfigBuildBenchmark {
+  private static final String BASE_URL = "/pentaho/osgi/";
+
+  @Param( { "200", "1000", "3000" } )
+  public int packageCount;
+
+  private List<IRequireJsPackageConfiguration> packages;
+  private List<IRequireJsPackageConfigurationPlugin> plugins;
+
+  private VersionRangeCache versionRangeCache;
+
+  private List<Map<String, Object>> requireConfigs;
+  private Map<String, Object> mergedRequireConfig;
+
+  private RequireJsConfigFragmentCache fragmentCache;
+  private int changedPackage;
+
+  @Setup( Level.Trial )
+  public void setUp() throws Exception {
+    this.packages = new PackageGraphGenerator( 42 ).generatePackages( this.packageCount );
+    this.plugins = Arrays.asList( new AmdPluginConfig(), new ModulesInfoPluginConfig(), new NomAmdPackageShim() );
+
+    this.versionRangeCache = new VersionRangeCache();
+
+    RequireJsDependencyResolver resolver = new RequireJsDependencyResolver( this.packages, this.versionRangeCache );
+    this.packages.forEach( requireJsPackage -> requireJsPackage.processDependencies( resolver::getResolvedVersion ) );
+
+    this.requireConfigs = new ArrayList<>( this.packageCount );
+    this.packages.forEach( requireJsPackage -> this.requireConfigs.add( requireJsPackage.getRequireConfig( this.plugins ) ) );
+
+    this.mergedRequireConfig = this.merge();
+
+    this.fragmentCache = new RequireJsConfigFragmentCache();
+    new RebuildCacheCallable( BASE_URL, this.packages, Collections.emptyList(), this.plugins, this.fragmentCache ).call();
+  }
+
+  @Benchmark
+  public void resolveDependencies( Blackhole blackhole ) {
+    this.resolveDependencies( new RequireJsDependencyResolver( this.packages ), blackhole );
+  }
+
+  @Benchmark
+  public void resolveDependenciesWarmRangeCache( Blackhole blackhole ) {
+    this.resolveDependencies( new RequireJsDependencyResolver( this.packages, this.versionRangeCache ), blackhole );
+  }
+
+  @Benchmark
+  public void processDependencies() {
+    RequireJsDependencyResolver resolver = new RequireJsDependencyResolver( this.packages, this.versionRangeCache );
+
+    this.packages.forEach( requireJsPackage -> requireJsPackage.processDependencies( resolver::getResolvedVersion ) );
+  }
+
+  @Benchmark
+  public void getRequireConfig( Blackhole blackhole ) {
+    this.packages.forEach( requireJsPackage -> blackhole.consume( requireJsPackage.getRequireConfig( this.plugins ) ) );
+  }
+
+  @Benchmark
+  public Map<String, Object> merge() {
+    JsonMerger merger = new JsonMerger();
+
+    Map<String, Object> requireConfig = new HashMap<>();
+    for ( Map<String, Object> packageRequireConfig : this.requireConfigs ) {
+      merger.mergeInto( requireConfig, packageRequireConfig );
+    }
+
+    return requireConfig;
+  }
+
+  @Benchmark
+  public String serialize() {
+    return JSONValue.toJSONString( this.mergedRequireConfig );
+  }
+
+  @Benchmark
+  public String rebuildFull() throws Exception {
+    return new RebuildCacheCallable( BASE_URL, this.packages, Collections.emptyList(), this.plugins ).call();
+  }
+
+  @Benchmark
+  public String rebuildAfterSinglePackageChange() throws Exception {
+    this.changedPackage = ( this.changedPackage + 1 ) % this.packageCount;
+    this.fragmentCache.markChanged( this.packages.get( this.changedPackage ) );
+
+    return new RebuildCacheCallable( BASE_URL, this.packages, Collections.emptyList(), this.plugins, this.fragmentCache ).call();
+  }
+
+  private void resolveDependencies( RequireJsDependencyResolver resolver, Blackhole blackhole ) {
+    for ( IRequireJsPackageConfiguration requireJsPackage : this.packages ) {
+      requireJsPackage.getDependencies().forEach( ( name, version ) -> blackhole.consume( resolver.getResolvedVersion( name, version ) ) );
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.requirejs.IPlatformPluginRequireJsConfigurations;
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+import org.pentaho.requirejs.impl.RequireJsConfigManager;
+import org.pentaho.requirejs.impl.listeners.RequireJsBundleListener;
+import org.pentaho.requirejs.impl.listeners.RequireJsPackageServiceTracker;
+import org.pentaho.requirejs.impl.plugins.AmdPluginConfig;
+import org.pentaho.requirejs.impl.plugins.ModulesInfoPluginConfig;
+import org.pentaho.requirejs.impl.plugins.NomAmdPackageShim;
+import org.pentaho.requirejs.impl.servlet.RequireJsConfigServlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the RequireJS configuration servlet output end to end (plain, gzipped and revalidated requests),
+ * for an already built configuration.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class RequireJsConfigServletBenchmark {
+  @Param( { "200", "1000", "3000" } )
+  public int packageCount;
+
+  private RequireJsConfigServlet servlet;
+
+  private HttpServletRequest plainRequest;
+  private HttpServletRequest gzipRequest;
+  private HttpServletRequest contextMappingRequest;
+  private HttpServletRequest revalidationRequest;
+
+  @Setup( Level.Trial )
+  public void setUp() throws Exception {
+    List<IRequireJsPackageConfiguration> packages = new PackageGraphGenerator( 42 ).generatePackages( this.packageCount );
+
+    RequireJsConfigManager manager = new RequireJsConfigManager();
+    manager.setPackageConfigurationsTracker( new RequireJsPackageServiceTracker() {
+      @Override
+      public List<IRequireJsPackageConfiguration> getPackages() {
+        return packages;
+      }
+    } );
+    manager.setExternalResourcesScriptsTracker( new RequireJsBundleListener() {
+      @Override
+      public Collection<IPlatformPluginRequireJsConfigurations> getScripts() {
+        return Collections.emptyList();
+      }
+    } );
+    manager.setPlugins( Arrays.asList( new AmdPluginConfig(), new ModulesInfoPluginConfig(), new NomAmdPackageShim() ) );
+
+    this.servlet = new RequireJsConfigServlet();
+    this.servlet.setContextRoot( "/pentaho" );
+    this.servlet.setManager( manager );
+
+    this.plainRequest = createRequest( null, null, null );
+    this.gzipRequest = createRequest( "gzip, deflate", null, null );
+
+    String webRootPath = packages.get( packages.size() - 1 ).getWebRootPath();
+    this.contextMappingRequest = createRequest( "gzip", null, "http://localhost/pentaho/" + webRootPath + "/index.html" );
+
+    // also waits for the configuration to be built
+    ResponseRecorder recorder = new ResponseRecorder();
+    this.servlet.service( this.gzipRequest, recorder.createResponse() );
+
+    this.revalidationRequest = createRequest( "gzip, deflate", recorder.headers.get( "etag" ), null );
+  }
+
+  @Benchmark
+  public long servePlain() throws Exception {
+    return this.serve( this.plainRequest );
+  }
+
+  @Benchmark
+  public long serveGzip() throws Exception {
+    return this.serve( this.gzipRequest );
+  }
+
+  @Benchmark
+  public long serveWithContextMapping() throws Exception {
+    return this.serve( this.contextMappingRequest );
+  }
+
+  @Benchmark
+  public long serveNotModified() throws Exception {
+    return this.serve( this.revalidationRequest );
+  }
+
+  private long serve( HttpServletRequest request ) throws Exception {
+    ResponseRecorder recorder = new ResponseRecorder();
+    this.servlet.service( request, recorder.createResponse() );
+
+    return recorder.outputStream.count + recorder.status;
+  }
+
+  private static HttpServletRequest createRequest( String acceptEncoding, String ifNoneMatch, String referer ) {
+    Map<String, String> headers = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+    if ( acceptEncoding != null ) {
+      headers.put( "Accept-Encoding", acceptEncoding );
+    }
+    if ( ifNoneMatch != null ) {
+      headers.put( "If-None-Match", ifNoneMatch );
+    }
+    if ( referer != null ) {
+      headers.put( "Referer", referer );
+    }
+
+    Map<String, String> parameters = new HashMap<>();
+    parameters.put( "requirejs", "false" );
+
+    return (HttpServletRequest) Proxy.newProxyInstance( RequireJsConfigServletBenchmark.class.getClassLoader(),
+        new Class<?>[] { HttpServletRequest.class }, ( proxy, method, args ) -> {
+          switch ( method.getName() ) {
+            case "getMethod":
+              return "GET";
+            case "getHeader":
+              return headers.get( (String) args[ 0 ] );
+            case "getParameter":
+              return parameters.get( (String) args[ 0 ] );
+            case "getScheme":
+              return "http";
+            case "getServerName":
+              return "localhost";
+            case "getServerPort":
+              return 80;
+            case "getProtocol":
+              return "HTTP/1.1";
+            default:
+              return defaultValue( method.getReturnType() );
+          }
+        } );
+  }
+
+  private static Object defaultValue( Class<?> type ) {
+    if ( type == boolean.class ) {
+      return false;
+    } else if ( type == int.class ) {
+      return 0;
+    } else if ( type == long.class ) {
+      return -1L;
+    }
+
+    return null;
+  }
+
+  private static final class ResponseRecorder {
+    private final Map<String, String> headers = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+    private final CountingOutputStream outputStream = new CountingOutputStream();
+    private int status = HttpServletResponse.SC_OK;
+
+    HttpServletResponse createResponse() {
+      return (HttpServletResponse) Proxy.newProxyInstance( RequireJsConfigServletBenchmark.class.getClassLoader(),
+          new Class<?>[] { HttpServletResponse.class }, ( proxy, method, args ) -> {
+            switch ( method.getName() ) {
+              case "setHeader":
+                this.headers.put( (String) args[ 0 ], (String) args[ 1 ] );
+                return null;
+              case "setStatus":
+                this.status = (Integer) args[ 0 ];
+                return null;
+              case "getOutputStream":
+                return this.outputStream;
+              default:
+                return defaultValue( method.getReturnType() );
+            }
+          } );
+    }
+  }
+
+  private static final class CountingOutputStream extends ServletOutputStream {
+    private long count;
+
+    @Override
+    public void write( int b ) {
+      this.count++;
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) {
+      this.count += len;
+    }
+  }
+}
@@ -18,17 +18,23 @@ import org.pentaho.requirejs.IRequireJsPackageConfigurationPlugin;
 import org.pentaho.requirejs.impl.listeners.RequireJsBundleListener;
 import org.pentaho.requirejs.impl.listeners.RequireJsPackageServiceTracker;
 import org.pentaho.requirejs.impl.servlet.RebuildCacheCallable;
+import org.pentaho.requirejs.impl.utils.RequireJsConfigFragmentCache;
+import org.pentaho.requirejs.impl.utils.WebRootPathIndex;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RequireJsConfigManager {
   private static final ScheduledExecutorService executorService =
@@ -39,6 +45,17 @@ public class RequireJsConfigManager {
         return thread;
       } );
 
+  // rebuilds are postponed until invalidations stop arriving for this long (coalescing bursts of changes)...
+  static final long QUIET_PERIOD_MILLIS = 250;
+  // ...but a stale configuration is never served for longer than this
+  static final long MAX_STALENESS_MILLIS = 5000;
+
+  private static final long QUIET_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos( QUIET_PERIOD_MILLIS );
+  private static final long MAX_STALENESS_NANOS = TimeUnit.MILLISECONDS.toNanos( MAX_STALENESS_MILLIS );
+
+  // base urls come from the requests, so the number of indexes kept for them must be bounded
+  static final int MAX_WEB_ROOT_PATH_INDEXES = 16;
+
   private RequireJsPackageServiceTracker packageConfigurationsTracker;
   private RequireJsBundleListener externalResourcesScriptsTracker;
 
@@ -47,9 +64,32 @@ public class RequireJsConfigManager {
    */
   private List<IRequireJsPackageConfigurationPlugin> plugins;
 
+  /**
+   * Per-package configuration fragments, shared by all rebuilds so that only changed packages are reprocessed.
+   */
+  private final RequireJsConfigFragmentCache fragmentCache = new RequireJsConfigFragmentCache();
+
   // setting initial capacity to three (relative url and absolute http/https url scenarios)
-  private volatile ConcurrentHashMap<String, Future<String>> cachedConfigurations = new ConcurrentHashMap<>( 3 );
-  private volatile ConcurrentHashMap<String, String> cachedContextMapping = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, CachedConfiguration> cachedConfigurations = new ConcurrentHashMap<>( 3 );
+
+  // context mappings are indexed by base url, and cached by the matched package, both until the next invalidation
+  private final ConcurrentHashMap<String, WebRootPathIndex> webRootPathIndexes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<IRequireJsPackageConfiguration, String> cachedContextMapping = new ConcurrentHashMap<>();
+
+  // incremented each time the cached configurations are invalidated
+  private final AtomicLong configurationGeneration = new AtomicLong();
+
+  // when the cached configurations were last invalidated (System.nanoTime)
+  private volatile long lastInvalidationTime = System.nanoTime() - QUIET_PERIOD_NANOS;
+
+  private final AtomicLong rebuildsStarted = new AtomicLong();
+  private final AtomicLong rebuildsCancelled = new AtomicLong();
+  private final AtomicLong servedStale = new AtomicLong();
+
+  // invalidations requested while suspended are deferred until resumed
+  private final Object invalidationLock = new Object();
+  private int suspendedInvalidations = 0;
+  private boolean pendingInvalidation = false;
 
   public void setPackageConfigurationsTracker( RequireJsPackageServiceTracker packageConfigurationsTracker ) {
     this.packageConfigurationsTracker = packageConfigurationsTracker;
@@ -65,6 +105,11 @@ public class RequireJsConfigManager {
 
   public void destroy() {
     this.invalidateCachedConfigurations();
+
+    this.cachedConfigurations.values().forEach( CachedConfiguration::cancelIfUnused );
+    this.cachedConfigurations.clear();
+
+    this.fragmentCache.clear();
   }
 
   public String getRequireJsConfig( String baseUrl ) {
@@ -73,15 +118,28 @@ public class RequireJsConfigManager {
     baseUrl = baseUrl.endsWith( "/" ) ? baseUrl : baseUrl + "/";
 
     String result = null;
-    int tries = 3;
+    int tries = 2;
     Exception lastException = null;
     while ( tries-- > 0 && result == null ) {
       Future<String> cache = this.getCachedConfiguration( baseUrl );
 
+      // don't make the request wait for a pending rebuild if a recent enough configuration is available
+      if ( !cache.isDone() && cache instanceof CachedConfiguration ) {
+        String staleValue = ( (CachedConfiguration) cache ).getStaleValue();
+        if ( staleValue != null ) {
+          this.servedStale.incrementAndGet();
+
+          return staleValue;
+        }
+      }
+
       try {
         result = cache.get();
       } catch ( InterruptedException e ) {
-        // ignore
+        break;
+      } catch ( CancellationException e ) {
+        // the rebuild was superseded right before we started waiting for it; just get the new one
+        lastException = e;
       } catch ( ExecutionException e ) {
         lastException = e;
 
@@ -105,49 +163,295 @@ public class RequireJsConfigManager {
     return this.getCachedContextMapping( baseUrl, referer );
   }
 
+  /**
+   * Invalidates the cached configurations due to a change in the given package.
+   * Only that package, and the ones depending on it, will be reprocessed on the next rebuild.
+   */
+  public void invalidateCachedConfigurations( IRequireJsPackageConfiguration changedPackage ) {
+    this.fragmentCache.markChanged( changedPackage );
+
+    this.invalidateCachedConfigurations();
+  }
+
+  /**
+   * Identifies the current state of the cached configurations, changing every time they are invalidated.
+   */
+  public long getConfigurationGeneration() {
+    return this.configurationGeneration.get();
+  }
+
+  /**
+   * Number of configuration rebuilds that actually started running.
+   */
+  public long getRebuildsStartedCount() {
+    return this.rebuildsStarted.get();
+  }
+
+  /**
+   * Number of scheduled configuration rebuilds that were superseded by a newer one before starting.
+   */
+  public long getRebuildsCancelledCount() {
+    return this.rebuildsCancelled.get();
+  }
+
+  /**
+   * Number of requests answered with the previous configuration while its rebuild was pending.
+   */
+  public long getServedStaleCount() {
+    return this.servedStale.get();
+  }
+
+  /**
+   * Defers any invalidation until {@link #resumeInvalidations()} is called, so that a batch of changes results in a
+   * single invalidation. Calls can be nested.
+   */
+  public void suspendInvalidations() {
+    synchronized ( this.invalidationLock ) {
+      this.suspendedInvalidations++;
+    }
+  }
+
+  /**
+   * Ends a {@link #suspendInvalidations()} call, performing the deferred invalidation, if any.
+   */
+  public void resumeInvalidations() {
+    synchronized ( this.invalidationLock ) {
+      if ( this.suspendedInvalidations == 0 || --this.suspendedInvalidations > 0 || !this.pendingInvalidation ) {
+        return;
+      }
+
+      this.pendingInvalidation = false;
+    }
+
+    this.invalidateCachedConfigurations();
+  }
+
   public void invalidateCachedConfigurations() {
-    this.cachedConfigurations.forEach( ( s, stringFuture ) -> stringFuture.cancel( true ) );
-    this.cachedConfigurations.clear();
+    synchronized ( this.invalidationLock ) {
+      if ( this.suspendedInvalidations > 0 ) {
+        this.pendingInvalidation = true;
+        return;
+      }
+    }
+
+    long now = System.nanoTime();
+
+    this.configurationGeneration.incrementAndGet();
+    this.lastInvalidationTime = now;
+
+    // cached configurations are kept (and their rebuilds left alone) until they are requested again
+    this.cachedConfigurations.values().forEach( cachedConfiguration -> cachedConfiguration.markInvalidated( now ) );
 
+    this.webRootPathIndexes.clear();
     this.cachedContextMapping.clear();
   }
 
   Future<String> getCachedConfiguration( String baseUrl ) {
-    return this.cachedConfigurations.computeIfAbsent( baseUrl, key -> executorService.schedule( createRebuildCacheCallable( key ), 250, TimeUnit.MILLISECONDS ) );
+    long generation = this.configurationGeneration.get();
+
+    CachedConfiguration cachedConfiguration = this.cachedConfigurations.get( baseUrl );
+    if ( cachedConfiguration != null && cachedConfiguration.generation >= generation ) {
+      return cachedConfiguration;
+    }
+
+    CachedConfiguration[] superseded = new CachedConfiguration[ 1 ];
+
+    cachedConfiguration = this.cachedConfigurations.compute( baseUrl, ( key, previous ) -> {
+      if ( previous != null && previous.generation >= generation ) {
+        return previous;
+      }
+
+      superseded[ 0 ] = previous;
+
+      return new CachedConfiguration( key, generation, previous );
+    } );
+
+    if ( superseded[ 0 ] != null ) {
+      superseded[ 0 ].cancelIfUnused();
+    }
+
+    return cachedConfiguration;
   }
 
   private String getCachedContextMapping( String baseUrl, String referer ) {
-    if ( referer != null ) {
-      return this.cachedContextMapping.computeIfAbsent( referer, k -> {
-        List<IRequireJsPackageConfiguration> requireJsPackageConfigurations = this.packageConfigurationsTracker.getPackages();
+    if ( referer == null || referer.isEmpty() ) {
+      return null;
+    }
 
-        for ( IRequireJsPackageConfiguration requireJsPackage : requireJsPackageConfigurations ) {
-          String webRootPath = requireJsPackage.getWebRootPath();
-          // Compare values in lowercase to ensure that contains works well, because some http clients force requests to lowercase
-          if ( webRootPath != null && !webRootPath.isEmpty() && referer.toLowerCase().contains( (baseUrl + webRootPath).toLowerCase() ) ) {
-            Map<String, Object> contextConfig = new HashMap<>();
-            Map<String, Map<String, String>> topMap = new HashMap<>();
-            Map<String, String> map = new HashMap<>();
+    IRequireJsPackageConfiguration requireJsPackage = this.getWebRootPathIndex( baseUrl ).findPackage( referer );
+    if ( requireJsPackage == null ) {
+      return null;
+    }
 
-            requireJsPackage.getModuleIdsMapping().forEach( map::put );
+    return this.cachedContextMapping.computeIfAbsent( requireJsPackage, k -> {
+      Map<String, Object> contextConfig = new HashMap<>();
+      Map<String, Map<String, String>> topMap = new HashMap<>();
+      Map<String, String> map = new HashMap<>();
 
-            topMap.put( "*", map );
-            contextConfig.put( "map", topMap );
+      requireJsPackage.getModuleIdsMapping().forEach( map::put );
 
-            return JSONObject.toJSONString( contextConfig );
-          }
-        }
+      topMap.put( "*", map );
+      contextConfig.put( "map", topMap );
 
-        return null;
-      } );
+      return JSONObject.toJSONString( contextConfig );
+    } );
+  }
+
+  private WebRootPathIndex getWebRootPathIndex( String baseUrl ) {
+    WebRootPathIndex webRootPathIndex = this.webRootPathIndexes.get( baseUrl );
+    if ( webRootPathIndex == null ) {
+      if ( this.webRootPathIndexes.size() >= MAX_WEB_ROOT_PATH_INDEXES ) {
+        this.webRootPathIndexes.clear();
+      }
+
+      webRootPathIndex = this.webRootPathIndexes.computeIfAbsent( baseUrl,
+          key -> new WebRootPathIndex( key, this.packageConfigurationsTracker.getPackages() ) );
     }
 
-    return null;
+    return webRootPathIndex;
   }
 
   // region package-private factory methods for unit testing
   Callable<String> createRebuildCacheCallable( String baseUrl ) {
-    return new RebuildCacheCallable( baseUrl, this.packageConfigurationsTracker.getPackages(), this.externalResourcesScriptsTracker.getScripts(), this.plugins );
+    return new RebuildCacheCallable( baseUrl, this.packageConfigurationsTracker.getPackages(), this.externalResourcesScriptsTracker.getScripts(), this.plugins, this.fragmentCache );
   }
   // endregion
+
+  /**
+   * The rebuild of the configuration for a given baseUrl and generation, along with the last successfully
+   * built configuration, which may be served while the rebuild is pending.
+   * <p>
+   * Rebuilds are delayed until no invalidations happened for {@link #QUIET_PERIOD_MILLIS}, but never beyond
+   * {@link #MAX_STALENESS_MILLIS} from the moment the previous configuration became stale. A rebuild that hasn't
+   * started yet can be cancelled when superseded, but only if no one is waiting for it.
+   */
+  private final class CachedConfiguration implements Future<String> {
+    private static final int SCHEDULED = 0;
+    private static final int RUNNING = 1;
+    private static final int CANCELLED = 2;
+
+    private final long generation;
+
+    private final String staleValue;
+    private final long staleSince;
+
+    private final AtomicInteger state = new AtomicInteger( SCHEDULED );
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    // when this configuration was first invalidated (System.nanoTime), if it already was
+    private final AtomicLong invalidatedAt = new AtomicLong();
+    private volatile boolean invalidated = false;
+
+    private final Future<String> rebuild;
+
+    CachedConfiguration( String baseUrl, long generation, CachedConfiguration previous ) {
+      this.generation = generation;
+
+      long now = System.nanoTime();
+
+      String previousValue = previous != null ? previous.getValueIfDone() : null;
+      if ( previousValue != null ) {
+        this.staleValue = previousValue;
+        this.staleSince = previous.invalidated ? previous.invalidatedAt.get() : now;
+      } else if ( previous != null ) {
+        this.staleValue = previous.staleValue;
+        this.staleSince = previous.staleSince;
+      } else {
+        this.staleValue = null;
+        this.staleSince = now;
+      }
+
+      // wait for the invalidations to settle down, but without exceeding the staleness bound
+      long delay = Math.max( 0, lastInvalidationTime + QUIET_PERIOD_NANOS - now );
+      if ( this.staleValue != null ) {
+        delay = Math.min( delay, Math.max( 0, this.staleSince + MAX_STALENESS_NANOS - now ) );
+      }
+
+      Callable<String> rebuildCallable = createRebuildCacheCallable( baseUrl );
+
+      this.rebuild = executorService.schedule( () -> {
+        if ( !this.state.compareAndSet( SCHEDULED, RUNNING ) ) {
+          throw new CancellationException();
+        }
+
+        rebuildsStarted.incrementAndGet();
+
+        return rebuildCallable.call();
+      }, delay, TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * The previous configuration, if there is one and it didn't exceed the staleness bound.
+     */
+    String getStaleValue() {
+      if ( this.staleValue == null || System.nanoTime() - this.staleSince >= MAX_STALENESS_NANOS ) {
+        return null;
+      }
+
+      return this.staleValue;
+    }
+
+    void markInvalidated( long now ) {
+      if ( this.invalidatedAt.compareAndSet( 0, now ) ) {
+        this.invalidated = true;
+      }
+    }
+
+    void cancelIfUnused() {
+      if ( this.waiters.get() == 0 && this.state.compareAndSet( SCHEDULED, CANCELLED ) ) {
+        this.rebuild.cancel( false );
+
+        rebuildsCancelled.incrementAndGet();
+      }
+    }
+
+    private String getValueIfDone() {
+      if ( !this.rebuild.isDone() || this.rebuild.isCancelled() ) {
+        return null;
+      }
+
+      try {
+        return this.rebuild.get();
+      } catch ( Exception e ) {
+        return null;
+      }
+    }
+
+    @Override
+    public boolean cancel( boolean mayInterruptIfRunning ) {
+      this.cancelIfUnused();
+
+      return this.state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return this.rebuild.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return this.rebuild.isDone();
+    }
+
+    @Override
+    public String get() throws InterruptedException, ExecutionException {
+      this.waiters.incrementAndGet();
+      try {
+        return this.rebuild.get();
+      } finally {
+        this.waiters.decrementAndGet();
+      }
+    }
+
+    @Override
+    public String get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException {
+      this.waiters.incrementAndGet();
+      try {
+        return this.rebuild.get( timeout, unit );
+      } finally {
+        this.waiters.decrementAndGet();
+      }
+    }
+  }
 }
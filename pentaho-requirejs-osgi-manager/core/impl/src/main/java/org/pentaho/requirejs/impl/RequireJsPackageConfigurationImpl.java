@@ -16,16 +16,15 @@ import org.pentaho.requirejs.IRequireJsPackage;
 import org.pentaho.requirejs.IRequireJsPackageConfiguration;
 import org.pentaho.requirejs.IRequireJsPackageConfigurationPlugin;
 import org.pentaho.requirejs.impl.utils.JsonMerger;
+import org.pentaho.requirejs.impl.utils.ModuleIdTrie;
+import org.pentaho.requirejs.impl.utils.OverlayMap;
 
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 import java.util.function.BiFunction;
 
 public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfiguration {
@@ -36,6 +35,10 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
   private Map<String, String> baseModuleIdsMappings;
   private Map<String, String> baseModuleIdsMappingsWithDependencies;
 
+  // prefix indexes of the above mappings, used to translate any moduleID
+  private ModuleIdTrie baseModuleIdsIndex;
+  private ModuleIdTrie moduleIdsWithDependenciesIndex;
+
   private Map<String, String> paths;
   private List<Object> packages;
   private Map<String, Map<String, ?>> shim;
@@ -63,6 +66,7 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
   public void processRequireJsPackage() {
     this.dependencyCache = null;
     this.baseModuleIdsMappingsWithDependencies = null;
+    this.moduleIdsWithDependenciesIndex = null;
 
     this.paths = new HashMap<>();
     this.packages = new ArrayList<>();
@@ -93,12 +97,14 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
       } );
     }
 
+    this.baseModuleIdsIndex = new ModuleIdTrie( this.baseModuleIdsMappings );
+
     // I'm guessing it only makes sense to configure shims for modules included in the package,
     // so the dependencies moduleId mapping isn't needed.
     // Move the moduleId versioning to bellow if that happens to not be the case.
     Map<String, Map<String, ?>> shim = this.requireJsPackage.getShim();
     if ( shim != null ) {
-      shim.forEach( ( moduleId, configuration ) -> this.shim.put( getVersionedModuleId( moduleId, this.baseModuleIdsMappings ), merger.clone( configuration ) ) );
+      shim.forEach( ( moduleId, configuration ) -> this.shim.put( this.baseModuleIdsIndex.getVersionedModuleId( moduleId ), merger.clone( configuration ) ) );
     }
   }
 
@@ -125,6 +131,8 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     }
 
     this.baseModuleIdsMappings.forEach( this.baseModuleIdsMappingsWithDependencies::put );
+
+    this.moduleIdsWithDependenciesIndex = new ModuleIdTrie( this.baseModuleIdsMappingsWithDependencies );
   }
 
   @Override
@@ -138,13 +146,13 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     Map<String, Map<String, String>> topMap = new HashMap<>();
 
     if ( !this.baseModuleIdsMappingsWithDependencies.isEmpty() ) {
-      this.requireJsPackage.getModules().forEach( ( moduleId, path ) -> {
-        String versionedModuleId = getVersionedModuleId( moduleId, this.baseModuleIdsMappings );
+      // every module starts with the same mappings, so they all share them (changes go to each module's own overlay)
+      Map<String, String> sharedMappings = Collections.unmodifiableMap( this.baseModuleIdsMappingsWithDependencies );
 
-        HashMap<String, String> mappings = new HashMap<>();
-        this.baseModuleIdsMappingsWithDependencies.forEach( mappings::put );
+      this.requireJsPackage.getModules().forEach( ( moduleId, path ) -> {
+        String versionedModuleId = this.baseModuleIdsIndex.getVersionedModuleId( moduleId );
 
-        topMap.put( versionedModuleId, mappings );
+        topMap.put( versionedModuleId, new OverlayMap<>( sharedMappings ) );
       } );
     }
 
@@ -152,11 +160,11 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     // If that turns out to be something useful, we just need to change
     // this.baseModuleIdsMappings to this.baseModuleIdsMappingsWithDependencies.
     this.requireJsPackage.getMap().forEach( ( moduleId, localMappings ) -> {
-      String versionedModuleId = getVersionedModuleId( moduleId, this.baseModuleIdsMappings );
+      String versionedModuleId = this.baseModuleIdsIndex.getVersionedModuleId( moduleId );
 
       Map<String, String> mappings = topMap.computeIfAbsent( versionedModuleId, m -> new HashMap<>() );
       localMappings.forEach( ( key, value ) -> {
-        String versionedValue = getVersionedModuleId( value, this.baseModuleIdsMappingsWithDependencies );
+        String versionedValue = this.moduleIdsWithDependenciesIndex.getVersionedModuleId( value );
 
         mappings.put( key, versionedValue );
       } );
@@ -186,7 +194,7 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
           List<String> convertedDeps = new ArrayList<>();
 
           for ( String depModuleId : originalDeps ) {
-            String versionedDepModuleId = getVersionedModuleId( depModuleId, this.baseModuleIdsMappingsWithDependencies );
+            String versionedDepModuleId = this.moduleIdsWithDependenciesIndex.getVersionedModuleId( depModuleId );
             convertedDeps.add( versionedDepModuleId );
           }
 
@@ -205,7 +213,7 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     if ( plugins != null ) {
       plugins.forEach( plugin -> {
         try {
-          plugin.apply( this, this.dependencyCache::get, moduleId -> getVersionedModuleId( moduleId, this.baseModuleIdsMappingsWithDependencies ), Collections.unmodifiableMap( requireConfig ) );
+          plugin.apply( this, this.dependencyCache::get, this.moduleIdsWithDependenciesIndex::getVersionedModuleId, Collections.unmodifiableMap( requireConfig ) );
         } catch ( Exception ignored ) {
         }
       } );
@@ -214,7 +222,7 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     // lock config and shim after plugins
     Map<String, Map<String, ?>> mappedConfig = new HashMap<>();
     ( (Map<String, Map<String, ?>>) requireConfig.get( "config" ) ).forEach( ( moduleId, configuration ) -> {
-      mappedConfig.put( getVersionedModuleId( moduleId, this.baseModuleIdsMappingsWithDependencies ), configuration );
+      mappedConfig.put( this.moduleIdsWithDependenciesIndex.getVersionedModuleId( moduleId ), configuration );
     } );
     requireConfig.put( "config", Collections.unmodifiableMap( mappedConfig ) );
 
@@ -237,32 +245,6 @@ public class RequireJsPackageConfigurationImpl implements IRequireJsPackageConfi
     return moduleId;
   }
 
-  private String getVersionedModuleId( String moduleId, Map<String, String> moduleIdsMappings ) {
-    if ( moduleId.contains( "!" ) ) {
-      List<String> parts = Arrays.asList( moduleId.split( "!", 2 ) );
-
-      return getVersionedModuleId( parts.get( 0 ), moduleIdsMappings ) + "!" + getVersionedModuleId( parts.get( 1 ), moduleIdsMappings );
-    }
-
-    try {
-      String baseModuleId = moduleId;
-      if ( !moduleIdsMappings.containsKey( moduleId ) ) {
-        baseModuleId = moduleIdsMappings.keySet().stream().filter( moduleId::startsWith ).max( Comparator.comparingInt( String::length ) ).get();
-      }
-
-      String versionedBaseModuleId = moduleIdsMappings.get( baseModuleId );
-      String moduleIdLeaf = moduleId.substring( baseModuleId.length() );
-      if ( !moduleIdLeaf.isEmpty() && !moduleIdLeaf.startsWith( "/" ) ) {
-        // false positive, we just caught a substring (probably some old mapping that included an hardcoded version)
-        return moduleId;
-      }
-
-      return versionedBaseModuleId + moduleIdLeaf;
-    } catch ( NoSuchElementException e ) {
-      return moduleId;
-    }
-  }
-
   private String getVersionedPath( String path ) {
     if ( path.equals( "/" ) ) {
       return this.getWebRootPath();
@@ -38,6 +38,10 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Listens to and processes bundles that include some sort of RequireJS configuration information.
@@ -57,6 +61,9 @@ public class RequireJsBundleListener implements BundleListener {
   public static final String EXTERNAL_RESOURCES_JSON_PATH = "META-INF/js/externalResources.json";
   public static final String STATIC_RESOURCES_JSON_PATH = "META-INF/js/staticResources.json";
 
+  // upper bound of threads reading bundles' descriptors on init
+  private static final int MAX_SCANNER_THREADS = 8;
+
   private BundleContext bundleContext;
 
   private RequireJsConfigManager requireJsConfigManager;
@@ -64,6 +71,10 @@ public class RequireJsBundleListener implements BundleListener {
   private Map<Long, ServiceRegistration<?>> serviceRegistrationMap;
   private Map<Long, IPlatformPluginRequireJsConfigurations> requireConfigMap;
 
+  // guards registering and unregistering a bundle's services, which may happen
+  // concurrently on init and on bundle events
+  private final Object registrationLock = new Object();
+
   public void setBundleContext( BundleContext bundleContext ) {
     this.bundleContext = bundleContext;
   }
@@ -78,9 +89,7 @@ public class RequireJsBundleListener implements BundleListener {
 
     this.bundleContext.addBundleListener( this );
 
-    for ( Bundle bundle : this.bundleContext.getBundles() ) {
-      this.addBundle( bundle );
-    }
+    this.addBundles( this.bundleContext.getBundles() );
   }
 
   public void destroy() {
@@ -126,6 +135,12 @@ public class RequireJsBundleListener implements BundleListener {
   }
 
   private boolean removeBundleInternal( Bundle bundle ) {
+    synchronized ( this.registrationLock ) {
+      return this.unregisterBundle( bundle );
+    }
+  }
+
+  private boolean unregisterBundle( Bundle bundle ) {
     ServiceRegistration<?> serviceRegistration = this.serviceRegistrationMap.remove( bundle.getBundleId() );
     if ( serviceRegistration != null ) {
       try {
@@ -145,15 +160,76 @@ public class RequireJsBundleListener implements BundleListener {
    * @return true only if any bundles with META-INF/js/externalResources.json file was added / updated.
    */
   boolean addBundle( Bundle bundle ) {
-    boolean shouldInvalidate;
+    return this.addBundle( bundle, this.readBundle( bundle ) );
+  }
+
+  /**
+   * Adds several bundles at once.
+   * <p>
+   * The bundles' descriptors are read and parsed concurrently, by a bounded number of threads. The resulting
+   * registrations are then made in a single pass, with the configuration manager's invalidations suspended,
+   * so that the whole batch results in (at most) one invalidation.
+   */
+  void addBundles( Bundle[] bundles ) {
+    if ( bundles == null || bundles.length == 0 ) {
+      return;
+    }
+
+    int threads = Math.max( 1, Math.min( MAX_SCANNER_THREADS, Math.min( bundles.length, Runtime.getRuntime().availableProcessors() ) ) );
+    ExecutorService executorService = Executors.newFixedThreadPool( threads, r -> {
+      Thread thread = Executors.defaultThreadFactory().newThread( r );
+      thread.setDaemon( true );
+      thread.setName( "RequireJsBundleListener scanner" );
+      return thread;
+    } );
+
+    this.requireJsConfigManager.suspendInvalidations();
 
     try {
-      if ( bundle.getState() != Bundle.ACTIVE ) {
-        return false;
+      List<Future<BundleDescriptors>> scannedBundles = new ArrayList<>( bundles.length );
+      for ( Bundle bundle : bundles ) {
+        scannedBundles.add( executorService.submit( () -> this.readBundle( bundle ) ) );
       }
 
-      // clear any previous configurations (for bundle updates)
-      shouldInvalidate = removeBundleInternal( bundle );
+      boolean shouldInvalidate = false;
+
+      for ( int i = 0; i < bundles.length; i++ ) {
+        BundleDescriptors descriptors;
+        try {
+          descriptors = scannedBundles.get( i ).get();
+        } catch ( ExecutionException e ) {
+          descriptors = new BundleDescriptors( e.getCause() );
+        }
+
+        if ( this.isListenerActive() ) {
+          shouldInvalidate |= this.addBundle( bundles[ i ], descriptors );
+        }
+      }
+
+      if ( shouldInvalidate && this.isListenerActive() ) {
+        this.requireJsConfigManager.invalidateCachedConfigurations();
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executorService.shutdownNow();
+
+      this.requireJsConfigManager.resumeInvalidations();
+    }
+  }
+
+  /**
+   * Reads and parses the RequireJS related descriptors of the bundle, without registering anything.
+   * Safe to be called concurrently.
+   *
+   * @param bundle
+   * @return the bundle's descriptors, or null if the bundle isn't active.
+   */
+  BundleDescriptors readBundle( Bundle bundle ) {
+    try {
+      if ( bundle.getState() != Bundle.ACTIVE ) {
+        return null;
+      }
 
       URL packageJsonUrl = bundle.getResource( PACKAGE_JSON_PATH );
       URL configFileUrl = bundle.getResource( REQUIRE_JSON_PATH );
@@ -161,40 +237,77 @@ public class RequireJsBundleListener implements BundleListener {
       URL externalResourcesUrl = bundle.getResource( EXTERNAL_RESOURCES_JSON_PATH );
       URL staticResourcesUrl = bundle.getResource( STATIC_RESOURCES_JSON_PATH );
 
+      Map<String, Object> requireJsonObject = null;
+      Map<String, Object> packageJsonObject = null;
+
       if ( configFileUrl != null ) {
         // top priority: legacy META-INF/js/require.json
-        Map<String, Object> requireJsonObject = this.loadJsonObject( configFileUrl );
-
-        if ( requireJsonObject != null ) {
-          IRequireJsPackage packageInfo = new MetaInfRequireJson( requireJsonObject );
-
-          ServiceRegistration<?> serviceRegistration = bundle.getBundleContext().registerService( IRequireJsPackage.class.getName(), packageInfo, null );
-          this.serviceRegistrationMap.put( bundle.getBundleId(), serviceRegistration );
-        }
+        requireJsonObject = this.loadJsonObject( configFileUrl );
       } else if ( packageJsonUrl != null ) {
         // next: fixed META-INF/js/package.json
-        Map<String, Object> packageJsonObject = this.loadJsonObject( packageJsonUrl );
-
-        if ( packageJsonObject != null ) {
-          IRequireJsPackage packageInfo = new MetaInfPackageJson( packageJsonObject );
-
-          ServiceRegistration<?> serviceRegistration = bundle.getBundleContext().registerService( IRequireJsPackage.class.getName(), packageInfo, null );
-          this.serviceRegistrationMap.put( bundle.getBundleId(), serviceRegistration );
-        }
+        packageJsonObject = this.loadJsonObject( packageJsonUrl );
       }
 
       // always process legacy META-INF/js/externalResources.json and META-INF/js/staticResources.json
+      Map<String, Object> externalResourceJsonObject = null;
+      Map<String, Object> staticResourceJsonObject = null;
+
       if ( externalResourcesUrl != null ) {
-        Map<String, Object> externalResourceJsonObject = this.loadJsonObject( externalResourcesUrl );
-        Map<String, Object> staticResourceJsonObject = this.loadJsonObject( staticResourcesUrl );
+        externalResourceJsonObject = this.loadJsonObject( externalResourcesUrl );
+        staticResourceJsonObject = this.loadJsonObject( staticResourcesUrl );
+      }
+
+      return new BundleDescriptors( requireJsonObject, packageJsonObject, externalResourceJsonObject, staticResourceJsonObject );
+    } catch ( Exception e ) {
+      return new BundleDescriptors( e );
+    }
+  }
 
-        if ( externalResourceJsonObject != null ) {
-          List<String> requireJsList = getRequireJsList( externalResourceJsonObject, staticResourceJsonObject );
+  private boolean addBundle( Bundle bundle, BundleDescriptors descriptors ) {
+    if ( descriptors == null ) {
+      return false;
+    }
 
-          if ( requireJsList != null ) {
-            this.requireConfigMap.put( bundle.getBundleId(), new BundledPlatformPluginRequireJsConfigurations( bundle, requireJsList ) );
-            shouldInvalidate = true;
-          }
+    synchronized ( this.registrationLock ) {
+      // the descriptors might have been read before the bundle was stopped or uninstalled,
+      // in which case its removal was already handled and nothing should be registered
+      if ( bundle.getState() != Bundle.ACTIVE || !this.isListenerActive() ) {
+        return false;
+      }
+
+      return this.registerBundle( bundle, descriptors );
+    }
+  }
+
+  private boolean registerBundle( Bundle bundle, BundleDescriptors descriptors ) {
+    boolean shouldInvalidate;
+
+    try {
+      // clear any previous configurations (for bundle updates)
+      shouldInvalidate = unregisterBundle( bundle );
+
+      if ( descriptors.failure != null ) {
+        return true;
+      }
+
+      if ( descriptors.requireJson != null ) {
+        IRequireJsPackage packageInfo = new MetaInfRequireJson( descriptors.requireJson );
+
+        ServiceRegistration<?> serviceRegistration = bundle.getBundleContext().registerService( IRequireJsPackage.class.getName(), packageInfo, null );
+        this.serviceRegistrationMap.put( bundle.getBundleId(), serviceRegistration );
+      } else if ( descriptors.packageJson != null ) {
+        IRequireJsPackage packageInfo = new MetaInfPackageJson( descriptors.packageJson );
+
+        ServiceRegistration<?> serviceRegistration = bundle.getBundleContext().registerService( IRequireJsPackage.class.getName(), packageInfo, null );
+        this.serviceRegistrationMap.put( bundle.getBundleId(), serviceRegistration );
+      }
+
+      if ( descriptors.externalResources != null ) {
+        List<String> requireJsList = getRequireJsList( descriptors.externalResources, descriptors.staticResources );
+
+        if ( requireJsList != null ) {
+          this.requireConfigMap.put( bundle.getBundleId(), new BundledPlatformPluginRequireJsConfigurations( bundle, requireJsList ) );
+          shouldInvalidate = true;
         }
       }
     } catch ( Exception e ) {
@@ -270,4 +383,35 @@ public class RequireJsBundleListener implements BundleListener {
       }
     }
   }
+
+  /**
+   * The parsed RequireJS related descriptors of a bundle (or the failure reading them).
+   */
+  static final class BundleDescriptors {
+    private final Map<String, Object> requireJson;
+    private final Map<String, Object> packageJson;
+    private final Map<String, Object> externalResources;
+    private final Map<String, Object> staticResources;
+
+    private final Throwable failure;
+
+    BundleDescriptors( Map<String, Object> requireJson, Map<String, Object> packageJson,
+                       Map<String, Object> externalResources, Map<String, Object> staticResources ) {
+      this.requireJson = requireJson;
+      this.packageJson = packageJson;
+      this.externalResources = externalResources;
+      this.staticResources = staticResources;
+
+      this.failure = null;
+    }
+
+    BundleDescriptors( Throwable failure ) {
+      this.requireJson = null;
+      this.packageJson = null;
+      this.externalResources = null;
+      this.staticResources = null;
+
+      this.failure = failure;
+    }
+  }
 }
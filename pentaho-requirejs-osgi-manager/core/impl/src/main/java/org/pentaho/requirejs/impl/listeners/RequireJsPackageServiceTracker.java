@@ -75,7 +75,7 @@ public class RequireJsPackageServiceTracker implements ServiceTrackerCustomizer<
     // the RequireJsPackage details might have changed, so it must reprocess it
     config.processRequireJsPackage();
 
-    this.requireJsConfigManager.invalidateCachedConfigurations();
+    this.requireJsConfigManager.invalidateCachedConfigurations( config );
   }
 
   @Override
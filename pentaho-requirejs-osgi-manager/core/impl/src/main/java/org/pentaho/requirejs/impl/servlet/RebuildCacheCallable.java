@@ -12,17 +12,18 @@
 
 package org.pentaho.requirejs.impl.servlet;
 
-import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.pentaho.requirejs.IPlatformPluginRequireJsConfigurations;
 import org.pentaho.requirejs.IRequireJsPackageConfiguration;
 import org.pentaho.requirejs.IRequireJsPackageConfigurationPlugin;
 import org.pentaho.requirejs.impl.utils.JsonMerger;
-import org.pentaho.requirejs.impl.utils.RequireJsDependencyResolver;
+import org.pentaho.requirejs.impl.utils.RequireJsConfigFragmentCache;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
@@ -32,7 +33,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
-import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 public class RebuildCacheCallable implements Callable<String> {
@@ -48,7 +48,14 @@ public class RebuildCacheCallable implements Callable<String> {
   // pentaho-platform-plugin configuration scripts
   private final List<IPlatformPluginRequireJsConfigurations> requireJsConfigurations;
 
+  // per-package configuration fragments, possibly kept from previous rebuilds
+  private final RequireJsConfigFragmentCache fragmentCache;
+
   public RebuildCacheCallable( String baseUrl, Collection<IRequireJsPackageConfiguration> packageConfigurations, Collection<IPlatformPluginRequireJsConfigurations> requireJsConfigurations, List<IRequireJsPackageConfigurationPlugin> plugins ) {
+    this( baseUrl, packageConfigurations, requireJsConfigurations, plugins, new RequireJsConfigFragmentCache() );
+  }
+
+  public RebuildCacheCallable( String baseUrl, Collection<IRequireJsPackageConfiguration> packageConfigurations, Collection<IPlatformPluginRequireJsConfigurations> requireJsConfigurations, List<IRequireJsPackageConfigurationPlugin> plugins, RequireJsConfigFragmentCache fragmentCache ) {
     this.baseUrl = baseUrl;
 
     this.packageConfigurations = packageConfigurations;
@@ -56,28 +63,26 @@ public class RebuildCacheCallable implements Callable<String> {
     this.requireJsConfigurations = new ArrayList<>( requireJsConfigurations );
 
     this.plugins = plugins;
+
+    this.fragmentCache = fragmentCache;
   }
 
   @Override
-  public String call() {
-    RequireJsDependencyResolver dependencyResolver = new RequireJsDependencyResolver( this.packageConfigurations );
-
-    BiFunction<String, String, IRequireJsPackageConfiguration> getResolvedVersion = dependencyResolver::getResolvedVersion;
-
+  public String call() throws IOException {
     Map<String, Object> requireJsConfig = createEmptyRequireConfig();
 
     JsonMerger merger = new JsonMerger();
 
-    for ( IRequireJsPackageConfiguration packageConfiguration : this.packageConfigurations ) {
-      packageConfiguration.processDependencies( getResolvedVersion );
-
-      requireJsConfig = merger.merge( requireJsConfig, packageConfiguration.getRequireConfig( this.plugins ) );
+    for ( Map<String, Object> packageRequireConfig : this.fragmentCache.getRequireConfigs( this.packageConfigurations, this.plugins ) ) {
+      merger.mergeInto( requireJsConfig, packageRequireConfig );
     }
 
     RebuildCacheCallable.makePathsAbsolute( requireJsConfig, this.baseUrl );
 
-    StringBuilder sb = new StringBuilder( JSONObject.toJSONString( requireJsConfig ) );
-    sb.append( ";\n" );
+    StringWriter out = new StringWriter();
+
+    JSONValue.writeJSONString( requireJsConfig, out );
+    out.append( ";\n" );
 
     this.packageConfigurations.forEach( requireJsPackage -> {
       if ( requireJsPackage.hasScript( "preconfig" ) ) {
@@ -91,14 +96,18 @@ public class RebuildCacheCallable implements Callable<String> {
             packageInfo.put( "webRootPath", baseUrl + requireJsPackage.getWebRootPath() );
 
             // Additionally, `environment` is available and defined in RequireJsConfigServlet.
-            sb.append( "\n\n(function(requireCfg, packageInfo, getVersionedModuleId) {\n" );
-            sb.append( "  try {\n" );
-            appendFromResource( sb, preconfig );
-            sb.append( "  } catch(e) {\n" );
-            sb.append( "    console.error(\"Failed executing " + requireJsPackage.getName() + "@" + requireJsPackage.getVersion() + " preconfig script\");\n" );
-            sb.append( "    console.error(e.stack);\n" );
-            sb.append( "  }\n" );
-            sb.append( "\n})(requireCfg, " + JSONObject.toJSONString( packageInfo ) + ", getVersionedModuleId.bind(null, " + JSONObject.toJSONString( requireJsPackage.getBaseModuleIdsMapping() ) + "));\n" );
+            out.append( "\n\n(function(requireCfg, packageInfo, getVersionedModuleId) {\n" );
+            out.append( "  try {\n" );
+            appendFromResource( out, preconfig );
+            out.append( "  } catch(e) {\n" );
+            out.append( "    console.error(\"Failed executing " + requireJsPackage.getName() + "@" + requireJsPackage.getVersion() + " preconfig script\");\n" );
+            out.append( "    console.error(e.stack);\n" );
+            out.append( "  }\n" );
+            out.append( "\n})(requireCfg, " );
+            JSONValue.writeJSONString( packageInfo, out );
+            out.append( ", getVersionedModuleId.bind(null, " );
+            JSONValue.writeJSONString( requireJsPackage.getBaseModuleIdsMapping(), out );
+            out.append( "));\n" );
           } catch ( IOException ignored ) {
             // ignored exception
           }
@@ -110,23 +119,23 @@ public class RebuildCacheCallable implements Callable<String> {
       try {
         String bundleName = requireJsConfiguration.getName();
 
-        sb.append( "\n\n/* Following configurations are from bundle " );
-        sb.append( bundleName );
-        sb.append( " */\n" );
+        out.append( "\n\n/* Following configurations are from bundle " );
+        out.append( bundleName );
+        out.append( " */\n" );
 
         for ( URL configURL : requireJsConfiguration.getRequireConfigurationsURLs() ) {
-          appendFromResource( sb, configURL );
+          appendFromResource( out, configURL );
         }
 
-        sb.append( "/* End of bundle " );
-        sb.append( bundleName );
-        sb.append( " */\n" );
+        out.append( "/* End of bundle " );
+        out.append( bundleName );
+        out.append( " */\n" );
       } catch ( IOException ignored ) {
         // ignored exception
       }
     }
 
-    return sb.toString();
+    return out.toString();
   }
 
   private Map<String, Object> createEmptyRequireConfig() {
@@ -183,7 +192,7 @@ public class RebuildCacheCallable implements Callable<String> {
     return ( value.charAt( 0 ) != '/' && !value.matches( "/^[\\w\\+\\.\\-]+:/" ) );
   }
 
-  private void appendFromResource( StringBuilder sb, URL configURL ) throws IOException {
+  private void appendFromResource( StringWriter out, URL configURL ) throws IOException {
     URLConnection urlConnection;
 
     urlConnection = configURL.openConnection();
@@ -194,8 +203,8 @@ public class RebuildCacheCallable implements Callable<String> {
         BufferedReader bufferedReader = new BufferedReader( inputStreamReader ) ) {
       String input;
       while ( ( input = bufferedReader.readLine() ) != null ) {
-        sb.append( input );
-        sb.append( "\n" );
+        out.append( input );
+        out.append( "\n" );
       }
     }
   }
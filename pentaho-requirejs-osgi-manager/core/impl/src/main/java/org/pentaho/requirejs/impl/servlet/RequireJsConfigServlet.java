@@ -18,19 +18,34 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 public class RequireJsConfigServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
 
+  // upper bound of encoded scripts kept (each distinct context root / context mapping combination has its own)
+  private static final int MAX_ENCODED_SCRIPTS = 64;
+
   private String contextRoot;
   private RequireJsConfigManager manager;
 
   private String requireJsScript;
 
+  private final transient Map<ScriptKey, EncodedScript> encodedScripts = new ConcurrentHashMap<>();
+
   public void setContextRoot( String contextRoot ) {
     // ensure that the given string is properly bounded with slashes
     contextRoot = ( !contextRoot.startsWith( "/" ) ) ? "/" + contextRoot : contextRoot;
@@ -46,22 +61,84 @@ public class RequireJsConfigServlet extends HttpServlet {
   @Override
   protected void doGet( HttpServletRequest req, HttpServletResponse resp ) throws IOException {
     resp.setContentType( "text/javascript" );
+    resp.setCharacterEncoding( StandardCharsets.UTF_8.name() );
 
-    // Prevent browser cache, as contents now might vary with the request's context
-    resp.setHeader( "Cache-Control", "private, no-store, no-cache, must-revalidate" );
+    // Contents might vary with the request's context, so the browser must always revalidate its copy
+    resp.setHeader( "Cache-Control", "private, no-cache, must-revalidate" );
     resp.setHeader( "Pragma", "no-cache" );
+    resp.setHeader( "Vary", "Accept-Encoding" );
+
+    RequestContext requestContext = new RequestContext( req );
+
+    EncodedScript script = this.getEncodedScript( requestContext );
+
+    boolean gzip = requestContext.acceptsGzip();
+
+    String etag = script.getETag( gzip );
+    resp.setHeader( "ETag", etag );
+
+    if ( requestContext.matchesETag( etag ) ) {
+      resp.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+      return;
+    }
+
+    if ( gzip ) {
+      resp.setHeader( "Content-Encoding", "gzip" );
+    }
+
+    byte[] body = script.getBytes( gzip );
+    resp.setContentLength( body.length );
 
-    try ( PrintWriter printWriter = new PrintWriter( resp.getOutputStream() ) ) {
-      RequestContext requestContext = new RequestContext( req );
+    try ( OutputStream outputStream = resp.getOutputStream() ) {
+      outputStream.write( body );
+    }
+  }
+
+  /**
+   * Gets the encoded script for the request's context, reusing a previously encoded one if the
+   * RequireJS configuration didn't change since.
+   */
+  EncodedScript getEncodedScript( RequestContext requestContext ) throws IOException {
+    long generation = this.manager.getConfigurationGeneration();
+    long servedStale = this.manager.getServedStaleCount();
+
+    String contextRoot = this.getContextRoot( requestContext );
+
+    // setup contextual mappings if the referer corresponds to a known package
+    String contextMapping = this.manager.getContextMapping( contextRoot, requestContext.getReferer() );
+
+    ScriptKey key = new ScriptKey( requestContext.shouldOutputRequireJs(), contextRoot, contextMapping );
+
+    EncodedScript script = this.encodedScripts.get( key );
+    if ( script != null && script.generation == generation ) {
+      return script;
+    }
+
+    script = new EncodedScript( generation, this.writeScript( requestContext, contextRoot, contextMapping ) );
+
+    // only keep it if the configuration wasn't invalidated while it was being computed (or failed),
+    // nor a stale configuration was served meanwhile (it might have been this one)
+    if ( generation == this.manager.getConfigurationGeneration() && servedStale == this.manager.getServedStaleCount() ) {
+      if ( this.encodedScripts.size() >= MAX_ENCODED_SCRIPTS ) {
+        this.encodedScripts.clear();
+      }
 
+      this.encodedScripts.put( key, script );
+    }
+
+    return script;
+  }
+
+  private String writeScript( RequestContext requestContext, String contextRoot, String contextMapping ) throws IOException {
+    StringWriter stringWriter = new StringWriter();
+
+    try ( PrintWriter printWriter = new PrintWriter( stringWriter ) ) {
       if ( requestContext.shouldOutputRequireJs() ) {
         printWriter.write( this.getRequireJsScript() );
       }
 
       printWriter.write( "\n(function(w) {" );
 
-      String contextRoot = this.getContextRoot( requestContext );
-
       // ensure CONTEXT_PATH is defined
       printWriter.write( "\n  if (w.CONTEXT_PATH == null) {" );
       printWriter.write( "\n    w.CONTEXT_PATH = \"" + contextRoot + "\";" );
@@ -149,15 +226,15 @@ public class RequireJsConfigServlet extends HttpServlet {
 
       printWriter.write( "\n  require.config(requireCfg);" );
 
-      // setup contextual mappings if the referer corresponds to a known package
-      String cachedContextMapping = this.manager.getContextMapping( contextRoot, requestContext.getReferer() );
-      if ( cachedContextMapping != null ) {
-        printWriter.write( "\n  var contextMappingCfg = " + cachedContextMapping + ";\n" );
+      if ( contextMapping != null ) {
+        printWriter.write( "\n  var contextMappingCfg = " + contextMapping + ";\n" );
         printWriter.write( "\n  require.config(contextMappingCfg);" );
       }
 
       printWriter.write( "\n}(window));\n" );
     }
+
+    return stringWriter.toString();
   }
 
   private String getContextRoot( RequestContext requestContext ) {
@@ -197,6 +274,92 @@ public class RequireJsConfigServlet extends HttpServlet {
     return this.requireJsScript;
   }
 
+  /**
+   * Immutable, already encoded, script contents (plain and gzipped) for a given configuration generation.
+   */
+  static final class EncodedScript {
+    private final long generation;
+
+    private final byte[] bytes;
+    private final byte[] gzippedBytes;
+
+    private final String etag;
+    private final String gzippedETag;
+
+    EncodedScript( long generation, String script ) throws IOException {
+      this.generation = generation;
+
+      this.bytes = script.getBytes( StandardCharsets.UTF_8 );
+
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream( this.bytes.length / 4 );
+      try ( GZIPOutputStream gzipOutputStream = new GZIPOutputStream( gzipped ) ) {
+        gzipOutputStream.write( this.bytes );
+      }
+      this.gzippedBytes = gzipped.toByteArray();
+
+      // each representation must have its own strong validator
+      String tag = Long.toHexString( generation ) + "-" + digest( this.bytes );
+      this.etag = "\"" + tag + "\"";
+      this.gzippedETag = "\"" + tag + "-gzip\"";
+    }
+
+    byte[] getBytes( boolean gzip ) {
+      return gzip ? this.gzippedBytes : this.bytes;
+    }
+
+    String getETag( boolean gzip ) {
+      return gzip ? this.gzippedETag : this.etag;
+    }
+
+    private static String digest( byte[] bytes ) {
+      try {
+        byte[] hash = MessageDigest.getInstance( "SHA-256" ).digest( bytes );
+
+        StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < 8; i++ ) {
+          sb.append( String.format( "%02x", hash[ i ] ) );
+        }
+
+        return sb.toString();
+      } catch ( NoSuchAlgorithmException e ) {
+        throw new IllegalStateException( e );
+      }
+    }
+  }
+
+  private static final class ScriptKey {
+    private final boolean outputRequireJs;
+    private final String contextRoot;
+    private final String contextMapping;
+
+    ScriptKey( boolean outputRequireJs, String contextRoot, String contextMapping ) {
+      this.outputRequireJs = outputRequireJs;
+      this.contextRoot = contextRoot;
+      this.contextMapping = contextMapping;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+
+      if ( !( o instanceof ScriptKey ) ) {
+        return false;
+      }
+
+      ScriptKey other = (ScriptKey) o;
+      return this.outputRequireJs == other.outputRequireJs
+          && this.contextRoot.equals( other.contextRoot )
+          && Objects.equals( this.contextMapping, other.contextMapping );
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash( this.outputRequireJs, this.contextRoot, this.contextMapping );
+    }
+  }
+
   public class RequestContext {
 
     private static final int HTTP_DEFAULT_PORT = 80;
@@ -209,12 +372,18 @@ public class RequireJsConfigServlet extends HttpServlet {
 
     private final String referer;
 
+    private final String acceptEncoding;
+    private final String ifNoneMatch;
+
     RequestContext( HttpServletRequest req ) {
       // should the requirejs lib code be outputted? (defaults to true)
       this.outputRequireJs = this.getBooleanValue( req.getParameter( "requirejs" ), true );
 
       this.referer = req.getHeader( "referer" );
 
+      this.acceptEncoding = req.getHeader( "Accept-Encoding" );
+      this.ifNoneMatch = req.getHeader( "If-None-Match" );
+
       // To be congruent with referer other popular http clients the port should be stripped from the 'Host' field
       // when the port is 80 or 443.
       this.serverAddress = ( HTTP_DEFAULT_PORT == req.getServerPort() || HTTPS_DEFAULT_PORT == req.getServerPort() )
@@ -242,6 +411,56 @@ public class RequireJsConfigServlet extends HttpServlet {
       return referer;
     }
 
+    boolean acceptsGzip() {
+      if ( this.acceptEncoding == null ) {
+        return false;
+      }
+
+      for ( String coding : this.acceptEncoding.split( "," ) ) {
+        String[] parts = coding.trim().split( ";" );
+        String name = parts[ 0 ].trim();
+
+        if ( name.equalsIgnoreCase( "gzip" ) || name.equalsIgnoreCase( "x-gzip" ) ) {
+          for ( int i = 1; i < parts.length; i++ ) {
+            String parameter = parts[ i ].trim();
+
+            if ( parameter.startsWith( "q=" ) ) {
+              try {
+                return Double.parseDouble( parameter.substring( 2 ) ) > 0;
+              } catch ( NumberFormatException e ) {
+                return false;
+              }
+            }
+          }
+
+          return true;
+        }
+      }
+
+      return false;
+    }
+
+    boolean matchesETag( String etag ) {
+      if ( this.ifNoneMatch == null ) {
+        return false;
+      }
+
+      for ( String candidate : this.ifNoneMatch.split( "," ) ) {
+        candidate = candidate.trim();
+
+        // If-None-Match uses the weak comparison function
+        if ( candidate.startsWith( "W/" ) ) {
+          candidate = candidate.substring( 2 );
+        }
+
+        if ( candidate.equals( "*" ) || candidate.equals( etag ) ) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+
     private boolean getBooleanValue( String parameter, boolean defaultValue ) {
       if ( parameter == null ) {
         return defaultValue;
@@ -22,6 +22,58 @@ import java.util.Map;
 import java.util.Set;
 
 public class JsonMerger {
+  /**
+   * Merges {@code source} into {@code target}, in place, following the same rules of {@link #merge(Map, Map)}.
+   * <p>
+   * Unlike {@link #merge(Map, Map)}, what was already merged into {@code target} isn't copied again, so folding many
+   * objects is linear in their total size. Values taken from {@code source} are cloned, so {@code target} must only
+   * contain values it exclusively owns (as is the case when it only grows through this method). An {@link OverlayMap}
+   * is cloned as another overlay over it, instead of copying its shared base, so {@code source} must not change
+   * afterwards.
+   *
+   * @return {@code target}
+   */
+  public Map<String, Object> mergeInto( Map<String, Object> target, Map<String, ?> source ) {
+    for ( Map.Entry<String, ?> entry : source.entrySet() ) {
+      String key = entry.getKey();
+
+      Object value1 = target.get( key );
+      Object value2 = entry.getValue();
+
+      if ( value1 == null ) {
+        target.put( key, cloneValue( value2 ) );
+      } else if ( value2 == null ) {
+        // nothing to merge, keep the current value
+      } else if ( value1 instanceof Map ) {
+        if ( value2 instanceof Map ) {
+          if ( target instanceof OverlayMap ) {
+            // the value may belong to the base of the overlay, which isn't owned by target
+            value1 = cloneValue( value1 );
+            target.put( key, value1 );
+          }
+
+          mergeInto( (Map<String, Object>) value1, (Map<String, ?>) value2 );
+        } else {
+          throw new RuntimeException( "Cannot merge key " + key + " due to different types" );
+        }
+      } else if ( value2 instanceof Map ) {
+        throw new RuntimeException( "Cannot merge key " + key + " due to different types" );
+      } else if ( value1 instanceof List ) {
+        if ( value2 instanceof List ) {
+          target.put( key, appendUnique( (List<?>) value1, (List<?>) value2 ) );
+        } else {
+          throw new RuntimeException( "Cannot merge key " + key + " due to different types" );
+        }
+      } else if ( value2 instanceof List ) {
+        throw new RuntimeException( "Cannot merge key " + key + " due to different types" );
+      } else {
+        target.put( key, cloneValue( value2 ) );
+      }
+    }
+
+    return target;
+  }
+
   public Map<String, Object> merge( Map<String, ?> object1, Map<String, ?> object2 ) {
     Set<String> keys = new HashSet<>( object1.keySet().size() );
     keys.addAll( object1.keySet() );
@@ -59,7 +111,9 @@ public class JsonMerger {
   }
 
   private Object cloneValue( Object o ) {
-    if ( o instanceof Map ) {
+    if ( o instanceof OverlayMap ) {
+      return new OverlayMap<>( (OverlayMap<String, Object>) o );
+    } else if ( o instanceof Map ) {
       return cloneMap( (Map<String, Object>) o );
     } else if ( o instanceof List ) {
       return cloneList( (List) o );
@@ -74,15 +128,7 @@ public class JsonMerger {
     jsonObject.keySet();
 
     for ( String key : jsonObject.keySet() ) {
-      Object val = jsonObject.get( key );
-
-      if ( val instanceof Map ) {
-        clone.put( key, clone( (Map<String, Object>) val ) );
-      } else if ( val instanceof List ) {
-        clone.put( key, clone( (List<Object>) val ) );
-      } else {
-        clone.put( key, val );
-      }
+      clone.put( key, cloneValue( jsonObject.get( key ) ) );
     }
 
     return clone;
@@ -125,4 +171,37 @@ public class JsonMerger {
   private void copyToCollection( List array, Collection<Object> collection ) {
     array.forEach( val -> collection.add( cloneValue( val ) ) );
   }
+
+  private UniqueList appendUnique( List<?> array1, List<?> array2 ) {
+    UniqueList result = array1 instanceof UniqueList ? (UniqueList) array1 : new UniqueList( array1 );
+
+    for ( Object val : array2 ) {
+      if ( !result.containsElement( val ) ) {
+        result.addElement( cloneValue( val ) );
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * List without duplicates, that can be appended to without scanning its elements (merged lists behave as sets).
+   */
+  private static class UniqueList extends ArrayList<Object> {
+    private final Set<Object> index = new HashSet<>();
+
+    UniqueList( List<?> elements ) {
+      elements.forEach( this::addElement );
+    }
+
+    boolean containsElement( Object element ) {
+      return this.index.contains( element );
+    }
+
+    void addElement( Object element ) {
+      if ( this.index.add( element ) ) {
+        super.add( element );
+      }
+    }
+  }
 }
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of a moduleIDs mapping, keyed by the "/" separated segments of each base moduleID.
+ * <p>
+ * Allows translating any moduleID using the longest base moduleID that is a (segment aligned) prefix of it,
+ * in time proportional to the moduleID's length instead of the mapping's size.
+ * <p>
+ * Base moduleIDs that are only a prefix of a segment are skipped, as in requirejs' own paths and map lookups: with
+ * base moduleIDs "depA" and "depA/hi", "depA/hix" is translated with "depA" (and not returned untouched because
+ * "depA/hi" is its longest string prefix).
+ */
+public final class ModuleIdTrie {
+  private final Node root;
+
+  public ModuleIdTrie( Map<String, String> moduleIdsMappings ) {
+    this.root = new Node();
+
+    moduleIdsMappings.forEach( ( moduleId, versionedModuleId ) -> {
+      Node node = this.root;
+
+      int start = 0;
+      int end;
+      while ( ( end = moduleId.indexOf( '/', start ) ) != -1 ) {
+        node = node.getOrCreateChild( moduleId.substring( start, end ) );
+        start = end + 1;
+      }
+
+      node = node.getOrCreateChild( moduleId.substring( start ) );
+      node.value = versionedModuleId;
+    } );
+  }
+
+  /**
+   * Translates the given moduleID, including both parts of loader plugin moduleIDs ("plugin!resource").
+   * ModuleIDs not matching any base moduleID are returned untouched.
+   */
+  public String getVersionedModuleId( String moduleId ) {
+    int pluginSeparator = moduleId.indexOf( '!' );
+    if ( pluginSeparator != -1 ) {
+      return getVersionedModuleId( moduleId.substring( 0, pluginSeparator ) ) + "!" + getVersionedModuleId( moduleId.substring( pluginSeparator + 1 ) );
+    }
+
+    Node node = this.root;
+
+    String versionedBaseModuleId = null;
+    int baseModuleIdLength = 0;
+
+    int start = 0;
+    while ( node != null ) {
+      int end = moduleId.indexOf( '/', start );
+      String segment = end != -1 ? moduleId.substring( start, end ) : moduleId.substring( start );
+
+      node = node.getChild( segment );
+      if ( node != null && node.value != null ) {
+        versionedBaseModuleId = node.value;
+        baseModuleIdLength = end != -1 ? end : moduleId.length();
+      }
+
+      if ( end == -1 ) {
+        break;
+      }
+
+      start = end + 1;
+    }
+
+    if ( versionedBaseModuleId == null ) {
+      return moduleId;
+    }
+
+    return versionedBaseModuleId + moduleId.substring( baseModuleIdLength );
+  }
+
+  private static final class Node {
+    private Map<String, Node> children;
+    private String value;
+
+    Node getChild( String segment ) {
+      return this.children != null ? this.children.get( segment ) : null;
+    }
+
+    Node getOrCreateChild( String segment ) {
+      if ( this.children == null ) {
+        this.children = new HashMap<>( 4 );
+      }
+
+      return this.children.computeIfAbsent( segment, s -> new Node() );
+    }
+  }
+}
@@ -0,0 +1,230 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Modifiable view over a shared base map, which is never modified (nor copied).
+ * <p>
+ * Changes are kept in an overlay: added or replaced entries, and removed base keys. This allows many maps that
+ * start out as the same (possibly big) map, and then differ in a few entries, to be given to code that expects
+ * independent modifiable maps, without paying for a full copy of each.
+ * <p>
+ * The base map must not change while the view is in use. Not thread safe.
+ */
+public class OverlayMap<K, V> extends AbstractMap<K, V> {
+  private final Map<K, V> base;
+
+  // entries added or replaced, and base keys removed (never in overlay at the same time)
+  private Map<K, V> overlay;
+  private Set<K> removed;
+
+  // number of overlay keys that aren't base keys
+  private int added;
+
+  public OverlayMap( Map<K, V> base ) {
+    this.base = base;
+  }
+
+  @Override
+  public int size() {
+    return this.base.size() - this.removedCount() + this.added;
+  }
+
+  @Override
+  public boolean containsKey( Object key ) {
+    if ( this.overlay != null && this.overlay.containsKey( key ) ) {
+      return true;
+    }
+
+    return !this.isRemoved( key ) && this.base.containsKey( key );
+  }
+
+  @Override
+  public V get( Object key ) {
+    if ( this.overlay != null && this.overlay.containsKey( key ) ) {
+      return this.overlay.get( key );
+    }
+
+    return this.isRemoved( key ) ? null : this.base.get( key );
+  }
+
+  @Override
+  public V put( K key, V value ) {
+    if ( this.overlay == null ) {
+      this.overlay = new HashMap<>();
+    }
+
+    if ( this.overlay.containsKey( key ) ) {
+      return this.overlay.put( key, value );
+    }
+
+    boolean inBase = this.base.containsKey( key );
+    boolean wasRemoved = this.removed != null && this.removed.remove( key );
+
+    this.overlay.put( key, value );
+
+    if ( !inBase ) {
+      this.added++;
+    }
+
+    return inBase && !wasRemoved ? this.base.get( key ) : null;
+  }
+
+  @Override
+  public V remove( Object key ) {
+    if ( this.overlay != null && this.overlay.containsKey( key ) ) {
+      V previous = this.overlay.remove( key );
+
+      if ( this.base.containsKey( key ) ) {
+        this.markRemoved( key );
+      } else {
+        this.added--;
+      }
+
+      return previous;
+    }
+
+    if ( this.isRemoved( key ) || !this.base.containsKey( key ) ) {
+      return null;
+    }
+
+    this.markRemoved( key );
+
+    return this.base.get( key );
+  }
+
+  @Override
+  public void clear() {
+    this.overlay = null;
+    this.added = 0;
+
+    this.removed = new HashSet<>( this.base.keySet() );
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+      @Override
+      public int size() {
+        return OverlayMap.this.size();
+      }
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+    };
+  }
+
+  private int removedCount() {
+    return this.removed != null ? this.removed.size() : 0;
+  }
+
+  private boolean isRemoved( Object key ) {
+    return this.removed != null && this.removed.contains( key );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private void markRemoved( Object key ) {
+    if ( this.removed == null ) {
+      this.removed = new HashSet<>();
+    }
+
+    this.removed.add( (K) key );
+  }
+
+  /**
+   * Iterates the overlay entries first, and then the base ones that weren't replaced nor removed.
+   */
+  private final class EntryIterator implements Iterator<Entry<K, V>> {
+    private final Iterator<Entry<K, V>> overlayIterator;
+    private final Iterator<Entry<K, V>> baseIterator;
+
+    private Entry<K, V> next;
+    private Entry<K, V> current;
+
+    EntryIterator() {
+      // iterate over a snapshot of the overlay, so that setValue on base entries doesn't disturb it
+      this.overlayIterator = overlay != null ? new HashMap<>( overlay ).entrySet().iterator() : null;
+      this.baseIterator = base.entrySet().iterator();
+
+      this.advance();
+    }
+
+    private void advance() {
+      this.next = null;
+
+      if ( this.overlayIterator != null && this.overlayIterator.hasNext() ) {
+        this.next = this.overlayIterator.next();
+        return;
+      }
+
+      while ( this.baseIterator.hasNext() ) {
+        Entry<K, V> entry = this.baseIterator.next();
+
+        K key = entry.getKey();
+        if ( ( overlay == null || !overlay.containsKey( key ) ) && !isRemoved( key ) ) {
+          this.next = entry;
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != null;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if ( this.next == null ) {
+        throw new NoSuchElementException();
+      }
+
+      Entry<K, V> entry = this.next;
+
+      this.current = entry;
+
+      this.advance();
+
+      return new SimpleEntry<K, V>( entry ) {
+        @Override
+        public V setValue( V value ) {
+          V previous = super.setValue( value );
+          OverlayMap.this.put( entry.getKey(), value );
+          return previous;
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      if ( this.current == null ) {
+        throw new IllegalStateException();
+      }
+
+      OverlayMap.this.remove( this.current.getKey() );
+
+      this.current = null;
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+import org.pentaho.requirejs.IRequireJsPackageConfigurationPlugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps each package's resolved requirejs configuration fragment between rebuilds, so that only the packages
+ * affected by a change need to be reprocessed.
+ * <p>
+ * A package is reprocessed when it was marked as changed (or is new), when any of its dependencies now resolves to
+ * a different package, or when any package in its dependency closure is being reprocessed. All other packages reuse
+ * the fragment computed in a previous rebuild.
+ */
+public class RequireJsConfigFragmentCache {
+  private final Map<IRequireJsPackageConfiguration, Fragment> fragments = new IdentityHashMap<>();
+
+  private final Set<IRequireJsPackageConfiguration> changedPackages = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+  private final VersionRangeCache versionRangeCache = new VersionRangeCache();
+
+  /**
+   * Marks a package as changed, forcing its fragment (and the ones of its dependents) to be recomputed on the next rebuild.
+   */
+  public synchronized void markChanged( IRequireJsPackageConfiguration packageConfiguration ) {
+    if ( packageConfiguration != null ) {
+      this.changedPackages.add( packageConfiguration );
+    }
+  }
+
+  /**
+   * Discards every cached fragment, so the next rebuild processes all packages.
+   */
+  public synchronized void clear() {
+    this.fragments.clear();
+    this.changedPackages.clear();
+  }
+
+  /**
+   * Returns the requirejs configuration fragment of each package, in the same order of {@code packageConfigurations},
+   * recomputing only the ones affected by changes since the last call.
+   */
+  public synchronized List<Map<String, Object>> getRequireConfigs( Collection<IRequireJsPackageConfiguration> packageConfigurations,
+                                                                  List<IRequireJsPackageConfigurationPlugin> plugins ) {
+    RequireJsDependencyResolver dependencyResolver = new RequireJsDependencyResolver( packageConfigurations, this.versionRangeCache );
+
+    Map<IRequireJsPackageConfiguration, Map<String, IRequireJsPackageConfiguration>> resolutions = new IdentityHashMap<>();
+    Map<IRequireJsPackageConfiguration, List<IRequireJsPackageConfiguration>> dependents = new IdentityHashMap<>();
+
+    Deque<IRequireJsPackageConfiguration> pending = new ArrayDeque<>();
+    Set<IRequireJsPackageConfiguration> stalePackages = Collections.newSetFromMap( new IdentityHashMap<>() );
+
+    for ( IRequireJsPackageConfiguration packageConfiguration : packageConfigurations ) {
+      Map<String, IRequireJsPackageConfiguration> resolvedDependencies = new LinkedHashMap<>();
+      packageConfiguration.getDependencies().forEach( ( dependencyPackageName, dependencyPackageVersion ) -> {
+        IRequireJsPackageConfiguration resolved = dependencyResolver.getResolvedVersion( dependencyPackageName, dependencyPackageVersion );
+        resolvedDependencies.put( dependencyPackageName, resolved );
+
+        if ( resolved != null ) {
+          dependents.computeIfAbsent( resolved, k -> new ArrayList<>() ).add( packageConfiguration );
+        }
+      } );
+
+      resolutions.put( packageConfiguration, resolvedDependencies );
+
+      Fragment fragment = this.fragments.get( packageConfiguration );
+      if ( fragment == null || this.changedPackages.contains( packageConfiguration )
+          || !fragment.hasSameResolution( resolvedDependencies ) ) {
+        if ( stalePackages.add( packageConfiguration ) ) {
+          pending.add( packageConfiguration );
+        }
+      }
+    }
+
+    // anything depending (directly or transitively) on a stale package is also stale
+    while ( !pending.isEmpty() ) {
+      IRequireJsPackageConfiguration stalePackage = pending.poll();
+
+      for ( IRequireJsPackageConfiguration dependent : dependents.getOrDefault( stalePackage, Collections.emptyList() ) ) {
+        if ( stalePackages.add( dependent ) ) {
+          pending.add( dependent );
+        }
+      }
+    }
+
+    Map<IRequireJsPackageConfiguration, Fragment> updatedFragments = new IdentityHashMap<>();
+    List<Map<String, Object>> requireConfigs = new ArrayList<>( packageConfigurations.size() );
+
+    for ( IRequireJsPackageConfiguration packageConfiguration : packageConfigurations ) {
+      Fragment fragment = this.fragments.get( packageConfiguration );
+
+      if ( fragment == null || stalePackages.contains( packageConfiguration ) ) {
+        packageConfiguration.processDependencies( dependencyResolver::getResolvedVersion );
+
+        fragment = new Fragment( resolutions.get( packageConfiguration ), packageConfiguration.getRequireConfig( plugins ) );
+      }
+
+      updatedFragments.put( packageConfiguration, fragment );
+      requireConfigs.add( fragment.requireConfig );
+    }
+
+    // packages no longer available are dropped
+    this.fragments.clear();
+    this.fragments.putAll( updatedFragments );
+
+    this.changedPackages.clear();
+
+    return requireConfigs;
+  }
+
+  private static class Fragment {
+    private final Map<String, IRequireJsPackageConfiguration> resolvedDependencies;
+    private final Map<String, Object> requireConfig;
+
+    Fragment( Map<String, IRequireJsPackageConfiguration> resolvedDependencies, Map<String, Object> requireConfig ) {
+      this.resolvedDependencies = resolvedDependencies;
+      this.requireConfig = requireConfig;
+    }
+
+    boolean hasSameResolution( Map<String, IRequireJsPackageConfiguration> resolvedDependencies ) {
+      if ( this.resolvedDependencies.size() != resolvedDependencies.size() ) {
+        return false;
+      }
+
+      for ( Map.Entry<String, IRequireJsPackageConfiguration> entry : resolvedDependencies.entrySet() ) {
+        if ( !this.resolvedDependencies.containsKey( entry.getKey() )
+            || this.resolvedDependencies.get( entry.getKey() ) != entry.getValue() ) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
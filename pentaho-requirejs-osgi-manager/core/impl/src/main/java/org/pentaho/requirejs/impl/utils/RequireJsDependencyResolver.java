@@ -18,19 +18,29 @@ import org.pentaho.requirejs.IRequireJsPackageConfiguration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 public class RequireJsDependencyResolver {
   private Map<String, Map<String, IRequireJsPackageConfiguration>> packagesIndex;
   private final Map<String, PackageDependentsRequirements> requirements;
 
+  private final Map<String, VersionRangeCache.PackageVersions> packagesVersions;
+
   public RequireJsDependencyResolver( Collection<IRequireJsPackageConfiguration> availablePackages ) {
+    this( availablePackages, new VersionRangeCache() );
+  }
+
+  /**
+   * @param availablePackages The packages that can be depended upon.
+   * @param versionRangeCache Memoized version resolutions, possibly shared with previous resolvers.
+   */
+  public RequireJsDependencyResolver( Collection<IRequireJsPackageConfiguration> availablePackages, VersionRangeCache versionRangeCache ) {
     this.packagesIndex = new HashMap<>();
     this.requirements = new HashMap<>();
+    this.packagesVersions = new HashMap<>();
 
     // index packages that can be depended upon
     for ( IRequireJsPackageConfiguration availablePackage : availablePackages ) {
@@ -41,6 +51,9 @@ public class RequireJsDependencyResolver {
       }
     }
 
+    versionRangeCache.retainPackages( this.packagesIndex.keySet() );
+    this.packagesIndex.forEach( ( name, versions ) -> this.packagesVersions.put( name, versionRangeCache.getPackageVersions( name, versions.keySet() ) ) );
+
     // collect package's requirements
     for ( IRequireJsPackageConfiguration packageConfiguration : availablePackages ) {
       packageConfiguration.getDependencies().forEach( this::processPackageDependentsRequirements );
@@ -62,74 +75,24 @@ public class RequireJsDependencyResolver {
       return;
     }
 
+    VersionRangeCache.PackageVersions packageVersions = this.packagesVersions.get( requiredPackageId );
+
     PackageDependentsRequirements requiredPackage = this.requirements.computeIfAbsent( requiredPackageId, k -> new PackageDependentsRequirements() );
 
     if ( !requiredPackage.hasProcessedVersionCondition( requiredVersionCondition ) ) {
-      Set<String> availableVersions = this.packagesIndex.get( requiredPackageId ).keySet();
-
-      final ArrayList<String> resolvedVersions = filterVersions( requiredVersionCondition, availableVersions );
+      final List<String> resolvedVersions = packageVersions.filterVersions( requiredVersionCondition );
 
       GroupDetail g = new GroupDetail( resolvedVersions );
 
       requiredPackage.groups.put( requiredVersionCondition, g );
 
       for ( String resolvedVersionId : resolvedVersions ) {
-        VersionDetail resolvedVersion = requiredPackage.versions.computeIfAbsent( resolvedVersionId, VersionDetail::new );
+        VersionDetail resolvedVersion = requiredPackage.versions.computeIfAbsent( resolvedVersionId, v -> new VersionDetail( v, packageVersions.getParsedVersion( v ) ) );
         resolvedVersion.addGroup( g );
       }
     }
   }
 
-  private ArrayList<String> filterVersions( String versionFilter, Set<String> availableVersions ) {
-    ArrayList<Version> validVersions = new ArrayList<>();
-    ArrayList<String> validVersionsStrings = new ArrayList<>();
-
-    // resolve version prematurely for exact matches to allow our own non-semantic versioning such as "7.1-SNAPSHOT"
-    if ( availableVersions.contains( versionFilter ) ) {
-      validVersionsStrings.add( versionFilter );
-      return validVersionsStrings;
-    }
-
-    for ( String availableVersion : availableVersions ) {
-      try {
-        Version parsedAvailableVersion = Version.valueOf( availableVersion );
-
-        if ( versionSatisfiesFilter( parsedAvailableVersion, versionFilter ) ) {
-          validVersions.add( parsedAvailableVersion );
-        }
-      } catch ( Exception ignored ) {
-        // Ignore
-      }
-    }
-
-    if ( validVersions.isEmpty() ) {
-      // Lets relax and give higher minor version if available
-      try {
-        Version.valueOf( versionFilter );
-
-        return filterVersions( "^" + versionFilter, availableVersions );
-      } catch ( Exception ignored ) {
-        // Ignore
-      }
-    } else {
-      validVersions.sort( Comparator.naturalOrder() );
-
-      for ( Version v : validVersions ) {
-        validVersionsStrings.add( v.toString() );
-      }
-    }
-
-    return validVersionsStrings;
-  }
-
-  private boolean versionSatisfiesFilter( Version parsedAvailableVersion, String versionFilter ) {
-    // Java SemVer v0.9.0's version filter expression parser doesn't handle qualifiers
-    // shortcut if equals enables the most common use case (dependency with explicit version)
-    // other cases like "~2.1.3-alpha.1" or ">=7.1-SNAPSHOT" will still fail until the lib is fixed
-    // https://github.com/zafarkhaja/jsemver/pull/34 addresses this
-    return versionFilter.equals( parsedAvailableVersion.toString() ) || parsedAvailableVersion.satisfies( versionFilter );
-  }
-
   private class PackageDependentsRequirements {
     Map<String, GroupDetail> groups;
     Map<String, VersionDetail> versions;
@@ -165,18 +128,17 @@ public class RequireJsDependencyResolver {
     private final String version;
     private final HashSet<GroupDetail> groups;
 
-    private Version parsedVersion;
+    private final Version parsedVersion;
+
+    // memoized, as it is used repeatedly while sorting (groups don't change at that point)
+    private int uniqueVersionsCount = -1;
 
-    VersionDetail( String version ) {
+    VersionDetail( String version, Version parsedVersion ) {
       this.version = version;
 
       this.groups = new HashSet<>();
 
-      try {
-        this.parsedVersion = Version.valueOf( this.version );
-      } catch ( Exception ignored ) {
-        // Ignore
-      }
+      this.parsedVersion = parsedVersion;
     }
 
     @Override
@@ -203,13 +165,17 @@ public class RequireJsDependencyResolver {
     }
 
     int getUniqueVersionsCount() {
-      HashSet<String> uniqueVersions = new HashSet<>();
+      if ( this.uniqueVersionsCount == -1 ) {
+        HashSet<String> uniqueVersions = new HashSet<>();
 
-      for ( GroupDetail g : this.groups ) {
-        uniqueVersions.addAll( g.getVersions() );
+        for ( GroupDetail g : this.groups ) {
+          uniqueVersions.addAll( g.getVersions() );
+        }
+
+        this.uniqueVersionsCount = uniqueVersions.size();
       }
 
-      return uniqueVersions.size();
+      return this.uniqueVersionsCount;
     }
 
     public void excludeYourself() {
@@ -220,20 +186,22 @@ public class RequireJsDependencyResolver {
 
     void addGroup( GroupDetail g ) {
       this.groups.add( g );
+
+      this.uniqueVersionsCount = -1;
     }
   }
 
   private class GroupDetail {
-    private final ArrayList<String> versions;
+    private final List<String> versions;
     private final ArrayList<String> excluded;
 
-    GroupDetail( ArrayList<String> resolvedVersions ) {
+    GroupDetail( List<String> resolvedVersions ) {
       this.versions = resolvedVersions;
 
       this.excluded = new ArrayList<>();
     }
 
-    ArrayList<String> getVersions() {
+    List<String> getVersions() {
       return versions;
     }
 
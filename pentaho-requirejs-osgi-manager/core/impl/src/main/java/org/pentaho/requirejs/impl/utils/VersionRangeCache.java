@@ -0,0 +1,158 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import com.github.zafarkhaja.semver.Version;
+import com.github.zafarkhaja.semver.expr.Expression;
+import com.github.zafarkhaja.semver.expr.ExpressionParser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizes the resolution of version conditions against the available versions of each package, across
+ * {@link RequireJsDependencyResolver} instances.
+ * <p>
+ * Available versions are parsed only once, as are the version conditions, and the versions satisfying each condition
+ * are kept until the set of available versions for that package changes.
+ */
+public class VersionRangeCache {
+  private final Map<String, PackageVersions> packages = new ConcurrentHashMap<>();
+
+  // compiled conditions don't depend on the available versions, so they are shared by all packages
+  private final Map<String, Optional<Expression>> expressions = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the memoized information for the given package, discarding any previous one if the available versions changed.
+   */
+  public PackageVersions getPackageVersions( String packageName, Set<String> availableVersions ) {
+    return this.packages.compute( packageName, ( name, current ) ->
+        current != null && current.availableVersions.equals( availableVersions ) ? current : new PackageVersions( availableVersions ) );
+  }
+
+  /**
+   * Forgets about the packages that aren't available anymore.
+   */
+  public void retainPackages( Collection<String> packageNames ) {
+    this.packages.keySet().retainAll( new HashSet<>( packageNames ) );
+  }
+
+  private Expression getExpression( String versionFilter ) {
+    return this.expressions.computeIfAbsent( versionFilter, filter -> {
+      try {
+        return Optional.ofNullable( ExpressionParser.newInstance().parse( filter ) );
+      } catch ( Exception ignored ) {
+        return Optional.empty();
+      }
+    } ).orElse( null );
+  }
+
+  public class PackageVersions {
+    private final Set<String> availableVersions;
+
+    // parsed available versions (versions that aren't valid semver are left out)
+    private final Map<String, Version> parsedVersions;
+
+    private final Map<String, List<String>> resolvedFilters;
+
+    PackageVersions( Set<String> availableVersions ) {
+      this.availableVersions = Collections.unmodifiableSet( new HashSet<>( availableVersions ) );
+
+      this.parsedVersions = new HashMap<>();
+      for ( String availableVersion : this.availableVersions ) {
+        try {
+          this.parsedVersions.put( availableVersion, Version.valueOf( availableVersion ) );
+        } catch ( Exception ignored ) {
+          // Ignore
+        }
+      }
+
+      this.resolvedFilters = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The parsed version for one of the available versions, or null if it isn't a valid semantic version.
+     */
+    public Version getParsedVersion( String version ) {
+      return this.parsedVersions.get( version );
+    }
+
+    /**
+     * The available versions satisfying the condition, sorted from the lowest to the highest.
+     */
+    public List<String> filterVersions( String versionFilter ) {
+      List<String> resolved = this.resolvedFilters.get( versionFilter );
+      if ( resolved == null ) {
+        resolved = Collections.unmodifiableList( this.computeFilterVersions( versionFilter ) );
+        this.resolvedFilters.put( versionFilter, resolved );
+      }
+
+      return resolved;
+    }
+
+    private List<String> computeFilterVersions( String versionFilter ) {
+      List<String> validVersionsStrings = new ArrayList<>();
+
+      // resolve version prematurely for exact matches to allow our own non-semantic versioning such as "7.1-SNAPSHOT"
+      if ( this.availableVersions.contains( versionFilter ) ) {
+        validVersionsStrings.add( versionFilter );
+        return validVersionsStrings;
+      }
+
+      Expression expression = getExpression( versionFilter );
+
+      List<Version> validVersions = new ArrayList<>();
+      this.parsedVersions.forEach( ( availableVersion, parsedAvailableVersion ) -> {
+        // Java SemVer v0.9.0's version filter expression parser doesn't handle qualifiers
+        // shortcut if equals enables the most common use case (dependency with explicit version)
+        // other cases like "~2.1.3-alpha.1" or ">=7.1-SNAPSHOT" will still fail until the lib is fixed
+        // https://github.com/zafarkhaja/jsemver/pull/34 addresses this
+        try {
+          if ( versionFilter.equals( parsedAvailableVersion.toString() ) || ( expression != null && expression.interpret( parsedAvailableVersion ) ) ) {
+            validVersions.add( parsedAvailableVersion );
+          }
+        } catch ( Exception ignored ) {
+          // Ignore
+        }
+      } );
+
+      if ( validVersions.isEmpty() ) {
+        // Lets relax and give higher minor version if available
+        try {
+          Version.valueOf( versionFilter );
+
+          return new ArrayList<>( this.filterVersions( "^" + versionFilter ) );
+        } catch ( Exception ignored ) {
+          // Ignore
+        }
+      } else {
+        validVersions.sort( Comparator.naturalOrder() );
+
+        for ( Version v : validVersions ) {
+          validVersionsStrings.add( v.toString() );
+        }
+      }
+
+      return validVersionsStrings;
+    }
+  }
+}
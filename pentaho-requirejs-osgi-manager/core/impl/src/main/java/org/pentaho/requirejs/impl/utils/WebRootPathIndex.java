@@ -0,0 +1,138 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Immutable index of the packages' web root paths (prefixed by a base url), allowing to find which package a referer
+ * belongs to in a single pass over the referer, regardless of the number of packages (Aho-Corasick automaton).
+ * <p>
+ * Matching is case insensitive, because some http clients force requests to lowercase.
+ */
+public final class WebRootPathIndex {
+  private static final int NO_MATCH = Integer.MAX_VALUE;
+
+  // the packages with a web root path, in the original order (which decides between multiple matches)
+  private final List<IRequireJsPackageConfiguration> packages;
+
+  // automaton states: goto transitions, failure links and the first (lowest index) package recognized in each state
+  private final List<Map<Character, Integer>> transitions;
+  private final int[] failures;
+  private final int[] firstMatches;
+
+  public WebRootPathIndex( String baseUrl, Collection<IRequireJsPackageConfiguration> requireJsPackageConfigurations ) {
+    this.packages = new ArrayList<>();
+    this.transitions = new ArrayList<>();
+
+    List<Integer> matches = new ArrayList<>();
+
+    this.transitions.add( new HashMap<>() );
+    matches.add( NO_MATCH );
+
+    for ( IRequireJsPackageConfiguration requireJsPackage : requireJsPackageConfigurations ) {
+      String webRootPath = requireJsPackage.getWebRootPath();
+      if ( webRootPath == null || webRootPath.isEmpty() ) {
+        continue;
+      }
+
+      int packageIndex = this.packages.size();
+      this.packages.add( requireJsPackage );
+
+      String pattern = ( baseUrl + webRootPath ).toLowerCase();
+
+      int state = 0;
+      for ( int i = 0; i < pattern.length(); i++ ) {
+        Integer next = this.transitions.get( state ).get( pattern.charAt( i ) );
+        if ( next == null ) {
+          next = this.transitions.size();
+
+          this.transitions.add( new HashMap<>() );
+          matches.add( NO_MATCH );
+
+          this.transitions.get( state ).put( pattern.charAt( i ), next );
+        }
+
+        state = next;
+      }
+
+      matches.set( state, Math.min( matches.get( state ), packageIndex ) );
+    }
+
+    this.failures = new int[ this.transitions.size() ];
+    this.firstMatches = new int[ this.transitions.size() ];
+    for ( int state = 0; state < this.firstMatches.length; state++ ) {
+      this.firstMatches[ state ] = matches.get( state );
+    }
+
+    // breadth first, so that failure links always point to already processed (shallower) states
+    Queue<Integer> queue = new ArrayDeque<>( this.transitions.get( 0 ).values() );
+    while ( !queue.isEmpty() ) {
+      int state = queue.remove();
+
+      this.transitions.get( state ).forEach( ( c, next ) -> {
+        int failure = this.failures[ state ];
+        while ( failure != 0 && !this.transitions.get( failure ).containsKey( c ) ) {
+          failure = this.failures[ failure ];
+        }
+
+        Integer failureNext = this.transitions.get( failure ).get( c );
+        this.failures[ next ] = failureNext != null ? failureNext : 0;
+
+        this.firstMatches[ next ] = Math.min( this.firstMatches[ next ], this.firstMatches[ this.failures[ next ] ] );
+
+        queue.add( next );
+      } );
+    }
+  }
+
+  /**
+   * Finds the first package whose web root path is contained in the referer.
+   *
+   * @param referer The referer.
+   * @return The package, or null if none matches.
+   */
+  public IRequireJsPackageConfiguration findPackage( String referer ) {
+    if ( referer == null || this.packages.isEmpty() ) {
+      return null;
+    }
+
+    String text = referer.toLowerCase();
+
+    int firstMatch = NO_MATCH;
+
+    int state = 0;
+    for ( int i = 0; i < text.length() && firstMatch != 0; i++ ) {
+      char c = text.charAt( i );
+
+      Integer next;
+      while ( ( next = this.transitions.get( state ).get( c ) ) == null && state != 0 ) {
+        state = this.failures[ state ];
+      }
+
+      state = next != null ? next : 0;
+
+      firstMatch = Math.min( firstMatch, this.firstMatches[ state ] );
+    }
+
+    return firstMatch != NO_MATCH ? this.packages.get( firstMatch ) : null;
+  }
+}
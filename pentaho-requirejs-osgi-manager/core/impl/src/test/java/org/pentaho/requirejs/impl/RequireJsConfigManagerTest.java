@@ -23,11 +23,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doReturn;
@@ -173,6 +176,123 @@ public class RequireJsConfigManagerTest {
     verify( spyed, times( 1 ) ).createRebuildCacheCallable( "/base2/" );
   }
 
+  @Test
+  public void testSuspendedInvalidations() throws Exception {
+    RequireJsConfigManager spyed = spy( this.requireJsConfigManager );
+
+    Callable mockCallable = mock( Callable.class );
+    doReturn( "The content of the requirejs configuration script" ).when( mockCallable ).call();
+
+    doReturn( mockCallable ).when( spyed ).createRebuildCacheCallable( anyString() );
+
+    spyed.getRequireJsConfig( "/base1/" );
+
+    spyed.suspendInvalidations();
+    spyed.suspendInvalidations();
+
+    spyed.invalidateCachedConfigurations();
+    spyed.invalidateCachedConfigurations();
+
+    // the cached configuration is kept while suspended
+    spyed.getRequireJsConfig( "/base1/" );
+    verify( spyed, times( 1 ) ).createRebuildCacheCallable( "/base1/" );
+
+    spyed.resumeInvalidations();
+
+    spyed.getRequireJsConfig( "/base1/" );
+    verify( spyed, times( 1 ) ).createRebuildCacheCallable( "/base1/" );
+
+    long generation = spyed.getConfigurationGeneration();
+
+    spyed.resumeInvalidations();
+
+    // a single invalidation for the whole batch
+    assertEquals( generation + 1, spyed.getConfigurationGeneration() );
+
+    spyed.getRequireJsConfig( "/base1/" );
+    verify( spyed, times( 2 ) ).createRebuildCacheCallable( "/base1/" );
+  }
+
+  @Test
+  public void testGetRequireJsConfigServesStaleWhileRebuilding() throws Exception {
+    RequireJsConfigManager spyed = spy( this.requireJsConfigManager );
+
+    Callable mockCallable = mock( Callable.class );
+    doReturn( "first" ).doReturn( "second" ).when( mockCallable ).call();
+
+    doReturn( mockCallable ).when( spyed ).createRebuildCacheCallable( anyString() );
+
+    assertEquals( "first", spyed.getRequireJsConfig( this.baseUrl ) );
+
+    spyed.invalidateCachedConfigurations();
+
+    // the rebuild is postponed, so the previous configuration is served meanwhile
+    assertEquals( "first", spyed.getRequireJsConfig( this.baseUrl ) );
+    assertEquals( 1, spyed.getServedStaleCount() );
+
+    assertEquals( "second", spyed.getCachedConfiguration( this.baseUrl ).get( 5, TimeUnit.SECONDS ) );
+    assertEquals( "second", spyed.getRequireJsConfig( this.baseUrl ) );
+
+    assertEquals( 2, spyed.getRebuildsStartedCount() );
+    assertEquals( 1, spyed.getServedStaleCount() );
+  }
+
+  @Test
+  public void testInvalidationBurstIsCoalesced() throws Exception {
+    RequireJsConfigManager spyed = spy( this.requireJsConfigManager );
+
+    Callable mockCallable = mock( Callable.class );
+    doReturn( "first" ).doReturn( "second" ).when( mockCallable ).call();
+
+    doReturn( mockCallable ).when( spyed ).createRebuildCacheCallable( anyString() );
+
+    spyed.getRequireJsConfig( this.baseUrl );
+
+    for ( int i = 0; i < 5; i++ ) {
+      spyed.invalidateCachedConfigurations();
+
+      assertEquals( "first", spyed.getRequireJsConfig( this.baseUrl ) );
+    }
+
+    assertEquals( "second", spyed.getCachedConfiguration( this.baseUrl ).get( 5, TimeUnit.SECONDS ) );
+
+    // superseded rebuilds never ran
+    assertEquals( 4, spyed.getRebuildsCancelledCount() );
+    assertEquals( 2, spyed.getRebuildsStartedCount() );
+  }
+
+  @Test
+  public void testRebuildWithWaitersIsNotCancelled() throws Exception {
+    RequireJsConfigManager spyed = spy( this.requireJsConfigManager );
+
+    Callable mockCallable = mock( Callable.class );
+    doReturn( "first" ).doReturn( "second" ).when( mockCallable ).call();
+
+    doReturn( mockCallable ).when( spyed ).createRebuildCacheCallable( anyString() );
+
+    // so that the first rebuild is postponed, and there's no previous configuration to serve
+    spyed.invalidateCachedConfigurations();
+
+    CountDownLatch waiting = new CountDownLatch( 1 );
+    String[] result = new String[ 1 ];
+    Thread waiter = new Thread( () -> {
+      waiting.countDown();
+      result[ 0 ] = spyed.getRequireJsConfig( this.baseUrl );
+    } );
+    waiter.start();
+
+    waiting.await();
+    Thread.sleep( 50 );
+
+    spyed.invalidateCachedConfigurations();
+    spyed.getCachedConfiguration( this.baseUrl );
+
+    waiter.join( 5000 );
+
+    assertEquals( "first", result[ 0 ] );
+    assertEquals( 0, spyed.getRebuildsCancelledCount() );
+  }
+
   @Test
   public void testGetContextMappingKnownReferer() {
     Collection<IRequireJsPackageConfiguration> requireJsPackages = new ArrayList<>();
@@ -245,6 +365,30 @@ public class RequireJsConfigManagerTest {
     verify( packageB, times( 1 ) ).getModuleIdsMapping();
   }
 
+  @Test
+  public void testGetContextMappingCachedByPackage() {
+    Collection<IRequireJsPackageConfiguration> requireJsPackages = new ArrayList<>();
+    IRequireJsPackageConfiguration packageA = createRequireJsPackageConfigurationMock( "packageA/1.0" );
+    requireJsPackages.add( packageA );
+    doReturn( requireJsPackages ).when( this.mockPackageConfigurationsTracker ).getPackages();
+
+    String config = this.requireJsConfigManager.getContextMapping( this.baseUrl, "/default/base/url/packageA/1.0/index.html" );
+
+    // distinct referers of the same package share the same mapping
+    assertSame( config, this.requireJsConfigManager.getContextMapping( this.baseUrl, "/default/base/url/packageA/1.0/other.html?x=1" ) );
+    assertSame( config, this.requireJsConfigManager.getContextMapping( this.baseUrl, "/DEFAULT/base/url/packageA/1.0/" ) );
+
+    verify( packageA, times( 1 ) ).getModuleIdsMapping();
+    verify( this.mockPackageConfigurationsTracker, times( 1 ) ).getPackages();
+
+    // the index is rebuilt after an invalidation
+    this.requireJsConfigManager.invalidateCachedConfigurations();
+    this.requireJsConfigManager.getContextMapping( this.baseUrl, "/default/base/url/packageA/1.0/index.html" );
+
+    verify( packageA, times( 2 ) ).getModuleIdsMapping();
+    verify( this.mockPackageConfigurationsTracker, times( 2 ) ).getPackages();
+  }
+
   private IRequireJsPackageConfiguration createRequireJsPackageConfigurationMock(String webRootPath ) {
     IRequireJsPackageConfiguration config = mock( IRequireJsPackageConfiguration.class );
     doReturn( webRootPath ).when( config ).getWebRootPath();
@@ -107,8 +107,52 @@ public class RequireJsBundleListenerTest {
     // check that the bundle listener is registered
     verify( this.mockBundleContext, times( 1 ) ).addBundleListener( same( this.requireJsBundleListener ) );
 
-    // check it adds already started bundles
-    verify( spyed, times( 5 ) ).addBundle( any() );
+    // check it reads all already started bundles
+    verify( spyed, times( 5 ) ).readBundle( any() );
+
+    // check that the registrations are made in a single batch
+    verify( this.mockRequireJsConfigManager, times( 1 ) ).suspendInvalidations();
+    verify( this.mockRequireJsConfigManager, times( 1 ) ).resumeInvalidations();
+
+    for ( int i = 1; i < 3; i++ ) {
+      verify( this.mockBundleMockContexts.get( i ), times( 1 ) )
+          .registerService( eq( IRequireJsPackage.class.getName() ), any( IRequireJsPackage.class ), any() );
+    }
+
+    assertEquals( 2, spyed.getScripts().size() );
+
+    // a single invalidation for all the external resources bundles
+    verify( this.mockRequireJsConfigManager, times( 1 ) ).invalidateCachedConfigurations();
+  }
+
+  @Test
+  public void addBundlesReadFailure() {
+    Bundle mockBundleWithPackageJson = this.createMockPackageJsonBundle( "lib1", "1.0", Bundle.ACTIVE );
+    Bundle mockBundleFailing = this.createMockBundle( "failing-bundle", "0.1", Bundle.ACTIVE );
+    when( mockBundleFailing.getResource( any() ) ).thenThrow( new IllegalStateException( "Bundle uninstalled" ) );
+
+    this.requireJsBundleListener.addBundles( new Bundle[] { mockBundleFailing, mockBundleWithPackageJson } );
+
+    verify( this.mockBundleMockContexts.get( 0 ), times( 1 ) )
+        .registerService( eq( IRequireJsPackage.class.getName() ), any( IRequireJsPackage.class ), any() );
+
+    verify( this.mockRequireJsConfigManager, times( 1 ) ).invalidateCachedConfigurations();
+    verify( this.mockRequireJsConfigManager, times( 1 ) ).resumeInvalidations();
+  }
+
+  @Test
+  public void addBundlesStoppedWhileReading() {
+    Bundle mockBundleWithPackageJson = this.createMockPackageJsonBundle( "lib1", "1.0", Bundle.ACTIVE );
+
+    // active when its descriptors are read, already stopped when they're about to be registered
+    when( mockBundleWithPackageJson.getState() ).thenReturn( Bundle.ACTIVE, Bundle.RESOLVED );
+
+    this.requireJsBundleListener.addBundles( new Bundle[] { mockBundleWithPackageJson } );
+
+    verify( this.mockBundleMockContexts.get( 0 ), times( 0 ) )
+        .registerService( eq( IRequireJsPackage.class.getName() ), any( IRequireJsPackage.class ), any() );
+
+    verify( this.mockRequireJsConfigManager, times( 0 ) ).invalidateCachedConfigurations();
   }
 
   @Test
@@ -14,11 +14,24 @@
 package org.pentaho.requirejs.impl.servlet;
 
 import org.junit.Test;
+import org.pentaho.requirejs.impl.RequireJsConfigManager;
 
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class RequireJsConfigServletTest {
@@ -90,6 +103,109 @@ public class RequireJsConfigServletTest {
 
 
 
+  @Test
+  public void acceptsGzipTest() {
+    RequireJsConfigServletForTest requireJsConfigServlet = new RequireJsConfigServletForTest();
+
+    assertFalse( requireJsConfigServlet.createRequestContext( createRequestMock( null, null ) ).acceptsGzip() );
+    assertTrue( requireJsConfigServlet.createRequestContext( createRequestMock( "gzip, deflate, br", null ) ).acceptsGzip() );
+    assertTrue( requireJsConfigServlet.createRequestContext( createRequestMock( "deflate;q=1.0, gzip;q=0.5", null ) ).acceptsGzip() );
+    assertFalse( requireJsConfigServlet.createRequestContext( createRequestMock( "gzip;q=0, deflate", null ) ).acceptsGzip() );
+    assertFalse( requireJsConfigServlet.createRequestContext( createRequestMock( "identity", null ) ).acceptsGzip() );
+  }
+
+  @Test
+  public void matchesETagTest() {
+    RequireJsConfigServletForTest requireJsConfigServlet = new RequireJsConfigServletForTest();
+
+    assertFalse( requireJsConfigServlet.createRequestContext( createRequestMock( null, null ) ).matchesETag( "\"abc\"" ) );
+    assertTrue( requireJsConfigServlet.createRequestContext( createRequestMock( null, "\"xyz\", \"abc\"" ) ).matchesETag( "\"abc\"" ) );
+    assertTrue( requireJsConfigServlet.createRequestContext( createRequestMock( null, "W/\"abc\"" ) ).matchesETag( "\"abc\"" ) );
+    assertTrue( requireJsConfigServlet.createRequestContext( createRequestMock( null, "*" ) ).matchesETag( "\"abc\"" ) );
+    assertFalse( requireJsConfigServlet.createRequestContext( createRequestMock( null, "\"xyz\"" ) ).matchesETag( "\"abc\"" ) );
+  }
+
+  @Test
+  public void encodedScriptIsReusedWhileConfigurationIsUnchangedTest() throws Exception {
+    RequireJsConfigManager managerMock = createManagerMock();
+
+    RequireJsConfigServletForTest requireJsConfigServlet = new RequireJsConfigServletForTest();
+    requireJsConfigServlet.setContextRoot( "/" );
+    requireJsConfigServlet.setManager( managerMock );
+
+    RequireJsConfigServlet.RequestContext requestContext =
+      requireJsConfigServlet.createRequestContext( createRequestMock( "gzip", null ) );
+
+    RequireJsConfigServlet.EncodedScript script = requireJsConfigServlet.getEncodedScript( requestContext );
+    assertSame( script, requireJsConfigServlet.getEncodedScript( requestContext ) );
+    assertNotEquals( script.getETag( true ), script.getETag( false ) );
+
+    verify( managerMock, times( 1 ) ).getRequireJsConfig( anyString() );
+
+    when( managerMock.getConfigurationGeneration() ).thenReturn( 2L );
+
+    RequireJsConfigServlet.EncodedScript rebuiltScript = requireJsConfigServlet.getEncodedScript( requestContext );
+    assertNotEquals( script.getETag( false ), rebuiltScript.getETag( false ) );
+
+    verify( managerMock, times( 2 ) ).getRequireJsConfig( anyString() );
+  }
+
+  @Test
+  public void doGetNotModifiedTest() throws Exception {
+    RequireJsConfigServletForTest requireJsConfigServlet = new RequireJsConfigServletForTest();
+    requireJsConfigServlet.setContextRoot( "/" );
+    requireJsConfigServlet.setManager( createManagerMock() );
+
+    String etag = requireJsConfigServlet.getEncodedScript(
+      requireJsConfigServlet.createRequestContext( createRequestMock( "gzip", null ) ) ).getETag( true );
+
+    HttpServletResponse responseMock = mock( HttpServletResponse.class );
+    requireJsConfigServlet.doGet( createRequestMock( "gzip", etag ), responseMock );
+
+    verify( responseMock ).setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+    verify( responseMock ).setHeader( "ETag", etag );
+    verify( responseMock, never() ).getOutputStream();
+  }
+
+  @Test
+  public void doGetGzipTest() throws Exception {
+    RequireJsConfigServletForTest requireJsConfigServlet = new RequireJsConfigServletForTest();
+    requireJsConfigServlet.setContextRoot( "/" );
+    requireJsConfigServlet.setManager( createManagerMock() );
+
+    HttpServletResponse responseMock = mock( HttpServletResponse.class );
+    ServletOutputStream outputStreamMock = mock( ServletOutputStream.class );
+    when( responseMock.getOutputStream() ).thenReturn( outputStreamMock );
+
+    requireJsConfigServlet.doGet( createRequestMock( "gzip", null ), responseMock );
+
+    verify( responseMock ).setHeader( "Content-Encoding", "gzip" );
+    verify( responseMock, never() ).setStatus( anyInt() );
+    verify( outputStreamMock ).write( any( byte[].class ) );
+  }
+
+  private HttpServletRequest createRequestMock( String acceptEncoding, String ifNoneMatch ) {
+    HttpServletRequest httpServletRequestMock = mock( HttpServletRequest.class );
+
+    when( httpServletRequestMock.getScheme() ).thenReturn( "http" );
+    when( httpServletRequestMock.getServerName() ).thenReturn( "server-name" );
+    when( httpServletRequestMock.getServerPort() ).thenReturn( 8080 );
+    when( httpServletRequestMock.getParameter( "requirejs" ) ).thenReturn( "false" );
+    when( httpServletRequestMock.getHeader( "Accept-Encoding" ) ).thenReturn( acceptEncoding );
+    when( httpServletRequestMock.getHeader( "If-None-Match" ) ).thenReturn( ifNoneMatch );
+
+    return httpServletRequestMock;
+  }
+
+  private RequireJsConfigManager createManagerMock() {
+    RequireJsConfigManager managerMock = mock( RequireJsConfigManager.class );
+
+    when( managerMock.getConfigurationGeneration() ).thenReturn( 1L );
+    when( managerMock.getRequireJsConfig( anyString() ) ).thenReturn( "{}" );
+
+    return managerMock;
+  }
+
   public class RequireJsConfigServletForTest extends RequireJsConfigServlet {
 
     public RequestContext createRequestContext( HttpServletRequest request ) {
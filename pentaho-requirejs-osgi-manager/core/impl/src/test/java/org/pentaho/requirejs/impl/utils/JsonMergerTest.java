@@ -21,7 +21,10 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class JsonMergerTest {
   private JsonMerger merger;
@@ -349,6 +352,108 @@ public class JsonMergerTest {
     assertEquals( obj2, result );
   }
 
+  @Test
+  public void mergeIntoObjectsSimpleValues() {
+    Map<String, Object> target = new HashMap<>();
+    target.put( "a", 1 );
+    target.put( "c", 1 );
+
+    Map<String, Object> source = new HashMap<>();
+    source.put( "c", 2 );
+    source.put( "d", 2 );
+
+    Map<String, Object> result = this.merger.mergeInto( target, source );
+
+    assertSame( target, result );
+    assertEquals( 1, result.get( "a" ) );
+    assertEquals( 2, result.get( "c" ) );
+    assertEquals( 2, result.get( "d" ) );
+  }
+
+  @Test
+  public void mergeIntoMatchesMerge() {
+    Map<String, Object> obj1 = new HashMap<>();
+    obj1.put( "list", createList() );
+    obj1.put( "object", createObject() );
+
+    Map<String, Object> obj2 = new HashMap<>();
+    obj2.put( "list", createList() );
+    obj2.put( "object", createObject() );
+    obj2.put( "other", 1 );
+
+    Map<String, Object> obj3 = new HashMap<>();
+    obj3.put( "list", obj1.get( "list" ) );
+
+    Map<String, Object> merged = this.merger.merge( this.merger.merge( this.merger.merge( new HashMap<>(), obj1 ), obj2 ), obj3 );
+
+    Map<String, Object> mergedInto = new HashMap<>();
+    this.merger.mergeInto( mergedInto, obj1 );
+    this.merger.mergeInto( mergedInto, obj2 );
+    this.merger.mergeInto( mergedInto, obj3 );
+
+    assertEquals( merged, mergedInto );
+    assertEquals( 4, ( (List) mergedInto.get( "list" ) ).size() );
+  }
+
+  @Test
+  public void mergeIntoClonesSourceValues() {
+    Map<String, Object> source = new HashMap<>();
+    source.put( "object", createObject() );
+    source.put( "list", createList() );
+
+    Map<String, Object> target = this.merger.mergeInto( new HashMap<>(), source );
+
+    assertNotSame( source.get( "object" ), target.get( "object" ) );
+    assertNotSame( source.get( "list" ), target.get( "list" ) );
+    assertEquals( source, target );
+  }
+
+  @Test
+  public void mergeIntoKeepsOverlays() {
+    Map<String, Object> base = new HashMap<>();
+    base.put( "a", "a@1" );
+    base.put( "b", "b@1" );
+
+    Map<String, Object> overlay = new OverlayMap<>( base );
+    overlay.put( "b", "b@2" );
+
+    Map<String, Object> moduleMap = new HashMap<>();
+    moduleMap.put( "m@1", overlay );
+    Map<String, Object> source = new HashMap<>();
+    source.put( "map", moduleMap );
+
+    Map<String, Object> other = new HashMap<>();
+    other.put( "c", "c@1" );
+    Map<String, Object> otherModuleMap = new HashMap<>();
+    otherModuleMap.put( "m@1", other );
+    Map<String, Object> otherSource = new HashMap<>();
+    otherSource.put( "map", otherModuleMap );
+
+    Map<String, Object> target = this.merger.mergeInto( new HashMap<>(), source );
+    this.merger.mergeInto( target, otherSource );
+
+    Object merged = ( (Map) target.get( "map" ) ).get( "m@1" );
+    assertTrue( merged instanceof OverlayMap );
+    assertEquals( "a@1", ( (Map) merged ).get( "a" ) );
+    assertEquals( "b@2", ( (Map) merged ).get( "b" ) );
+    assertEquals( "c@1", ( (Map) merged ).get( "c" ) );
+
+    // the source overlay is left as is
+    assertEquals( 2, overlay.size() );
+    assertFalse( overlay.containsKey( "c" ) );
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void mergeIntoObjectsIncompatibleTypes() {
+    Map<String, Object> target = new HashMap<>();
+    target.put( "a", createList() );
+
+    Map<String, Object> source = new HashMap<>();
+    source.put( "a", createObject() );
+
+    this.merger.mergeInto( target, source );
+  }
+
   private List<Object> createList() {
     List<Object> list = new ArrayList<>( 2 );
     list.add( createObject() );
@@ -0,0 +1,74 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModuleIdTrieTest {
+  private ModuleIdTrie trie;
+
+  @Before
+  public void setUp() {
+    Map<String, String> moduleIdsMappings = new HashMap<>();
+    moduleIdsMappings.put( "depA", "depA@1.0/depA" );
+    moduleIdsMappings.put( "depA/hi", "depA@1.0/depA/hi" );
+    moduleIdsMappings.put( "some/module", "pkg@2.0/some/module" );
+
+    this.trie = new ModuleIdTrie( moduleIdsMappings );
+  }
+
+  @Test
+  public void getVersionedModuleIdExactMatch() {
+    assertEquals( "depA@1.0/depA", this.trie.getVersionedModuleId( "depA" ) );
+    assertEquals( "depA@1.0/depA/hi", this.trie.getVersionedModuleId( "depA/hi" ) );
+  }
+
+  @Test
+  public void getVersionedModuleIdLongestPrefix() {
+    assertEquals( "depA@1.0/depA/hi/there", this.trie.getVersionedModuleId( "depA/hi/there" ) );
+    assertEquals( "depA@1.0/depA/hello", this.trie.getVersionedModuleId( "depA/hello" ) );
+    assertEquals( "pkg@2.0/some/module/A", this.trie.getVersionedModuleId( "some/module/A" ) );
+  }
+
+  @Test
+  public void getVersionedModuleIdOnlyMatchesWholeSegments() {
+    assertEquals( "depA@1.0/hi", this.trie.getVersionedModuleId( "depA@1.0/hi" ) );
+    assertEquals( "depAB/hi", this.trie.getVersionedModuleId( "depAB/hi" ) );
+    assertEquals( "some", this.trie.getVersionedModuleId( "some" ) );
+  }
+
+  @Test
+  public void getVersionedModuleIdSkipsPartialSegmentMatches() {
+    // "depA/hi" is the longest string prefix, but only "depA" is segment aligned
+    assertEquals( "depA@1.0/depA/hix", this.trie.getVersionedModuleId( "depA/hix" ) );
+    assertEquals( "depA@1.0/depA/hix/there", this.trie.getVersionedModuleId( "depA/hix/there" ) );
+  }
+
+  @Test
+  public void getVersionedModuleIdUnknown() {
+    assertEquals( "other/module", this.trie.getVersionedModuleId( "other/module" ) );
+  }
+
+  @Test
+  public void getVersionedModuleIdPlugin() {
+    assertEquals( "depA@1.0/depA/hi!pkg@2.0/some/module/A", this.trie.getVersionedModuleId( "depA/hi!some/module/A" ) );
+    assertEquals( "plugin!depA@1.0/depA", this.trie.getVersionedModuleId( "plugin!depA" ) );
+    assertEquals( "depA@1.0/depA!other", this.trie.getVersionedModuleId( "depA!other" ) );
+  }
+}
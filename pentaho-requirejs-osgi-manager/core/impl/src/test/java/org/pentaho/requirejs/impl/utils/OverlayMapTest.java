@@ -0,0 +1,115 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayMapTest {
+  private Map<String, String> base;
+
+  private OverlayMap<String, String> overlayMap;
+
+  @Before
+  public void setUp() {
+    this.base = new HashMap<>();
+    this.base.put( "depA", "depA@1.0" );
+    this.base.put( "depB", "depB@2.0" );
+
+    this.overlayMap = new OverlayMap<>( Collections.unmodifiableMap( this.base ) );
+  }
+
+  @Test
+  public void readsThroughToBase() {
+    assertEquals( this.base, this.overlayMap );
+    assertEquals( 2, this.overlayMap.size() );
+    assertEquals( "depA@1.0", this.overlayMap.get( "depA" ) );
+  }
+
+  @Test
+  public void putAndReplace() {
+    assertNull( this.overlayMap.put( "depC", "depC@3.0" ) );
+    assertEquals( "depA@1.0", this.overlayMap.put( "depA", "depA@1.5" ) );
+
+    assertEquals( 3, this.overlayMap.size() );
+    assertEquals( "depA@1.5", this.overlayMap.get( "depA" ) );
+    assertEquals( "depC@3.0", this.overlayMap.get( "depC" ) );
+
+    Map<String, String> expected = new HashMap<>( this.base );
+    expected.put( "depA", "depA@1.5" );
+    expected.put( "depC", "depC@3.0" );
+    assertEquals( expected, this.overlayMap );
+
+    // the base is left untouched
+    assertEquals( "depA@1.0", this.base.get( "depA" ) );
+    assertEquals( 2, this.base.size() );
+  }
+
+  @Test
+  public void remove() {
+    assertEquals( "depA@1.0", this.overlayMap.remove( "depA" ) );
+    assertNull( this.overlayMap.remove( "depA" ) );
+
+    assertFalse( this.overlayMap.containsKey( "depA" ) );
+    assertEquals( 1, this.overlayMap.size() );
+
+    assertNull( this.overlayMap.put( "depA", "depA@1.5" ) );
+    assertEquals( 2, this.overlayMap.size() );
+
+    assertTrue( this.base.containsKey( "depA" ) );
+  }
+
+  @Test
+  public void iteratorRemoveAndSetValue() {
+    this.overlayMap.put( "depC", "depC@3.0" );
+
+    Iterator<Map.Entry<String, String>> iterator = this.overlayMap.entrySet().iterator();
+    while ( iterator.hasNext() ) {
+      Map.Entry<String, String> entry = iterator.next();
+
+      if ( entry.getKey().equals( "depB" ) ) {
+        iterator.remove();
+      } else {
+        entry.setValue( entry.getValue() + "-x" );
+      }
+    }
+
+    Map<String, String> expected = new HashMap<>();
+    expected.put( "depA", "depA@1.0-x" );
+    expected.put( "depC", "depC@3.0-x" );
+    assertEquals( expected, this.overlayMap );
+
+    assertEquals( 2, this.base.size() );
+  }
+
+  @Test
+  public void clear() {
+    this.overlayMap.put( "depC", "depC@3.0" );
+    this.overlayMap.clear();
+
+    assertTrue( this.overlayMap.isEmpty() );
+    assertFalse( this.overlayMap.entrySet().iterator().hasNext() );
+
+    assertEquals( 2, this.base.size() );
+  }
+}
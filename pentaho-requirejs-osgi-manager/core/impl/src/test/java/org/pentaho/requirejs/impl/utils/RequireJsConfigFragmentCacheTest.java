@@ -0,0 +1,161 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RequireJsConfigFragmentCacheTest {
+  private RequireJsConfigFragmentCache fragmentCache;
+
+  private List<IRequireJsPackageConfiguration> packages;
+
+  private IRequireJsPackageConfiguration mockPackageA;
+  private IRequireJsPackageConfiguration mockPackageB;
+  private IRequireJsPackageConfiguration mockPackageC;
+  private IRequireJsPackageConfiguration mockPackageD;
+
+  @Before
+  public void setUp() {
+    this.fragmentCache = new RequireJsConfigFragmentCache();
+
+    // C -> B -> A, D standalone
+    this.mockPackageA = createMockPackage( "A", "1.0.0", null, null );
+    this.mockPackageB = createMockPackage( "B", "1.0.0", "A", "1.0.0" );
+    this.mockPackageC = createMockPackage( "C", "1.0.0", "B", "^1.0.0" );
+    this.mockPackageD = createMockPackage( "D", "1.0.0", null, null );
+
+    this.packages = new ArrayList<>();
+    this.packages.add( this.mockPackageA );
+    this.packages.add( this.mockPackageB );
+    this.packages.add( this.mockPackageC );
+    this.packages.add( this.mockPackageD );
+  }
+
+  @Test
+  public void getRequireConfigsFirstBuildProcessesAll() {
+    List<Map<String, Object>> requireConfigs = this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    assertEquals( 4, requireConfigs.size() );
+
+    for ( IRequireJsPackageConfiguration mockPackage : this.packages ) {
+      verify( mockPackage, times( 1 ) ).processDependencies( any() );
+      verify( mockPackage, times( 1 ) ).getRequireConfig( anyList() );
+    }
+  }
+
+  @Test
+  public void getRequireConfigsReusesUnchangedFragments() {
+    List<Map<String, Object>> first = this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+    List<Map<String, Object>> second = this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    for ( int i = 0; i < first.size(); i++ ) {
+      assertSame( first.get( i ), second.get( i ) );
+    }
+
+    for ( IRequireJsPackageConfiguration mockPackage : this.packages ) {
+      verify( mockPackage, times( 1 ) ).processDependencies( any() );
+    }
+  }
+
+  @Test
+  public void getRequireConfigsReprocessesChangedPackageAndDependents() {
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    this.fragmentCache.markChanged( this.mockPackageA );
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    verify( this.mockPackageA, times( 2 ) ).processDependencies( any() );
+    verify( this.mockPackageB, times( 2 ) ).processDependencies( any() );
+    verify( this.mockPackageC, times( 2 ) ).processDependencies( any() );
+    verify( this.mockPackageD, times( 1 ) ).processDependencies( any() );
+  }
+
+  @Test
+  public void getRequireConfigsReprocessesPackagesWithChangedResolution() {
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    // a newer B is installed, so C's dependency now resolves to a different package
+    IRequireJsPackageConfiguration mockPackageB2 = createMockPackage( "B", "1.0.5", "A", "1.0.0" );
+    this.packages.add( mockPackageB2 );
+
+    List<Map<String, Object>> requireConfigs = this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    assertEquals( 5, requireConfigs.size() );
+
+    verify( this.mockPackageA, times( 1 ) ).processDependencies( any() );
+    verify( this.mockPackageB, times( 1 ) ).processDependencies( any() );
+    verify( this.mockPackageC, times( 2 ) ).processDependencies( any() );
+    verify( this.mockPackageD, times( 1 ) ).processDependencies( any() );
+    verify( mockPackageB2, times( 1 ) ).processDependencies( any() );
+  }
+
+  @Test
+  public void getRequireConfigsDropsRemovedPackages() {
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    this.packages.remove( this.mockPackageD );
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    // D is processed again once it comes back
+    this.packages.add( this.mockPackageD );
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    verify( this.mockPackageD, times( 2 ) ).processDependencies( any() );
+    verify( this.mockPackageA, times( 1 ) ).processDependencies( any() );
+  }
+
+  @Test
+  public void clearForcesFullRebuild() {
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    this.fragmentCache.clear();
+    this.fragmentCache.getRequireConfigs( this.packages, Collections.emptyList() );
+
+    for ( IRequireJsPackageConfiguration mockPackage : this.packages ) {
+      verify( mockPackage, times( 2 ) ).processDependencies( any() );
+    }
+  }
+
+  private IRequireJsPackageConfiguration createMockPackage( String name, String version, String dependencyName, String dependencyVersion ) {
+    IRequireJsPackageConfiguration mockPackage = mock( IRequireJsPackageConfiguration.class );
+    doReturn( name ).when( mockPackage ).getName();
+    doReturn( version ).when( mockPackage ).getVersion();
+
+    Map<String, String> dependencies = new HashMap<>();
+    if ( dependencyName != null ) {
+      dependencies.put( dependencyName, dependencyVersion );
+    }
+    doReturn( dependencies ).when( mockPackage ).getDependencies();
+
+    doReturn( new HashMap<String, Object>() ).when( mockPackage ).getRequireConfig( anyList() );
+
+    return mockPackage;
+  }
+}
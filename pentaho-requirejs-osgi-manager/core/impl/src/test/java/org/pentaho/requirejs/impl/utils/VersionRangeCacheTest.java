@@ -0,0 +1,81 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class VersionRangeCacheTest {
+  private VersionRangeCache versionRangeCache;
+
+  private Set<String> availableVersions;
+
+  @Before
+  public void setUp() {
+    this.versionRangeCache = new VersionRangeCache();
+
+    this.availableVersions = new HashSet<>( Arrays.asList( "1.0.0", "1.5.0", "2.0.0", "7.1-SNAPSHOT" ) );
+  }
+
+  @Test
+  public void filterVersions() {
+    VersionRangeCache.PackageVersions packageVersions = this.versionRangeCache.getPackageVersions( "A", this.availableVersions );
+
+    assertEquals( Arrays.asList( "1.5.0", "2.0.0" ), packageVersions.filterVersions( ">1.0" ) );
+    assertEquals( Collections.singletonList( "7.1-SNAPSHOT" ), packageVersions.filterVersions( "7.1-SNAPSHOT" ) );
+    assertEquals( Collections.singletonList( "1.5.0" ), packageVersions.filterVersions( "1.0.1" ) );
+    assertEquals( Collections.emptyList(), packageVersions.filterVersions( ">3.0" ) );
+  }
+
+  @Test
+  public void getParsedVersion() {
+    VersionRangeCache.PackageVersions packageVersions = this.versionRangeCache.getPackageVersions( "A", this.availableVersions );
+
+    assertEquals( "1.5.0", packageVersions.getParsedVersion( "1.5.0" ).toString() );
+    assertNull( packageVersions.getParsedVersion( "7.1-SNAPSHOT" ) );
+  }
+
+  @Test
+  public void resolutionsAreMemoizedWhileVersionsAreUnchanged() {
+    List<String> resolved = this.versionRangeCache.getPackageVersions( "A", this.availableVersions ).filterVersions( ">1.0" );
+
+    VersionRangeCache.PackageVersions packageVersions = this.versionRangeCache.getPackageVersions( "A", new HashSet<>( this.availableVersions ) );
+    assertSame( resolved, packageVersions.filterVersions( ">1.0" ) );
+
+    this.availableVersions.add( "2.5.0" );
+
+    packageVersions = this.versionRangeCache.getPackageVersions( "A", this.availableVersions );
+    assertNotSame( resolved, packageVersions.filterVersions( ">1.0" ) );
+    assertEquals( Arrays.asList( "1.5.0", "2.0.0", "2.5.0" ), packageVersions.filterVersions( ">1.0" ) );
+  }
+
+  @Test
+  public void retainPackages() {
+    VersionRangeCache.PackageVersions packageVersions = this.versionRangeCache.getPackageVersions( "A", this.availableVersions );
+
+    this.versionRangeCache.retainPackages( Collections.singletonList( "B" ) );
+
+    assertNotSame( packageVersions, this.versionRangeCache.getPackageVersions( "A", this.availableVersions ) );
+  }
+}
@@ -0,0 +1,93 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.requirejs.impl.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.requirejs.IRequireJsPackageConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+public class WebRootPathIndexTest {
+  private IRequireJsPackageConfiguration packageA;
+  private IRequireJsPackageConfiguration packageAB;
+  private IRequireJsPackageConfiguration packageB;
+
+  private WebRootPathIndex index;
+
+  @Before
+  public void setUp() {
+    this.packageA = createPackageMock( "packageA/1.0" );
+    this.packageAB = createPackageMock( "packageA/1.0/sub" );
+    this.packageB = createPackageMock( "other/packageB/1.5" );
+
+    List<IRequireJsPackageConfiguration> packages = new ArrayList<>();
+    packages.add( createPackageMock( null ) );
+    packages.add( createPackageMock( "" ) );
+    packages.add( this.packageB );
+    packages.add( this.packageA );
+    packages.add( this.packageAB );
+
+    this.index = new WebRootPathIndex( "/base/", packages );
+  }
+
+  @Test
+  public void findPackage() {
+    assertSame( this.packageA, this.index.findPackage( "http://host/base/packageA/1.0/index.html" ) );
+    assertSame( this.packageB, this.index.findPackage( "/base/other/packageB/1.5/index.html" ) );
+  }
+
+  @Test
+  public void findPackageIsCaseInsensitive() {
+    assertSame( this.packageA, this.index.findPackage( "http://host/BASE/packagea/1.0/index.html" ) );
+  }
+
+  @Test
+  public void findPackagePrefersFirstPackage() {
+    // both packageA and packageAB match, but packageA comes first
+    assertSame( this.packageA, this.index.findPackage( "/base/packageA/1.0/sub/index.html" ) );
+  }
+
+  @Test
+  public void findPackageWithOverlappingPrefixes() {
+    // the partial match of "/base/packageA/1.0" must not hide the match starting inside it
+    assertSame( this.packageB, this.index.findPackage( "/base/packageA/1/base/other/packageB/1.5/" ) );
+  }
+
+  @Test
+  public void findPackageUnknown() {
+    assertNull( this.index.findPackage( "/base/packageC/1.0/index.html" ) );
+    assertNull( this.index.findPackage( "/packageA/1.0/index.html" ) );
+    assertNull( this.index.findPackage( "" ) );
+    assertNull( this.index.findPackage( null ) );
+  }
+
+  @Test
+  public void findPackageNoPackages() {
+    assertNull( new WebRootPathIndex( "/base/", Collections.emptyList() ).findPackage( "/base/packageA/1.0/" ) );
+  }
+
+  private static IRequireJsPackageConfiguration createPackageMock( String webRootPath ) {
+    IRequireJsPackageConfiguration requireJsPackage = mock( IRequireJsPackageConfiguration.class );
+    doReturn( webRootPath ).when( requireJsPackage ).getWebRootPath();
+
+    return requireJsPackage;
+  }
+}
@@ -0,0 +1,37 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with allocation profiling (gc profiler) always enabled; any other JMH command line option is
+ * accepted, e.g. {@code java -jar target/benchmarks.jar WebjarsDeploymentBenchmark -p webjar=org.webjars/jquery/2.2.1}.
+ */
+public final class BenchmarkRunner {
+  private BenchmarkRunner() {
+  }
+
+  public static void main( String[] args ) throws Exception {
+    Options options = new OptionsBuilder()
+        .parent( new CommandLineOptions( args ) )
+        .addProfiler( GCProfiler.class )
+        .build();
+
+    new Runner( options ).run();
+  }
+}
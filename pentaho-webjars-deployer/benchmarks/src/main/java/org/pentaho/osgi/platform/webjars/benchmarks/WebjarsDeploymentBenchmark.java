@@ -0,0 +1,174 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pentaho.osgi.platform.webjars.WebjarsTransformCache;
+import org.pentaho.osgi.platform.webjars.WebjarsURLConnection;
+import org.pentaho.osgi.platform.webjars.utils.AmdDefineScanner;
+import org.pentaho.osgi.platform.webjars.utils.RequireJsGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+
+/**
+ * Cost of deploying a webjar, and of the steps that used to dominate it: scanning every javascript source for AMD
+ * defines and exported globals, and reading the pom.
+ * <p>
+ * Webjars are resolved from a maven repository through pax-url, by default the mock repository of the deployer's
+ * tests; point it at a local repository to measure real webjars, e.g.
+ * {@code java -jar target/benchmarks.jar -p repository=$HOME/.m2/repository -p webjar=org.webjars/angularjs/1.8.2}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class WebjarsDeploymentBenchmark {
+  @Param( { "../src/test/resources/mockRepo" } )
+  public String repository;
+
+  /**
+   * Maven coordinates (group/artifact/version) of the webjar.
+   */
+  @Param( { "org.webjars/jquery/2.2.1", "org.webjars/smart-table/2.0.3-1", "org.webjars/angular-dateparser/1.0.9",
+      "org.webjars.npm/asap/2.0.3" } )
+  public String webjar;
+
+  @Param( { "true" } )
+  public boolean automaticNonAmdShimConfig;
+
+  private URL url;
+  private List<byte[]> sources;
+  private byte[] pom;
+
+  private File cacheDirectory;
+  private WebjarsTransformCache transformCache;
+
+  @Setup( Level.Trial )
+  public void setUp() throws IOException {
+    String repositoryUrl = new File( repository ).toURI().toURL().toString();
+    System.setProperty( "java.protocol.handler.pkgs", "org.ops4j.pax.url" );
+    System.setProperty( "org.ops4j.pax.url.mvn.repositories", repositoryUrl + "@snapshots@id=benchmark-repo" );
+    System.setProperty( "org.ops4j.pax.url.mvn.localRepository", repositoryUrl );
+    System.setProperty( "org.ops4j.pax.url.mvn.proxySupport", "false" );
+
+    url = new URL( "mvn:" + webjar );
+
+    sources = new ArrayList<>();
+    try ( JarInputStream jarInputStream = new JarInputStream( url.openStream() ) ) {
+      JarEntry entry;
+      while ( ( entry = jarInputStream.getNextJarEntry() ) != null ) {
+        if ( entry.getName().endsWith( ".js" ) ) {
+          sources.add( IOUtils.toByteArray( jarInputStream ) );
+        } else if ( entry.getName().endsWith( "/pom.xml" ) ) {
+          pom = IOUtils.toByteArray( jarInputStream );
+        }
+      }
+    }
+
+    if ( pom == null ) {
+      throw new IllegalStateException( webjar + " has no pom.xml" );
+    }
+
+    cacheDirectory = Files.createTempDirectory( "webjars-benchmark" ).toFile();
+    transformCache = new WebjarsTransformCache( cacheDirectory, Long.MAX_VALUE );
+
+    // populate the transform cache, the cached benchmark measures hits only
+    deploy( transformCache );
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory( cacheDirectory );
+  }
+
+  /**
+   * Scans the javascript sources of the webjar, as done when its package isn't known to be AMD.
+   */
+  @Benchmark
+  public void scanSources( Blackhole blackhole ) {
+    for ( byte[] source : sources ) {
+      List<String> exports = new ArrayList<>();
+
+      AmdDefineScanner scanner = new AmdDefineScanner( exports );
+      scanner.write( source, 0, source.length );
+      scanner.close();
+
+      blackhole.consume( scanner.isAmdDefineFound() );
+      blackhole.consume( exports );
+    }
+  }
+
+  /**
+   * Reads the requirejs configuration from the pom, falling back to only its version like bower webjars do.
+   */
+  @Benchmark
+  public Object readPom() throws Exception {
+    try {
+      return RequireJsGenerator.parsePom( new ByteArrayInputStream( pom ) );
+    } catch ( Exception ignored ) {
+      return RequireJsGenerator.getWebjarVersionFromPom( new ByteArrayInputStream( pom ) );
+    }
+  }
+
+  /**
+   * Transforms the webjar into a bundle.
+   */
+  @Benchmark
+  public long deploy() throws IOException {
+    return deploy( null );
+  }
+
+  /**
+   * Serves the bundle of the webjar from the transform cache.
+   */
+  @Benchmark
+  public long deployCached() throws IOException {
+    return deploy( transformCache );
+  }
+
+  private long deploy( WebjarsTransformCache cache ) throws IOException {
+    WebjarsURLConnection connection = new WebjarsURLConnection( url, automaticNonAmdShimConfig, cache );
+    connection.connect();
+
+    try ( InputStream inputStream = connection.getInputStream() ) {
+      return IOUtils.consume( inputStream );
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * On-disk cache of transformed webjars, so the same webjar isn't transformed again each time its
+ * pentaho-webjars url is resolved (restarts, feature re-provisioning, ...).
+ * <p>
+ * Entries are addressed by the SHA-256 of the source jar together with everything else that changes the
+ * generated bundle: the transformer version, the webjar url and the content of its overrides.json.
+ * New entries are written to a temporary file and atomically moved into place, so concurrent readers never
+ * see a partial bundle. Reading an entry refreshes its modification time, which is used to evict the least
+ * recently used entries once the cache grows above its maximum size.
+ */
+public class WebjarsTransformCache {
+  private static final String ENTRY_SUFFIX = ".jar";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final int BUFFER_SIZE = 8192;
+
+  // temporary files older than this were left behind by an interrupted transformation
+  private static final long STALE_TEMP_FILE_AGE = 60 * 60 * 1000L;
+
+  private final Logger logger = LoggerFactory.getLogger( getClass() );
+
+  private final Path directory;
+  private final long maxSize;
+
+  public WebjarsTransformCache( File directory, long maxSize ) {
+    this.directory = directory.toPath();
+    this.maxSize = maxSize;
+  }
+
+  public File getDirectory() {
+    return directory.toFile();
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @param source the source webjar content
+   * @param overridesUrl the webjar's overrides.json, if there is one
+   * @param discriminators anything else the transformed bundle depends on
+   *
+   * @return the key of the transformed bundle
+   */
+  public String getKey( byte[] source, URL overridesUrl, String... discriminators ) throws IOException {
+    return getKey( new ByteArrayInputStream( source ), overridesUrl, discriminators );
+  }
+
+  /**
+   * @param source the source webjar stream, which is read to the end but not closed
+   * @param overridesUrl the webjar's overrides.json, if there is one
+   * @param discriminators anything else the transformed bundle depends on
+   *
+   * @return the key of the transformed bundle
+   */
+  public String getKey( InputStream source, URL overridesUrl, String... discriminators ) throws IOException {
+    MessageDigest digest = newDigest();
+
+    for ( String discriminator : discriminators ) {
+      digest.update( String.valueOf( discriminator ).getBytes( StandardCharsets.UTF_8 ) );
+      digest.update( (byte) 0 );
+    }
+
+    if ( overridesUrl != null ) {
+      try ( InputStream overrides = overridesUrl.openStream() ) {
+        digest.update( IOUtils.toByteArray( overrides ) );
+      }
+    }
+    digest.update( (byte) 0 );
+
+    MessageDigest sourceDigest = newDigest();
+    byte[] buffer = new byte[ BUFFER_SIZE ];
+    int read;
+    while ( ( read = source.read( buffer ) ) != -1 ) {
+      sourceDigest.update( buffer, 0, read );
+    }
+    digest.update( sourceDigest.digest() );
+
+    return toHex( digest.digest() );
+  }
+
+  /**
+   * @return the cached bundle stream, or null if it isn't cached
+   */
+  public InputStream get( String key ) {
+    Path entry = directory.resolve( key + ENTRY_SUFFIX );
+
+    try {
+      InputStream inputStream = Files.newInputStream( entry );
+
+      try {
+        Files.setLastModifiedTime( entry, FileTime.fromMillis( System.currentTimeMillis() ) );
+      } catch ( IOException ignored ) {
+        // only affects the eviction order
+      }
+
+      return inputStream;
+    } catch ( NoSuchFileException e ) {
+      return null;
+    } catch ( IOException e ) {
+      logger.warn( "Error reading cached webjar " + entry, e );
+
+      return null;
+    }
+  }
+
+  /**
+   * @return a new temporary file in the cache directory, to be filled and then passed to {@link #put}
+   */
+  public Path createTempFile() throws IOException {
+    Files.createDirectories( directory );
+
+    return Files.createTempFile( directory, "webjar", TEMP_SUFFIX );
+  }
+
+  /**
+   * Moves a complete transformed bundle into the cache, evicting the least recently used entries if needed.
+   */
+  public void put( String key, Path tempFile ) throws IOException {
+    Path entry = directory.resolve( key + ENTRY_SUFFIX );
+
+    try {
+      Files.move( tempFile, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+    } catch ( AtomicMoveNotSupportedException e ) {
+      Files.move( tempFile, entry, StandardCopyOption.REPLACE_EXISTING );
+    }
+
+    evict();
+  }
+
+  void evict() {
+    List<Path> entries = new ArrayList<>();
+    long size = 0;
+
+    try ( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, "*" + ENTRY_SUFFIX ) ) {
+      for ( Path entry : stream ) {
+        entries.add( entry );
+        size += Files.size( entry );
+      }
+    } catch ( IOException e ) {
+      logger.warn( "Error listing the webjars cache " + directory, e );
+
+      return;
+    }
+
+    deleteStaleTempFiles();
+
+    if ( size <= maxSize ) {
+      return;
+    }
+
+    entries.sort( Comparator.comparingLong( WebjarsTransformCache::lastModified ) );
+
+    for ( Path entry : entries ) {
+      if ( size <= maxSize ) {
+        break;
+      }
+
+      try {
+        long entrySize = Files.size( entry );
+        Files.delete( entry );
+        size -= entrySize;
+      } catch ( IOException e ) {
+        logger.debug( "Could not evict cached webjar " + entry, e );
+      }
+    }
+  }
+
+  private void deleteStaleTempFiles() {
+    long staleBefore = System.currentTimeMillis() - STALE_TEMP_FILE_AGE;
+
+    try ( DirectoryStream<Path> stream = Files.newDirectoryStream( directory, "*" + TEMP_SUFFIX ) ) {
+      for ( Path tempFile : stream ) {
+        if ( lastModified( tempFile ) < staleBefore ) {
+          Files.deleteIfExists( tempFile );
+        }
+      }
+    } catch ( IOException e ) {
+      logger.debug( "Could not delete stale temporary files from " + directory, e );
+    }
+  }
+
+  private static long lastModified( Path entry ) {
+    try {
+      return Files.getLastModifiedTime( entry ).toMillis();
+    } catch ( IOException e ) {
+      return 0;
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance( "SHA-256" );
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private static String toHex( byte[] bytes ) {
+    StringBuilder hex = new StringBuilder( bytes.length * 2 );
+    for ( byte b : bytes ) {
+      hex.append( Character.forDigit( ( b >> 4 ) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+    }
+
+    return hex.toString();
+  }
+}
@@ -12,18 +12,15 @@
 
 package org.pentaho.osgi.platform.webjars;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.osgi.framework.Constants;
+import org.pentaho.osgi.platform.webjars.utils.AmdDefineScanner;
 import org.pentaho.osgi.platform.webjars.utils.RequireJsGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -67,14 +64,22 @@ public class WebjarsURLConnection extends URLConnection {
 
   private final boolean automaticNonAmdShimConfigEnabled;
 
+  private final WebjarsTransformCache transformCache;
+
   public WebjarsURLConnection( URL url ) {
     this( url, false );
   }
 
   public WebjarsURLConnection( URL url, boolean automaticNonAmdShimConfigEnabled ) {
+    this( url, automaticNonAmdShimConfigEnabled, null );
+  }
+
+  public WebjarsURLConnection( URL url, boolean automaticNonAmdShimConfigEnabled,
+                               WebjarsTransformCache transformCache ) {
     super( url );
 
     this.automaticNonAmdShimConfigEnabled = automaticNonAmdShimConfigEnabled;
+    this.transformCache = transformCache;
   }
 
   @Override
@@ -92,7 +97,8 @@ public class WebjarsURLConnection extends URLConnection {
       urlConnection.connect();
       final InputStream originalInputStream = urlConnection.getInputStream();
 
-      transform_thread = EXECUTOR.submit( new WebjarsTransformer( url, originalInputStream, pipedOutputStream, this.automaticNonAmdShimConfigEnabled ) );
+      transform_thread = EXECUTOR.submit( new WebjarsTransformer( url, originalInputStream, pipedOutputStream,
+          this.automaticNonAmdShimConfigEnabled, this.transformCache ) );
 
       return pipedInputStream;
     } catch ( Exception e ) {
@@ -106,6 +112,9 @@ public class WebjarsURLConnection extends URLConnection {
     private static final String DEBUG_MESSAGE_FAILED_WRITING =
         "Problem transfering Jar content, probably JarOutputStream was already closed.";
 
+    // bump whenever a change to the transformation alters the generated bundles, so cached ones aren't reused
+    private static final String TRANSFORMER_VERSION = "2";
+
     private static final String MANIFEST_MF = "MANIFEST.MF";
     private static final String PENTAHO_RJS_LOCATION = "META-INF/js/require.json";
 
@@ -138,6 +147,8 @@ public class WebjarsURLConnection extends URLConnection {
 
     private final boolean automaticNonAmdShimConfigEnabled;
 
+    private final WebjarsTransformCache transformCache;
+
     //region transformation state
 
     /* artifact information */
@@ -166,25 +177,27 @@ public class WebjarsURLConnection extends URLConnection {
 
     private String relativeResourcesPath;
 
-    private Path absoluteTempPath;
-
-    private boolean temporarySourceFileIsNeeded;
-
     //endregion
 
-    WebjarsTransformer( URL url, InputStream inputStream, PipedOutputStream outputStream, boolean automaticNonAmdShimConfigEnabled ) {
+    WebjarsTransformer( URL url, InputStream inputStream, PipedOutputStream outputStream,
+                        boolean automaticNonAmdShimConfigEnabled, WebjarsTransformCache transformCache ) {
       this.url = url;
 
       this.inputStream = inputStream;
       this.outputStream = outputStream;
 
       this.automaticNonAmdShimConfigEnabled = automaticNonAmdShimConfigEnabled;
+      this.transformCache = transformCache;
     }
 
     @Override
     public Void call() throws Exception {
       try {
-        this.transform();
+        if ( this.transformCache != null ) {
+          this.transformCached();
+        } else {
+          this.transform( this.inputStream, this.outputStream );
+        }
       } catch ( Exception e ) {
         logger.error( this.url.toString() + ": Error Transforming zip", e );
 
@@ -196,15 +209,79 @@ public class WebjarsURLConnection extends URLConnection {
       return null;
     }
 
-    private void transform() throws IOException {
-      JarInputStream jarInputStream = new JarInputStream( inputStream );
+    private void transformCached() throws IOException {
+      Path sourceFile;
+      try {
+        sourceFile = transformCache.createTempFile();
+      } catch ( IOException e ) {
+        logger.warn( this.url + ": unable to write to the transform cache - " + e.getMessage() );
+
+        this.transform( this.inputStream, this.outputStream );
+        return;
+      }
+
+      try {
+        RequireJsGenerator.ArtifactInfo sourceArtifactInfo = new RequireJsGenerator.ArtifactInfo( this.url );
+        URL overridesUrl = RequireJsGenerator.getPackageOverridesUrl( sourceArtifactInfo.getGroup(),
+            sourceArtifactInfo.getArtifactId(), sourceArtifactInfo.getVersion() );
+
+        // the source is hashed while it is spooled to disk, instead of being held in memory
+        String key;
+        try ( InputStream source = new TeeInputStream( this.inputStream, Files.newOutputStream( sourceFile ), true ) ) {
+          key = transformCache.getKey( source, overridesUrl,
+              TRANSFORMER_VERSION, String.valueOf( this.automaticNonAmdShimConfigEnabled ), this.url.toString() );
+        }
+
+        InputStream cachedInputStream = transformCache.get( key );
+        if ( cachedInputStream != null ) {
+          logger.debug( this.url + ": using cached transformation " + key );
+
+          try ( InputStream cached = cachedInputStream; OutputStream output = this.outputStream ) {
+            IOUtils.copy( cached, output );
+          } catch ( IOException e ) {
+            logger.debug( this.url + ": Pipe is closed, no need to continue." );
+          }
+
+          return;
+        }
+
+        Path tempFile = transformCache.createTempFile();
+        try {
+          boolean completed;
+          try ( CachingOutputStream cachingOutputStream =
+                    new CachingOutputStream( Files.newOutputStream( tempFile ), this.outputStream ) ) {
+            completed = this.transform( Files.newInputStream( sourceFile ), cachingOutputStream );
+          }
+
+          if ( completed ) {
+            try {
+              transformCache.put( key, tempFile );
+            } catch ( IOException e ) {
+              logger.warn( this.url + ": unable to cache the transformed webjar - " + e.getMessage() );
+            }
+          }
+        } finally {
+          Files.deleteIfExists( tempFile );
+        }
+      } finally {
+        Files.deleteIfExists( sourceFile );
+      }
+    }
+
+    /**
+     * @return true if the whole bundle was written to the target stream
+     */
+    private boolean transform( InputStream source, OutputStream target ) throws IOException {
+      JarInputStream jarInputStream = new JarInputStream( source );
+
+      boolean completed = false;
 
       init();
 
       try {
         extractArtifactInfo( this.url );
 
-        this.jarOutputStream = new JarOutputStream( outputStream, getManifest( artifactInfo, jarInputStream ) );
+        this.jarOutputStream = new JarOutputStream( target, getManifest( artifactInfo, jarInputStream ) );
 
         Map<String, Object> overrides = RequireJsGenerator.getPackageOverrides( artifactInfo.getGroup(), artifactInfo.getArtifactId(), artifactInfo.getVersion() );
 
@@ -237,20 +314,14 @@ public class WebjarsURLConnection extends URLConnection {
           }
 
           if ( !entry.isDirectory() ) {
-            File temporarySourceFile = null;
-            BufferedOutputStream temporarySourceFileOutputStream = null;
+            AmdDefineScanner amdDefineScanner = null;
 
             String pre = "";
             String pos = "";
 
-            if( this.temporarySourceFileIsNeeded ) {
-              // only save to the temp folder resources from the package's source folder
-              temporarySourceFile = new File( absoluteTempPath.toAbsolutePath() + File.separator + FilenameUtils.separatorsToSystem( name ) );
-
-              //noinspection ResultOfMethodCallIgnored
-              temporarySourceFile.getParentFile().mkdirs();
-
-              temporarySourceFileOutputStream = new BufferedOutputStream( new FileOutputStream( temporarySourceFile ) );
+            if ( !this.isAmdPackage && isJsFile( name ) ) {
+              // look for the AMD define while the file is copied, no need to read it a second time
+              amdDefineScanner = new AmdDefineScanner( exportedGlobals );
             }
 
             String fileRelativePath = name.substring( relativeResourcesPath.length() );
@@ -265,28 +336,26 @@ public class WebjarsURLConnection extends URLConnection {
             jarOutputStream.putNextEntry( zipEntry );
 
             if ( pre.length() > 0 ) {
-              this.writeToOutput( temporarySourceFileOutputStream, (pre + "\n").getBytes() );
+              this.writeToOutput( amdDefineScanner, (pre + "\n").getBytes() );
             }
 
             byte[] bytes = new byte[ BYTES_BUFFER_SIZE ];
             int read;
             while ( ( read = jarInputStream.read( bytes ) ) != -1 ) {
-              this.writeToOutput( temporarySourceFileOutputStream, bytes, read );
+              this.writeToOutput( amdDefineScanner, bytes, read );
             }
 
             if ( pos.length() > 0 ) {
-              this.writeToOutput( temporarySourceFileOutputStream, ("\n" + pos + "\n").getBytes() );
+              this.writeToOutput( amdDefineScanner, ("\n" + pos + "\n").getBytes() );
             }
 
             jarOutputStream.closeEntry();
             // endregion
 
-            if( this.temporarySourceFileIsNeeded ) {
-              temporarySourceFileOutputStream.close();
-            }
+            if ( amdDefineScanner != null ) {
+              amdDefineScanner.close();
 
-            if ( !this.isAmdPackage && isJsFile( name ) && RequireJsGenerator.findAmdDefine( new FileInputStream( temporarySourceFile ), exportedGlobals ) ) {
-              this.isAmdPackage = true;
+              this.isAmdPackage = amdDefineScanner.isAmdDefineFound();
             }
 
             packageHasContent = true;
@@ -331,31 +400,25 @@ public class WebjarsURLConnection extends URLConnection {
         try {
           jarOutputStream.closeEntry();
 
-          outputStream.flush();
+          target.flush();
 
           jarOutputStream.close();
+
+          completed = true;
         } catch ( IOException ioexception ) {
           logger.debug( webjarUrl + ": " + DEBUG_MESSAGE_FAILED_WRITING, ioexception );
         }
       } catch ( IOException e ) {
         logger.debug( webjarUrl + ": Pipe is closed, no need to continue." );
       } finally {
-        if ( this.absoluteTempPath != null ) {
-          try {
-            FileUtils.deleteDirectory( absoluteTempPath.toFile() );
-          } catch ( IOException ignored ) {
-            // ignored
-          } finally {
-            this.absoluteTempPath = null;
-          }
-        }
-
         try {
           jarInputStream.close();
         } catch ( IOException ioexception ) {
           logger.debug( webjarUrl + ": Tried to close JarInputStream, but it was already closed.", ioexception );
         }
       }
+
+      return completed;
     }
 
     @SuppressWarnings( "unchecked" )
@@ -368,17 +431,17 @@ public class WebjarsURLConnection extends URLConnection {
       return wrap == null ? Collections.emptyMap() : wrap;
     }
 
-    private void writeToOutput( BufferedOutputStream temporarySourceFileOutputStream, byte[] bytes, int read ) throws IOException {
-      if ( this.temporarySourceFileIsNeeded ) {
-        // also output to the temp source file
-        temporarySourceFileOutputStream.write( bytes, 0, read );
+    private void writeToOutput( OutputStream amdDefineScanner, byte[] bytes, int read ) throws IOException {
+      if ( amdDefineScanner != null ) {
+        // also feed the AMD define scanner
+        amdDefineScanner.write( bytes, 0, read );
       }
 
       jarOutputStream.write( bytes, 0, read );
     }
 
-    private void writeToOutput( BufferedOutputStream temporarySourceFileOutputStream, byte[] bytes ) throws IOException {
-      this.writeToOutput( temporarySourceFileOutputStream, bytes, bytes.length );
+    private void writeToOutput( OutputStream amdDefineScanner, byte[] bytes ) throws IOException {
+      this.writeToOutput( amdDefineScanner, bytes, bytes.length );
     }
 
 
@@ -416,7 +479,7 @@ public class WebjarsURLConnection extends URLConnection {
       return false;
     }
 
-    private void init() throws IOException {
+    private void init() {
       this.wasReadFromPom = false;
       this.requireConfig = null;
 
@@ -431,12 +494,6 @@ public class WebjarsURLConnection extends URLConnection {
       this.packageNameFromResourcesPath = null;
       this.packageVersionFromResourcesPath = null;
       this.relativeResourcesPath = null;
-
-      this.temporarySourceFileIsNeeded = this.automaticNonAmdShimConfigEnabled;
-
-      if ( this.temporarySourceFileIsNeeded ) {
-        this.absoluteTempPath = Files.createTempDirectory( "WebjarsURLConnection" );
-      }
     }
 
     private void extractArtifactInfo( URL url ) {
@@ -584,4 +641,72 @@ public class WebjarsURLConnection extends URLConnection {
     }
 
   }
+
+  /**
+   * Writes the transformed bundle to the cache file while also passing it on to the connection's pipe.
+   * The pipe being closed by its reader doesn't interrupt the cache file, so the transformation can still
+   * be completed and cached.
+   */
+  private static class CachingOutputStream extends FilterOutputStream {
+    private final OutputStream mirror;
+    private boolean mirrorClosed;
+
+    CachingOutputStream( OutputStream out, OutputStream mirror ) {
+      super( out );
+
+      this.mirror = mirror;
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+      out.write( b );
+
+      if ( !mirrorClosed ) {
+        try {
+          mirror.write( b );
+        } catch ( IOException e ) {
+          mirrorClosed = true;
+        }
+      }
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+      out.write( b, off, len );
+
+      if ( !mirrorClosed ) {
+        try {
+          mirror.write( b, off, len );
+        } catch ( IOException e ) {
+          mirrorClosed = true;
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+
+      if ( !mirrorClosed ) {
+        try {
+          mirror.flush();
+        } catch ( IOException e ) {
+          mirrorClosed = true;
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.close();
+      } finally {
+        try {
+          mirror.close();
+        } catch ( IOException ignored ) {
+          // ignored
+        }
+      }
+    }
+  }
 }
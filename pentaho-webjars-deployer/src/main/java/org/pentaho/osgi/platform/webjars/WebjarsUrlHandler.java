@@ -14,6 +14,7 @@ package org.pentaho.osgi.platform.webjars;
 
 import org.osgi.service.url.AbstractURLStreamHandlerService;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -22,13 +23,39 @@ import java.net.URLConnection;
  * Created by nbaker on 9/6/14.
  */
 public class WebjarsUrlHandler extends AbstractURLStreamHandlerService {
+  private static final String TRANSFORM_CACHE_FOLDER = "pentaho-webjars";
+
   private final boolean automaticNonAmdShimConfigEnabled;
 
+  private final WebjarsTransformCache transformCache;
+
   public WebjarsUrlHandler( boolean automaticNonAmdShimConfigEnabled ) {
+    this( automaticNonAmdShimConfigEnabled, 0 );
+  }
+
+  /**
+   * @param transformCacheMaxSize maximum size, in megabytes, of the cache of transformed webjars kept under
+   *                              ${karaf.data}; 0 disables the cache
+   */
+  public WebjarsUrlHandler( boolean automaticNonAmdShimConfigEnabled, long transformCacheMaxSize ) {
     this.automaticNonAmdShimConfigEnabled = automaticNonAmdShimConfigEnabled;
+
+    if ( transformCacheMaxSize > 0 ) {
+      File dataFolder = new File( System.getProperty( "karaf.data", System.getProperty( "java.io.tmpdir" ) ) );
+
+      this.transformCache = new WebjarsTransformCache( new File( dataFolder, TRANSFORM_CACHE_FOLDER ),
+          transformCacheMaxSize * 1024 * 1024 );
+    } else {
+      this.transformCache = null;
+    }
+  }
+
+  WebjarsTransformCache getTransformCache() {
+    return transformCache;
   }
 
   @Override public URLConnection openConnection( URL url ) throws IOException {
-    return new WebjarsURLConnection( new URL( url.getPath() ), this.automaticNonAmdShimConfigEnabled );
+    return new WebjarsURLConnection( new URL( url.getPath() ), this.automaticNonAmdShimConfigEnabled,
+        this.transformCache );
   }
 }
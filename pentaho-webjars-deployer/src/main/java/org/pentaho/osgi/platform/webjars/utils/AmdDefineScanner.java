@@ -0,0 +1,503 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Looks for an AMD define call or for assignments to global variables in javascript source as the bytes are
+ * written to it, so a file can be scanned while it is being copied somewhere else.
+ * <p>
+ * The source is tokenized in a single pass, skipping comments, strings, template and regular expression literals,
+ * and the tokens drive two small automata:
+ * <ul>
+ *   <li>AMD - {@code define( ["id",] [["dep", ...],] function|{|factory )} or the UMD {@code define.amd} check;</li>
+ *   <li>globals - {@code window.name = ...} or {@code exports.name = ...}, ignoring event handlers and the
+ *   browser's own globals.</li>
+ * </ul>
+ * Scanning stops as soon as a define is found.
+ */
+public class AmdDefineScanner extends OutputStream {
+  private static final Set<String> JS_KNOWN_GLOBALS;
+
+  static {
+    JS_KNOWN_GLOBALS = new HashSet<>();
+    JS_KNOWN_GLOBALS.add( "applicationCache" );
+    JS_KNOWN_GLOBALS.add( "caches" );
+    JS_KNOWN_GLOBALS.add( "closed" );
+    JS_KNOWN_GLOBALS.add( "Components" );
+    JS_KNOWN_GLOBALS.add( "console" );
+    JS_KNOWN_GLOBALS.add( "content" );
+    JS_KNOWN_GLOBALS.add( "_content" );
+    JS_KNOWN_GLOBALS.add( "controllers" );
+    JS_KNOWN_GLOBALS.add( "crypto" );
+    JS_KNOWN_GLOBALS.add( "defaultStatus" );
+    JS_KNOWN_GLOBALS.add( "devicePixelRatio" );
+    JS_KNOWN_GLOBALS.add( "dialogArguments" );
+    JS_KNOWN_GLOBALS.add( "directories" );
+    JS_KNOWN_GLOBALS.add( "document" );
+    JS_KNOWN_GLOBALS.add( "frameElement" );
+    JS_KNOWN_GLOBALS.add( "frames" );
+    JS_KNOWN_GLOBALS.add( "fullScreen" );
+    JS_KNOWN_GLOBALS.add( "globalStorage" );
+    JS_KNOWN_GLOBALS.add( "history" );
+    JS_KNOWN_GLOBALS.add( "innerHeight" );
+    JS_KNOWN_GLOBALS.add( "innerWidth" );
+    JS_KNOWN_GLOBALS.add( "length" );
+    JS_KNOWN_GLOBALS.add( "location" );
+    JS_KNOWN_GLOBALS.add( "locationbar" );
+    JS_KNOWN_GLOBALS.add( "localStorage" );
+    JS_KNOWN_GLOBALS.add( "menubar" );
+    JS_KNOWN_GLOBALS.add( "messageManager" );
+    JS_KNOWN_GLOBALS.add( "name" );
+    JS_KNOWN_GLOBALS.add( "navigator" );
+    JS_KNOWN_GLOBALS.add( "opener" );
+    JS_KNOWN_GLOBALS.add( "outerHeight" );
+    JS_KNOWN_GLOBALS.add( "outerWidth" );
+    JS_KNOWN_GLOBALS.add( "pageXOffset" );
+    JS_KNOWN_GLOBALS.add( "pageYOffset" );
+    JS_KNOWN_GLOBALS.add( "sessionStorage" );
+    JS_KNOWN_GLOBALS.add( "parent" );
+    JS_KNOWN_GLOBALS.add( "performance" );
+    JS_KNOWN_GLOBALS.add( "personalbar" );
+    JS_KNOWN_GLOBALS.add( "pkcs11" );
+    JS_KNOWN_GLOBALS.add( "returnValue" );
+    JS_KNOWN_GLOBALS.add( "screen" );
+    JS_KNOWN_GLOBALS.add( "screenX" );
+    JS_KNOWN_GLOBALS.add( "screenY" );
+    JS_KNOWN_GLOBALS.add( "scrollbars" );
+    JS_KNOWN_GLOBALS.add( "scrollMaxX" );
+    JS_KNOWN_GLOBALS.add( "scrollMaxY" );
+    JS_KNOWN_GLOBALS.add( "scrollX" );
+    JS_KNOWN_GLOBALS.add( "scrollY" );
+    JS_KNOWN_GLOBALS.add( "self" );
+    JS_KNOWN_GLOBALS.add( "sessionStorage" );
+    JS_KNOWN_GLOBALS.add( "sidebar" );
+    JS_KNOWN_GLOBALS.add( "status" );
+    JS_KNOWN_GLOBALS.add( "statusbar" );
+    JS_KNOWN_GLOBALS.add( "toolbar" );
+    JS_KNOWN_GLOBALS.add( "top" );
+    JS_KNOWN_GLOBALS.add( "window" );
+  }
+
+  // keywords after which a slash starts a regular expression instead of being a division
+  private static final Set<String> REGEX_PRECEDING_KEYWORDS = new HashSet<>( Arrays.asList(
+      "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else",
+      "yield", "await" ) );
+
+  private static final int MAX_TOKEN_LENGTH = 1024;
+
+  //region lexer states
+  private static final int CODE = 0;
+  private static final int IDENTIFIER = 1;
+  private static final int OPERATOR = 2;
+  private static final int SLASH = 3;
+  private static final int LINE_COMMENT = 4;
+  private static final int BLOCK_COMMENT = 5;
+  private static final int BLOCK_COMMENT_STAR = 6;
+  private static final int STRING = 7;
+  private static final int STRING_ESCAPE = 8;
+  private static final int REGEX = 9;
+  private static final int REGEX_ESCAPE = 10;
+  private static final int REGEX_CLASS = 11;
+  private static final int REGEX_CLASS_ESCAPE = 12;
+  //endregion
+
+  //region token kinds
+  private static final int TOKEN_IDENTIFIER = 1;
+  private static final int TOKEN_NUMBER = 2;
+  private static final int TOKEN_STRING = 3;
+  private static final int TOKEN_REGEX = 4;
+  private static final int TOKEN_PUNCTUATOR = 5;
+  private static final int TOKEN_OPERATOR = 6;
+  //endregion
+
+  //region define automaton states
+  private static final int DEFINE_NONE = 0;
+  private static final int DEFINE_NAME = 1;
+  private static final int DEFINE_AMD_PROPERTY = 2;
+  private static final int DEFINE_ARGUMENT = 3;
+  private static final int DEFINE_AFTER_ID = 4;
+  private static final int DEFINE_DEPENDENCY = 5;
+  private static final int DEFINE_AFTER_DEPENDENCY = 6;
+  private static final int DEFINE_AFTER_DEPENDENCIES = 7;
+  //endregion
+
+  //region global automaton states
+  private static final int GLOBAL_NONE = 0;
+  private static final int GLOBAL_ROOT = 1;
+  private static final int GLOBAL_SEGMENT = 2;
+  private static final int GLOBAL_AFTER_SEGMENT = 3;
+  private static final int GLOBAL_VALUE = 4;
+  //endregion
+
+  private final List<String> exports;
+
+  private boolean amdDefineFound;
+
+  /* lexer */
+  private int state = CODE;
+  private int quote;
+  private final byte[] token = new byte[ MAX_TOKEN_LENGTH ];
+  private int tokenLength;
+
+  /* last token, to tell regular expressions from divisions and member accesses from plain names */
+  private int lastKind;
+  private String lastText;
+
+  /* define automaton */
+  private int defineState = DEFINE_NONE;
+  private boolean defineHasId;
+  private boolean defineHasDependencies;
+
+  /* global automaton */
+  private int globalState = GLOBAL_NONE;
+  private final StringBuilder globalPath = new StringBuilder();
+
+  public AmdDefineScanner( List<String> exports ) {
+    this.exports = exports;
+  }
+
+  public boolean isAmdDefineFound() {
+    return amdDefineFound;
+  }
+
+  @Override
+  public void write( int b ) {
+    if ( !amdDefineFound ) {
+      scan( b & 0xFF );
+    }
+  }
+
+  @Override
+  public void write( byte[] b, int off, int len ) {
+    for ( int i = off, end = off + len; i < end && !amdDefineFound; i++ ) {
+      scan( b[ i ] & 0xFF );
+    }
+  }
+
+  /**
+   * Handles whatever token is still pending at the end of the source.
+   */
+  @Override
+  public void close() {
+    if ( !amdDefineFound ) {
+      scan( '\n' );
+    }
+  }
+
+  //region lexer
+  private void scan( int c ) {
+    switch ( state ) {
+      case IDENTIFIER:
+        if ( isIdentifierPart( c ) ) {
+          append( c );
+          return;
+        }
+        endIdentifier();
+        break;
+      case OPERATOR:
+        if ( isOperator( c ) ) {
+          append( c );
+          return;
+        }
+        emit( TOKEN_OPERATOR, tokenText() );
+        break;
+      case SLASH:
+        if ( c == '/' ) {
+          state = LINE_COMMENT;
+        } else if ( c == '*' ) {
+          state = BLOCK_COMMENT;
+        } else if ( isRegexAllowed() ) {
+          state = REGEX;
+          scanRegex( c );
+        } else {
+          emit( TOKEN_OPERATOR, "/" );
+          scanCode( c );
+        }
+        return;
+      case LINE_COMMENT:
+        if ( c == '\n' || c == '\r' ) {
+          state = CODE;
+        }
+        return;
+      case BLOCK_COMMENT:
+        if ( c == '*' ) {
+          state = BLOCK_COMMENT_STAR;
+        }
+        return;
+      case BLOCK_COMMENT_STAR:
+        state = c == '/' ? CODE : c == '*' ? BLOCK_COMMENT_STAR : BLOCK_COMMENT;
+        return;
+      case STRING:
+        if ( c == '\\' ) {
+          state = STRING_ESCAPE;
+        } else if ( c == quote || ( quote != '`' && ( c == '\n' || c == '\r' ) ) ) {
+          state = CODE;
+          emit( TOKEN_STRING, null );
+        }
+        return;
+      case STRING_ESCAPE:
+        state = STRING;
+        return;
+      case REGEX:
+      case REGEX_ESCAPE:
+      case REGEX_CLASS:
+      case REGEX_CLASS_ESCAPE:
+        scanRegex( c );
+        return;
+      default:
+        break;
+    }
+
+    scanCode( c );
+  }
+
+  private void scanCode( int c ) {
+    state = CODE;
+
+    if ( isIdentifierPart( c ) ) {
+      state = IDENTIFIER;
+      tokenLength = 0;
+      append( c );
+    } else if ( c == '/' ) {
+      state = SLASH;
+    } else if ( isOperator( c ) ) {
+      state = OPERATOR;
+      tokenLength = 0;
+      append( c );
+    } else if ( c == '"' || c == '\'' || c == '`' ) {
+      // template literals are skipped whole, including any expressions in them
+      state = STRING;
+      quote = c;
+    } else if ( c > ' ' ) {
+      emit( TOKEN_PUNCTUATOR, String.valueOf( (char) c ) );
+    }
+  }
+
+  private void scanRegex( int c ) {
+    switch ( state ) {
+      case REGEX_ESCAPE:
+        state = REGEX;
+        return;
+      case REGEX_CLASS_ESCAPE:
+        state = REGEX_CLASS;
+        return;
+      case REGEX_CLASS:
+        if ( c == '\\' ) {
+          state = REGEX_CLASS_ESCAPE;
+        } else if ( c == ']' ) {
+          state = REGEX;
+        }
+        return;
+      default:
+        if ( c == '\\' ) {
+          state = REGEX_ESCAPE;
+        } else if ( c == '[' ) {
+          state = REGEX_CLASS;
+        } else if ( c == '/' || c == '\n' || c == '\r' ) {
+          // the flags are then read as an identifier, which is harmless
+          state = CODE;
+          emit( TOKEN_REGEX, null );
+        }
+    }
+  }
+
+  private void endIdentifier() {
+    String text = tokenText();
+    char first = text.charAt( 0 );
+
+    emit( first >= '0' && first <= '9' ? TOKEN_NUMBER : TOKEN_IDENTIFIER, text );
+  }
+
+  private boolean isRegexAllowed() {
+    switch ( lastKind ) {
+      case 0:
+      case TOKEN_OPERATOR:
+        return true;
+      case TOKEN_PUNCTUATOR:
+        return !lastText.equals( ")" ) && !lastText.equals( "]" );
+      case TOKEN_IDENTIFIER:
+        return REGEX_PRECEDING_KEYWORDS.contains( lastText );
+      default:
+        return false;
+    }
+  }
+
+  private void append( int c ) {
+    if ( tokenLength < token.length ) {
+      token[ tokenLength++ ] = (byte) c;
+    }
+  }
+
+  private String tokenText() {
+    return new String( token, 0, tokenLength, StandardCharsets.UTF_8 );
+  }
+
+  private static boolean isIdentifierPart( int c ) {
+    return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' )
+        || c == '_' || c == '$' || c >= 0x80;
+  }
+
+  private static boolean isOperator( int c ) {
+    return c == '=' || c == '!' || c == '<' || c == '>' || c == '+' || c == '-' || c == '*' || c == '%'
+        || c == '&' || c == '|' || c == '^' || c == '~' || c == '?' || c == ':';
+  }
+  //endregion
+
+  private void emit( int kind, String text ) {
+    boolean memberAccess = lastKind == TOKEN_PUNCTUATOR && lastText.equals( "." );
+
+    matchDefine( kind, text, memberAccess );
+    if ( !amdDefineFound ) {
+      matchGlobal( kind, text );
+    }
+
+    lastKind = kind;
+    lastText = text;
+  }
+
+  //region define automaton
+  private void matchDefine( int kind, String text, boolean memberAccess ) {
+    switch ( defineState ) {
+      case DEFINE_NAME:
+        if ( is( kind, text, TOKEN_PUNCTUATOR, "(" ) ) {
+          defineState = DEFINE_ARGUMENT;
+          defineHasId = false;
+          defineHasDependencies = false;
+          return;
+        } else if ( is( kind, text, TOKEN_PUNCTUATOR, "." ) ) {
+          defineState = DEFINE_AMD_PROPERTY;
+          return;
+        }
+        break;
+      case DEFINE_AMD_PROPERTY:
+        // UMD: typeof define === "function" && define.amd
+        if ( is( kind, text, TOKEN_IDENTIFIER, "amd" ) ) {
+          amdDefineFound = true;
+          return;
+        }
+        break;
+      case DEFINE_ARGUMENT:
+        if ( kind == TOKEN_STRING && !defineHasId && !defineHasDependencies ) {
+          defineHasId = true;
+          defineState = DEFINE_AFTER_ID;
+          return;
+        } else if ( is( kind, text, TOKEN_PUNCTUATOR, "[" ) && !defineHasDependencies ) {
+          defineState = DEFINE_DEPENDENCY;
+          return;
+        } else if ( is( kind, text, TOKEN_IDENTIFIER, "function" ) || is( kind, text, TOKEN_PUNCTUATOR, "{" ) ) {
+          amdDefineFound = true;
+          return;
+        } else if ( kind == TOKEN_IDENTIFIER && ( defineHasId || defineHasDependencies ) ) {
+          // define( [ "exports" ], factory )
+          amdDefineFound = true;
+          return;
+        }
+        break;
+      case DEFINE_AFTER_ID:
+        if ( is( kind, text, TOKEN_PUNCTUATOR, "," ) ) {
+          defineState = DEFINE_ARGUMENT;
+          return;
+        }
+        break;
+      case DEFINE_DEPENDENCY:
+        if ( kind == TOKEN_STRING ) {
+          defineState = DEFINE_AFTER_DEPENDENCY;
+          return;
+        } else if ( is( kind, text, TOKEN_PUNCTUATOR, "]" ) ) {
+          defineState = DEFINE_AFTER_DEPENDENCIES;
+          return;
+        }
+        break;
+      case DEFINE_AFTER_DEPENDENCY:
+        if ( is( kind, text, TOKEN_PUNCTUATOR, "," ) ) {
+          defineState = DEFINE_DEPENDENCY;
+          return;
+        } else if ( is( kind, text, TOKEN_PUNCTUATOR, "]" ) ) {
+          defineState = DEFINE_AFTER_DEPENDENCIES;
+          return;
+        }
+        break;
+      case DEFINE_AFTER_DEPENDENCIES:
+        if ( is( kind, text, TOKEN_PUNCTUATOR, "," ) ) {
+          defineHasDependencies = true;
+          defineState = DEFINE_ARGUMENT;
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+
+    // (re)start on a define that isn't a member of something else
+    defineState = is( kind, text, TOKEN_IDENTIFIER, "define" ) && !memberAccess ? DEFINE_NAME : DEFINE_NONE;
+  }
+  //endregion
+
+  //region global automaton
+  private void matchGlobal( int kind, String text ) {
+    switch ( globalState ) {
+      case GLOBAL_ROOT:
+      case GLOBAL_AFTER_SEGMENT:
+        if ( is( kind, text, TOKEN_PUNCTUATOR, "." ) ) {
+          globalState = GLOBAL_SEGMENT;
+          return;
+        } else if ( globalState == GLOBAL_AFTER_SEGMENT && is( kind, text, TOKEN_OPERATOR, "=" ) ) {
+          globalState = GLOBAL_VALUE;
+          return;
+        }
+        break;
+      case GLOBAL_SEGMENT:
+        if ( kind == TOKEN_IDENTIFIER ) {
+          if ( globalPath.length() > 0 ) {
+            globalPath.append( '.' );
+          }
+          globalPath.append( text );
+
+          globalState = GLOBAL_AFTER_SEGMENT;
+          return;
+        }
+        break;
+      case GLOBAL_VALUE:
+        if ( kind == TOKEN_IDENTIFIER || kind == TOKEN_NUMBER || is( kind, text, TOKEN_PUNCTUATOR, "{" ) ) {
+          addExport( globalPath.toString() );
+        }
+        break;
+      default:
+        break;
+    }
+
+    // (re)start on window or exports, the assigned value can also be the start of another assignment
+    globalPath.setLength( 0 );
+    globalState = kind == TOKEN_IDENTIFIER && ( text.equals( "window" ) || text.equals( "exports" ) )
+        ? GLOBAL_ROOT : GLOBAL_NONE;
+  }
+
+  private void addExport( String var ) {
+    final String varSegment = var.split( "\\.", 2 )[ 0 ];
+    if ( !varSegment.startsWith( "on" ) && !JS_KNOWN_GLOBALS.contains( varSegment ) && !exports.contains( var ) ) {
+      exports.add( var );
+    }
+  }
+  //endregion
+
+  private static boolean is( int kind, String text, int expectedKind, String expectedText ) {
+    return kind == expectedKind && expectedText.equals( text );
+  }
+}
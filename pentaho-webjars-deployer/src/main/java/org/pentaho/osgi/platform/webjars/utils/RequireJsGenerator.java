@@ -22,21 +22,8 @@ import org.json.simple.parser.ParseException;
 import org.osgi.framework.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.script.Invocable;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+
 import javax.script.ScriptException;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -61,77 +48,11 @@ public class RequireJsGenerator {
   private Map<String, Object> requireConfig;
   private HashMap<String, String> dependencies = new HashMap<>();
 
-  private static final ArrayList<String> JS_KNOWN_GLOBALS;
-
-  static {
-    JS_KNOWN_GLOBALS = new ArrayList<>();
-    JS_KNOWN_GLOBALS.add( "applicationCache" );
-    JS_KNOWN_GLOBALS.add( "caches" );
-    JS_KNOWN_GLOBALS.add( "closed" );
-    JS_KNOWN_GLOBALS.add( "Components" );
-    JS_KNOWN_GLOBALS.add( "console" );
-    JS_KNOWN_GLOBALS.add( "content" );
-    JS_KNOWN_GLOBALS.add( "_content" );
-    JS_KNOWN_GLOBALS.add( "controllers" );
-    JS_KNOWN_GLOBALS.add( "crypto" );
-    JS_KNOWN_GLOBALS.add( "defaultStatus" );
-    JS_KNOWN_GLOBALS.add( "devicePixelRatio" );
-    JS_KNOWN_GLOBALS.add( "dialogArguments" );
-    JS_KNOWN_GLOBALS.add( "directories" );
-    JS_KNOWN_GLOBALS.add( "document" );
-    JS_KNOWN_GLOBALS.add( "frameElement" );
-    JS_KNOWN_GLOBALS.add( "frames" );
-    JS_KNOWN_GLOBALS.add( "fullScreen" );
-    JS_KNOWN_GLOBALS.add( "globalStorage" );
-    JS_KNOWN_GLOBALS.add( "history" );
-    JS_KNOWN_GLOBALS.add( "innerHeight" );
-    JS_KNOWN_GLOBALS.add( "innerWidth" );
-    JS_KNOWN_GLOBALS.add( "length" );
-    JS_KNOWN_GLOBALS.add( "location" );
-    JS_KNOWN_GLOBALS.add( "locationbar" );
-    JS_KNOWN_GLOBALS.add( "localStorage" );
-    JS_KNOWN_GLOBALS.add( "menubar" );
-    JS_KNOWN_GLOBALS.add( "messageManager" );
-    JS_KNOWN_GLOBALS.add( "name" );
-    JS_KNOWN_GLOBALS.add( "navigator" );
-    JS_KNOWN_GLOBALS.add( "opener" );
-    JS_KNOWN_GLOBALS.add( "outerHeight" );
-    JS_KNOWN_GLOBALS.add( "outerWidth" );
-    JS_KNOWN_GLOBALS.add( "pageXOffset" );
-    JS_KNOWN_GLOBALS.add( "pageYOffset" );
-    JS_KNOWN_GLOBALS.add( "sessionStorage" );
-    JS_KNOWN_GLOBALS.add( "parent" );
-    JS_KNOWN_GLOBALS.add( "performance" );
-    JS_KNOWN_GLOBALS.add( "personalbar" );
-    JS_KNOWN_GLOBALS.add( "pkcs11" );
-    JS_KNOWN_GLOBALS.add( "returnValue" );
-    JS_KNOWN_GLOBALS.add( "screen" );
-    JS_KNOWN_GLOBALS.add( "screenX" );
-    JS_KNOWN_GLOBALS.add( "screenY" );
-    JS_KNOWN_GLOBALS.add( "scrollbars" );
-    JS_KNOWN_GLOBALS.add( "scrollMaxX" );
-    JS_KNOWN_GLOBALS.add( "scrollMaxY" );
-    JS_KNOWN_GLOBALS.add( "scrollX" );
-    JS_KNOWN_GLOBALS.add( "scrollY" );
-    JS_KNOWN_GLOBALS.add( "self" );
-    JS_KNOWN_GLOBALS.add( "sessionStorage" );
-    JS_KNOWN_GLOBALS.add( "sidebar" );
-    JS_KNOWN_GLOBALS.add( "status" );
-    JS_KNOWN_GLOBALS.add( "statusbar" );
-    JS_KNOWN_GLOBALS.add( "toolbar" );
-    JS_KNOWN_GLOBALS.add( "top" );
-    JS_KNOWN_GLOBALS.add( "window" );
-  }
-
   public static RequireJsGenerator parsePom( InputStream inputStream ) throws Exception {
     try {
       byte[] bytes = IOUtils.toByteArray( inputStream );
 
-      DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-      documentBuilderFactory.setFeature( XMLConstants.FEATURE_SECURE_PROCESSING, true );
-      documentBuilderFactory.setFeature( "http://apache.org/xml/features/disallow-doctype-decl", true );
-      Document pom = documentBuilderFactory.newDocumentBuilder().parse( new ByteArrayInputStream( bytes ) );
-      return new RequireJsGenerator( pom );
+      return new RequireJsGenerator( WebjarPom.parse( new ByteArrayInputStream( bytes ) ) );
     } catch ( Exception e ) {
       throw new Exception( "Error reading POM", e );
     }
@@ -165,20 +86,19 @@ public class RequireJsGenerator {
   public static String getWebjarVersionFromPom( InputStream inputStream ) throws Exception {
     try {
       byte[] bytes = IOUtils.toByteArray( inputStream );
-      Document pom = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse( new ByteArrayInputStream( bytes ) );
-
-      XPath xPath = XPathFactory.newInstance().newXPath();
 
-      final Element document = pom.getDocumentElement();
-
-      return (String) xPath.evaluate( "/project/version", document, XPathConstants.STRING );
+      return WebjarPom.parse( new ByteArrayInputStream( bytes ) ).getVersion();
     } catch ( Exception e ) {
       throw new Exception( "Error reading JS script", e );
     }
   }
 
+  public static URL getPackageOverridesUrl( String group, String artifactId, String version ) {
+    return RequireJsGenerator.class.getResource( "/overrides/" + group + "/" + artifactId + "/" + version + "/overrides.json" );
+  }
+
   public static Map<String, Object> getPackageOverrides( String group, String artifactId, String version ) {
-    URL overridesUrl = RequireJsGenerator.class.getResource( "/overrides/" + group + "/" + artifactId + "/" + version + "/overrides.json" );
+    URL overridesUrl = getPackageOverridesUrl( group, artifactId, version );
 
     Map<String, Object> overrides = null;
     if ( overridesUrl != null ) {
@@ -192,40 +112,17 @@ public class RequireJsGenerator {
   }
 
   public static boolean findAmdDefine( InputStream is, ArrayList<String> exports ) {
-    final Pattern definePattern =
-        Pattern.compile( "\bdefine\b(\\s*)\\(((\\s*)\"[^\"]+\"(\\s*),)?((\\s*)\\[((\\s*)\"[^\"]+\""
-            + "(\\s*),?)+(\\s*)\\](\\s*),)?((\\s*)function)" );
-
-    final Pattern globalPattern =
-        Pattern.compile(
-            "(\\bwindow\\b|\\bexports\\b)\\.(([a-zA-Z_$][a-zA-Z\\d_$]*\\.)*[a-zA-Z_$][a-zA-Z\\d_$]*)"
-                + "\\s*=\\s*[\\w${][^,;]+" );
+    AmdDefineScanner scanner = new AmdDefineScanner( exports );
 
-    BufferedReader br = new BufferedReader( new InputStreamReader( is ) );
-
-    String line;
     try {
-      while ( ( line = br.readLine() ) != null ) {
-        Matcher matcher = definePattern.matcher( line );
-        if ( matcher.find() ) {
-          return true;
-        }
-
-        matcher = globalPattern.matcher( line );
-        if ( matcher.find() ) {
-          final String var = matcher.group( 2 );
-          final String varSegment = var.split( "\\.", 2 )[ 0 ];
-          if ( !varSegment.startsWith( "on" ) && !JS_KNOWN_GLOBALS.contains( varSegment ) && !exports
-              .contains( var ) ) {
-            exports.add( var );
-          }
-        }
-      }
+      IOUtils.copy( is, scanner );
     } catch ( IOException ignored ) {
       // ignored
     }
 
-    return false;
+    scanner.close();
+
+    return scanner.isAmdDefineFound();
   }
 
   private static Map<String, Object> parseJson( InputStream inputStream ) throws IOException, ParseException {
@@ -237,12 +134,12 @@ public class RequireJsGenerator {
     return (Map<String, Object>) (new JSONParser()).parse( bufferedReader );
   }
 
-  private RequireJsGenerator( Document pom ) throws XPathExpressionException, ParseException {
+  private RequireJsGenerator( WebjarPom pom ) throws ParseException {
     requirejsFromPom( pom );
   }
 
   private RequireJsGenerator( String moduleName, String moduleVersion, String jsScript )
-      throws NoSuchMethodException, ScriptException, ParseException, IOException {
+      throws ScriptException, ParseException, IOException {
     requirejsFromJs( moduleName, moduleVersion, jsScript );
   }
 
@@ -294,55 +191,16 @@ public class RequireJsGenerator {
     return moduleInfo;
   }
 
-  private void requirejsFromPom( Document pom )
-      throws XPathExpressionException, ParseException {
-
-    XPath xPath = XPathFactory.newInstance().newXPath();
+  private void requirejsFromPom( WebjarPom pom ) throws ParseException {
+    moduleInfo = new ModuleInfo( pom.getArtifactId(), pom.getVersion() );
 
-    final Element document = pom.getDocumentElement();
+    requireConfig = (Map<String, Object>) (new JSONParser()).parse( pom.getRequirejs() );
 
-    moduleInfo = new ModuleInfo( (String) xPath.evaluate( "/project/artifactId", document, XPathConstants.STRING ),
-        (String) xPath.evaluate( "/project/version", document, XPathConstants.STRING ) );
-
-    String pomConfig = (String) xPath.evaluate( "/project/properties/requirejs", document, XPathConstants.STRING );
-
-    requireConfig = (Map<String, Object>) (new JSONParser()).parse( pomConfig );
-
-    NodeList pomDependencies = (NodeList) xPath
-        .evaluate( "/project/dependencies/dependency[contains(groupId, 'org.webjars')]", document,
-            XPathConstants.NODESET );
-    for ( int i = 0, ic = pomDependencies.getLength(); i != ic; ++i ) {
-      Node dependency = pomDependencies.item( i );
-
-      NodeList dependencyChildNodes = dependency.getChildNodes();
-
-      String dependencyGroupId = null;
-      String dependencyArtifactId = null;
-      String dependencyVersion = null;
-
-      for ( int j = 0, jc = dependencyChildNodes.getLength(); j != jc; ++j ) {
-        Node item = dependencyChildNodes.item( j );
-        String nodeName = item.getNodeName();
-
-        if ( nodeName.equals( "groupId" ) ) {
-          dependencyGroupId = item.getChildNodes().item( 0 ).getNodeValue();
-        }
-
-        if ( nodeName.equals( "artifactId" ) ) {
-          dependencyArtifactId = item.getChildNodes().item( 0 ).getNodeValue();
-        }
-
-        if ( nodeName.equals( "version" ) ) {
-          dependencyVersion = item.getChildNodes().item( 0 ).getNodeValue();
-        }
-      }
-
-      dependencies.put( "mvn:" + dependencyGroupId + "/" + dependencyArtifactId, dependencyVersion );
-    }
+    dependencies.putAll( pom.getWebjarDependencies() );
   }
 
   private void requirejsFromJs( String moduleName, String moduleVersion, String jsScript )
-      throws IOException, ScriptException, NoSuchMethodException, ParseException {
+      throws IOException, ScriptException, ParseException {
     moduleInfo = new ModuleInfo( moduleName, moduleVersion );
 
     Pattern pat = Pattern.compile( "webjars!(.*).js" );
@@ -367,15 +225,14 @@ public class RequireJsGenerator {
 
     jsScript = sb.toString();
 
-    ScriptEngineManager factory = new ScriptEngineManager();
-    ScriptEngine engine = factory.getEngineByName( "JavaScript" );
-    String script = IOUtils
-        .toString( getClass().getResourceAsStream( "/org/pentaho/osgi/platform/webjars/require-js-aggregator.js" ) );
-    script = script.replace( "{{EXTERNAL_CONFIG}}", jsScript );
+    // most scripts just pass a literal to requirejs.config, which can be read without any script engine
+    requireConfig = RequireJsLiteralConfig.parse( jsScript );
 
-    engine.eval( script );
+    if ( requireConfig == null ) {
+      String config = RequireJsScriptEvaluator.processConfig( jsScript );
 
-    requireConfig = (Map<String, Object>) (new JSONParser()).parse( ( (Invocable) engine ).invokeFunction( "processConfig", "" ).toString() );
+      requireConfig = (Map<String, Object>) (new JSONParser()).parse( config );
+    }
   }
 
   // bower.json and package.json follow very similar format, so it can be parsed by the same method
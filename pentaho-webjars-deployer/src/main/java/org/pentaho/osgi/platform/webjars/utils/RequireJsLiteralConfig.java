@@ -0,0 +1,377 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.Map;
+
+/**
+ * Reads the configuration out of webjars-requirejs.js scripts that do nothing but call requirejs.config with an
+ * object literal, which is what most of them do, without evaluating them in a script engine.
+ * <p>
+ * Only literals are accepted (objects, arrays, strings, numbers, booleans and null), anything else makes the
+ * script fall back to {@link RequireJsScriptEvaluator}. The resulting values have the same types JSONParser would
+ * give for the JSON.stringify'ed configuration.
+ */
+final class RequireJsLiteralConfig {
+  private static final NotLiteralException NOT_LITERAL = new NotLiteralException();
+
+  private final String script;
+  private int position;
+
+  private RequireJsLiteralConfig( String script ) {
+    this.script = script;
+  }
+
+  /**
+   * @return the configuration object, or null if the script isn't a single requirejs.config call with an
+   *         object literal
+   */
+  @SuppressWarnings( "unchecked" )
+  static Map<String, Object> parse( String script ) {
+    try {
+      // JSONObject is a raw map, keyed by the strings of the object literal
+      return (Map<String, Object>) new RequireJsLiteralConfig( script ).parseScript();
+    } catch ( NotLiteralException e ) {
+      return null;
+    }
+  }
+
+  private JSONObject parseScript() throws NotLiteralException {
+    skipStatementSeparators();
+
+    expectWord( "requirejs" );
+    skipWhitespace();
+    expect( '.' );
+    skipWhitespace();
+    expectWord( "config" );
+    skipWhitespace();
+    expect( '(' );
+    skipWhitespace();
+
+    if ( peek() != '{' ) {
+      throw NOT_LITERAL;
+    }
+    JSONObject config = parseObject();
+
+    skipWhitespace();
+    expect( ')' );
+    skipStatementSeparators();
+
+    if ( position != script.length() ) {
+      throw NOT_LITERAL;
+    }
+
+    return config;
+  }
+
+  private Object parseValue() throws NotLiteralException {
+    char c = peek();
+
+    if ( c == '{' ) {
+      return parseObject();
+    } else if ( c == '[' ) {
+      return parseArray();
+    } else if ( c == '"' || c == '\'' ) {
+      return parseString();
+    } else if ( c == '-' || isDigit( c ) ) {
+      return parseNumber();
+    }
+
+    String word = parseIdentifier();
+    switch ( word ) {
+      case "true":
+        return Boolean.TRUE;
+      case "false":
+        return Boolean.FALSE;
+      case "null":
+        return null;
+      default:
+        throw NOT_LITERAL;
+    }
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private JSONObject parseObject() throws NotLiteralException {
+    JSONObject object = new JSONObject();
+
+    expect( '{' );
+    skipWhitespace();
+
+    while ( peek() != '}' ) {
+      char c = peek();
+      String key = c == '"' || c == '\'' ? parseString() : parseIdentifier();
+      if ( key.equals( "__proto__" ) ) {
+        throw NOT_LITERAL;
+      }
+
+      skipWhitespace();
+      expect( ':' );
+      skipWhitespace();
+
+      object.put( key, parseValue() );
+
+      skipWhitespace();
+      if ( peek() != ',' ) {
+        break;
+      }
+      position++;
+      skipWhitespace();
+    }
+
+    expect( '}' );
+
+    return object;
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private JSONArray parseArray() throws NotLiteralException {
+    JSONArray array = new JSONArray();
+
+    expect( '[' );
+    skipWhitespace();
+
+    while ( peek() != ']' ) {
+      // elisions ([1,,2]) would have to become nulls, leave them to the script engine
+      if ( peek() == ',' ) {
+        throw NOT_LITERAL;
+      }
+
+      array.add( parseValue() );
+
+      skipWhitespace();
+      if ( peek() != ',' ) {
+        break;
+      }
+      position++;
+      skipWhitespace();
+    }
+
+    expect( ']' );
+
+    return array;
+  }
+
+  private String parseString() throws NotLiteralException {
+    char quote = next();
+    StringBuilder value = new StringBuilder();
+
+    while ( true ) {
+      char c = next();
+
+      if ( c == quote ) {
+        return value.toString();
+      } else if ( c == '\n' || c == '\r' ) {
+        throw NOT_LITERAL;
+      } else if ( c != '\\' ) {
+        value.append( c );
+        continue;
+      }
+
+      c = next();
+      switch ( c ) {
+        case '"':
+        case '\'':
+        case '\\':
+        case '/':
+          value.append( c );
+          break;
+        case 'b':
+          value.append( '\b' );
+          break;
+        case 'f':
+          value.append( '\f' );
+          break;
+        case 'n':
+          value.append( '\n' );
+          break;
+        case 'r':
+          value.append( '\r' );
+          break;
+        case 't':
+          value.append( '\t' );
+          break;
+        case 'v':
+          value.append( '\u000B' );
+          break;
+        case 'u':
+          value.append( (char) parseHex( 4 ) );
+          break;
+        case 'x':
+          value.append( (char) parseHex( 2 ) );
+          break;
+        default:
+          // octal escapes, line continuations, ...
+          throw NOT_LITERAL;
+      }
+    }
+  }
+
+  private Object parseNumber() throws NotLiteralException {
+    int start = position;
+
+    if ( peek() == '-' ) {
+      position++;
+    }
+
+    int integerStart = position;
+    while ( isDigit( peek() ) ) {
+      position++;
+    }
+    int integerEnd = position;
+
+    // no octal or malformed integer parts
+    if ( integerEnd == integerStart || ( script.charAt( integerStart ) == '0' && integerEnd - integerStart > 1 ) ) {
+      throw NOT_LITERAL;
+    }
+
+    boolean integral = true;
+    if ( peek() == '.' ) {
+      position++;
+
+      int fractionStart = position;
+      while ( isDigit( peek() ) ) {
+        if ( peek() != '0' ) {
+          integral = false;
+        }
+        position++;
+      }
+
+      if ( position == fractionStart ) {
+        throw NOT_LITERAL;
+      }
+    }
+
+    // exponents, hexadecimal, ... are left to the script engine
+    char c = peek();
+    if ( isIdentifierPart( c ) || c == '.' ) {
+      throw NOT_LITERAL;
+    }
+
+    try {
+      // JSON.stringify writes integral numbers without a fraction, which JSONParser reads back as a Long
+      if ( integral ) {
+        return Long.parseLong( script.substring( start, integerEnd ) );
+      }
+
+      return Double.parseDouble( script.substring( start, position ) );
+    } catch ( NumberFormatException e ) {
+      throw NOT_LITERAL;
+    }
+  }
+
+  private int parseHex( int digits ) throws NotLiteralException {
+    int value = 0;
+
+    for ( int i = 0; i < digits; i++ ) {
+      int digit = Character.digit( next(), 16 );
+      if ( digit < 0 ) {
+        throw NOT_LITERAL;
+      }
+      value = value * 16 + digit;
+    }
+
+    return value;
+  }
+
+  private String parseIdentifier() throws NotLiteralException {
+    int start = position;
+
+    if ( !isIdentifierStart( peek() ) ) {
+      throw NOT_LITERAL;
+    }
+
+    while ( isIdentifierPart( peek() ) ) {
+      position++;
+    }
+
+    return script.substring( start, position );
+  }
+
+  private void expectWord( String word ) throws NotLiteralException {
+    if ( !parseIdentifier().equals( word ) ) {
+      throw NOT_LITERAL;
+    }
+  }
+
+  private void expect( char c ) throws NotLiteralException {
+    if ( next() != c ) {
+      throw NOT_LITERAL;
+    }
+  }
+
+  private void skipStatementSeparators() throws NotLiteralException {
+    skipWhitespace();
+
+    while ( peek() == ';' ) {
+      position++;
+      skipWhitespace();
+    }
+  }
+
+  /**
+   * Skips whitespace and comments.
+   */
+  private void skipWhitespace() throws NotLiteralException {
+    while ( position < script.length() ) {
+      char c = script.charAt( position );
+
+      if ( Character.isWhitespace( c ) || c == '\u00A0' || c == '\uFEFF' ) {
+        position++;
+      } else if ( script.startsWith( "//", position ) ) {
+        int end = script.indexOf( '\n', position );
+        position = end < 0 ? script.length() : end + 1;
+      } else if ( script.startsWith( "/*", position ) ) {
+        int end = script.indexOf( "*/", position + 2 );
+        if ( end < 0 ) {
+          throw NOT_LITERAL;
+        }
+        position = end + 2;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private char peek() {
+    return position < script.length() ? script.charAt( position ) : 0;
+  }
+
+  private char next() throws NotLiteralException {
+    if ( position >= script.length() ) {
+      throw NOT_LITERAL;
+    }
+
+    return script.charAt( position++ );
+  }
+
+  private static boolean isDigit( char c ) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierStart( char c ) {
+    return Character.isLetter( c ) || c == '_' || c == '$';
+  }
+
+  private static boolean isIdentifierPart( char c ) {
+    return Character.isLetterOrDigit( c ) || c == '_' || c == '$';
+  }
+
+  private static final class NotLiteralException extends Exception {
+    NotLiteralException() {
+      super( null, null, false, false );
+    }
+  }
+}
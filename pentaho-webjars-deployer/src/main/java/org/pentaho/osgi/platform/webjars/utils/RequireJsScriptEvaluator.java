@@ -0,0 +1,121 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import org.apache.commons.io.IOUtils;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleScriptContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Evaluates webjars-requirejs.js scripts together with require-js-aggregator.js to get their requirejs
+ * configuration.
+ * <p>
+ * Creating a javascript engine is expensive, so engines are pooled and reused across webjars, each one with the
+ * aggregator compiled once. Every script is evaluated with its own bindings, so nothing a webjar's script defines
+ * is seen by the next one.
+ * <p>
+ * Engines are only created when a script needs one, as most scripts are read by {@link RequireJsLiteralConfig}
+ * instead, so none is paid for when every webjar's configuration is a plain literal.
+ */
+final class RequireJsScriptEvaluator {
+  private static final String AGGREGATOR_LOCATION = "/org/pentaho/osgi/platform/webjars/require-js-aggregator.js";
+  private static final String EXTERNAL_CONFIG = "{{EXTERNAL_CONFIG}}";
+
+  private static final Queue<PooledEngine> ENGINES = new ConcurrentLinkedQueue<>();
+
+  private static ScriptEngineManager scriptEngineManager;
+
+  private RequireJsScriptEvaluator() {
+  }
+
+  /**
+   * @return the JSON.stringify'ed configuration the script passed to requirejs.config
+   */
+  static String processConfig( String jsScript ) throws ScriptException, IOException {
+    PooledEngine engine = ENGINES.poll();
+    if ( engine == null ) {
+      engine = new PooledEngine( getScriptEngine() );
+    }
+
+    try {
+      return engine.processConfig( jsScript );
+    } finally {
+      ENGINES.offer( engine );
+    }
+  }
+
+  private static synchronized ScriptEngine getScriptEngine() throws ScriptException {
+    if ( scriptEngineManager == null ) {
+      scriptEngineManager = new ScriptEngineManager();
+    }
+
+    ScriptEngine engine = scriptEngineManager.getEngineByName( "JavaScript" );
+    if ( engine == null ) {
+      throw new ScriptException( "No JavaScript engine available" );
+    }
+
+    return engine;
+  }
+
+  private static final class PooledEngine {
+    private final ScriptEngine engine;
+
+    // the aggregator is split around the placeholder of the webjar's script
+    private final CompiledScript prologue;
+    private final CompiledScript epilogue;
+    private final CompiledScript processConfig;
+
+    PooledEngine( ScriptEngine engine ) throws ScriptException, IOException {
+      this.engine = engine;
+
+      String aggregator;
+      try ( InputStream inputStream = RequireJsScriptEvaluator.class.getResourceAsStream( AGGREGATOR_LOCATION ) ) {
+        aggregator = IOUtils.toString( inputStream, StandardCharsets.UTF_8 );
+      }
+
+      int placeholder = aggregator.indexOf( EXTERNAL_CONFIG );
+
+      Compilable compilable = (Compilable) engine;
+      this.prologue = compilable.compile( aggregator.substring( 0, placeholder ) );
+      this.epilogue = compilable.compile( aggregator.substring( placeholder + EXTERNAL_CONFIG.length() ) );
+      this.processConfig = compilable.compile( "processConfig( '' )" );
+    }
+
+    String processConfig( String jsScript ) throws ScriptException {
+      ScriptContext context = new SimpleScriptContext();
+      context.setBindings( engine.createBindings(), ScriptContext.ENGINE_SCOPE );
+
+      prologue.eval( context );
+      engine.eval( jsScript, context );
+      epilogue.eval( context );
+
+      Object config = processConfig.eval( context );
+      if ( config == null ) {
+        throw new ScriptException( "requirejs.config was not called" );
+      }
+
+      return config.toString();
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The few values RequireJsGenerator needs from a webjar's pom, read in a single streaming pass.
+ * <p>
+ * Matches what the /project/artifactId, /project/version, /project/properties/requirejs and
+ * /project/dependencies/dependency[contains(groupId, 'org.webjars')] XPath expressions used to give over a
+ * non namespace aware DOM, without building the document nor compiling the expressions for every pom.
+ * Documents with a DOCTYPE are rejected.
+ * <p>
+ * Closing the stream reader may close the underlying stream, so don't hand it a jar entry directly.
+ */
+final class WebjarPom {
+  private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial( () -> {
+    XMLInputFactory factory = XMLInputFactory.newFactory();
+    factory.setProperty( XMLInputFactory.IS_NAMESPACE_AWARE, false );
+    factory.setProperty( XMLInputFactory.IS_COALESCING, true );
+    factory.setProperty( XMLInputFactory.SUPPORT_DTD, false );
+    factory.setProperty( XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false );
+    return factory;
+  } );
+
+  private String artifactId;
+  private String version;
+  private String requirejs;
+  private final Map<String, String> webjarDependencies = new LinkedHashMap<>();
+
+  private WebjarPom() {
+  }
+
+  static WebjarPom parse( InputStream inputStream ) throws XMLStreamException {
+    XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader( inputStream );
+    try {
+      WebjarPom pom = new WebjarPom();
+      pom.read( reader );
+      return pom;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * @return the text of /project/artifactId, or an empty string if there isn't one
+   */
+  String getArtifactId() {
+    return artifactId != null ? artifactId : "";
+  }
+
+  /**
+   * @return the text of /project/version, or an empty string if there isn't one
+   */
+  String getVersion() {
+    return version != null ? version : "";
+  }
+
+  /**
+   * @return the text of /project/properties/requirejs, or an empty string if there isn't one
+   */
+  String getRequirejs() {
+    return requirejs != null ? requirejs : "";
+  }
+
+  /**
+   * @return the version of each org.webjars dependency, keyed by "mvn:groupId/artifactId"
+   */
+  Map<String, String> getWebjarDependencies() {
+    return webjarDependencies;
+  }
+
+  private void read( XMLStreamReader reader ) throws XMLStreamException {
+    List<String> path = new ArrayList<>();
+
+    // text of the element being captured, and the depth it was opened at
+    StringBuilder text = null;
+    int textDepth = 0;
+
+    // child values of the /project/dependencies/dependency being read
+    String groupId = null;
+    String dependencyArtifactId = null;
+    String dependencyVersion = null;
+
+    while ( reader.hasNext() ) {
+      switch ( reader.next() ) {
+        case XMLStreamConstants.DTD:
+          throw new XMLStreamException( "DOCTYPE is not allowed in webjar poms", reader.getLocation() );
+
+        case XMLStreamConstants.START_ELEMENT:
+          path.add( reader.getLocalName() );
+
+          if ( text == null && isCaptured( path ) ) {
+            text = new StringBuilder();
+            textDepth = path.size();
+          }
+          break;
+
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if ( text != null ) {
+            text.append( reader.getText() );
+          }
+          break;
+
+        case XMLStreamConstants.END_ELEMENT:
+          if ( text != null && path.size() == textDepth ) {
+            String value = text.toString();
+            text = null;
+
+            String name = path.get( path.size() - 1 );
+            if ( path.size() == 2 ) {
+              if ( name.equals( "artifactId" ) && artifactId == null ) {
+                artifactId = value;
+              } else if ( name.equals( "version" ) && version == null ) {
+                version = value;
+              }
+            } else if ( path.size() == 3 ) {
+              if ( requirejs == null ) {
+                requirejs = value;
+              }
+            } else if ( name.equals( "groupId" ) ) {
+              if ( groupId == null ) {
+                groupId = value;
+              }
+            } else if ( name.equals( "artifactId" ) ) {
+              dependencyArtifactId = value;
+            } else {
+              dependencyVersion = value;
+            }
+          } else if ( path.size() == 3 && isDependency( path ) ) {
+            if ( groupId != null && groupId.contains( "org.webjars" ) ) {
+              webjarDependencies.put( "mvn:" + groupId + "/" + dependencyArtifactId, dependencyVersion );
+            }
+
+            groupId = null;
+            dependencyArtifactId = null;
+            dependencyVersion = null;
+          }
+
+          path.remove( path.size() - 1 );
+          break;
+
+        default:
+          break;
+      }
+    }
+  }
+
+  private static boolean isCaptured( List<String> path ) {
+    if ( !path.get( 0 ).equals( "project" ) ) {
+      return false;
+    }
+
+    String name = path.get( path.size() - 1 );
+    switch ( path.size() ) {
+      case 2:
+        return name.equals( "artifactId" ) || name.equals( "version" );
+      case 3:
+        return name.equals( "requirejs" ) && path.get( 1 ).equals( "properties" );
+      case 4:
+        return isDependency( path )
+            && ( name.equals( "groupId" ) || name.equals( "artifactId" ) || name.equals( "version" ) );
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isDependency( List<String> path ) {
+    return path.get( 0 ).equals( "project" ) && path.get( 1 ).equals( "dependencies" )
+        && path.get( 2 ).equals( "dependency" );
+  }
+}
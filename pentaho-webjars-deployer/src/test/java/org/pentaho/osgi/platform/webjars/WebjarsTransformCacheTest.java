@@ -0,0 +1,132 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WebjarsTransformCacheTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File directory;
+  private WebjarsTransformCache cache;
+
+  @Before
+  public void before() throws IOException {
+    directory = temporaryFolder.newFolder( "cache" );
+    cache = new WebjarsTransformCache( directory, 100 );
+  }
+
+  @Test
+  public void testKey() throws IOException {
+    byte[] source = "source".getBytes( StandardCharsets.UTF_8 );
+    String key = cache.getKey( source, null, "1", "mvn:org.webjars/test/1.0.0" );
+
+    assertEquals( 64, key.length() );
+    assertEquals( key, cache.getKey( source.clone(), null, "1", "mvn:org.webjars/test/1.0.0" ) );
+    assertEquals( key, cache.getKey( new ByteArrayInputStream( source ), null, "1", "mvn:org.webjars/test/1.0.0" ) );
+
+    assertNotEquals( key, cache.getKey( "other".getBytes( StandardCharsets.UTF_8 ), null,
+        "1", "mvn:org.webjars/test/1.0.0" ) );
+    assertNotEquals( key, cache.getKey( source, null, "2", "mvn:org.webjars/test/1.0.0" ) );
+    assertNotEquals( key, cache.getKey( source, null, "1", "mvn:org.webjars/test/1.0.1" ) );
+    assertNotEquals( key, cache.getKey( source, null, "1mvn:org.webjars/test/1.0.0" ) );
+
+    File overrides = temporaryFolder.newFile( "overrides.json" );
+    Files.write( overrides.toPath(), "{}".getBytes( StandardCharsets.UTF_8 ) );
+    assertNotEquals( key, cache.getKey( source, overrides.toURI().toURL(), "1", "mvn:org.webjars/test/1.0.0" ) );
+  }
+
+  @Test
+  public void testPutAndGet() throws IOException {
+    assertNull( cache.get( "key" ) );
+
+    put( "key", 10 );
+
+    try ( InputStream inputStream = cache.get( "key" ) ) {
+      assertNotNull( inputStream );
+      assertArrayEquals( new byte[ 10 ], IOUtils.toByteArray( inputStream ) );
+    }
+
+    String[] files = directory.list();
+    assertNotNull( files );
+    assertEquals( 1, files.length );
+    assertEquals( "key.jar", files[ 0 ] );
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws IOException {
+    put( "first", 40 );
+    put( "second", 40 );
+    age( "first", 2000 );
+    age( "second", 1000 );
+
+    // reading the oldest entry makes it the most recently used one
+    cache.get( "first" ).close();
+
+    put( "third", 40 );
+
+    assertTrue( new File( directory, "first.jar" ).exists() );
+    assertFalse( new File( directory, "second.jar" ).exists() );
+    assertTrue( new File( directory, "third.jar" ).exists() );
+  }
+
+  @Test
+  public void testStaleTempFilesAreDeleted() throws IOException {
+    Path stale = cache.createTempFile();
+    Path fresh = cache.createTempFile();
+    Files.setLastModifiedTime( stale,
+        FileTime.fromMillis( System.currentTimeMillis() - 2 * 60 * 60 * 1000L ) );
+
+    put( "key", 10 );
+
+    assertFalse( Files.exists( stale ) );
+    assertTrue( Files.exists( fresh ) );
+  }
+
+  private void put( String key, int size ) throws IOException {
+    Path tempFile = cache.createTempFile();
+    Files.write( tempFile, new byte[ size ] );
+
+    cache.put( key, tempFile );
+
+    assertFalse( Files.exists( tempFile ) );
+  }
+
+  private void age( String key, long millis ) throws IOException {
+    Path entry = directory.toPath().resolve( key + ".jar" );
+    Files.setLastModifiedTime( entry,
+        FileTime.fromMillis( System.currentTimeMillis() - millis ) );
+  }
+}
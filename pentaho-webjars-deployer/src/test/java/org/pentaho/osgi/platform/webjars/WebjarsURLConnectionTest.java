@@ -17,7 +17,9 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -38,12 +40,16 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class WebjarsURLConnectionTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void before() throws MalformedURLException {
     File input = new File( "src/test/resources/mockRepo" );
@@ -149,6 +155,76 @@ public class WebjarsURLConnectionTest {
     verifyWrapped( zipInputStream, "test/1.0.0", "dist/test.js", "// CODE BEFORE", "// CODE AFTER" );
   }
 
+  @Test
+  public void testAutomaticNonAmdShimConfig() throws Exception {
+    ZipFile zipInputStream = getDeployedJar( new URL( "mvn:org.webjars/angular-dateparser/1.0.9" ), true );
+
+    verifyManifest( zipInputStream );
+    verifyBlueprint( zipInputStream, "angular-dateparser@1.0.9", "angular-dateparser/1.0.9" );
+    verifyRequireJson( zipInputStream, "org.webjars/angular-dateparser", "1.0.9" );
+
+    // the sources are scanned while being copied, so they must still arrive whole
+    ZipEntry entry =
+        zipInputStream.getEntry( "META-INF/resources/webjars/angular-dateparser/1.0.9/angular-dateparser.js" );
+    assertNotNull( entry );
+    assertEquals( 10268, IOUtils.toByteArray( zipInputStream.getInputStream( entry ) ).length );
+  }
+
+  @Test
+  public void testAutomaticNonAmdShimConfigAmdWebjar() throws Exception {
+    // jquery defines an AMD module besides its globals, so it must not be shimmed
+    ZipFile zipInputStream = getDeployedJar( new URL( "mvn:org.webjars/jquery/2.2.1" ), true );
+
+    verifyRequireJson( zipInputStream, "org.webjars/jquery", "2.2.1" );
+
+    String jsonFile = IOUtils.toString( zipInputStream.getInputStream(
+        zipInputStream.getEntry( "META-INF/js/require.json" ) ), "UTF-8" );
+    JSONObject meta = (JSONObject) ( (JSONObject) new JSONParser().parse( jsonFile ) ).get( "requirejs-osgi-meta" );
+    JSONObject modules = (JSONObject) meta.get( "modules" );
+    assertFalse( "modules exist", modules.isEmpty() );
+
+    for ( Object versions : modules.values() ) {
+      for ( Object module : ( (JSONObject) versions ).values() ) {
+        assertEquals( Boolean.TRUE, ( (JSONObject) module ).get( "isAmdPackage" ) );
+        assertFalse( "no shim exports", ( (JSONObject) module ).containsKey( "exports" ) );
+      }
+    }
+  }
+
+  @Test
+  public void testTransformCache() throws Exception {
+    WebjarsTransformCache transformCache =
+        new WebjarsTransformCache( temporaryFolder.newFolder( "cache" ), 10 * 1024 * 1024 );
+    URL url = new URL( "mvn:org.webjars/angular-dateparser/1.0.9" );
+
+    // the reader gives up early, but the transformation still completes and gets cached
+    WebjarsURLConnection connection = new WebjarsURLConnection( url, false, transformCache );
+    JarInputStream jar = new JarInputStream( connection.getInputStream() );
+    jar.getManifest();
+    jar.close();
+    connection.transform_thread.get();
+
+    assertEquals( 1, getCachedBundleCount( transformCache ) );
+
+    connection = new WebjarsURLConnection( url, false, transformCache );
+    ZipFile zipInputStream = getDeployedJar( connection );
+    connection.transform_thread.get();
+
+    verifyManifest( zipInputStream );
+    verifyBlueprint( zipInputStream, "angular-dateparser@1.0.9", "angular-dateparser/1.0.9" );
+    verifyRequireJson( zipInputStream, "org.webjars/angular-dateparser", "1.0.9" );
+
+    // served from the cache
+    assertEquals( 1, getCachedBundleCount( transformCache ) );
+
+    // a different transformation configuration is cached apart
+    connection = new WebjarsURLConnection( url, true, transformCache );
+    getDeployedJar( connection );
+    connection.transform_thread.get();
+
+    assertEquals( 2, getCachedBundleCount( transformCache ) );
+  }
+
   private void verifyManifest( ZipFile zipInputStream ) throws IOException {
     ZipEntry entry = zipInputStream.getEntry( "META-INF/MANIFEST.MF" );
     assertNotNull( entry );
@@ -218,8 +294,22 @@ public class WebjarsURLConnectionTest {
     assertTrue( srcFile.endsWith( "\n" + pos + "\n" ) );
   }
 
+  private int getCachedBundleCount( WebjarsTransformCache transformCache ) {
+    String[] bundles = transformCache.getDirectory().list( ( dir, name ) -> name.endsWith( ".jar" ) );
+    assertNotNull( bundles );
+
+    return bundles.length;
+  }
+
   private ZipFile getDeployedJar( URL webjar_url ) throws IOException {
-    WebjarsURLConnection connection = new WebjarsURLConnection( webjar_url, false );
+    return getDeployedJar( webjar_url, false );
+  }
+
+  private ZipFile getDeployedJar( URL webjar_url, boolean automaticNonAmdShimConfigEnabled ) throws IOException {
+    return getDeployedJar( new WebjarsURLConnection( webjar_url, automaticNonAmdShimConfigEnabled ) );
+  }
+
+  private ZipFile getDeployedJar( WebjarsURLConnection connection ) throws IOException {
     connection.connect();
 
     InputStream inputStream = connection.getInputStream();
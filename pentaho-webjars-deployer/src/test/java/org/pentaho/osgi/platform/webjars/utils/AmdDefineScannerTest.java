@@ -0,0 +1,111 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AmdDefineScannerTest {
+
+  @Test
+  public void testCollectsGlobals() {
+    String source = "var x = 1;\r\n"
+        + "window.myLib = factory();\r\n"
+        + "window.onload = init;\n"
+        + "window.document.title = 'x';\r"
+        + "exports.other.thing = function() {};\n"
+        + "if ( window.check == value ) {}\n"
+        + "window.myLib = again();";
+
+    List<String> exports = new ArrayList<>();
+    AmdDefineScanner scanner = new AmdDefineScanner( exports );
+
+    // tokens split across writes must still be matched as a whole
+    byte[] bytes = source.getBytes( StandardCharsets.UTF_8 );
+    for ( int i = 0; i < bytes.length; i += 7 ) {
+      scanner.write( bytes, i, Math.min( 7, bytes.length - i ) );
+    }
+    scanner.close();
+
+    assertFalse( scanner.isAmdDefineFound() );
+    assertEquals( Arrays.asList( "myLib", "other.thing" ), exports );
+
+    ArrayList<String> streamExports = new ArrayList<>();
+    assertFalse( RequireJsGenerator.findAmdDefine( new ByteArrayInputStream( bytes ), streamExports ) );
+    assertEquals( exports, streamExports );
+  }
+
+  @Test
+  public void testLastTokenWithoutLineBreak() {
+    List<String> exports = new ArrayList<>();
+    AmdDefineScanner scanner = new AmdDefineScanner( exports );
+
+    scanner.write( "window.lastLine = value".getBytes( StandardCharsets.UTF_8 ), 0, 23 );
+    assertTrue( exports.isEmpty() );
+
+    scanner.close();
+    assertEquals( Collections.singletonList( "lastLine" ), exports );
+  }
+
+  @Test
+  public void testFindsAmdDefine() {
+    assertTrue( scan( "define( function() { return {}; } );" ) );
+    assertTrue( scan( "define(\"jquery\", [], function() {" ) );
+    assertTrue( scan( "define( [ 'a', \"b\" ], function( a, b ) {" ) );
+    assertTrue( scan( "define( 'name', [ 'exports' ], factory );" ) );
+    assertTrue( scan( "define( { color: 'black' } );" ) );
+    assertTrue( scan( "if ( typeof define === 'function' && define.amd ) {" ) );
+  }
+
+  @Test
+  public void testIgnoresWhatIsNotAnAmdDefine() {
+    assertFalse( scan( "// define( function() {} );" ) );
+    assertFalse( scan( "/* define( function() {} ); */" ) );
+    assertFalse( scan( "var text = \"define( function() {} )\";" ) );
+    assertFalse( scan( "var template = `define( function() {} )`;" ) );
+    assertFalse( scan( "var re = /define\\( function/;" ) );
+    assertFalse( scan( "customElements.define( 'my-element', MyElement );" ) );
+    assertFalse( scan( "define( factory );" ) );
+    assertFalse( scan( "var define = 1;" ) );
+  }
+
+  @Test
+  public void testTellsRegularExpressionsFromDivisions() {
+    // the quote in the regular expression mustn't start a string that would hide the define
+    assertTrue( scan( "var re = /'/; define( function() {} );" ) );
+    assertTrue( scan( "var re = /[/']/g; define( function() {} );" ) );
+
+    // a division, not a regular expression hiding the define
+    assertTrue( scan( "var half = total / 2; define( function() {} ); var x = a / b;" ) );
+  }
+
+  private boolean scan( String source ) {
+    AmdDefineScanner scanner = new AmdDefineScanner( new ArrayList<>() );
+
+    byte[] bytes = source.getBytes( StandardCharsets.UTF_8 );
+    scanner.write( bytes, 0, bytes.length );
+    scanner.close();
+
+    return scanner.isAmdDefineFound();
+  }
+}
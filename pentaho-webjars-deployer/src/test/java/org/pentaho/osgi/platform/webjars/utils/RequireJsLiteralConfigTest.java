@@ -0,0 +1,71 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.osgi.platform.webjars.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RequireJsLiteralConfigTest {
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testLiteralConfig() {
+    Map<String, Object> config = RequireJsLiteralConfig.parse( "/*global requirejs */\n"
+        + "\n"
+        + "// Ensure any request for this webjar brings in jQuery.\n"
+        + "requirejs.config({\n"
+        + "    paths: { \"jquery\": \"jquery\" },\n"
+        + "    shim: { 'jquery': { \"exports\": \"$\" }, },\n"
+        + "});\n" );
+
+    assertNotNull( config );
+    assertEquals( Collections.singletonMap( "jquery", "jquery" ), config.get( "paths" ) );
+
+    Map<String, Object> shim = (Map<String, Object>) config.get( "shim" );
+    assertEquals( Collections.singletonMap( "exports", "$" ), shim.get( "jquery" ) );
+  }
+
+  @Test
+  @SuppressWarnings( "unchecked" )
+  public void testLiteralValues() {
+    Map<String, Object> config = RequireJsLiteralConfig.parse(
+        "requirejs.config( { list: [ 15, 1.5, -2, 3.0, true, false, null, 'a\\tb\\u0041' ], dup: 1, dup: 2 } );" );
+
+    assertNotNull( config );
+
+    List<Object> list = (List<Object>) config.get( "list" );
+    assertEquals( Arrays.asList( 15L, 1.5, -2L, 3L, true, false, null, "a\tbA" ), list );
+    assertEquals( 2L, config.get( "dup" ) );
+  }
+
+  @Test
+  public void testNotLiteralConfig() {
+    assertNull( RequireJsLiteralConfig.parse( "var paths = {}; requirejs.config( { paths: paths } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: 'x' + 'y' } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: webjars.path( 'm', 'f' ) } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: 1 } ); requirejs.config( { b: 2 } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: [ 1, , 2 ] } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: 1e3 } );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( 'a' );" ) );
+    assertNull( RequireJsLiteralConfig.parse( "requirejs.config( { a: 1 }" ) );
+    assertNull( RequireJsLiteralConfig.parse( "" ) );
+  }
+}
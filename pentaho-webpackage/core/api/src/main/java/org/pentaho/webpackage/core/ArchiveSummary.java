@@ -0,0 +1,135 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.webpackage.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The entry names of a zip (or jar) archive, read from its central directory only.
+ * <p>
+ * Summaries are cached per file and reused for as long as the file keeps the same modification time and size, so
+ * the artifact handlers that are asked whether they can handle a deployed file don't scan it again and again. Bundles
+ * that embed this class, like the webjars deployer, keep their own cache.
+ */
+public final class ArchiveSummary {
+  private static final int MAX_CACHED_SUMMARIES = 256;
+
+  private static final Map<String, ArchiveSummary> CACHE =
+      new LinkedHashMap<String, ArchiveSummary>( 16, 0.75f, true ) {
+        @Override
+        protected boolean removeEldestEntry( Map.Entry<String, ArchiveSummary> eldest ) {
+          return size() > MAX_CACHED_SUMMARIES;
+        }
+      };
+
+  private final long lastModified;
+  private final long length;
+
+  // sorted
+  private final String[] entryNames;
+
+  private ArchiveSummary( long lastModified, long length, String[] entryNames ) {
+    this.lastModified = lastModified;
+    this.length = length;
+    this.entryNames = entryNames;
+  }
+
+  /**
+   * @param file a zip or jar archive
+   *
+   * @return the summary of the archive, read only if it isn't cached yet or the file changed since
+   *
+   * @throws IOException if the file isn't a readable zip archive
+   */
+  public static ArchiveSummary of( File file ) throws IOException {
+    final String path = file.getAbsolutePath();
+    final long lastModified = file.lastModified();
+    final long length = file.length();
+
+    synchronized ( CACHE ) {
+      ArchiveSummary summary = CACHE.get( path );
+      if ( summary != null && summary.lastModified == lastModified && summary.length == length ) {
+        return summary;
+      }
+    }
+
+    ArchiveSummary summary = new ArchiveSummary( lastModified, length, readEntryNames( file ) );
+
+    synchronized ( CACHE ) {
+      CACHE.put( path, summary );
+    }
+
+    return summary;
+  }
+
+  private static String[] readEntryNames( File file ) throws IOException {
+    // ZipFile only reads the central directory at the end of the archive, not the entries themselves
+    try ( ZipFile zipFile = new ZipFile( file ) ) {
+      String[] names = new String[ zipFile.size() ];
+
+      int count = 0;
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while ( entries.hasMoreElements() && count < names.length ) {
+        names[ count++ ] = entries.nextElement().getName();
+      }
+
+      names = count == names.length ? names : Arrays.copyOf( names, count );
+      Arrays.sort( names );
+
+      return names;
+    }
+  }
+
+  /**
+   * @return true if the archive has an entry with exactly the given name, e.g. "META-INF/MANIFEST.MF"
+   */
+  public boolean hasEntry( String name ) {
+    return Arrays.binarySearch( entryNames, name ) >= 0;
+  }
+
+  /**
+   * @return true if the name of some entry ends with the given suffix, e.g. "-requirejs.js"
+   */
+  public boolean hasEntryEndingWith( String suffix ) {
+    for ( String name : entryNames ) {
+      if ( name.endsWith( suffix ) ) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @return true if some entry, at any depth, is a file with the given name, e.g. "package.json"
+   */
+  public boolean hasFileNamed( String fileName ) {
+    for ( String name : entryNames ) {
+      if ( name.endsWith( fileName ) ) {
+        int start = name.length() - fileName.length();
+        if ( start == 0 || name.charAt( start - 1 ) == '/' || name.charAt( start - 1 ) == '\\' ) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+}
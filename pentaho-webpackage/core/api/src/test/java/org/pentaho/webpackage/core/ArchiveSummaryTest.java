@@ -0,0 +1,91 @@
+/*! ******************************************************************************
+ *
+ * Pentaho
+ *
+ * Copyright (C) 2024 by Hitachi Vantara, LLC : http://www.pentaho.com
+ *
+ * Use of this software is governed by the Business Source License included
+ * in the LICENSE.TXT file.
+ *
+ * Change Date: 2029-07-20
+ ******************************************************************************/
+
+package org.pentaho.webpackage.core;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveSummaryTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testEntryQueries() throws Exception {
+    File file = createZip( "archive.zip", "META-INF/MANIFEST.MF", "package.json",
+        "META-INF/resources/webjars/angularjs/1.3.0-rc.0/webjars-requirejs.js", "dir\\nested\\bower.json" );
+
+    ArchiveSummary summary = ArchiveSummary.of( file );
+
+    assertTrue( summary.hasEntry( "META-INF/MANIFEST.MF" ) );
+    assertFalse( summary.hasEntry( "MANIFEST.MF" ) );
+
+    assertTrue( summary.hasEntryEndingWith( "-requirejs.js" ) );
+    assertFalse( summary.hasEntryEndingWith( "-requirejs.json" ) );
+
+    assertTrue( summary.hasFileNamed( "package.json" ) );
+    assertTrue( summary.hasFileNamed( "bower.json" ) );
+    assertTrue( summary.hasFileNamed( "webjars-requirejs.js" ) );
+    assertFalse( summary.hasFileNamed( "requirejs.js" ) );
+  }
+
+  @Test
+  public void testSummaryIsReusedUntilTheFileChanges() throws Exception {
+    File file = createZip( "archive.zip", "a.js" );
+
+    ArchiveSummary summary = ArchiveSummary.of( file );
+    assertSame( summary, ArchiveSummary.of( file ) );
+
+    createZip( "archive.zip", "a.js", "package.json" );
+    assertTrue( file.setLastModified( file.lastModified() + 2000 ) );
+
+    ArchiveSummary changed = ArchiveSummary.of( file );
+    assertNotSame( summary, changed );
+    assertTrue( changed.hasFileNamed( "package.json" ) );
+  }
+
+  @Test( expected = IOException.class )
+  public void testNotAnArchive() throws Exception {
+    File file = temporaryFolder.newFile( "package.json" );
+    Files.write( file.toPath(), "{}".getBytes( StandardCharsets.UTF_8 ) );
+
+    ArchiveSummary.of( file );
+  }
+
+  private File createZip( String name, String... entryNames ) throws IOException {
+    File file = new File( temporaryFolder.getRoot(), name );
+
+    try ( ZipOutputStream zipOutputStream = new ZipOutputStream( new FileOutputStream( file ) ) ) {
+      for ( String entryName : entryNames ) {
+        zipOutputStream.putNextEntry( new ZipEntry( entryName ) );
+        zipOutputStream.write( entryName.getBytes( StandardCharsets.UTF_8 ) );
+        zipOutputStream.closeEntry();
+      }
+    }
+
+    return file;
+  }
+}
@@ -15,8 +15,8 @@ package org.pentaho.webpackage.deployer.archive.impl;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.felix.fileinstall.ArtifactUrlTransformer;
+import org.pentaho.webpackage.core.ArchiveSummary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,9 +24,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.URL;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 public class UrlTransformer implements ArtifactUrlTransformer {
   private Logger logger = LoggerFactory.getLogger( UrlTransformer.class );
@@ -52,50 +49,18 @@ public class UrlTransformer implements ArtifactUrlTransformer {
   }
 
   boolean canHandleZipFile( File file ) {
-    ZipFile zipFile = null;
-
     try {
-      zipFile = new ZipFile( file );
+      ArchiveSummary summary = ArchiveSummary.of( file );
 
       // exclude real jar files
       // (we only accept the jar extension because of exploded bundles (jardir))
-      if ( zipFile.getEntry( "META-INF/MANIFEST.MF" ) != null ) {
+      if ( summary.hasEntry( "META-INF/MANIFEST.MF" ) ) {
         return false;
       }
 
-      ZipInputStream zipInputStream = null;
-
-      try {
-        zipInputStream = new ZipInputStream( new FileInputStream( file ) );
-
-        ZipEntry entry;
-        while ( ( entry = zipInputStream.getNextEntry() ) != null ) {
-          final String name = FilenameUtils.getName( entry.getName() );
-          if ( name.equals( WebPackageURLConnection.PACKAGE_JSON ) ) {
-            return true;
-          }
-        }
-      } catch ( IOException ignored ) {
-        // Ignore
-      } finally {
-        try {
-          if ( zipInputStream != null ) {
-            zipInputStream.close();
-          }
-        } catch ( IOException ignored ) {
-          // Ignore
-        }
-      }
+      return summary.hasFileNamed( WebPackageURLConnection.PACKAGE_JSON );
     } catch ( IOException ignored ) {
       // Ignore
-    } finally {
-      if ( zipFile != null ) {
-        try {
-          zipFile.close();
-        } catch ( IOException ignored ) {
-          // Ignore
-        }
-      }
     }
 
     return false;